@@ -1,8 +1,10 @@
+import groovy.json.JsonOutput
 import net.thebugmc.gradle.sonatypepublisher.PublishingType
 import java.util.Properties
 
 plugins {
     id("java-library")
+    id("java-test-fixtures")
     id("org.openapi.generator") version "7.17.0"
     id("org.kordamp.gradle.jandex") version "2.3.0"
     id("com.github.gmazzo.buildconfig") version "6.0.6"
@@ -24,7 +26,11 @@ dependencies {
     implementation("io.mikael:urlbuilder:2.0.9")
     implementation("com.github.mizosoft.methanol:methanol:1.9.0")
 
+    compileOnly("io.opentelemetry:opentelemetry-api:1.55.0")
+    compileOnly("org.crac:crac:1.5.0")
+
     testImplementation("org.wiremock:wiremock:3.13.2")
+    testImplementation("org.crac:crac:1.5.0")
     testImplementation("org.junit.jupiter:junit-jupiter-api:6.0.0")
     testRuntimeOnly("org.junit.jupiter:junit-jupiter-engine:6.0.0")
     testRuntimeOnly("org.junit.platform:junit-platform-launcher:1.14.1")
@@ -60,11 +66,68 @@ tasks.compileJava {
     options.encoding = "UTF-8"
 }
 
+val generateNativeImageMetadata = tasks.register("generateNativeImageMetadata") {
+    description = "Generates the GraalVM reachability metadata for the models."
+    dependsOn(tasks["openApiGenerate"])
+
+    val modelDirs = files(
+        "${layout.buildDirectory.get()}/generated/sources/openapi/src/main/java/io/apistax/models",
+        "src/main/java/io/apistax/models"
+    )
+    val outputDir = layout.buildDirectory.dir("generated/resources/native-image")
+
+    inputs.files(modelDirs)
+    outputs.dir(outputDir)
+
+    doLast {
+        // Jackson accesses the models reflectively, including the enums nested in them, e.g. Outer$InnerEnum
+        val nested = Regex("""^\s+public (?:static )?(?:enum|class) (\w+)""", RegexOption.MULTILINE)
+        val types = sortedSetOf("org.openapitools.jackson.nullable.JsonNullable")
+
+        modelDirs.forEach { dir ->
+            dir.listFiles { file -> file.name.endsWith(".java") }?.forEach { file ->
+                val type = "io.apistax.models.${file.nameWithoutExtension}"
+                types += type
+                nested.findAll(file.readText()).forEach { types += "$type\$${it.groupValues[1]}" }
+            }
+        }
+
+        val reflection = types.map {
+            mapOf(
+                "name" to it,
+                "allDeclaredConstructors" to true,
+                "allPublicConstructors" to true,
+                "allDeclaredMethods" to true,
+                "allPublicMethods" to true,
+                "allDeclaredFields" to true,
+                "allPublicFields" to true
+            )
+        }
+
+        val resources = mapOf(
+            "resources" to mapOf(
+                "includes" to listOf(
+                    mapOf("pattern" to "\\QMETA-INF/services/com.github.mizosoft.methanol.BodyDecoder\$Factory\\E")
+                )
+            )
+        )
+
+        val metadataDir = outputDir.get().dir("META-INF/native-image/io.apistax/apistax-client").asFile
+        metadataDir.mkdirs()
+        metadataDir.resolve("reflect-config.json").writeText(JsonOutput.prettyPrint(JsonOutput.toJson(reflection)))
+        metadataDir.resolve("resource-config.json").writeText(JsonOutput.prettyPrint(JsonOutput.toJson(resources)))
+    }
+}
+
 sourceSets {
     main {
         java {
             srcDir("${layout.buildDirectory.get()}/generated/sources/openapi/src/main/java")
         }
+
+        resources {
+            srcDir(generateNativeImageMetadata)
+        }
     }
 }
 
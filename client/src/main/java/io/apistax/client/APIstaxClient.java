@@ -1,9 +1,19 @@
 package io.apistax.client;
 
+import com.github.mizosoft.methanol.HttpCache;
 import io.apistax.ApiException;
 import io.apistax.models.*;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
 
 public interface APIstaxClient {
 
@@ -16,6 +26,18 @@ public interface APIstaxClient {
      */
     byte[] convertHtmlToPdf(HtmlPayload payload) throws APIstaxException;
 
+    /**
+     * Convert HTML to PDF
+     *
+     * @param payload HTML payload to convert (required)
+     * @param handler Receives the PDF, see {@link BinaryHandlers} (required)
+     * @return the result of the handler
+     * @throws APIstaxException if fails to make API call
+     */
+    default <T> T convertHtmlToPdf(HtmlPayload payload, BinaryHandler<T> handler) throws APIstaxException {
+        return BinaryHandlers.handle(handler, convertHtmlToPdf(payload));
+    }
+
     /**
      * Convert HTML to PDF
      *
@@ -25,6 +47,72 @@ public interface APIstaxClient {
      */
     byte[] convertHtmlToPdf(String content) throws APIstaxException;
 
+    /**
+     * Convert HTML to PDF, streaming the document into the request while it is read, so large documents are never held
+     * in memory as a whole.
+     *
+     * @param content The HTML document to be converted, it is not closed (required)
+     * @param options The other properties of the payload, e.g. page size and margins, its content is ignored (optional)
+     * @param handler Receives the PDF, see {@link BinaryHandlers} (required)
+     * @return the result of the handler
+     * @throws APIstaxException if fails to make API call
+     */
+    default <T> T convertHtmlToPdf(Reader content, HtmlPayload options, BinaryHandler<T> handler) throws APIstaxException {
+        // implementations other than the one of the builder read the document into a copy of the options
+        var payload = options != null ? APIstaxClientImpl.copyPayload(options) : new HtmlPayload();
+
+        try {
+            var writer = new StringWriter();
+            content.transferTo(writer);
+            payload.content(writer.toString());
+        } catch (IOException e) {
+            throw new APIstaxException(e);
+        }
+
+        return convertHtmlToPdf(payload, handler);
+    }
+
+    /**
+     * Convert HTML to PDF, streaming the document into the request while it is read.
+     *
+     * @param content The HTML document to be converted, it is not closed (required)
+     * @param options The other properties of the payload, its content is ignored (optional)
+     * @return byte[]
+     * @throws APIstaxException if fails to make API call
+     */
+    default byte[] convertHtmlToPdf(Reader content, HtmlPayload options) throws APIstaxException {
+        return convertHtmlToPdf(content, options, BinaryHandlers.ofByteArray());
+    }
+
+    /**
+     * Convert an HTML file to PDF, streaming it into the request while it is read.
+     *
+     * @param content The UTF-8 encoded HTML file to be converted (required)
+     * @param options The other properties of the payload, its content is ignored (optional)
+     * @param handler Receives the PDF, see {@link BinaryHandlers} (required)
+     * @return the result of the handler
+     * @throws APIstaxException if fails to make API call
+     */
+    default <T> T convertHtmlToPdf(Path content, HtmlPayload options, BinaryHandler<T> handler) throws APIstaxException {
+        try (var reader = Files.newBufferedReader(content, StandardCharsets.UTF_8)) {
+            return convertHtmlToPdf(reader, options, handler);
+        } catch (IOException e) {
+            throw new APIstaxException(e);
+        }
+    }
+
+    /**
+     * Convert an HTML file to PDF, streaming it into the request while it is read.
+     *
+     * @param content The UTF-8 encoded HTML file to be converted (required)
+     * @param options The other properties of the payload, its content is ignored (optional)
+     * @return byte[]
+     * @throws APIstaxException if fails to make API call
+     */
+    default byte[] convertHtmlToPdf(Path content, HtmlPayload options) throws APIstaxException {
+        return convertHtmlToPdf(content, options, BinaryHandlers.ofByteArray());
+    }
+
     /**
      * Generate a valid EPC QR Code
      *
@@ -34,6 +122,18 @@ public interface APIstaxClient {
      */
     byte[] generateEpcQrCode(EpcQrCodePayload payload) throws APIstaxException;
 
+    /**
+     * Generate a valid EPC QR Code
+     *
+     * @param payload QR Code payload to generate (required)
+     * @param handler Receives the image, see {@link BinaryHandlers} (required)
+     * @return the result of the handler
+     * @throws APIstaxException if fails to make API call
+     */
+    default <T> T generateEpcQrCode(EpcQrCodePayload payload, BinaryHandler<T> handler) throws APIstaxException {
+        return BinaryHandlers.handle(handler, generateEpcQrCode(payload));
+    }
+
     /**
      * Generate a valid EPC QR Code
      *
@@ -110,6 +210,18 @@ public interface APIstaxClient {
      */
     IndexResult fetchIndex(Index index, IndexFrequency frequency) throws APIstaxException;
 
+    /**
+     * Fetch the values of an index as compact series with constant time lookups
+     *
+     * @param index     The index to fetch (required)
+     * @param frequency The frequency of the values (required)
+     * @return IndexSeries
+     * @throws APIstaxException if fails to make API call
+     */
+    default IndexSeries fetchIndexSeries(Index index, IndexFrequency frequency) throws APIstaxException {
+        return IndexSeries.of(fetchIndex(index, frequency));
+    }
+
     /**
      * Generate a valid Swiss QR invoice as PDF
      *
@@ -129,6 +241,19 @@ public interface APIstaxClient {
      */
     byte[] generateSwissQrInvoice(SwissQrInvoicePayload payload, SwissQrInvoiceFormat format) throws APIstaxException;
 
+    /**
+     * Generate a valid Swiss QR invoice
+     *
+     * @param payload The payload to generate QR invoice from (required)
+     * @param format  The format to generate. Defaults to PDF
+     * @param handler Receives the invoice, see {@link BinaryHandlers} (required)
+     * @return the result of the handler
+     * @throws APIstaxException if fails to make API call
+     */
+    default <T> T generateSwissQrInvoice(SwissQrInvoicePayload payload, SwissQrInvoiceFormat format, BinaryHandler<T> handler) throws APIstaxException {
+        return BinaryHandlers.handle(handler, generateSwissQrInvoice(payload, format));
+    }
+
     /**
      * Create a invoice PDF
      *
@@ -138,6 +263,18 @@ public interface APIstaxClient {
      */
     byte[] generateInvoicePdf(InvoicePayload payload) throws APIstaxException;
 
+    /**
+     * Create a invoice PDF
+     *
+     * @param payload The invoice object to create a PDF from. (required)
+     * @param handler Receives the PDF, see {@link BinaryHandlers} (required)
+     * @return the result of the handler
+     * @throws APIstaxException if fails to make API call
+     */
+    default <T> T generateInvoicePdf(InvoicePayload payload, BinaryHandler<T> handler) throws APIstaxException {
+        return BinaryHandlers.handle(handler, generateInvoicePdf(payload));
+    }
+
     /**
      * Generate a barcode
      *
@@ -147,6 +284,18 @@ public interface APIstaxClient {
      */
     byte[] generateBarcode(BarcodePayload payload) throws APIstaxException;
 
+    /**
+     * Generate a barcode
+     *
+     * @param payload The barcode payload to generate
+     * @param handler Receives the image, see {@link BinaryHandlers} (required)
+     * @return the result of the handler
+     * @throws APIstaxException if fails to make API call
+     */
+    default <T> T generateBarcode(BarcodePayload payload, BinaryHandler<T> handler) throws APIstaxException {
+        return BinaryHandlers.handle(handler, generateBarcode(payload));
+    }
+
 
     /**
      * Convert PDF to PDF/A
@@ -157,6 +306,18 @@ public interface APIstaxClient {
      */
     byte[] convertPdfToPdfA(InputStream file) throws APIstaxException;
 
+    /**
+     * Convert PDF to PDF/A
+     *
+     * @param file    The PDF file to be converted to PDF/A (required)
+     * @param handler Receives the PDF/A, see {@link BinaryHandlers} (required)
+     * @return the result of the handler
+     * @throws APIstaxException if fails to make API call
+     */
+    default <T> T convertPdfToPdfA(InputStream file, BinaryHandler<T> handler) throws APIstaxException {
+        return BinaryHandlers.handle(handler, convertPdfToPdfA(file));
+    }
+
     /**
      * Generate a valid Short Payment Descriptor (SPAYD) QR Code
      *
@@ -166,6 +327,18 @@ public interface APIstaxClient {
      */
     byte[] generateSpaydQrCode(SpaydQrCodePayload payload) throws APIstaxException;
 
+    /**
+     * Generate a valid Short Payment Descriptor (SPAYD) QR Code
+     *
+     * @param payload QR Code payload to generate (required)
+     * @param handler Receives the image, see {@link BinaryHandlers} (required)
+     * @return the result of the handler
+     * @throws APIstaxException if fails to make API call
+     */
+    default <T> T generateSpaydQrCode(SpaydQrCodePayload payload, BinaryHandler<T> handler) throws APIstaxException {
+        return BinaryHandlers.handle(handler, generateSpaydQrCode(payload));
+    }
+
     /**
      * Generate a valid PAY by square QR Code
      *
@@ -175,6 +348,18 @@ public interface APIstaxClient {
      */
     byte[] generatePayBySquareQrCode(PayBySquareQrCodePayload payload) throws APIstaxException;
 
+    /**
+     * Generate a valid PAY by square QR Code
+     *
+     * @param payload QR Code payload to generate (required)
+     * @param handler Receives the image, see {@link BinaryHandlers} (required)
+     * @return the result of the handler
+     * @throws APIstaxException if fails to make API call
+     */
+    default <T> T generatePayBySquareQrCode(PayBySquareQrCodePayload payload, BinaryHandler<T> handler) throws APIstaxException {
+        return BinaryHandlers.handle(handler, generatePayBySquareQrCode(payload));
+    }
+
     /**
      * Generate a valid Hungarian Instant Payment QR Code
      *
@@ -184,6 +369,18 @@ public interface APIstaxClient {
      */
     byte[] generateHctQrCode(HctQrCodePayload payload) throws APIstaxException;
 
+    /**
+     * Generate a valid Hungarian Instant Payment QR Code
+     *
+     * @param payload QR Code payload to generate (required)
+     * @param handler Receives the image, see {@link BinaryHandlers} (required)
+     * @return the result of the handler
+     * @throws APIstaxException if fails to make API call
+     */
+    default <T> T generateHctQrCode(HctQrCodePayload payload, BinaryHandler<T> handler) throws APIstaxException {
+        return BinaryHandlers.handle(handler, generateHctQrCode(payload));
+    }
+
     /**
      * Create a invoice PDF
      *
@@ -194,17 +391,223 @@ public interface APIstaxClient {
     @Deprecated
     byte[] generateInvoicePdfV1(InvoicePayloadV1 payload) throws APIstaxException;
 
+    /**
+     * Create a view of this client which applies the given options, like a deadline or a cancellation token, to every
+     * call made through it. The returned client shares connections and configuration with this client.
+     * <p>
+     * Implementations other than the one of {@link Builder} return this client by default, which ignores the options.
+     *
+     * @param options The options to apply (required)
+     * @return APIstaxClient
+     */
+    default APIstaxClient withOptions(RequestOptions options) {
+        return this;
+    }
+
+    /**
+     * Make a call and return its result together with the status, headers, sizes and timings of the HTTP exchange,
+     * e.g. {@code client.withResponse(c -> c.generateInvoicePdf(payload))}. The call is made with a view of this client,
+     * which must be used for the call to be recorded.
+     *
+     * @param call The call to make with the given client (required)
+     * @return ApiResponse
+     * @throws APIstaxException if fails to make API call
+     */
+    default <T> ApiResponse<T> withResponse(Function<APIstaxClient, T> call) throws APIstaxException {
+        return ApiResponse.notSent(call.apply(this));
+    }
+
+    /**
+     * Open connections to the API ahead of the first call, so it does not pay for DNS lookup, TCP and TLS handshakes.
+     * The number of connections is configured by {@link Builder#connections(int)}.
+     *
+     * @throws APIstaxException if interrupted while waiting for the connections
+     */
+    default void warmUp() throws APIstaxException {
+    }
+
+    /**
+     * @return ConnectionStats
+     */
+    default ConnectionStats getConnectionStats() {
+        return new ConnectionStats(0, null, 0, 0, 0, 0);
+    }
+
     class Builder {
 
-        private String apiKey;
+        String apiKey;
+        String host = "https://api.apistax.io";
+        HostSelector hostSelector;
+        RequestScheduler scheduler;
+        ConcurrencyLimiter concurrencyLimiter;
+        boolean stacklessExceptions;
+        boolean getLookups;
+        List<HttpCache> httpCaches = List.of();
+        LookupCache lookupCache;
+        VatLedger vatLedger;
+        APIstaxTracer tracer = APIstaxTracer.NOOP;
+        boolean warmUpOnBuild;
+        int connections = 1;
+        Duration keepAliveInterval;
+        Duration idleTimeout = Duration.ofSeconds(60);
+        APIstaxTransport transport;
 
         public Builder apiKey(String apiKey) {
             this.apiKey = apiKey;
             return this;
         }
 
+        public Builder host(String host) {
+            this.host = host;
+            return this;
+        }
+
+        /**
+         * Distribute calls over several base URLs, e.g. regional endpoints, preferring the fastest reachable one and
+         * failing over on connection errors. Replaces the {@link #host}. See {@link HostSelector} for details.
+         */
+        public Builder hosts(String... hosts) {
+            return hostSelector(new HostSelector.Builder().hosts(hosts).build());
+        }
+
+        /**
+         * Distribute calls over the hosts of the given selector, e.g. to tune its ejection or to inspect its stats.
+         * Replaces the {@link #host}.
+         */
+        public Builder hostSelector(HostSelector hostSelector) {
+            this.hostSelector = hostSelector;
+            return this;
+        }
+
+        /**
+         * Queue calls by their {@link RequestPriority} and limit the number of concurrent calls. By default, calls are
+         * sent immediately.
+         */
+        public Builder scheduler(RequestScheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Limit the number of concurrent calls per endpoint adaptively, based on the observed latency and overload.
+         * Applies after the {@link #scheduler}, if both are configured. By default, calls are not limited.
+         */
+        public Builder concurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+            this.concurrencyLimiter = concurrencyLimiter;
+            return this;
+        }
+
+        /**
+         * Create exceptions without capturing their stack trace. This makes expected failures, like exhausted quotas
+         * or timeouts under load, considerably cheaper.
+         */
+        public Builder stacklessExceptions(boolean stacklessExceptions) {
+            this.stacklessExceptions = stacklessExceptions;
+            return this;
+        }
+
+        /**
+         * Send the lookups which have a GET variant, VAT verifications, geocoding and EPC QR codes, as GET requests
+         * with query parameters instead of POST requests. Their responses can then be cached by an
+         * {@link #httpCache HTTP cache} or a caching proxy. Disabled by default.
+         */
+        public Builder getLookups(boolean getLookups) {
+            this.getLookups = getLookups;
+            return this;
+        }
+
+        /**
+         * Cache GET responses according to their Cache-Control, ETag and Last-Modified headers. Repeated lookups are
+         * served locally while fresh and revalidated with a conditional request afterwards. Several caches are chained
+         * in the given order, e.g. a memory cache in front of a disk cache. The caches are not closed by the client
+         * and can't be combined with a custom {@link #transport}.
+         */
+        public Builder httpCache(HttpCache... caches) {
+            this.httpCaches = List.of(caches);
+            return this;
+        }
+
+        /**
+         * Cache the results of VAT verifications, geocoding and index lookups in memory and in an optional store shared
+         * by a cluster, regardless of the response headers. See {@link LookupCache} for details. Disabled by default.
+         */
+        public Builder lookupCache(LookupCache lookupCache) {
+            this.lookupCache = lookupCache;
+            return this;
+        }
+
+        /**
+         * Append every VAT verification received from the API to the ledger, with the headers of the request options
+         * as its context. See {@link VatLedger} for details. Disabled by default.
+         */
+        public Builder vatLedger(VatLedger vatLedger) {
+            this.vatLedger = vatLedger;
+            return this;
+        }
+
+        /**
+         * Trace calls with the given tracer, e.g. an {@link OpenTelemetryTracer}. Calls are not traced by default.
+         */
+        public Builder tracer(APIstaxTracer tracer) {
+            this.tracer = tracer != null ? tracer : APIstaxTracer.NOOP;
+            return this;
+        }
+
+        /**
+         * Send requests with the given transport instead of the default {@link MethanolTransport}.
+         */
+        public Builder transport(APIstaxTransport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * Call {@link APIstaxClient#warmUp()} when the client is built.
+         */
+        public Builder warmUpOnBuild(boolean warmUpOnBuild) {
+            this.warmUpOnBuild = warmUpOnBuild;
+            return this;
+        }
+
+        /**
+         * The number of connections opened by a warm up and kept alive. With HTTP/2 these are concurrent streams on a
+         * shared connection. Defaults to 1.
+         */
+        public Builder connections(int connections) {
+            if (connections < 1) {
+                throw new IllegalArgumentException("connections must be at least 1");
+            }
+
+            this.connections = connections;
+            return this;
+        }
+
+        /**
+         * Send probes whenever the client was idle for the given interval, so connections are not closed for
+         * inactivity. Choose an interval shorter than the idle timeout of the server. Disabled by default.
+         */
+        public Builder keepAlive(Duration keepAliveInterval) {
+            this.keepAliveInterval = keepAliveInterval;
+            return this;
+        }
+
+        /**
+         * The time after which an idle connection is assumed to be closed, used for the estimates of
+         * {@link ConnectionStats}. Defaults to 60 seconds.
+         */
+        public Builder idleTimeout(Duration idleTimeout) {
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+
         public APIstaxClient build() {
-            return new APIstaxClientImpl(apiKey, "https://api.apistax.io");
+            var client = new APIstaxClientImpl(this);
+
+            if (warmUpOnBuild) {
+                client.warmUp();
+            }
+
+            return client;
         }
     }
 }
@@ -1,42 +1,107 @@
 package io.apistax.client;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.github.mizosoft.methanol.MediaType;
-import com.github.mizosoft.methanol.Methanol;
 import com.github.mizosoft.methanol.MultipartBodyPublisher;
 import io.apistax.models.*;
 import io.mikael.urlbuilder.UrlBuilder;
 import org.openapitools.jackson.nullable.JsonNullableModule;
 
-import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.http.HttpClient;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
 import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class APIstaxClientImpl implements APIstaxClient {
 
-    private final HttpClient httpClient;
+    private static final ObjectMapper PAYLOAD_MAPPER = createObjectMapper();
+
+    private final APIstaxTransport transport;
     private final ObjectMapper objectMapper;
-    private final String host;
+    private final HostSelector hosts;
     private final String apiKey;
+    private final RequestScheduler scheduler;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final boolean stacklessExceptions;
+    private final boolean getLookups;
+    private final APIstaxTracer tracer;
+    private final ConnectionWarmer connectionWarmer;
+    private final RequestOptions options;
+    private final LookupCache lookupCache;
+    private final VatLedger vatLedger;
+    private final AtomicReference<Exchange> recorder;
 
     public APIstaxClientImpl(String apiKey, String host) {
-        this.apiKey = apiKey;
-        this.host = host;
+        this(new Builder().apiKey(apiKey).host(host));
+    }
+
+    APIstaxClientImpl(Builder builder) {
+        this.apiKey = builder.apiKey;
+        this.hosts = builder.hostSelector != null ? builder.hostSelector : HostSelector.of(builder.host);
+        this.scheduler = builder.scheduler;
+        this.concurrencyLimiter = builder.concurrencyLimiter;
+        this.stacklessExceptions = builder.stacklessExceptions;
+        this.getLookups = builder.getLookups;
+        this.tracer = builder.tracer;
+        this.lookupCache = builder.lookupCache;
+        this.vatLedger = builder.vatLedger;
+        this.options = RequestOptions.DEFAULT;
+        this.recorder = null;
+
+        if (builder.transport != null && !builder.httpCaches.isEmpty()) {
+            throw new IllegalStateException("An HTTP cache can't be combined with a custom transport");
+        }
+
+        if (builder.transport != null) {
+            transport = builder.transport;
+        } else if (!builder.httpCaches.isEmpty()) {
+            transport = MethanolTransport.withCache(builder.httpCaches);
+        } else {
+            transport = new MethanolTransport();
+        }
+
+        connectionWarmer = new ConnectionWarmer(transport, hosts, builder.connections, builder.idleTimeout,
+                builder.keepAliveInterval);
 
-        httpClient = Methanol.create();
+        objectMapper = createObjectMapper();
+    }
+
+    /**
+     * Copy a payload with all of its properties, so the copy can be changed without affecting the original.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T copyPayload(T payload) {
+        return PAYLOAD_MAPPER.convertValue(payload, (Class<T>) payload.getClass());
+    }
 
-        objectMapper = new ObjectMapper();
+    /**
+     * Create a mapper which reads and writes payloads and results the way the API expects them, e.g. to load payloads
+     * from files or to store results.
+     */
+    public static ObjectMapper createObjectMapper() {
+        var objectMapper = new ObjectMapper();
         objectMapper.setDefaultPropertyInclusion(JsonInclude.Include.NON_NULL);
         objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
         objectMapper.configure(DeserializationFeature.FAIL_ON_INVALID_SUBTYPE, false);
@@ -46,11 +111,86 @@ public class APIstaxClientImpl implements APIstaxClient {
         objectMapper.disable(DeserializationFeature.ADJUST_DATES_TO_CONTEXT_TIME_ZONE);
         objectMapper.registerModule(new JavaTimeModule());
         objectMapper.registerModule(new JsonNullableModule());
+        return objectMapper;
+    }
+
+    private APIstaxClientImpl(APIstaxClientImpl parent, RequestOptions options, AtomicReference<Exchange> recorder) {
+        this.apiKey = parent.apiKey;
+        this.hosts = parent.hosts;
+        this.transport = parent.transport;
+        this.objectMapper = parent.objectMapper;
+        this.scheduler = parent.scheduler;
+        this.concurrencyLimiter = parent.concurrencyLimiter;
+        this.stacklessExceptions = parent.stacklessExceptions;
+        this.getLookups = parent.getLookups;
+        this.tracer = parent.tracer;
+        this.lookupCache = parent.lookupCache;
+        this.vatLedger = parent.vatLedger;
+        this.connectionWarmer = parent.connectionWarmer;
+        this.options = options;
+        this.recorder = recorder;
+    }
+
+    @Override
+    public APIstaxClient withOptions(RequestOptions options) {
+        return new APIstaxClientImpl(this, options, recorder);
+    }
+
+    @Override
+    public <T> ApiResponse<T> withResponse(Function<APIstaxClient, T> call) throws APIstaxException {
+        var recorder = new AtomicReference<Exchange>();
+        var body = call.apply(new APIstaxClientImpl(this, options, recorder));
+        var exchange = recorder.get();
+
+        return exchange != null ? exchange.toResponse(body) : ApiResponse.notSent(body);
+    }
+
+    @Override
+    public void warmUp() throws APIstaxException {
+        try {
+            connectionWarmer.warmUp();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransportException(TransportException.Reason.CANCELLED, e);
+        }
+    }
+
+    @Override
+    public ConnectionStats getConnectionStats() {
+        return connectionWarmer.getStats();
+    }
+
+    /**
+     * Close the connections before a checkpoint of the JVM, see {@link CracResource}.
+     */
+    void beforeCheckpoint() {
+        connectionWarmer.suspend();
+    }
+
+    /**
+     * Prepare sending requests again after the JVM was restored. The object mapper and the lookup cache are kept, the
+     * latencies measured before the checkpoint are forgotten.
+     */
+    void afterRestore(boolean warmUp) {
+        connectionWarmer.resume();
+
+        if (concurrencyLimiter != null) {
+            concurrencyLimiter.resetLatencies();
+        }
+
+        if (warmUp) {
+            warmUp();
+        }
     }
 
     @Override
     public byte[] convertHtmlToPdf(HtmlPayload payload) throws APIstaxException {
-        return requestBinary("/v1/html-to-pdf", new JsonBodyProvider(payload, objectMapper), "application/pdf");
+        return convertHtmlToPdf(payload, BinaryHandlers.ofByteArray());
+    }
+
+    @Override
+    public <T> T convertHtmlToPdf(HtmlPayload payload, BinaryHandler<T> handler) throws APIstaxException {
+        return requestBinary("/v1/html-to-pdf", new JsonBodyProvider(payload, objectMapper), "application/pdf", handler);
     }
 
     @Override
@@ -58,9 +198,45 @@ public class APIstaxClientImpl implements APIstaxClient {
         return convertHtmlToPdf(new HtmlPayload().content(content));
     }
 
+    @Override
+    public <T> T convertHtmlToPdf(Reader content, HtmlPayload options, BinaryHandler<T> handler) throws APIstaxException {
+        var body = new StreamingBodyProvider(() -> new StreamingJsonBody(objectMapper, options, "content", content, false), false);
+        return requestBinary("/v1/html-to-pdf", body, "application/pdf", handler);
+    }
+
+    @Override
+    public <T> T convertHtmlToPdf(Path content, HtmlPayload options, BinaryHandler<T> handler) throws APIstaxException {
+        // the file is opened anew for every attempt, so the call can fail over to another host
+        var body = new StreamingBodyProvider(() -> new StreamingJsonBody(objectMapper, options, "content",
+                Files.newBufferedReader(content, StandardCharsets.UTF_8), true), true);
+        return requestBinary("/v1/html-to-pdf", body, "application/pdf", handler);
+    }
+
     @Override
     public byte[] generateEpcQrCode(EpcQrCodePayload payload) throws APIstaxException {
-        return requestBinary("/v1/epc-qr-code", new JsonBodyProvider(payload, objectMapper), "image/png");
+        return generateEpcQrCode(payload, BinaryHandlers.ofByteArray());
+    }
+
+    @Override
+    public <T> T generateEpcQrCode(EpcQrCodePayload payload, BinaryHandler<T> handler) throws APIstaxException {
+        if (getLookups) {
+            var query = new LinkedHashMap<String, String>();
+            putQuery(query, "bic", payload.getBic());
+            putQuery(query, "iban", payload.getIban());
+            putQuery(query, "recipient", payload.getRecipient());
+            putQuery(query, "currency", payload.getCurrency());
+            putQuery(query, "amount", payload.getAmount());
+            putQuery(query, "reference", payload.getReference());
+            putQuery(query, "text", payload.getText());
+            putQuery(query, "size", payload.getSize());
+            putQuery(query, "frame", payload.getFrame());
+            putQuery(query, "message", payload.getMessage());
+            putQuery(query, "version", payload.getVersion());
+
+            return request("/v1/epc-qr-code", null, "image/png", query, handler::handle);
+        }
+
+        return requestBinary("/v1/epc-qr-code", new JsonBodyProvider(payload, objectMapper), "image/png", handler);
     }
 
     @Override
@@ -70,7 +246,28 @@ public class APIstaxClientImpl implements APIstaxClient {
 
     @Override
     public VatVerificationResult verifyVatId(VatVerificationPayload payload) throws APIstaxException {
-        return requestJson("/v1/vat-verification", new JsonBodyProvider(payload, objectMapper), VatVerificationResult.class);
+        var recent = recentVerification(payload);
+
+        if (recent != null) {
+            return recent;
+        }
+
+        return cached("/v1/vat-verification", payload, VatVerificationResult.class, () -> {
+            VatVerificationResult result;
+
+            if (getLookups) {
+                var query = new LinkedHashMap<String, String>();
+                putQuery(query, "vatId", payload.getVatId());
+
+                result = requestJson("/v1/vat-verification", query, VatVerificationResult.class);
+            } else {
+                result = requestJson("/v1/vat-verification", new JsonBodyProvider(payload, objectMapper),
+                        VatVerificationResult.class);
+            }
+
+            recordVerification(payload, result);
+            return result;
+        });
     }
 
     @Override
@@ -80,7 +277,17 @@ public class APIstaxClientImpl implements APIstaxClient {
 
     @Override
     public GeocodeResult geocodeSearch(GeocodeSearchPayload payload) throws APIstaxException {
-        return requestJson("/v1/geocode/search", new JsonBodyProvider(payload, objectMapper), GeocodeResult.class);
+        return cached("/v1/geocode/search", payload, GeocodeResult.class, () -> {
+            if (getLookups) {
+                var query = new LinkedHashMap<String, String>();
+                putQuery(query, "query", payload.getQuery());
+                putQuery(query, "language", payload.getLanguage());
+
+                return requestJson("/v1/geocode/search", query, GeocodeResult.class);
+            }
+
+            return requestJson("/v1/geocode/search", new JsonBodyProvider(payload, objectMapper), GeocodeResult.class);
+        });
     }
 
     @Override
@@ -90,7 +297,18 @@ public class APIstaxClientImpl implements APIstaxClient {
 
     @Override
     public GeocodeResult geocodeReverse(GeocodeReversePayload payload) throws APIstaxException {
-        return requestJson("/v1/geocode/reverse", new JsonBodyProvider(payload, objectMapper), GeocodeResult.class);
+        return cached("/v1/geocode/reverse", payload, GeocodeResult.class, () -> {
+            if (getLookups) {
+                var query = new LinkedHashMap<String, String>();
+                putQuery(query, "latitude", payload.getLatitude());
+                putQuery(query, "longitude", payload.getLongitude());
+                putQuery(query, "language", payload.getLanguage());
+
+                return requestJson("/v1/geocode/reverse", query, GeocodeResult.class);
+            }
+
+            return requestJson("/v1/geocode/reverse", new JsonBodyProvider(payload, objectMapper), GeocodeResult.class);
+        });
     }
 
     @Override
@@ -100,8 +318,9 @@ public class APIstaxClientImpl implements APIstaxClient {
 
     @Override
     public IndexResult fetchIndex(Index index, IndexFrequency frequency) throws APIstaxException {
+        var path = "/v1/indexes/" + index.getValue();
         var query = Collections.singletonMap("frequency", frequency.getValue());
-        return requestJson("/v1/indexes/" + index.getValue(), query, IndexResult.class);
+        return cached(path, query, IndexResult.class, () -> requestJson(path, query, IndexResult.class));
     }
 
     @Override
@@ -111,6 +330,12 @@ public class APIstaxClientImpl implements APIstaxClient {
 
     @Override
     public byte[] generateSwissQrInvoice(SwissQrInvoicePayload payload, SwissQrInvoiceFormat format) throws APIstaxException {
+        return generateSwissQrInvoice(payload, format, BinaryHandlers.ofByteArray());
+    }
+
+    @Override
+    public <T> T generateSwissQrInvoice(SwissQrInvoicePayload payload, SwissQrInvoiceFormat format, BinaryHandler<T> handler)
+            throws APIstaxException {
         String accept = "application/pdf";
 
         if (format == SwissQrInvoiceFormat.SVG) {
@@ -119,62 +344,122 @@ public class APIstaxClientImpl implements APIstaxClient {
             accept = "image/png";
         }
 
-        return requestBinary("/v1/swiss-qr-invoice", new JsonBodyProvider(payload, objectMapper), accept);
+        return requestBinary("/v1/swiss-qr-invoice", new JsonBodyProvider(payload, objectMapper), accept, handler);
     }
 
     @Override
     public byte[] generateInvoicePdf(InvoicePayload payload) throws APIstaxException {
-        return requestBinary("/v2/invoice-pdf", new JsonBodyProvider(payload, objectMapper), "application/pdf");
+        return generateInvoicePdf(payload, BinaryHandlers.ofByteArray());
+    }
+
+    @Override
+    public <T> T generateInvoicePdf(InvoicePayload payload, BinaryHandler<T> handler) throws APIstaxException {
+        return requestBinary("/v2/invoice-pdf", new JsonBodyProvider(payload, objectMapper), "application/pdf", handler);
     }
 
     @Override
     public byte[] generateBarcode(BarcodePayload payload) throws APIstaxException {
-        return requestBinary("/v1/barcode", new JsonBodyProvider(payload, objectMapper), "image/*");
+        return generateBarcode(payload, BinaryHandlers.ofByteArray());
+    }
+
+    @Override
+    public <T> T generateBarcode(BarcodePayload payload, BinaryHandler<T> handler) throws APIstaxException {
+        return requestBinary("/v1/barcode", new JsonBodyProvider(payload, objectMapper), "image/*", handler);
     }
 
     @Override
     public byte[] convertPdfToPdfA(InputStream file) throws APIstaxException {
-        return requestBinary("/v1/pdf-to-pdf-a", new FileBodyProvider(file), "application/pdf");
+        return convertPdfToPdfA(file, BinaryHandlers.ofByteArray());
+    }
+
+    @Override
+    public <T> T convertPdfToPdfA(InputStream file, BinaryHandler<T> handler) throws APIstaxException {
+        return requestBinary("/v1/pdf-to-pdf-a", new FileBodyProvider(file), "application/pdf", handler);
     }
 
     @Override
     public byte[] generateSpaydQrCode(SpaydQrCodePayload payload) throws APIstaxException {
-        return requestBinary("/v1/spayd-qr-code", new JsonBodyProvider(payload, objectMapper), "image/png");
+        return generateSpaydQrCode(payload, BinaryHandlers.ofByteArray());
+    }
+
+    @Override
+    public <T> T generateSpaydQrCode(SpaydQrCodePayload payload, BinaryHandler<T> handler) throws APIstaxException {
+        return requestBinary("/v1/spayd-qr-code", new JsonBodyProvider(payload, objectMapper), "image/png", handler);
     }
 
     @Override
     public byte[] generateHctQrCode(HctQrCodePayload payload) throws APIstaxException {
-        return requestBinary("/v1/hct-qr-code", new JsonBodyProvider(payload, objectMapper), "image/png");
+        return generateHctQrCode(payload, BinaryHandlers.ofByteArray());
+    }
+
+    @Override
+    public <T> T generateHctQrCode(HctQrCodePayload payload, BinaryHandler<T> handler) throws APIstaxException {
+        return requestBinary("/v1/hct-qr-code", new JsonBodyProvider(payload, objectMapper), "image/png", handler);
     }
 
     @Override
     public byte[] generatePayBySquareQrCode(PayBySquareQrCodePayload payload) throws APIstaxException {
-        return requestBinary("/v1/pay-by-square-qr-code", new JsonBodyProvider(payload, objectMapper), "image/png");
+        return generatePayBySquareQrCode(payload, BinaryHandlers.ofByteArray());
+    }
+
+    @Override
+    public <T> T generatePayBySquareQrCode(PayBySquareQrCodePayload payload, BinaryHandler<T> handler) throws APIstaxException {
+        return requestBinary("/v1/pay-by-square-qr-code", new JsonBodyProvider(payload, objectMapper), "image/png", handler);
     }
 
     @Override
     @Deprecated
     public byte[] generateInvoicePdfV1(InvoicePayloadV1 payload) throws APIstaxException {
-        return requestBinary("/v1/invoice-pdf", new JsonBodyProvider(payload, objectMapper), "application/pdf");
+        var body = new JsonBodyProvider(payload, objectMapper);
+        return requestBinary("/v1/invoice-pdf", body, "application/pdf", BinaryHandlers.ofByteArray());
     }
 
-    private byte[] requestBinary(String path, BodyProvider body, String accept) {
-        return request(path, body, accept, null, inputStream -> {
-            try {
-                var outputStream = new ByteArrayOutputStream();
+    /**
+     * Serve a lookup from the {@link LookupCache}, if one is configured. The key is the path and the JSON of the
+     * lookup, which lists the properties in a fixed order.
+     */
+    private <T> T cached(String path, Object lookup, Class<T> type, Supplier<T> loader) {
+        if (lookupCache == null) {
+            return loader.get();
+        }
 
-                var buffer = new byte[1024 * 4];
-                int n;
+        try {
+            return lookupCache.get(path + " " + objectMapper.writeValueAsString(lookup), type, objectMapper, loader);
+        } catch (JsonProcessingException e) {
+            throw new APIstaxException(e);
+        }
+    }
 
-                while (-1 != (n = inputStream.read(buffer))) {
-                    outputStream.write(buffer, 0, n);
-                }
+    private VatVerificationResult recentVerification(VatVerificationPayload payload) {
+        if (vatLedger == null || payload.getVatId() == null) {
+            return null;
+        }
 
-                return outputStream.toByteArray();
-            } catch (IOException e) {
-                throw new APIstaxException(e);
-            }
-        });
+        try {
+            return vatLedger.recent(payload.getVatId());
+        } catch (IOException e) {
+            throw new APIstaxException(e);
+        }
+    }
+
+    /**
+     * Append a result received from the API to the {@link VatLedger}, if one is configured. A result which can't be
+     * recorded fails the call, as it couldn't be proven later, as does a ledger which was closed.
+     */
+    private void recordVerification(VatVerificationPayload payload, VatVerificationResult result) {
+        if (vatLedger == null || payload.getVatId() == null) {
+            return;
+        }
+
+        try {
+            vatLedger.append(payload.getVatId(), result, options.getHeaders());
+        } catch (IOException | IllegalStateException e) {
+            throw new APIstaxException(e);
+        }
+    }
+
+    private <T> T requestBinary(String path, BodyProvider body, String accept, BinaryHandler<T> handler) {
+        return request(path, body, accept, null, handler::handle);
     }
 
     private <T> T requestJson(String path, BodyProvider body, Class<T> type) {
@@ -186,46 +471,202 @@ public class APIstaxClientImpl implements APIstaxClient {
     }
 
     private <T> T requestJson(String path, BodyProvider body, Map<String, String> query, Class<T> type) {
-        return request(path, body, "application/json", query, inputStream -> {
+        return request(path, body, "application/json", query, (inputStream, contentLength) -> {
             try {
-                return objectMapper.readValue(inputStream, type);
-            } catch (IOException e) {
+                if (recorder != null) {
+                    // read the body up front, so download and deserialization are timed separately
+                    return objectMapper.readValue(inputStream.readAllBytes(), type);
+                }
+
+                var result = objectMapper.readerFor(type)
+                        .without(JsonParser.Feature.AUTO_CLOSE_SOURCE)
+                        .<T>readValue(inputStream);
+
+                // the parser stops at the end of the document, reading the end of the stream lets the connection be
+                // reused and completes the body for transports which record it
+                inputStream.transferTo(OutputStream.nullOutputStream());
+                return result;
+            } catch (JsonProcessingException e) {
                 throw new APIstaxException(e);
             }
         });
     }
 
-    private <T> T request(String path, BodyProvider body, String accept, Map<String, String> query, Function<InputStream, T> mapper) {
+    private <T> T request(String path, BodyProvider body, String accept, Map<String, String> query, BodyMapper<T> mapper) {
+        var span = tracer.startSpan(body != null ? "POST" : "GET", path);
+        var exchange = new Exchange();
+
+        try (var call = new RequestCall(options, !stacklessExceptions)) {
+            RequestScheduler.Permit permit = null;
+            ConcurrencyLimiter.Permit limit = null;
+
+            try {
+                call.checkActive();
+
+                if (scheduler != null) {
+                    permit = scheduler.acquire(options.getPriority(), call);
+                }
+
+                if (concurrencyLimiter != null) {
+                    limit = concurrencyLimiter.acquire(path, call);
+                }
+
+                exchange.connectionReused = connectionWarmer.onCall();
+
+                var sentNanos = System.nanoTime();
+                exchange.queueingNanos = sentNanos - exchange.startNanos;
+                var response = send(path, body, accept, query, call, span, exchange);
+                call.onAbort(() -> closeQuietly(response.body()));
+
+                var receivedNanos = System.nanoTime();
+                exchange.timeToHeadersNanos = receivedNanos - sentNanos - exchange.serializationNanos;
+
+                if (limit != null) {
+                    limit.onResponse(receivedNanos - sentNanos, response.statusCode());
+                }
+
+                span.setAttribute("http.response.status_code", response.statusCode());
+
+                if (response.statusCode() < 200 || response.statusCode() > 299) {
+                    throw error(response);
+                }
+
+                var contentLength = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+
+                if (span == APIstaxTracer.Span.NOOP && recorder == null) {
+                    try (var inputStream = response.body()) {
+                        return mapper.map(inputStream, contentLength);
+                    }
+                }
+
+                var download = span.startChild("download");
+
+                try (var inputStream = new CountingInputStream(response.body())) {
+                    var result = mapper.map(inputStream, contentLength);
+                    span.setAttribute("http.response.body.size", inputStream.count);
+
+                    if (recorder != null) {
+                        var mappedNanos = System.nanoTime();
+                        var readNanos = inputStream.endNanos != 0 ? inputStream.endNanos : mappedNanos;
+                        exchange.downloadNanos = readNanos - receivedNanos;
+                        exchange.deserializationNanos = mappedNanos - readNanos;
+                        exchange.responseBytes = inputStream.count;
+                        exchange.response = response;
+                        recorder.set(exchange);
+                    }
+
+                    return result;
+                } finally {
+                    download.end();
+                }
+            } catch (IOException | APIstaxException e) {
+                throw failed(span, limit, call.exception(e));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw failed(span, limit, call.exception(e));
+            } finally {
+                if (limit != null) {
+                    limit.release();
+                }
+
+                if (permit != null) {
+                    permit.release();
+                }
+            }
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Send the request to the host chosen by the host selector. A request which failed to connect is sent to the next
+     * host, unless its body can't be sent again.
+     */
+    private APIstaxTransport.Response send(String path, BodyProvider body, String accept, Map<String, String> query,
+                                           RequestCall call, APIstaxTracer.Span span, Exchange exchange)
+            throws IOException, InterruptedException {
+        var tried = new ArrayList<HostSelector.Host>();
+        var host = hosts.select(tried);
+
         try {
-            var request = createRequestBuilder(path, body, accept, query).build();
+            while (true) {
+                exchange.attempts++;
+                var request = createRequestBuilder(host.getBaseUrl(), path, body, accept, query, call, span, exchange)
+                        .build();
+                span.setAttribute("server.address", request.uri().getHost());
 
-            var response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                host.onStart();
+                var sentNanos = System.nanoTime();
 
-            if (response.statusCode() < 200 || response.statusCode() > 299) {
                 try {
-                    var errorMessage = objectMapper.readValue(response.body(), ErrorMessage.class);
-                    throw new APIstaxException(errorMessage.getMessages());
+                    var response = call.await(transport.sendAsync(request));
+                    host.onResponse(System.nanoTime() - sentNanos, response.statusCode());
+                    return response;
                 } catch (IOException e) {
-                    if (response.statusCode() == 401) {
-                        throw new APIstaxException(List.of("message.forbidden"), e);
+                    host.onFailure(e, System.nanoTime() - sentNanos);
+
+                    if (!HostSelector.isConnectFailure(e) || (body != null && !body.isRepeatable())) {
+                        throw e;
                     }
 
-                    throw new APIstaxException(List.of("message.unknownError"), e);
+                    tried.add(host);
+                    host = hosts.select(tried);
+
+                    if (host == null) {
+                        throw e;
+                    }
+
+                    call.checkActive();
+                } catch (InterruptedException | RuntimeException e) {
+                    host.onAbort();
+                    throw e;
                 }
             }
+        } finally {
+            // server.address is the last host, the attempts tell whether the call failed over
+            span.setAttribute("apistax.attempts", exchange.attempts);
+        }
+    }
 
-            try (var inputStream = response.body()) {
-                return mapper.apply(inputStream);
-            }
-        } catch (IOException e) {
-            throw new APIstaxException(e);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new APIstaxException(e);
+    private static APIstaxException failed(APIstaxTracer.Span span, ConcurrencyLimiter.Permit limit, APIstaxException exception) {
+        span.recordException(exception);
+
+        if (limit != null) {
+            limit.onFailure(exception);
+        }
+
+        return exception;
+    }
+
+    /**
+     * Create the exception for a failed response. The error body is only parsed once its messages are requested.
+     */
+    private APIstaxException error(APIstaxTransport.Response response) throws IOException {
+        byte[] body;
+
+        try (var inputStream = response.body()) {
+            body = inputStream.readAllBytes();
         }
+
+        var statusCode = response.statusCode();
+        var retryAfter = APIstaxException.parseRetryAfter(response.headers().firstValue("Retry-After").orElse(null));
+
+        return APIstaxException.forStatus(statusCode, () -> {
+            try {
+                return objectMapper.readValue(body, ErrorMessage.class).getMessages();
+            } catch (IOException e) {
+                if (statusCode == 401) {
+                    return List.of("message.forbidden");
+                }
+
+                return List.of("message.unknownError");
+            }
+        }, retryAfter, !stacklessExceptions);
     }
 
-    private HttpRequest.Builder createRequestBuilder(String path, BodyProvider body, String accept, Map<String, String> query) throws IOException {
+    private HttpRequest.Builder createRequestBuilder(String host, String path, BodyProvider body, String accept,
+                                                     Map<String, String> query, RequestCall call, APIstaxTracer.Span span,
+                                                     Exchange exchange) throws IOException {
         var builder = UrlBuilder.fromString(host + path);
 
         if (query != null && !query.isEmpty()) {
@@ -243,9 +684,36 @@ public class APIstaxClientImpl implements APIstaxClient {
             requestBuilder.header("Accept", accept);
         }
 
+        for (Map.Entry<String, String> header : options.getHeaders().entrySet()) {
+            requestBuilder.setHeader(header.getKey(), header.getValue());
+        }
+
+        span.inject(requestBuilder::setHeader);
+
+        if (call.hasDeadline()) {
+            requestBuilder.timeout(Duration.ofNanos(call.remainingNanos()));
+        }
+
         if (body != null) {
+            var serialization = span.startChild("serialize");
+            var serializationStart = System.nanoTime();
+            HttpRequest.BodyPublisher bodyPublisher;
+
+            try {
+                bodyPublisher = body.getBodyPublisher();
+            } finally {
+                serialization.end();
+                exchange.serializationNanos += System.nanoTime() - serializationStart;
+            }
+
+            exchange.requestBytes = bodyPublisher.contentLength();
+
+            if (bodyPublisher.contentLength() >= 0) {
+                span.setAttribute("http.request.body.size", bodyPublisher.contentLength());
+            }
+
             requestBuilder.header("Content-Type", body.getContentType());
-            requestBuilder.POST(body.getBodyPublisher());
+            requestBuilder.POST(bodyPublisher);
         } else {
             requestBuilder.GET();
         }
@@ -253,11 +721,116 @@ public class APIstaxClientImpl implements APIstaxClient {
         return requestBuilder;
     }
 
+    /**
+     * Add a query parameter unless the value is null. Decimals are written without exponent and trailing zeros, so
+     * equal lookups always produce the same URL and cache key.
+     */
+    private static void putQuery(Map<String, String> query, String name, Object value) {
+        if (value instanceof Float || value instanceof Double) {
+            query.put(name, new BigDecimal(value.toString()).stripTrailingZeros().toPlainString());
+        } else if (value != null) {
+            query.put(name, value.toString());
+        }
+    }
+
+    private static void closeQuietly(InputStream inputStream) {
+        try {
+            inputStream.close();
+        } catch (IOException e) {
+            // ignore, the call is aborted anyway
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+        private long endNanos;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            var result = super.read();
+
+            if (result >= 0) {
+                count++;
+            } else {
+                onEnd();
+            }
+
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            var result = super.read(b, off, len);
+
+            if (result > 0) {
+                count += result;
+            } else if (result < 0) {
+                onEnd();
+            }
+
+            return result;
+        }
+
+        private void onEnd() {
+            if (endNanos == 0) {
+                endNanos = System.nanoTime();
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            var result = super.skip(n);
+            count += result;
+            return result;
+        }
+    }
+
+    /**
+     * The details of an HTTP exchange, recorded for {@link #withResponse(Function)}.
+     */
+    private static class Exchange {
+
+        private final long startNanos = System.nanoTime();
+        private long queueingNanos;
+        private long serializationNanos;
+        private long timeToHeadersNanos;
+        private long downloadNanos;
+        private long deserializationNanos;
+        private long requestBytes;
+        private long responseBytes;
+        private int attempts;
+        private boolean connectionReused;
+        private APIstaxTransport.Response response;
+
+        <T> ApiResponse<T> toResponse(T body) {
+            var timing = new ApiResponse.Timing(queueingNanos, serializationNanos, timeToHeadersNanos, downloadNanos,
+                    deserializationNanos);
+            return new ApiResponse<>(body, response.statusCode(), response.headers(), requestBytes, responseBytes,
+                    attempts, connectionReused, timing);
+        }
+    }
+
+    @FunctionalInterface
+    private interface BodyMapper<T> {
+
+        T map(InputStream inputStream, long contentLength) throws IOException;
+    }
+
     private interface BodyProvider {
 
         String getContentType();
 
         HttpRequest.BodyPublisher getBodyPublisher() throws IOException;
+
+        /**
+         * @return whether the body can be published again, e.g. to send the request to another host
+         */
+        boolean isRepeatable();
     }
 
     private static class JsonBodyProvider implements BodyProvider {
@@ -280,6 +853,52 @@ public class APIstaxClientImpl implements APIstaxClient {
             var bodyData = objectMapper.writeValueAsBytes(payload);
             return HttpRequest.BodyPublishers.ofByteArray(bodyData);
         }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+    }
+
+    private static class StreamingBodyProvider implements BodyProvider {
+
+        private final StreamOpener opener;
+        private final boolean repeatable;
+
+        public StreamingBodyProvider(StreamOpener opener, boolean repeatable) {
+            this.opener = opener;
+            this.repeatable = repeatable;
+        }
+
+        @Override
+        public String getContentType() {
+            return "application/json";
+        }
+
+        /**
+         * The stream is opened when the request is sent, so an attempt which fails before that doesn't leave it open.
+         */
+        @Override
+        public HttpRequest.BodyPublisher getBodyPublisher() {
+            return HttpRequest.BodyPublishers.ofInputStream(() -> {
+                try {
+                    return opener.open();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return repeatable;
+        }
+    }
+
+    @FunctionalInterface
+    private interface StreamOpener {
+
+        InputStream open() throws IOException;
     }
 
     private static class FileBodyProvider implements BodyProvider {
@@ -303,5 +922,10 @@ public class APIstaxClientImpl implements APIstaxClient {
                     .formPart("file", "document.pdf", publisher, MediaType.APPLICATION_OCTET_STREAM)
                     .build();
         }
+
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
     }
 }
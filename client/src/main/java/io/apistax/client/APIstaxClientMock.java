@@ -3,9 +3,11 @@ package io.apistax.client;
 import io.apistax.models.*;
 
 import java.io.InputStream;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 
 public class APIstaxClientMock implements APIstaxClient {
+
     @Override
     public byte[] convertHtmlToPdf(HtmlPayload htmlPayload) throws APIstaxException {
         return "PDF".getBytes(StandardCharsets.UTF_8);
@@ -16,6 +18,11 @@ public class APIstaxClientMock implements APIstaxClient {
         return "PDF".getBytes(StandardCharsets.UTF_8);
     }
 
+    @Override
+    public <T> T convertHtmlToPdf(Reader reader, HtmlPayload htmlPayload, BinaryHandler<T> handler) throws APIstaxException {
+        return BinaryHandlers.handle(handler, "PDF".getBytes(StandardCharsets.UTF_8));
+    }
+
     @Override
     public byte[] generateEpcQrCode(EpcQrCodePayload epcQrCodePayload) throws APIstaxException {
         return "EPC_QR_CODE".getBytes(StandardCharsets.UTF_8);
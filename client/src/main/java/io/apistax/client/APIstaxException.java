@@ -1,26 +1,155 @@
 package io.apistax.client;
 
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Supplier;
 
+/**
+ * Base class of all exceptions thrown by the client. Failed responses of the API are reported by the subclasses
+ * {@link UnauthorizedException}, {@link QuotaExceededException}, {@link InvalidRequestException},
+ * {@link ServerErrorException} and {@link UnavailableException}; failures to communicate with the API by
+ * {@link TransportException}.
+ */
 public class APIstaxException extends RuntimeException {
 
     private List<String> messages;
+    private Supplier<List<String>> messagesSupplier;
+    private final int statusCode;
+    private final boolean retryable;
+    private final Duration retryAfter;
 
     public APIstaxException(Throwable cause) {
         super(cause);
+        this.statusCode = 0;
+        this.retryable = false;
+        this.retryAfter = null;
     }
 
     public APIstaxException(List<String> messages, Throwable cause) {
         super(String.join(",", Objects.requireNonNullElseGet(messages, List::of)), cause);
         this.messages = messages;
+        this.statusCode = 0;
+        this.retryable = false;
+        this.retryAfter = null;
     }
 
     public APIstaxException(List<String> messages) {
         this(messages, null);
     }
 
-    public List<String> getMessages() {
+    /**
+     * @param statusCode         the HTTP status of the response or 0 if no response was received
+     * @param messages           supplies the error messages when they are first requested
+     * @param retryable          whether the call may succeed when repeated
+     * @param retryAfter         the time to wait before repeating the call as requested by the API, may be null
+     * @param cause              the cause, may be null. Without messages, its description is the message.
+     * @param writableStackTrace whether to capture the stack trace, which can be disabled for frequent, expected
+     *                           failures
+     */
+    protected APIstaxException(int statusCode, Supplier<List<String>> messages, boolean retryable, Duration retryAfter,
+                               Throwable cause, boolean writableStackTrace) {
+        super(cause != null ? cause.toString() : null, cause, true, writableStackTrace);
+        this.messagesSupplier = messages;
+        this.statusCode = statusCode;
+        this.retryable = retryable;
+        this.retryAfter = retryAfter;
+    }
+
+    public synchronized List<String> getMessages() {
+        if (messagesSupplier != null) {
+            messages = messagesSupplier.get();
+            messagesSupplier = null;
+        }
+
         return messages;
     }
+
+    @Override
+    public String getMessage() {
+        var messages = getMessages();
+
+        if (messages == null) {
+            return super.getMessage();
+        }
+
+        return String.join(",", messages);
+    }
+
+    /**
+     * @return the HTTP status of the failed response or 0 if no response was received
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return true if the call may succeed when it is repeated later
+     */
+    public boolean isRetryable() {
+        return retryable;
+    }
+
+    /**
+     * @return the time to wait before repeating the call as requested by the API's {@code Retry-After} header or null
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * Create the exception matching the status of a failed response.
+     */
+    static APIstaxException forStatus(int statusCode, Supplier<List<String>> messages, Duration retryAfter, boolean writableStackTrace) {
+        switch (statusCode) {
+            case 401:
+            case 403:
+                return new UnauthorizedException(statusCode, messages, retryAfter, writableStackTrace);
+            case 402:
+            case 429:
+                return new QuotaExceededException(statusCode, messages, retryAfter, writableStackTrace);
+            case 502:
+            case 503:
+            case 504:
+                return new UnavailableException(statusCode, messages, retryAfter, writableStackTrace);
+            default:
+                break;
+        }
+
+        if (statusCode >= 500) {
+            return new ServerErrorException(statusCode, messages, retryAfter, writableStackTrace);
+        } else if (statusCode >= 400) {
+            return new InvalidRequestException(statusCode, messages, retryAfter, writableStackTrace);
+        }
+
+        return new APIstaxException(statusCode, messages, false, retryAfter, null, writableStackTrace);
+    }
+
+    /**
+     * Parse the value of a {@code Retry-After} header, given either in seconds or as HTTP date.
+     *
+     * @return the time to wait or null if the value is missing or invalid
+     */
+    static Duration parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            // not in seconds, try HTTP date
+        }
+
+        try {
+            var date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            var duration = Duration.between(ZonedDateTime.now(date.getZone()), date);
+            return duration.isNegative() ? Duration.ZERO : duration;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
 }
@@ -0,0 +1,79 @@
+package io.apistax.client;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Traces the calls of a client, configured with {@link APIstaxClient.Builder#tracer(APIstaxTracer)}. Each call gets a
+ * client span with the endpoint, status, body sizes and the number of hosts tried ({@code apistax.attempts}), and
+ * child spans for the serialization of the payload and the download of the response body.
+ * {@link OpenTelemetryTracer} reports the spans to OpenTelemetry.
+ * <p>
+ * Calls are not traced by default, which costs nothing but a few calls to {@link #NOOP}.
+ */
+public interface APIstaxTracer {
+
+    /**
+     * A tracer which records nothing.
+     */
+    APIstaxTracer NOOP = (method, path) -> Span.NOOP;
+
+    /**
+     * Start the client span of a call. It is started on the thread making the call, so implementations can use the
+     * current context as parent.
+     *
+     * @param method the HTTP method, e.g. POST
+     * @param path   the path of the endpoint, e.g. /v1/vat-verification
+     */
+    Span startSpan(String method, String path);
+
+    interface Span {
+
+        /**
+         * A span which records nothing.
+         */
+        Span NOOP = new Span() {
+            @Override
+            public Span startChild(String name) {
+                return this;
+            }
+
+            @Override
+            public void setAttribute(String key, String value) {
+            }
+
+            @Override
+            public void setAttribute(String key, long value) {
+            }
+
+            @Override
+            public void inject(BiConsumer<String, String> headers) {
+            }
+
+            @Override
+            public void recordException(Throwable exception) {
+            }
+
+            @Override
+            public void end() {
+            }
+        };
+
+        Span startChild(String name);
+
+        void setAttribute(String key, String value);
+
+        void setAttribute(String key, long value);
+
+        /**
+         * Add the headers which propagate the trace context to the API, e.g. {@code traceparent}.
+         */
+        void inject(BiConsumer<String, String> headers);
+
+        /**
+         * Mark the span as failed.
+         */
+        void recordException(Throwable exception);
+
+        void end();
+    }
+}
@@ -0,0 +1,79 @@
+package io.apistax.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Sends the HTTP requests of a client. The client builds the requests, including headers, timeout and body publisher,
+ * and interprets the responses, so transports with different performance characteristics can be compared with the
+ * same client logic. {@link MethanolTransport} is used unless another transport is configured with
+ * {@link APIstaxClient.Builder#transport(APIstaxTransport)}.
+ * <p>
+ * Transports should cancel the request when the returned future is cancelled, which is how deadlines and cancellation
+ * tokens abort calls.
+ */
+public interface APIstaxTransport {
+
+    /**
+     * Send a request asynchronously. The future completes once the status and headers were received, the body is
+     * streamed afterwards.
+     */
+    CompletableFuture<Response> sendAsync(HttpRequest request);
+
+    /**
+     * Close the open connections, e.g. before a checkpoint of the JVM, see {@link CracResource}. Requests sent
+     * afterwards open new connections.
+     */
+    default void suspend() {
+    }
+
+    /**
+     * Prepare sending requests again after {@link #suspend()}.
+     */
+    default void resume() {
+    }
+
+    /**
+     * Send a request and wait for the status and headers.
+     */
+    default Response send(HttpRequest request) throws IOException, InterruptedException {
+        var future = sendAsync(request);
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (CancellationException e) {
+            throw new InterruptedIOException("The request was cancelled");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                throw new InterruptedIOException("The request was cancelled");
+            } else if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * The response to a request. The body must be closed once it was read.
+     */
+    interface Response {
+
+        int statusCode();
+
+        HttpHeaders headers();
+
+        InputStream body();
+    }
+}
@@ -0,0 +1,205 @@
+package io.apistax.client;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * The result of a call together with the details of its HTTP exchange, see
+ * {@link APIstaxClient#withResponse(java.util.function.Function)}. If the call sent more than one request, the details
+ * are those of the last one.
+ */
+public final class ApiResponse<T> {
+
+    private static final HttpHeaders NO_HEADERS = HttpHeaders.of(Map.of(), (name, value) -> true);
+
+    private final T body;
+    private final boolean sent;
+    private final int statusCode;
+    private final HttpHeaders headers;
+    private final long requestBytes;
+    private final long responseBytes;
+    private final int attempts;
+    private final boolean connectionReused;
+    private final Timing timing;
+
+    ApiResponse(T body, int statusCode, HttpHeaders headers, long requestBytes, long responseBytes, int attempts,
+                boolean connectionReused, Timing timing) {
+        this.body = body;
+        this.sent = true;
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        this.attempts = attempts;
+        this.connectionReused = connectionReused;
+        this.timing = timing;
+    }
+
+    private ApiResponse(T body) {
+        this.body = body;
+        this.sent = false;
+        this.statusCode = 0;
+        this.headers = NO_HEADERS;
+        this.requestBytes = 0;
+        this.responseBytes = 0;
+        this.attempts = 0;
+        this.connectionReused = false;
+        this.timing = Timing.NONE;
+    }
+
+    /**
+     * Wrap the result of a call which didn't send a request, e.g. because it was served from the {@link LookupCache}.
+     */
+    static <T> ApiResponse<T> notSent(T body) {
+        return new ApiResponse<>(body);
+    }
+
+    /**
+     * @return the result of the call
+     */
+    public T getBody() {
+        return body;
+    }
+
+    /**
+     * @return whether a request was sent, false if the result was served from the {@link LookupCache}
+     */
+    public boolean isSent() {
+        return sent;
+    }
+
+    /**
+     * @return the HTTP status code, or 0 if no request was sent
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public HttpHeaders getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return the size of the request body in bytes, or -1 if it's not known up front, e.g. for a streamed body
+     */
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    /**
+     * @return the number of response body bytes read, after decoding the transfer and content encoding
+     */
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    /**
+     * @return the number of hosts the request was sent to, more than 1 if it failed over
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * @return whether the request likely reused an open connection. This is an estimate based on the time since the
+     * last call, the HTTP client doesn't tell, see {@link ConnectionStats}.
+     */
+    public boolean isConnectionReused() {
+        return connectionReused;
+    }
+
+    public Timing getTiming() {
+        return timing;
+    }
+
+    @Override
+    public String toString() {
+        return "ApiResponse{" +
+                "sent=" + sent +
+                ", statusCode=" + statusCode +
+                ", requestBytes=" + requestBytes +
+                ", responseBytes=" + responseBytes +
+                ", attempts=" + attempts +
+                ", connectionReused=" + connectionReused +
+                ", timing=" + timing +
+                '}';
+    }
+
+    /**
+     * Where the time of a call went. The phases follow each other, so they add up to the total.
+     */
+    public static final class Timing {
+
+        static final Timing NONE = new Timing(0, 0, 0, 0, 0);
+
+        private final long queueingNanos;
+        private final long serializationNanos;
+        private final long timeToHeadersNanos;
+        private final long downloadNanos;
+        private final long deserializationNanos;
+
+        Timing(long queueingNanos, long serializationNanos, long timeToHeadersNanos, long downloadNanos,
+               long deserializationNanos) {
+            this.queueingNanos = queueingNanos;
+            this.serializationNanos = serializationNanos;
+            this.timeToHeadersNanos = timeToHeadersNanos;
+            this.downloadNanos = downloadNanos;
+            this.deserializationNanos = deserializationNanos;
+        }
+
+        /**
+         * @return the time spent waiting for the request scheduler and the concurrency limiter
+         */
+        public Duration getQueueing() {
+            return Duration.ofNanos(queueingNanos);
+        }
+
+        /**
+         * @return the time spent serializing the request body. A streamed body is serialized while it's sent, which
+         * counts towards the time to headers.
+         */
+        public Duration getSerialization() {
+            return Duration.ofNanos(serializationNanos);
+        }
+
+        /**
+         * @return the time from sending the request until the status and headers were received, including connecting,
+         * uploading the body, the processing by the API and any failover to other hosts
+         */
+        public Duration getTimeToHeaders() {
+            return Duration.ofNanos(timeToHeadersNanos);
+        }
+
+        /**
+         * @return the time spent reading the response body. For binary responses this includes the
+         * {@link BinaryHandler}, which processes the body while it's read.
+         */
+        public Duration getDownload() {
+            return Duration.ofNanos(downloadNanos);
+        }
+
+        /**
+         * @return the time spent mapping a JSON response body to the result
+         */
+        public Duration getDeserialization() {
+            return Duration.ofNanos(deserializationNanos);
+        }
+
+        public Duration getTotal() {
+            return Duration.ofNanos(queueingNanos + serializationNanos + timeToHeadersNanos + downloadNanos +
+                    deserializationNanos);
+        }
+
+        @Override
+        public String toString() {
+            return "Timing{" +
+                    "queueing=" + getQueueing() +
+                    ", serialization=" + getSerialization() +
+                    ", timeToHeaders=" + getTimeToHeaders() +
+                    ", download=" + getDownload() +
+                    ", deserialization=" + getDeserialization() +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package io.apistax.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Receives the body of a binary response, like a PDF or an image. See {@link BinaryHandlers} for the provided
+ * handlers.
+ *
+ * @param <T> the type the body is converted to
+ */
+@FunctionalInterface
+public interface BinaryHandler<T> {
+
+    /**
+     * Read the body. The stream is closed by the client once the handler returns.
+     *
+     * @param body          the body of the response
+     * @param contentLength the announced length of the body in bytes or -1 if unknown. It's only a hint, the body may
+     *                      still be shorter or longer.
+     */
+    T handle(InputStream body, long contentLength) throws IOException;
+}
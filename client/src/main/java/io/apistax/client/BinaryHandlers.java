@@ -0,0 +1,269 @@
+package io.apistax.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The provided {@link BinaryHandler}s.
+ */
+public final class BinaryHandlers {
+
+    private static final int MAX_PRESIZE = Integer.MAX_VALUE - 8;
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_BYTE_ARRAY_PRESIZE = 4 * 1024 * 1024;
+    private static final long DEFAULT_SPILL_THRESHOLD = 4 * 1024 * 1024;
+
+    private BinaryHandlers() {
+    }
+
+    /**
+     * Read the body into a byte array presized from the {@code Content-Length} of the response up to 4 MB, using pooled
+     * copy buffers of {@link BufferPool#DEFAULT} if the length is unknown or the body is larger.
+     */
+    public static BinaryHandler<byte[]> ofByteArray() {
+        return ofByteArray(BufferPool.DEFAULT);
+    }
+
+    public static BinaryHandler<byte[]> ofByteArray(BufferPool pool) {
+        return (body, contentLength) -> {
+            if (contentLength >= 0) {
+                // the length is only a hint, so a large one doesn't allocate more than the presize up front
+                var bytes = new byte[(int) Math.min(contentLength, MAX_BYTE_ARRAY_PRESIZE)];
+                var size = 0;
+
+                while (size < bytes.length) {
+                    var n = body.read(bytes, size, bytes.length - size);
+
+                    if (n == -1) {
+                        return Arrays.copyOf(bytes, size);
+                    }
+
+                    size += n;
+                }
+
+                var next = body.read();
+
+                if (next == -1) {
+                    return bytes;
+                }
+
+                var outputStream = new ByteArrayOutputStream(bytes.length * 2);
+                outputStream.write(bytes);
+                outputStream.write(next);
+                copy(pool, body, outputStream);
+                return outputStream.toByteArray();
+            }
+
+            var outputStream = new ByteArrayOutputStream(DEFAULT_BUFFER_SIZE);
+            copy(pool, body, outputStream);
+            return outputStream.toByteArray();
+        };
+    }
+
+    /**
+     * Read the body into a buffer leased from {@link BufferPool#DEFAULT}. The returned {@link PooledBuffer} must be
+     * closed to return the buffer to the pool.
+     */
+    public static BinaryHandler<PooledBuffer> ofPooledBuffer() {
+        return ofPooledBuffer(BufferPool.DEFAULT);
+    }
+
+    public static BinaryHandler<PooledBuffer> ofPooledBuffer(BufferPool pool) {
+        return (body, contentLength) -> {
+            var capacity = contentLength >= 0 && contentLength <= MAX_PRESIZE ? (int) contentLength : DEFAULT_BUFFER_SIZE;
+            return new PooledBuffer(pool, read(pool, body, pool.acquire(capacity)).flip());
+        };
+    }
+
+    /**
+     * Keep bodies of up to 4 MB in memory and write larger ones to a temporary file, see
+     * {@link #ofBinaryResult(long, Path)}.
+     */
+    public static BinaryHandler<BinaryResult> ofBinaryResult() {
+        return ofBinaryResult(DEFAULT_SPILL_THRESHOLD, null);
+    }
+
+    /**
+     * Keep bodies of up to {@code threshold} bytes in memory and write larger ones to a temporary file. A body whose
+     * {@code Content-Length} exceeds the threshold is written to the file right away, others as soon as they grow
+     * beyond it, so no more than the threshold is held in memory per call. The returned {@link BinaryResult} must be
+     * closed to delete the file.
+     *
+     * @param directory the directory of the temporary files or null for the default temporary directory
+     */
+    public static BinaryHandler<BinaryResult> ofBinaryResult(long threshold, Path directory) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("threshold must not be negative");
+        }
+
+        return (body, contentLength) -> {
+            if (contentLength > threshold) {
+                return spill(body, directory, new byte[0], 0);
+            }
+
+            var limit = (int) Math.min(threshold, MAX_PRESIZE);
+            var bytes = new byte[contentLength >= 0 ? (int) contentLength : Math.min(limit, DEFAULT_BUFFER_SIZE)];
+            var size = 0;
+
+            while (true) {
+                if (size == bytes.length) {
+                    if (size >= limit) {
+                        var next = body.read();
+
+                        if (next == -1) {
+                            return BinaryResult.ofBytes(bytes, size);
+                        }
+
+                        bytes = Arrays.copyOf(bytes, size + 1);
+                        bytes[size] = (byte) next;
+                        return spill(body, directory, bytes, size + 1);
+                    }
+
+                    bytes = Arrays.copyOf(bytes, (int) Math.min(limit, Math.max(size * 2L, 1024)));
+                }
+
+                var n = body.read(bytes, size, bytes.length - size);
+
+                if (n == -1) {
+                    return BinaryResult.ofBytes(bytes, size);
+                }
+
+                size += n;
+            }
+        };
+    }
+
+    /**
+     * Apply a handler to a body which was already received, used by clients without a streaming implementation.
+     */
+    static <T> T handle(BinaryHandler<T> handler, byte[] body) throws APIstaxException {
+        try {
+            return handler.handle(new ByteArrayInputStream(body), body.length);
+        } catch (IOException e) {
+            throw new APIstaxException(e);
+        }
+    }
+
+    /**
+     * Read the body into the buffer, growing it as needed. The buffer is returned to the pool if reading fails.
+     */
+    private static ByteBuffer read(BufferPool pool, InputStream body, ByteBuffer buffer) throws IOException {
+        byte[] copyBuffer = buffer.hasArray() ? null : pool.acquireCopyBuffer();
+
+        try {
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    var next = body.read();
+
+                    if (next == -1) {
+                        return buffer;
+                    }
+
+                    buffer = grow(pool, buffer);
+                    buffer.put((byte) next);
+                }
+
+                int n;
+
+                if (copyBuffer == null) {
+                    n = body.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+
+                    if (n > 0) {
+                        buffer.position(buffer.position() + n);
+                    }
+                } else {
+                    n = body.read(copyBuffer, 0, Math.min(copyBuffer.length, buffer.remaining()));
+
+                    if (n > 0) {
+                        buffer.put(copyBuffer, 0, n);
+                    }
+                }
+
+                if (n == -1) {
+                    return buffer;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            pool.release(buffer);
+            throw e;
+        } finally {
+            if (copyBuffer != null) {
+                pool.releaseCopyBuffer(copyBuffer);
+            }
+        }
+    }
+
+    /**
+     * Write the bytes read so far and the rest of the body to a temporary file. The file is deleted if that fails.
+     */
+    private static BinaryResult spill(InputStream body, Path directory, byte[] head, int headSize) throws IOException {
+        var file = directory != null ? Files.createTempFile(directory, "apistax-", ".tmp") :
+                Files.createTempFile("apistax-", ".tmp");
+        FileChannel channel = null;
+
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            writeFully(channel, ByteBuffer.wrap(head, 0, headSize));
+
+            var copyBuffer = BufferPool.DEFAULT.acquireCopyBuffer();
+
+            try {
+                int n;
+
+                while (-1 != (n = body.read(copyBuffer))) {
+                    writeFully(channel, ByteBuffer.wrap(copyBuffer, 0, n));
+                }
+            } finally {
+                BufferPool.DEFAULT.releaseCopyBuffer(copyBuffer);
+            }
+
+            return BinaryResult.ofFile(file, channel);
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+            }
+
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static ByteBuffer grow(BufferPool pool, ByteBuffer buffer) {
+        if (buffer.capacity() >= MAX_PRESIZE) {
+            throw new IllegalStateException("The response exceeds the maximum buffer size");
+        }
+
+        var larger = pool.acquire((int) Math.min(MAX_PRESIZE, buffer.capacity() * 2L));
+        larger.put(buffer.flip());
+        pool.release(buffer);
+        return larger;
+    }
+
+    private static void copy(BufferPool pool, InputStream body, ByteArrayOutputStream outputStream) throws IOException {
+        var copyBuffer = pool.acquireCopyBuffer();
+
+        try {
+            int n;
+
+            while (-1 != (n = body.read(copyBuffer))) {
+                outputStream.write(copyBuffer, 0, n);
+            }
+        } finally {
+            pool.releaseCopyBuffer(copyBuffer);
+        }
+    }
+}
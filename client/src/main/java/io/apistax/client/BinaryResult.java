@@ -0,0 +1,238 @@
+package io.apistax.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A binary response kept in memory if it's small and in a temporary file otherwise, see
+ * {@link BinaryHandlers#ofBinaryResult(long, Path)}. The temporary file is deleted when the result is closed, so the
+ * content must be written out or copied before. Using the result after it was closed fails.
+ */
+public final class BinaryResult implements AutoCloseable {
+
+    /**
+     * Files up to this size are read into the heap by {@link #buffer()} instead of being mapped.
+     */
+    private static final long MAP_THRESHOLD = 1024 * 1024;
+
+    private byte[] bytes;
+    private final Path file;
+    private FileChannel channel;
+    private final long size;
+    private boolean closed;
+
+    private BinaryResult(byte[] bytes, Path file, FileChannel channel, long size) {
+        this.bytes = bytes;
+        this.file = file;
+        this.channel = channel;
+        this.size = size;
+    }
+
+    static BinaryResult ofBytes(byte[] bytes, int size) {
+        return new BinaryResult(bytes, null, null, size);
+    }
+
+    /**
+     * Take over a temporary file, which is deleted when the result is closed.
+     */
+    static BinaryResult ofFile(Path file, FileChannel channel) throws IOException {
+        return new BinaryResult(null, file, channel, channel.size());
+    }
+
+    /**
+     * @return the size of the content in bytes
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return whether the content is held in memory, otherwise it was written to a temporary file
+     */
+    public boolean isInMemory() {
+        return file == null;
+    }
+
+    /**
+     * @return the temporary file or null if the content is held in memory
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return a read-only view of the content. Content held in a file is read into the heap up to 1 MB and
+     * memory-mapped above. A mapped buffer is invalid once the result was closed, as its file is deleted, and must
+     * not be kept beyond the result. Use {@link #toByteArray()} for a copy which outlives it.
+     * @throws IllegalStateException if the content is larger than 2 GB
+     */
+    public synchronized ByteBuffer buffer() {
+        checkOpen();
+
+        if (file == null) {
+            return ByteBuffer.wrap(bytes, 0, (int) size).asReadOnlyBuffer();
+        }
+
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("The content is too large to be mapped into a single buffer");
+        }
+
+        try {
+            if (size <= MAP_THRESHOLD) {
+                var buffer = ByteBuffer.allocate((int) size);
+
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, buffer.position()) < 0) {
+                        throw new IOException("The file ended before its size");
+                    }
+                }
+
+                return buffer.flip().asReadOnlyBuffer();
+            }
+
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return a stream of the content, which must be closed before the result
+     */
+    public synchronized InputStream openStream() throws IOException {
+        checkOpen();
+
+        if (file == null) {
+            return new ByteArrayInputStream(bytes, 0, (int) size);
+        }
+
+        return Files.newInputStream(file);
+    }
+
+    /**
+     * @return the number of bytes written
+     */
+    public synchronized long transferTo(OutputStream outputStream) throws IOException {
+        checkOpen();
+
+        if (file == null) {
+            outputStream.write(bytes, 0, (int) size);
+            return size;
+        }
+
+        return transferTo(Channels.newChannel(outputStream));
+    }
+
+    /**
+     * Write the content to the channel. A file is transferred by the operating system where possible, e.g. to a
+     * socket or another file, without copying it through the heap.
+     *
+     * @return the number of bytes written
+     */
+    public synchronized long transferTo(WritableByteChannel target) throws IOException {
+        checkOpen();
+
+        if (file == null) {
+            write(ByteBuffer.wrap(bytes, 0, (int) size), target);
+            return size;
+        }
+
+        var position = 0L;
+
+        while (position < size) {
+            var transferred = channel.transferTo(position, size - position, target);
+
+            if (transferred == 0) {
+                // e.g. a channel the operating system can't transfer to, the rest is copied through the heap
+                copy(position, target);
+                break;
+            }
+
+            position += transferred;
+        }
+
+        return size;
+    }
+
+    /**
+     * @return a copy of the content, which stays valid after the result is closed
+     * @throws IllegalStateException if the content is larger than 2 GB
+     */
+    public synchronized byte[] toByteArray() throws IOException {
+        checkOpen();
+
+        if (file == null) {
+            return bytes.length == size ? bytes.clone() : Arrays.copyOf(bytes, (int) size);
+        }
+
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("The content is too large for an array");
+        }
+
+        try (var inputStream = Files.newInputStream(file)) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    /**
+     * Release the content and delete the temporary file. Closing the result more than once has no effect.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        bytes = null;
+
+        if (channel != null) {
+            try {
+                channel.close();
+            } finally {
+                channel = null;
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private void copy(long position, WritableByteChannel target) throws IOException {
+        var buffer = ByteBuffer.allocate(64 * 1024);
+
+        while (position < size) {
+            buffer.clear();
+            var read = channel.read(buffer, position);
+
+            if (read < 0) {
+                throw new IOException("The file ended before its size");
+            }
+
+            position += read;
+            write(buffer.flip(), target);
+        }
+    }
+
+    private static void write(ByteBuffer content, WritableByteChannel target) throws IOException {
+        while (content.hasRemaining()) {
+            if (target.write(content) == 0) {
+                throw new IOException("The channel accepts no more bytes, non-blocking channels are not supported");
+            }
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The result was already closed");
+        }
+    }
+}
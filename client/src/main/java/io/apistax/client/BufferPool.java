@@ -0,0 +1,184 @@
+package io.apistax.client;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of byte buffers used to receive binary responses. Buffers are grouped in power of two size classes,
+ * so a released buffer can serve any later response of up to its capacity. Buffers which would exceed the pool's
+ * retained size are left to the garbage collector.
+ */
+public final class BufferPool {
+
+    /**
+     * The heap buffer pool shared by all clients unless another pool is given.
+     */
+    public static final BufferPool DEFAULT = new Builder().build();
+
+    static final int MIN_BUFFER_SIZE = 4 * 1024;
+    static final int COPY_BUFFER_SIZE = 16 * 1024;
+
+    private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+
+    private final boolean direct;
+    private final long maxRetainedBytes;
+    private final int maxBufferSize;
+    private final ConcurrentLinkedQueue<ByteBuffer>[] buffers;
+    private final ConcurrentLinkedQueue<byte[]> copyBuffers = new ConcurrentLinkedQueue<>();
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    private BufferPool(Builder builder) {
+        this.direct = builder.direct;
+        this.maxRetainedBytes = builder.maxRetainedBytes;
+        this.maxBufferSize = builder.maxBufferSize;
+        this.buffers = new ConcurrentLinkedQueue[32];
+
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * Acquire a cleared buffer with at least the given capacity. It should be handed back by {@link #release} once its
+     * content is no longer needed.
+     */
+    public ByteBuffer acquire(int capacity) {
+        acquired.incrementAndGet();
+
+        var size = sizeClass(capacity);
+
+        if (!isPooled(size)) {
+            // a buffer above the maximum size is never pooled, rounding it up would only waste memory
+            return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        }
+
+        var buffer = buffers[index(size)].poll();
+
+        if (buffer != null) {
+            retainedBytes.addAndGet(-buffer.capacity());
+            reused.incrementAndGet();
+            return buffer.clear();
+        }
+
+        return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    /**
+     * Return a buffer to the pool. Buffers which were not acquired from this pool, or which don't fit into it anymore,
+     * are dropped.
+     */
+    public void release(ByteBuffer buffer) {
+        var capacity = buffer.capacity();
+
+        if (buffer.isDirect() != direct || buffer.isReadOnly() || !isPooled(capacity)) {
+            return;
+        }
+
+        if (retainedBytes.addAndGet(capacity) > maxRetainedBytes) {
+            retainedBytes.addAndGet(-capacity);
+            return;
+        }
+
+        buffers[index(capacity)].offer(buffer);
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * @return the number of bytes currently held by the pool
+     */
+    public long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+
+    /**
+     * @return the number of buffers acquired from the pool
+     */
+    public long getAcquired() {
+        return acquired.get();
+    }
+
+    /**
+     * @return the number of acquired buffers which were served from the pool instead of being allocated
+     */
+    public long getReused() {
+        return reused.get();
+    }
+
+    byte[] acquireCopyBuffer() {
+        var buffer = copyBuffers.poll();
+        return buffer != null ? buffer : new byte[COPY_BUFFER_SIZE];
+    }
+
+    void releaseCopyBuffer(byte[] buffer) {
+        if (copyBuffers.size() < Runtime.getRuntime().availableProcessors() * 2) {
+            copyBuffers.offer(buffer);
+        }
+    }
+
+    private boolean isPooled(int size) {
+        return Integer.bitCount(size) == 1 && size >= MIN_BUFFER_SIZE && size <= maxBufferSize;
+    }
+
+    private static int sizeClass(int capacity) {
+        if (capacity <= MIN_BUFFER_SIZE) {
+            return MIN_BUFFER_SIZE;
+        }
+
+        var size = Integer.highestOneBit(capacity - 1) << 1;
+        return size > 0 ? size : capacity;
+    }
+
+    private static int index(int size) {
+        return Integer.numberOfTrailingZeros(size) - MIN_SHIFT;
+    }
+
+    public static class Builder {
+
+        private boolean direct;
+        private long maxRetainedBytes = 32L * 1024 * 1024;
+        private int maxBufferSize = 16 * 1024 * 1024;
+
+        /**
+         * Use direct buffers, which avoids a copy when the content is written to a channel. Defaults to heap buffers.
+         */
+        public Builder direct(boolean direct) {
+            this.direct = direct;
+            return this;
+        }
+
+        /**
+         * The maximum number of bytes kept in the pool. Defaults to 32 MB.
+         */
+        public Builder maxRetainedBytes(long maxRetainedBytes) {
+            if (maxRetainedBytes < 0) {
+                throw new IllegalArgumentException("maxRetainedBytes must not be negative");
+            }
+
+            this.maxRetainedBytes = maxRetainedBytes;
+            return this;
+        }
+
+        /**
+         * The largest buffer kept in the pool, larger buffers are always allocated. Defaults to 16 MB.
+         */
+        public Builder maxBufferSize(int maxBufferSize) {
+            if (maxBufferSize < MIN_BUFFER_SIZE) {
+                throw new IllegalArgumentException("maxBufferSize must be at least " + MIN_BUFFER_SIZE);
+            }
+
+            this.maxBufferSize = maxBufferSize;
+            return this;
+        }
+
+        public BufferPool build() {
+            return new BufferPool(this);
+        }
+    }
+}
@@ -0,0 +1,619 @@
+package io.apistax.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.apistax.models.GeocodeResult;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * Geocodes address files with {@link APIstaxClient#geocodeSearch(String)}. Rows are read lazily from CSV, with a
+ * header line, or JSON Lines, and the results are written as JSON Lines in input order, one object per row with its
+ * row number, status and result.
+ * <p>
+ * Queries are normalized and deduplicated within a bounded window of recent distinct queries, so repeated addresses
+ * are only geocoded once. At most {@code parallelism} calls run concurrently and only a bounded number of rows is held
+ * in memory, independent of the size of the file. When geocoding files, a checkpoint records the rows written so an
+ * interrupted run continues where it stopped.
+ */
+public class BulkGeocoder {
+
+    public enum Format {
+        CSV,
+        JSONL
+    }
+
+    public enum Status {
+        OK,
+        NOT_FOUND,
+        EMPTY,
+        ERROR
+    }
+
+    private static final Pattern SEPARATORS = Pattern.compile("\\s*,\\s*");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final APIstaxClient client;
+    private final Format format;
+    private final List<String> queryFields;
+    private final String idField;
+    private final int parallelism;
+    private final int dedupCapacity;
+    private final Path checkpoint;
+    private final int checkpointInterval;
+    private final ObjectMapper objectMapper;
+
+    private BulkGeocoder(Builder builder) {
+        if (builder.client == null) {
+            throw new IllegalArgumentException("A client is required");
+        }
+
+        this.client = builder.client;
+        this.format = builder.format;
+        this.queryFields = builder.queryFields;
+        this.idField = builder.idField;
+        this.parallelism = builder.parallelism;
+        this.dedupCapacity = builder.dedupCapacity;
+        this.checkpoint = builder.checkpoint;
+        this.checkpointInterval = builder.checkpointInterval;
+
+        objectMapper = APIstaxClientImpl.createObjectMapper();
+    }
+
+    /**
+     * Geocode the rows of the input file into the output file. If a checkpoint file is configured and exists, rows
+     * written by a previous run are skipped and the output is continued after them.
+     */
+    public Summary run(Path input, Path output) throws IOException, InterruptedException {
+        var format = this.format != null ? this.format : detectFormat(input);
+        var resumed = checkpoint != null ? Checkpoint.read(checkpoint) : Checkpoint.NONE;
+
+        try (var channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.truncate(resumed.bytes);
+            channel.position(resumed.bytes);
+
+            var counter = new CountingOutputStream(Channels.newOutputStream(channel), resumed.bytes);
+
+            try (var reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+                 var writer = new BufferedWriter(new OutputStreamWriter(counter, StandardCharsets.UTF_8))) {
+                return run(reader, writer, format, resumed.rows, counter);
+            }
+        }
+    }
+
+    /**
+     * Geocode the rows read from the reader into the writer. Checkpoints are only written when geocoding files.
+     */
+    public Summary run(Reader input, Writer output) throws IOException, InterruptedException {
+        if (format == null) {
+            throw new IllegalStateException("The format is required when reading from a Reader");
+        }
+
+        var reader = input instanceof BufferedReader ? (BufferedReader) input : new BufferedReader(input);
+        return run(reader, output, format, 0, null);
+    }
+
+    private Summary run(BufferedReader reader, Writer writer, Format format, long skip, CountingOutputStream counter)
+            throws IOException, InterruptedException {
+        var rows = format == Format.CSV ? new CsvRows(reader) : new JsonRows(reader);
+        var summary = new Summary();
+        var window = new ArrayDeque<PendingRow>();
+        var windowSize = parallelism * 4;
+        var cache = new LinkedHashMap<String, CompletableFuture<GeocodeResult>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<GeocodeResult>> eldest) {
+                return size() > dedupCapacity;
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+
+        try {
+            long rowNumber = 0;
+            String[] row;
+
+            while ((row = rows.next()) != null) {
+                rowNumber++;
+
+                if (rowNumber <= skip) {
+                    summary.skipped++;
+                    continue;
+                }
+
+                var query = rows.query(row);
+                var pending = new PendingRow(rowNumber, rows.id(row), query);
+
+                if (query != null) {
+                    var key = normalize(query);
+                    pending.result = cache.get(key);
+
+                    if (pending.result == null) {
+                        pending.result = CompletableFuture.supplyAsync(() -> client.geocodeSearch(query), executor);
+                        pending.key = key;
+                        cache.put(key, pending.result);
+                        summary.geocoded++;
+                    } else {
+                        summary.deduplicated++;
+                    }
+                }
+
+                window.add(pending);
+
+                if (window.size() >= windowSize) {
+                    write(window.poll(), writer, summary, cache);
+                    checkpoint(writer, summary, skip, counter, false);
+                }
+            }
+
+            while (!window.isEmpty()) {
+                write(window.poll(), writer, summary, cache);
+            }
+
+            checkpoint(writer, summary, skip, counter, true);
+            writer.flush();
+            return summary;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void write(PendingRow pending, Writer writer, Summary summary, Map<String, CompletableFuture<GeocodeResult>> cache)
+            throws IOException, InterruptedException {
+        var line = objectMapper.createObjectNode();
+        line.put("row", pending.rowNumber);
+
+        if (pending.id != null) {
+            line.put("id", pending.id);
+        }
+
+        line.put("query", pending.query);
+
+        Status status;
+
+        if (pending.result == null) {
+            status = Status.EMPTY;
+        } else {
+            try {
+                var result = pending.result.get();
+                status = result != null && result.getPosition() != null ? Status.OK : Status.NOT_FOUND;
+
+                if (status == Status.OK) {
+                    line.set("result", objectMapper.valueToTree(result));
+                }
+            } catch (ExecutionException e) {
+                var cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+
+                if (cause instanceof InvalidRequestException && ((InvalidRequestException) cause).getStatusCode() == 404) {
+                    status = Status.NOT_FOUND;
+                } else {
+                    status = Status.ERROR;
+                    line.put("error", cause instanceof APIstaxException ? cause.getMessage() : String.valueOf(cause));
+
+                    // failed calls are repeated for later duplicates instead of reusing the failure
+                    if (pending.key != null) {
+                        cache.remove(pending.key, pending.result);
+                    }
+                }
+            }
+        }
+
+        line.put("status", status.name());
+        summary.count(status);
+
+        writer.write(objectMapper.writeValueAsString(line));
+        writer.write('\n');
+    }
+
+    private void checkpoint(Writer writer, Summary summary, long skip, CountingOutputStream counter, boolean force)
+            throws IOException {
+        if (checkpoint == null || counter == null || (!force && summary.getRows() % checkpointInterval != 0)) {
+            return;
+        }
+
+        writer.flush();
+        new Checkpoint(skip + summary.getRows(), counter.count).write(checkpoint);
+    }
+
+    /**
+     * Normalize a query for deduplication: Unicode compatibility form, lower case and collapsed whitespace and commas.
+     */
+    static String normalize(String query) {
+        var normalized = Normalizer.normalize(query, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT).strip();
+        normalized = SEPARATORS.matcher(normalized).replaceAll(", ");
+        return WHITESPACE.matcher(normalized).replaceAll(" ");
+    }
+
+    private static Format detectFormat(Path input) {
+        var name = input.getFileName().toString().toLowerCase(Locale.ROOT);
+
+        if (name.endsWith(".csv")) {
+            return Format.CSV;
+        } else if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+            return Format.JSONL;
+        }
+
+        throw new IllegalArgumentException("Cannot detect the format of " + input + ", configure it on the builder");
+    }
+
+    private static class PendingRow {
+
+        private final long rowNumber;
+        private final String id;
+        private final String query;
+        private CompletableFuture<GeocodeResult> result;
+        private String key;
+
+        PendingRow(long rowNumber, String id, String query) {
+            this.rowNumber = rowNumber;
+            this.id = id;
+            this.query = query;
+        }
+    }
+
+    private abstract class Rows {
+
+        protected final BufferedReader reader;
+
+        Rows(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        abstract String[] next() throws IOException;
+
+        abstract String value(String[] row, String field);
+
+        String query(String[] row) {
+            var parts = new ArrayList<String>();
+
+            for (String field : queryFields) {
+                var value = value(row, field);
+
+                if (value != null && !value.isBlank()) {
+                    parts.add(value.strip());
+                }
+            }
+
+            return parts.isEmpty() ? null : String.join(", ", parts);
+        }
+
+        String id(String[] row) {
+            return idField != null ? value(row, idField) : null;
+        }
+    }
+
+    private class CsvRows extends Rows {
+
+        private List<String> header;
+
+        CsvRows(BufferedReader reader) {
+            super(reader);
+        }
+
+        @Override
+        String[] next() throws IOException {
+            if (header == null) {
+                var names = record();
+
+                if (names == null) {
+                    return null;
+                }
+
+                header = Arrays.asList(names);
+
+                for (String field : queryFields) {
+                    if (!header.contains(field)) {
+                        throw new IllegalArgumentException("The CSV header has no column " + field);
+                    }
+                }
+            }
+
+            String[] record;
+
+            do {
+                record = record();
+            } while (record != null && record.length == 1 && record[0].isEmpty());
+
+            return record;
+        }
+
+        @Override
+        String value(String[] row, String field) {
+            var index = header.indexOf(field);
+            return index >= 0 && index < row.length ? row[index] : null;
+        }
+
+        /**
+         * Read a RFC 4180 record, quoted fields may contain separators, quotes and line breaks.
+         */
+        private String[] record() throws IOException {
+            var fields = new ArrayList<String>();
+            var field = new StringBuilder();
+            var quoted = false;
+            int c = reader.read();
+
+            if (c == -1) {
+                return null;
+            }
+
+            while (c != -1) {
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+
+                        if (reader.read() == '"') {
+                            field.append('"');
+                        } else {
+                            reader.reset();
+                            quoted = false;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+
+                c = reader.read();
+            }
+
+            fields.add(field.toString());
+            return fields.toArray(new String[0]);
+        }
+    }
+
+    private class JsonRows extends Rows {
+
+        private JsonNode current;
+
+        JsonRows(BufferedReader reader) {
+            super(reader);
+        }
+
+        @Override
+        String[] next() throws IOException {
+            String line;
+
+            do {
+                line = reader.readLine();
+            } while (line != null && line.isBlank());
+
+            if (line == null) {
+                return null;
+            }
+
+            current = objectMapper.readTree(line);
+            return new String[0];
+        }
+
+        @Override
+        String value(String[] row, String field) {
+            var node = current.get(field);
+            return node != null && !node.isNull() ? node.asText() : null;
+        }
+    }
+
+    private static class Checkpoint {
+
+        static final Checkpoint NONE = new Checkpoint(0, 0);
+
+        private final long rows;
+        private final long bytes;
+
+        Checkpoint(long rows, long bytes) {
+            this.rows = rows;
+            this.bytes = bytes;
+        }
+
+        static Checkpoint read(Path path) throws IOException {
+            if (!Files.exists(path)) {
+                return NONE;
+            }
+
+            var parts = Files.readString(path).strip().split(" ");
+            return new Checkpoint(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+        }
+
+        void write(Path path) throws IOException {
+            var temp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.writeString(temp, rows + " " + bytes + "\n");
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream out, long count) {
+            super(out);
+            this.count = count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * The outcome of a run.
+     */
+    public static class Summary {
+
+        private long skipped;
+        private long geocoded;
+        private long deduplicated;
+        private final long[] statuses = new long[Status.values().length];
+
+        private void count(Status status) {
+            statuses[status.ordinal()]++;
+        }
+
+        /**
+         * @return the number of rows processed by this run
+         */
+        public long getRows() {
+            return Arrays.stream(statuses).sum();
+        }
+
+        /**
+         * @return the number of rows skipped because a previous run already processed them
+         */
+        public long getSkipped() {
+            return skipped;
+        }
+
+        /**
+         * @return the number of calls made to the API
+         */
+        public long getGeocoded() {
+            return geocoded;
+        }
+
+        /**
+         * @return the number of rows answered by the result of an earlier row with the same query
+         */
+        public long getDeduplicated() {
+            return deduplicated;
+        }
+
+        public long getCount(Status status) {
+            return statuses[status.ordinal()];
+        }
+    }
+
+    public static class Builder {
+
+        private APIstaxClient client;
+        private Format format;
+        private List<String> queryFields = List.of("query");
+        private String idField;
+        private int parallelism = 8;
+        private int dedupCapacity = 100_000;
+        private Path checkpoint;
+        private int checkpointInterval = 1000;
+
+        public Builder client(APIstaxClient client) {
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * The format of the input. Detected from the file extension when geocoding files.
+         */
+        public Builder format(Format format) {
+            this.format = format;
+            return this;
+        }
+
+        /**
+         * The columns, or JSON fields, which are joined to the query of a row. Defaults to {@code query}.
+         */
+        public Builder queryFields(String... queryFields) {
+            if (queryFields.length == 0) {
+                throw new IllegalArgumentException("At least one query field is required");
+            }
+
+            this.queryFields = List.of(queryFields);
+            return this;
+        }
+
+        /**
+         * A column, or JSON field, which is copied to the output to identify the row.
+         */
+        public Builder idField(String idField) {
+            this.idField = idField;
+            return this;
+        }
+
+        /**
+         * The maximum number of concurrent calls. Defaults to 8.
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("parallelism must be at least 1");
+            }
+
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * The number of recent distinct queries whose results are reused for duplicates. Defaults to 100,000.
+         */
+        public Builder dedupCapacity(int dedupCapacity) {
+            if (dedupCapacity < 0) {
+                throw new IllegalArgumentException("dedupCapacity must not be negative");
+            }
+
+            this.dedupCapacity = dedupCapacity;
+            return this;
+        }
+
+        /**
+         * The file recording the progress of a run, used to continue an interrupted run.
+         */
+        public Builder checkpoint(Path checkpoint) {
+            this.checkpoint = checkpoint;
+            return this;
+        }
+
+        /**
+         * The number of rows after which the checkpoint is updated. Defaults to 1000.
+         */
+        public Builder checkpointInterval(int checkpointInterval) {
+            if (checkpointInterval < 1) {
+                throw new IllegalArgumentException("checkpointInterval must be at least 1");
+            }
+
+            this.checkpointInterval = checkpointInterval;
+            return this;
+        }
+
+        public BulkGeocoder build() {
+            return new BulkGeocoder(this);
+        }
+    }
+}
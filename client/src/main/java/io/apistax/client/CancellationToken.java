@@ -0,0 +1,63 @@
+package io.apistax.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A token which can be passed to one or more calls via {@link RequestOptions} to abort them. Cancelling the token
+ * aborts all in-flight calls using it and releases their connections. Calls started with an already cancelled token
+ * fail immediately.
+ */
+public class CancellationToken {
+
+    private final List<Runnable> listeners = new ArrayList<>();
+    private volatile boolean cancelled;
+
+    /**
+     * Cancel all calls using this token. Calling this method more than once has no further effect.
+     */
+    public void cancel() {
+        List<Runnable> toNotify;
+
+        synchronized (listeners) {
+            if (cancelled) {
+                return;
+            }
+
+            cancelled = true;
+            toNotify = new ArrayList<>(listeners);
+            listeners.clear();
+        }
+
+        for (Runnable listener : toNotify) {
+            listener.run();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Register a listener which is run once the token gets cancelled. If the token is already cancelled, the listener
+     * is run immediately.
+     *
+     * @return a handle to remove the listener again
+     */
+    Runnable onCancel(Runnable listener) {
+        synchronized (listeners) {
+            if (!cancelled) {
+                listeners.add(listener);
+                return () -> {
+                    synchronized (listeners) {
+                        listeners.remove(listener);
+                    }
+                };
+            }
+        }
+
+        listener.run();
+        return () -> {
+        };
+    }
+}
@@ -0,0 +1,242 @@
+package io.apistax.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The file format of {@link RecordingTransport} and {@link ReplayTransport}: a gzip compressed sequence of
+ * interactions, each with the request line, headers and body, the response status, headers and body, and the time
+ * until the response headers and until the end of the body were received. The stream is flushed after every
+ * interaction, so a cassette stays readable up to the last complete interaction if recording is interrupted.
+ */
+final class Cassette {
+
+    private static final int MAGIC = 0x41505843;
+    private static final int VERSION = 1;
+    private static final byte INTERACTION = 1;
+
+    private Cassette() {
+    }
+
+    /**
+     * @return the request target of the URI, its path and query, so recordings can be replayed against any host
+     */
+    static String target(URI uri) {
+        return uri.getRawQuery() != null ? uri.getRawPath() + "?" + uri.getRawQuery() : uri.getRawPath();
+    }
+
+    static List<Interaction> read(Path path) throws IOException {
+        var interactions = new ArrayList<Interaction>();
+
+        try (var in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(path))))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(path + " is not a cassette");
+            }
+
+            var version = in.readInt();
+
+            if (version != VERSION) {
+                throw new IOException("Unsupported cassette version " + version);
+            }
+
+            while (true) {
+                try {
+                    var marker = in.read();
+
+                    if (marker != INTERACTION) {
+                        break;
+                    }
+
+                    interactions.add(readInteraction(in));
+                } catch (EOFException e) {
+                    // the recording was interrupted within the last interaction
+                    break;
+                }
+            }
+        }
+
+        return interactions;
+    }
+
+    private static Interaction readInteraction(DataInputStream in) throws IOException {
+        var method = in.readUTF();
+        var target = in.readUTF();
+        var headersNanos = in.readLong();
+        var bodyNanos = in.readLong();
+        var requestHeaders = readHeaders(in);
+        var requestBody = readBytes(in);
+        var statusCode = in.readInt();
+        var responseHeaders = readHeaders(in);
+        var responseBody = readBytes(in);
+
+        return new Interaction(method, target, requestHeaders, requestBody, statusCode, responseHeaders, responseBody,
+                headersNanos, bodyNanos);
+    }
+
+    private static HttpHeaders readHeaders(DataInputStream in) throws IOException {
+        var count = in.readInt();
+        var headers = new LinkedHashMap<String, List<String>>();
+
+        for (int i = 0; i < count; i++) {
+            var name = in.readUTF();
+            headers.computeIfAbsent(name, key -> new ArrayList<>()).add(in.readUTF());
+        }
+
+        return HttpHeaders.of(headers, (name, value) -> true);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        var bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * A recorded request and its response.
+     */
+    static final class Interaction {
+
+        private final String method;
+        private final String target;
+        private final HttpHeaders requestHeaders;
+        private final byte[] requestBody;
+        private final int statusCode;
+        private final HttpHeaders responseHeaders;
+        private final byte[] responseBody;
+        private final long headersNanos;
+        private final long bodyNanos;
+
+        Interaction(String method, String target, HttpHeaders requestHeaders, byte[] requestBody, int statusCode,
+                    HttpHeaders responseHeaders, byte[] responseBody, long headersNanos, long bodyNanos) {
+            this.method = method;
+            this.target = target;
+            this.requestHeaders = requestHeaders;
+            this.requestBody = requestBody;
+            this.statusCode = statusCode;
+            this.responseHeaders = responseHeaders;
+            this.responseBody = responseBody;
+            this.headersNanos = headersNanos;
+            this.bodyNanos = bodyNanos;
+        }
+
+        String getMethod() {
+            return method;
+        }
+
+        String getTarget() {
+            return target;
+        }
+
+        HttpHeaders getRequestHeaders() {
+            return requestHeaders;
+        }
+
+        byte[] getRequestBody() {
+            return requestBody;
+        }
+
+        int getStatusCode() {
+            return statusCode;
+        }
+
+        HttpHeaders getResponseHeaders() {
+            return responseHeaders;
+        }
+
+        byte[] getResponseBody() {
+            return responseBody;
+        }
+
+        /**
+         * @return the time from sending the request until the status and headers of the response were received
+         */
+        long getHeadersNanos() {
+            return headersNanos;
+        }
+
+        /**
+         * @return the time from receiving the headers until the end of the body
+         */
+        long getBodyNanos() {
+            return bodyNanos;
+        }
+    }
+
+    /**
+     * Appends interactions to a new cassette. Safe for concurrent use.
+     */
+    static final class Writer implements Closeable {
+
+        private final DataOutputStream out;
+        private boolean closed;
+
+        Writer(Path path) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(path), true)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.flush();
+        }
+
+        /**
+         * @return false if the cassette was already closed
+         */
+        synchronized boolean write(Interaction interaction) throws IOException {
+            if (closed) {
+                return false;
+            }
+
+            out.writeByte(INTERACTION);
+            out.writeUTF(interaction.method);
+            out.writeUTF(interaction.target);
+            out.writeLong(interaction.headersNanos);
+            out.writeLong(interaction.bodyNanos);
+            writeHeaders(interaction.requestHeaders);
+            writeBytes(interaction.requestBody);
+            out.writeInt(interaction.statusCode);
+            writeHeaders(interaction.responseHeaders);
+            writeBytes(interaction.responseBody);
+            out.flush();
+            return true;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                out.close();
+            }
+        }
+
+        private void writeHeaders(HttpHeaders headers) throws IOException {
+            var count = headers.map().values().stream().mapToInt(List::size).sum();
+            out.writeInt(count);
+
+            for (Map.Entry<String, List<String>> entry : headers.map().entrySet()) {
+                for (String value : entry.getValue()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(value);
+                }
+            }
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package io.apistax.client;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Limits the number of concurrent calls per endpoint to what the API can currently sustain. Each endpoint starts at
+ * the initial limit, which is adjusted after every call from the measured round trip time, the time until the status
+ * and headers of the response were received, and from overload signals: HTTP 429, 502, 503 and 504, timeouts and
+ * connection failures. Calls beyond the limit wait in order of arrival, bound by their deadline and cancellation
+ * token.
+ * <p>
+ * {@link Algorithm#VEGAS} compares the round trip time with the minimum observed on the endpoint. The difference
+ * estimates the number of calls queued at the API, and the limit grows while the queue is short and shrinks as it
+ * builds up, so it settles before latency rises noticeably. {@link Algorithm#AIMD} only reacts to overload signals:
+ * the limit grows by one per limit's worth of successful calls and is cut on every overload. Both cut the limit by the
+ * backoff ratio on overload and only grow it while it is actually used.
+ */
+public class ConcurrencyLimiter {
+
+    public enum Algorithm {
+        VEGAS,
+        AIMD
+    }
+
+    private final Algorithm algorithm;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final int probeInterval;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    private ConcurrencyLimiter(Builder builder) {
+        if (builder.minLimit > builder.maxLimit) {
+            throw new IllegalArgumentException("minLimit must not be greater than maxLimit");
+        }
+
+        this.algorithm = builder.algorithm;
+        this.minLimit = builder.minLimit;
+        this.maxLimit = builder.maxLimit;
+        this.initialLimit = Math.max(minLimit, Math.min(maxLimit, builder.initialLimit));
+        this.backoffRatio = builder.backoffRatio;
+        this.probeInterval = builder.probeInterval;
+    }
+
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return the current limit of the endpoint, e.g. {@code /v1/vat-verification}
+     */
+    public int getLimit(String endpoint) {
+        var state = endpoints.get(endpoint);
+
+        if (state == null) {
+            return initialLimit;
+        }
+
+        synchronized (state) {
+            return state.currentLimit();
+        }
+    }
+
+    /**
+     * @return the state of all endpoints called so far, by their path
+     */
+    public Map<String, EndpointStats> getStats() {
+        var result = new TreeMap<String, EndpointStats>();
+
+        for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+            var state = entry.getValue();
+
+            synchronized (state) {
+                result.put(entry.getKey(), new EndpointStats(state.currentLimit(), state.inFlight, state.waiting.size(),
+                        state.minRttNanos, state.smoothedRttNanos, state.calls, state.overloads));
+            }
+        }
+
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Forget the measured latencies, e.g. after the JVM was restored from a checkpoint, possibly on another machine or
+     * network. The limits are kept as the starting point.
+     */
+    void resetLatencies() {
+        for (Endpoint state : endpoints.values()) {
+            synchronized (state) {
+                state.minRttNanos = Long.MAX_VALUE;
+                state.smoothedRttNanos = 0;
+                state.samplesUntilProbe = probeInterval;
+            }
+        }
+    }
+
+    /**
+     * Wait until the endpoint is below its limit. Waiting is bound by the deadline and cancellation token of the call.
+     *
+     * @return the permit which has to be released once the call has finished
+     */
+    Permit acquire(String endpoint, RequestCall call) throws IOException, InterruptedException {
+        var state = endpoints.computeIfAbsent(endpoint, key -> new Endpoint(initialLimit));
+        var waiter = new CompletableFuture<Void>();
+
+        synchronized (state) {
+            state.waiting.add(waiter);
+            state.dispatch();
+        }
+
+        try {
+            call.await(waiter);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            synchronized (state) {
+                if (!state.waiting.remove(waiter) && !waiter.isCompletedExceptionally()) {
+                    state.inFlight--;
+                    state.dispatch();
+                }
+            }
+
+            throw e;
+        }
+
+        return new Permit(state);
+    }
+
+    /**
+     * Tracks a single call which was allowed to be sent.
+     */
+    final class Permit {
+
+        private final Endpoint endpoint;
+        private final int inFlight;
+        private long rttNanos = -1;
+        private boolean overload;
+        private boolean released;
+
+        private Permit(Endpoint endpoint) {
+            this.endpoint = endpoint;
+
+            synchronized (endpoint) {
+                this.inFlight = endpoint.inFlight;
+            }
+        }
+
+        /**
+         * Record the status and headers of the response being received.
+         */
+        void onResponse(long rttNanos, int statusCode) {
+            this.rttNanos = rttNanos;
+            this.overload = statusCode == 429 || statusCode == 502 || statusCode == 503 || statusCode == 504;
+        }
+
+        /**
+         * Record the failure of the call. Timeouts and connection failures signal overload, a cancellation doesn't
+         * tell anything about the API.
+         */
+        void onFailure(APIstaxException exception) {
+            if (exception instanceof TransportException) {
+                var reason = ((TransportException) exception).getReason();
+                overload = reason != TransportException.Reason.CANCELLED;
+            }
+        }
+
+        void release() {
+            synchronized (endpoint) {
+                if (released) {
+                    return;
+                }
+
+                released = true;
+                endpoint.inFlight--;
+                endpoint.update(this);
+                endpoint.dispatch();
+            }
+        }
+    }
+
+    private class Endpoint {
+
+        private final ArrayDeque<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+        private double limit;
+        private int inFlight;
+        private long minRttNanos = Long.MAX_VALUE;
+        private long smoothedRttNanos;
+        private long calls;
+        private long overloads;
+        private int samplesUntilProbe = probeInterval;
+
+        Endpoint(int limit) {
+            this.limit = limit;
+        }
+
+        int currentLimit() {
+            return (int) limit;
+        }
+
+        void dispatch() {
+            while (inFlight < currentLimit() && !waiting.isEmpty()) {
+                if (waiting.poll().complete(null)) {
+                    inFlight++;
+                }
+            }
+        }
+
+        void update(Permit permit) {
+            calls++;
+
+            if (permit.overload) {
+                overloads++;
+                limit = Math.max(minLimit, limit * backoffRatio);
+                return;
+            }
+
+            if (permit.rttNanos < 0) {
+                return;
+            }
+
+            var rtt = permit.rttNanos;
+            smoothedRttNanos = smoothedRttNanos == 0 ? rtt : (smoothedRttNanos * 7 + rtt) / 8;
+
+            // the minimum is measured anew from time to time, as the API may have become faster or slower for good
+            if (--samplesUntilProbe <= 0) {
+                samplesUntilProbe = probeInterval;
+                minRttNanos = rtt;
+            } else {
+                minRttNanos = Math.min(minRttNanos, rtt);
+            }
+
+            // an idle endpoint doesn't tell whether a higher limit could be sustained
+            var utilized = permit.inFlight * 2 >= currentLimit();
+
+            if (algorithm == Algorithm.AIMD) {
+                if (utilized) {
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                }
+
+                return;
+            }
+
+            var step = Math.max(1, Math.log10(limit));
+            var queue = limit * (1 - (double) minRttNanos / rtt);
+
+            if (queue < 3 * step && utilized) {
+                limit = Math.min(maxLimit, limit + step);
+            } else if (queue > 6 * step) {
+                limit = Math.max(minLimit, limit - step);
+            }
+        }
+    }
+
+    /**
+     * A snapshot of the limit of a single endpoint.
+     */
+    public static class EndpointStats {
+
+        private final int limit;
+        private final int inFlight;
+        private final int queueDepth;
+        private final long minRttNanos;
+        private final long smoothedRttNanos;
+        private final long calls;
+        private final long overloads;
+
+        EndpointStats(int limit, int inFlight, int queueDepth, long minRttNanos, long smoothedRttNanos, long calls, long overloads) {
+            this.limit = limit;
+            this.inFlight = inFlight;
+            this.queueDepth = queueDepth;
+            this.minRttNanos = minRttNanos;
+            this.smoothedRttNanos = smoothedRttNanos;
+            this.calls = calls;
+            this.overloads = overloads;
+        }
+
+        /**
+         * @return the number of calls which may currently be sent concurrently
+         */
+        public int getLimit() {
+            return limit;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        /**
+         * @return the number of calls waiting for the endpoint to get below its limit
+         */
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        /**
+         * @return the minimum round trip time observed since the last probe or null if no call completed yet
+         */
+        public Duration getMinRtt() {
+            return minRttNanos == Long.MAX_VALUE ? null : Duration.ofNanos(minRttNanos);
+        }
+
+        /**
+         * @return the exponentially smoothed round trip time
+         */
+        public Duration getRtt() {
+            return Duration.ofNanos(smoothedRttNanos);
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        /**
+         * @return the number of calls which signalled overload and decreased the limit
+         */
+        public long getOverloads() {
+            return overloads;
+        }
+
+        @Override
+        public String toString() {
+            return "EndpointStats{" +
+                    "limit=" + limit +
+                    ", inFlight=" + inFlight +
+                    ", queueDepth=" + queueDepth +
+                    ", minRtt=" + getMinRtt() +
+                    ", rtt=" + getRtt() +
+                    ", calls=" + calls +
+                    ", overloads=" + overloads +
+                    '}';
+        }
+    }
+
+    public static class Builder {
+
+        private Algorithm algorithm = Algorithm.VEGAS;
+        private int initialLimit = 4;
+        private int minLimit = 1;
+        private int maxLimit = 64;
+        private double backoffRatio = 0.9;
+        private int probeInterval = 1000;
+
+        /**
+         * Defaults to {@link Algorithm#VEGAS}.
+         */
+        public Builder algorithm(Algorithm algorithm) {
+            this.algorithm = algorithm;
+            return this;
+        }
+
+        /**
+         * The limit of an endpoint before its first call. Defaults to 4.
+         */
+        public Builder initialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        /**
+         * The bounds of the limit. Default to 1 and 64.
+         */
+        public Builder limits(int minLimit, int maxLimit) {
+            if (minLimit < 1) {
+                throw new IllegalArgumentException("minLimit must be at least 1");
+            }
+
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * The factor the limit is multiplied with on overload. Defaults to 0.9.
+         */
+        public Builder backoffRatio(double backoffRatio) {
+            if (backoffRatio <= 0 || backoffRatio >= 1) {
+                throw new IllegalArgumentException("backoffRatio must be between 0 and 1");
+            }
+
+            this.backoffRatio = backoffRatio;
+            return this;
+        }
+
+        /**
+         * The number of calls after which the minimum round trip time is measured anew. Defaults to 1000.
+         */
+        public Builder probeInterval(int probeInterval) {
+            if (probeInterval < 1) {
+                throw new IllegalArgumentException("probeInterval must be at least 1");
+            }
+
+            this.probeInterval = probeInterval;
+            return this;
+        }
+
+        public ConcurrencyLimiter build() {
+            return new ConcurrencyLimiter(this);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package io.apistax.client;
+
+import java.time.Duration;
+
+/**
+ * A snapshot of the connection management of a client. The JDK HTTP client does not expose its connection pool, so
+ * reuse is estimated: a call counts as warm if the client sent a call or a probe within the idle timeout before it,
+ * otherwise it likely had to open a new connection.
+ */
+public final class ConnectionStats {
+
+    private final long warmUps;
+    private final Duration lastWarmUpDuration;
+    private final long probes;
+    private final long failedProbes;
+    private final long warmCalls;
+    private final long coldCalls;
+
+    ConnectionStats(long warmUps, Duration lastWarmUpDuration, long probes, long failedProbes, long warmCalls, long coldCalls) {
+        this.warmUps = warmUps;
+        this.lastWarmUpDuration = lastWarmUpDuration;
+        this.probes = probes;
+        this.failedProbes = failedProbes;
+        this.warmCalls = warmCalls;
+        this.coldCalls = coldCalls;
+    }
+
+    public long getWarmUps() {
+        return warmUps;
+    }
+
+    /**
+     * @return the time the last warm up took or null if the client was not warmed up
+     */
+    public Duration getLastWarmUpDuration() {
+        return lastWarmUpDuration;
+    }
+
+    /**
+     * @return the number of probes sent by warm ups and keep-alive
+     */
+    public long getProbes() {
+        return probes;
+    }
+
+    public long getFailedProbes() {
+        return failedProbes;
+    }
+
+    /**
+     * @return the number of calls which likely reused an open connection
+     */
+    public long getWarmCalls() {
+        return warmCalls;
+    }
+
+    /**
+     * @return the number of calls which likely had to open a new connection
+     */
+    public long getColdCalls() {
+        return coldCalls;
+    }
+
+    /**
+     * @return the share of calls which likely reused an open connection, between 0 and 1
+     */
+    public double getReuseRatio() {
+        var calls = warmCalls + coldCalls;
+        return calls == 0 ? 0 : (double) warmCalls / calls;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionStats{" +
+                "warmUps=" + warmUps +
+                ", lastWarmUpDuration=" + lastWarmUpDuration +
+                ", probes=" + probes +
+                ", failedProbes=" + failedProbes +
+                ", warmCalls=" + warmCalls +
+                ", coldCalls=" + coldCalls +
+                '}';
+    }
+}
@@ -0,0 +1,181 @@
+package io.apistax.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opens connections ahead of the first call and keeps them alive with probes while the client is idle. Probes are
+ * {@code HEAD} requests to the root of every host, whose response status does not matter. Their latency is recorded
+ * by the {@link HostSelector}, so the first calls already prefer the fastest host.
+ */
+final class ConnectionWarmer {
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "apistax-keep-alive");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(10);
+
+    private final APIstaxTransport transport;
+    private final HostSelector hosts;
+    private final int connections;
+    private final long idleTimeoutNanos;
+    private final long keepAliveNanos;
+    private final AtomicLong lastActivityNanos = new AtomicLong(System.nanoTime() - Long.MAX_VALUE / 2);
+    private final LongAdder warmUps = new LongAdder();
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder failedProbes = new LongAdder();
+    private final LongAdder warmCalls = new LongAdder();
+    private final LongAdder coldCalls = new LongAdder();
+    private volatile Duration lastWarmUpDuration;
+    private volatile boolean suspended;
+
+    ConnectionWarmer(APIstaxTransport transport, HostSelector hosts, int connections, Duration idleTimeout,
+                     Duration keepAliveInterval) {
+        this.transport = transport;
+        this.hosts = hosts;
+        this.connections = connections;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.keepAliveNanos = keepAliveInterval != null ? keepAliveInterval.toNanos() : 0;
+
+        if (keepAliveNanos > 0) {
+            var reference = new WeakReference<>(this);
+
+            SCHEDULER.scheduleWithFixedDelay(() -> {
+                var warmer = reference.get();
+
+                if (warmer == null) {
+                    // the client was garbage collected, throwing cancels the task
+                    throw new IllegalStateException("Client was garbage collected");
+                }
+
+                warmer.probeIfIdle();
+            }, keepAliveNanos, keepAliveNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Send concurrent probes, one per connection to open, and wait for them. Failed probes are counted, not thrown, as
+     * the calls themselves will report the problem.
+     */
+    void warmUp() throws InterruptedException {
+        var start = System.nanoTime();
+        var futures = new ArrayList<CompletableFuture<?>>();
+
+        for (HostSelector.Host host : hosts.getHosts()) {
+            for (int i = 0; i < connections; i++) {
+                futures.add(probe(host));
+            }
+        }
+
+        for (CompletableFuture<?> future : futures) {
+            try {
+                future.get(PROBE_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                // counted by the probe
+            }
+        }
+
+        warmUps.increment();
+        lastWarmUpDuration = Duration.ofNanos(System.nanoTime() - start);
+    }
+
+    /**
+     * Record a call about to be sent.
+     *
+     * @return whether the call likely reuses an open connection
+     */
+    boolean onCall() {
+        var now = System.nanoTime();
+
+        if (now - lastActivityNanos.getAndSet(now) < idleTimeoutNanos) {
+            warmCalls.increment();
+            return true;
+        }
+
+        coldCalls.increment();
+        return false;
+    }
+
+    /**
+     * Stop the keep-alive probes and close the connections of the transport, e.g. before a checkpoint of the JVM.
+     */
+    void suspend() {
+        suspended = true;
+        transport.suspend();
+
+        // the next call opens a new connection
+        lastActivityNanos.set(System.nanoTime() - Long.MAX_VALUE / 2);
+    }
+
+    /**
+     * Resume the keep-alive probes after {@link #suspend()}.
+     */
+    void resume() {
+        transport.resume();
+        hosts.reset();
+        suspended = false;
+    }
+
+    ConnectionStats getStats() {
+        return new ConnectionStats(warmUps.sum(), lastWarmUpDuration, probes.sum(), failedProbes.sum(), warmCalls.sum(),
+                coldCalls.sum());
+    }
+
+    private void probeIfIdle() {
+        if (suspended || System.nanoTime() - lastActivityNanos.get() < keepAliveNanos) {
+            return;
+        }
+
+        for (HostSelector.Host host : hosts.getHosts()) {
+            for (int i = 0; i < connections; i++) {
+                probe(host);
+            }
+        }
+    }
+
+    private CompletableFuture<?> probe(HostSelector.Host host) {
+        probes.increment();
+
+        var start = System.nanoTime();
+        var request = HttpRequest.newBuilder(URI.create(host.getBaseUrl()).resolve("/"))
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .header("User-Agent", "apistax-java-client " + BuildConfig.VERSION)
+                .timeout(PROBE_TIMEOUT)
+                .build();
+
+        return transport.sendAsync(request)
+                .whenComplete((response, e) -> {
+                    if (e != null) {
+                        failedProbes.increment();
+                        host.onProbeFailure(e instanceof CompletionException ? e.getCause() : e);
+                        return;
+                    }
+
+                    host.onProbe(System.nanoTime() - start);
+
+                    try (var body = response.body()) {
+                        body.transferTo(OutputStream.nullOutputStream());
+                        lastActivityNanos.set(System.nanoTime());
+                    } catch (IOException ioException) {
+                        failedProbes.increment();
+                    }
+                });
+    }
+}
@@ -0,0 +1,102 @@
+package io.apistax.client;
+
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
+
+import java.time.Duration;
+
+/**
+ * Prepares a client for Coordinated Restore at Checkpoint (CRaC), so a warmed-up service can be checkpointed and
+ * restored. Before the checkpoint, the keep-alive probes are stopped and the connections are closed, as open sockets
+ * can't be checkpointed. After the restore, new connections are opened, either by the first call or right away if
+ * warming up is enabled. The object mapper, its serializers and the lookup cache survive the checkpoint, the latencies
+ * measured before it are forgotten, as the service may be restored on another machine.
+ * <p>
+ * Only the {@code org.crac:crac} API is used, which applications using this class have to provide. On JVMs without
+ * CRaC the resource is registered but never notified. CRaC holds resources weakly, so the returned resource has to be
+ * kept as long as the client.
+ *
+ * <pre>{@code
+ * var client = new APIstaxClient.Builder().apiKey(apiKey).build();
+ * this.checkpointResource = CracResource.register(client, true);
+ * }</pre>
+ */
+public final class CracResource implements Resource {
+
+    private final APIstaxClientImpl client;
+    private final boolean warmUp;
+    private volatile long checkpoints;
+    private volatile Duration lastCheckpointDuration;
+    private volatile Duration lastRestoreDuration;
+
+    private CracResource(APIstaxClientImpl client, boolean warmUp) {
+        this.client = client;
+        this.warmUp = warmUp;
+    }
+
+    /**
+     * Register a resource for the client with the global CRaC context, which doesn't warm up after the restore.
+     */
+    public static CracResource register(APIstaxClient client) {
+        return register(client, false);
+    }
+
+    /**
+     * Register a resource for the client with the global CRaC context.
+     *
+     * @param warmUp whether to open connections right after the restore, see {@link APIstaxClient#warmUp()}
+     */
+    public static CracResource register(APIstaxClient client, boolean warmUp) {
+        if (!(client instanceof APIstaxClientImpl)) {
+            throw new IllegalArgumentException("Only clients created by APIstaxClient.Builder can be registered");
+        }
+
+        var resource = new CracResource((APIstaxClientImpl) client, warmUp);
+        Core.getGlobalContext().register(resource);
+        return resource;
+    }
+
+    @Override
+    public synchronized void beforeCheckpoint(Context<? extends Resource> context) {
+        var start = System.nanoTime();
+        client.beforeCheckpoint();
+        checkpoints++;
+        lastCheckpointDuration = Duration.ofNanos(System.nanoTime() - start);
+    }
+
+    /**
+     * @throws APIstaxException if interrupted while warming up
+     */
+    @Override
+    public synchronized void afterRestore(Context<? extends Resource> context) {
+        var start = System.nanoTime();
+
+        try {
+            client.afterRestore(warmUp);
+        } finally {
+            lastRestoreDuration = Duration.ofNanos(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return the number of checkpoints the client was prepared for
+     */
+    public long getCheckpoints() {
+        return checkpoints;
+    }
+
+    /**
+     * @return the time closing the connections took before the last checkpoint, or null
+     */
+    public Duration getLastCheckpointDuration() {
+        return lastCheckpointDuration;
+    }
+
+    /**
+     * @return the time preparing the client took after the last restore, including warming up, or null
+     */
+    public Duration getLastRestoreDuration() {
+        return lastRestoreDuration;
+    }
+}
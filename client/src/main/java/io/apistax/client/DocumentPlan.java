@@ -0,0 +1,282 @@
+package io.apistax.client;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The artifacts of a document, e.g. an invoice PDF, its PDF/A version, a Swiss QR bill and a barcode, produced by
+ * concurrent calls. Artifacts which don't depend on each other are requested in parallel, an artifact derived from
+ * another one is requested as soon as its input is available. The document is therefore ready after the slowest chain
+ * of calls instead of after the sum of all calls.
+ * <p>
+ * All calls share one deadline and one {@link CancellationToken}: if a call fails, the other calls are aborted and
+ * the first failure is thrown; if the deadline passes, all calls are aborted.
+ *
+ * <pre>{@code
+ * var builder = new DocumentPlan.Builder().timeout(Duration.ofSeconds(30));
+ * var invoice = builder.artifact("invoice", client -> client.generateInvoicePdf(invoicePayload));
+ * var archive = builder.artifact("archive", invoice, (client, pdf) -> client.convertPdfToPdfA(new ByteArrayInputStream(pdf)));
+ * var qrBill = builder.artifact("qr-bill", client -> client.generateSwissQrInvoice(qrPayload, SwissQrInvoiceFormat.SVG));
+ *
+ * var result = builder.build().execute(client);
+ * byte[] pdfA = result.get(archive);
+ * }</pre>
+ */
+public class DocumentPlan {
+
+    private final List<Artifact<?>> artifacts;
+    private final Duration timeout;
+
+    private DocumentPlan(Builder builder) {
+        if (builder.artifacts.isEmpty()) {
+            throw new IllegalArgumentException("At least one artifact is required");
+        }
+
+        this.artifacts = List.copyOf(builder.artifacts);
+        this.timeout = builder.timeout;
+    }
+
+    /**
+     * Produce all artifacts. The options of the client are replaced by the deadline and the cancellation token of the
+     * plan.
+     *
+     * @throws APIstaxException the first failure of a call, or a {@link TransportException} if the deadline passed or
+     *                          the calling thread was interrupted
+     */
+    public Result execute(APIstaxClient client) throws APIstaxException {
+        var startNanos = System.nanoTime();
+        var deadlineNanos = timeout != null ? startNanos + timeout.toNanos() : Long.MAX_VALUE;
+        var token = new CancellationToken();
+        var options = new RequestOptions.Builder()
+                .deadline(timeout != null ? Instant.now().plus(timeout) : null)
+                .cancellationToken(token)
+                .build();
+        var scoped = client.withOptions(options);
+
+        var threadNumber = new AtomicInteger();
+        var executor = Executors.newCachedThreadPool(runnable -> {
+            var thread = new Thread(runnable, "apistax-document-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        var futures = new ArrayList<CompletableFuture<Object>>(artifacts.size());
+        var durations = new long[artifacts.size()];
+        var failure = new AtomicReference<Throwable>();
+
+        try {
+            for (Artifact<?> artifact : artifacts) {
+                CompletableFuture<Object> future;
+
+                if (artifact.input == null) {
+                    future = CompletableFuture.supplyAsync(() -> run(artifact, scoped, null, durations), executor);
+                } else {
+                    future = futures.get(artifact.input.index)
+                            .thenApplyAsync(input -> run(artifact, scoped, input, durations), executor);
+                }
+
+                future.whenComplete((value, e) -> {
+                    // the first failure cancels the other calls, they fail as cancelled in turn
+                    if (e != null && failure.compareAndSet(null, unwrap(e))) {
+                        token.cancel();
+                    }
+                });
+
+                futures.add(future);
+            }
+
+            var all = CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new));
+
+            try {
+                if (deadlineNanos == Long.MAX_VALUE) {
+                    all.get();
+                } else {
+                    all.get(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+                }
+            } catch (ExecutionException e) {
+                var cause = failure.get() != null ? failure.get() : unwrap(e.getCause());
+                throw cause instanceof APIstaxException ? (APIstaxException) cause : new APIstaxException(cause);
+            } catch (TimeoutException e) {
+                token.cancel();
+                throw new TransportException(TransportException.Reason.TIMEOUT, e);
+            } catch (InterruptedException e) {
+                token.cancel();
+                Thread.currentThread().interrupt();
+                throw new TransportException(TransportException.Reason.CANCELLED, e);
+            }
+
+            var values = new Object[artifacts.size()];
+
+            for (int i = 0; i < values.length; i++) {
+                values[i] = futures.get(i).join();
+            }
+
+            return new Result(values, durations, System.nanoTime() - startNanos);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Object run(Artifact<?> artifact, APIstaxClient client, Object input, long[] durations) {
+        var startNanos = System.nanoTime();
+
+        try {
+            return artifact.step.produce(client, input);
+        } finally {
+            durations[artifact.index] = System.nanoTime() - startNanos;
+        }
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        while (throwable instanceof CompletionException && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+
+        return throwable;
+    }
+
+    /**
+     * Produces an artifact with the client, optionally from the artifact it depends on.
+     */
+    @FunctionalInterface
+    public interface Step<I, T> {
+
+        T produce(APIstaxClient client, I input) throws APIstaxException;
+    }
+
+    /**
+     * Produces an artifact which doesn't depend on another one.
+     */
+    @FunctionalInterface
+    public interface IndependentStep<T> {
+
+        T produce(APIstaxClient client) throws APIstaxException;
+    }
+
+    /**
+     * A handle to an artifact of a plan, used to declare dependent artifacts and to get the result.
+     */
+    public static final class Artifact<T> {
+
+        private final Builder owner;
+        private final int index;
+        private final String name;
+        private final Artifact<?> input;
+        private final Step<Object, ?> step;
+
+        @SuppressWarnings("unchecked")
+        private Artifact(Builder owner, int index, String name, Artifact<?> input, Step<?, T> step) {
+            this.owner = owner;
+            this.index = index;
+            this.name = name;
+            this.input = input;
+            this.step = (Step<Object, ?>) step;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return "Artifact{" +
+                    "name='" + name + '\'' +
+                    '}';
+        }
+    }
+
+    /**
+     * The artifacts of a successfully executed plan.
+     */
+    public static class Result {
+
+        private final Object[] values;
+        private final long[] durations;
+        private final long totalNanos;
+
+        private Result(Object[] values, long[] durations, long totalNanos) {
+            this.values = values;
+            this.durations = durations;
+            this.totalNanos = totalNanos;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <T> T get(Artifact<T> artifact) {
+            return (T) values[artifact.index];
+        }
+
+        /**
+         * @return the time the call, or calls, of the artifact took, without waiting for its input
+         */
+        public Duration getDuration(Artifact<?> artifact) {
+            return Duration.ofNanos(durations[artifact.index]);
+        }
+
+        /**
+         * @return the time until all artifacts were produced
+         */
+        public Duration getTotalDuration() {
+            return Duration.ofNanos(totalNanos);
+        }
+    }
+
+    public static class Builder {
+
+        private final List<Artifact<?>> artifacts = new ArrayList<>();
+        private final HashSet<String> names = new HashSet<>();
+        private Duration timeout;
+
+        /**
+         * Declare an artifact which is requested right away.
+         */
+        public <T> Artifact<T> artifact(String name, IndependentStep<T> step) {
+            return add(name, null, (client, input) -> step.produce(client));
+        }
+
+        /**
+         * Declare an artifact which is requested once the given input artifact was produced.
+         */
+        public <I, T> Artifact<T> artifact(String name, Artifact<I> input, Step<I, T> step) {
+            if (input == null || input.owner != this) {
+                throw new IllegalArgumentException("The input must be an artifact of this plan");
+            }
+
+            return add(name, input, step);
+        }
+
+        /**
+         * The time all artifacts have to be produced in, including the calls of dependent artifacts. By default, only
+         * the timeouts of the client apply.
+         */
+        public Builder timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        public DocumentPlan build() {
+            return new DocumentPlan(this);
+        }
+
+        private <T> Artifact<T> add(String name, Artifact<?> input, Step<?, T> step) {
+            if (!names.add(name)) {
+                throw new IllegalArgumentException("Duplicate artifact " + name);
+            }
+
+            // an input always has to be declared before, so the artifacts can't depend on each other in a cycle
+            var artifact = new Artifact<>(this, artifacts.size(), name, input, step);
+            artifacts.add(artifact);
+            return artifact;
+        }
+    }
+}
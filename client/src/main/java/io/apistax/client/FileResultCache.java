@@ -0,0 +1,226 @@
+package io.apistax.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link ResultCache} storing every value in its own file of a directory, named by the SHA-256 hash of its key. On a
+ * local disk it keeps results across restarts, on a shared file system, e.g. NFS, it stands in for a shared store of a
+ * cluster. Files are written to a temporary file and moved into place, so readers on other nodes never see a partial
+ * value.
+ * <p>
+ * Expired files are ignored when read and deleted by {@link #purgeExpired()}, which should be called periodically.
+ */
+public class FileResultCache implements ResultCache, Closeable {
+
+    private static final int MAGIC = 0x41505243;
+    private static final int HEADER_SIZE = 16;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final ExecutorService executor;
+
+    private FileResultCache(Builder builder) throws IOException {
+        if (builder.directory == null) {
+            throw new IllegalArgumentException("A directory is required");
+        }
+
+        this.directory = builder.directory;
+        Files.createDirectories(directory);
+
+        var threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(builder.threads, runnable -> {
+            var thread = new Thread(runnable, "apistax-result-cache-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public CompletableFuture<byte[]> get(String key) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return read(key);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> put(String key, byte[] value, Duration ttl) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                write(key, value, System.currentTimeMillis() + ttl.toMillis());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Delete the expired values and abandoned temporary files.
+     *
+     * @return the number of deleted files
+     */
+    public int purgeExpired() throws IOException {
+        var now = System.currentTimeMillis();
+        var deleted = 0;
+
+        try (var files = Files.walk(directory, 2)) {
+            for (Path path : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                if (path.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+                    // a writer takes milliseconds, an older temporary file was left by a crashed one
+                    if (Files.getLastModifiedTime(path).toMillis() < now - 60_000) {
+                        deleted += Files.deleteIfExists(path) ? 1 : 0;
+                    }
+
+                    continue;
+                }
+
+                var header = readHeader(path);
+
+                if (header == null || header.getLong(4) <= now) {
+                    deleted += Files.deleteIfExists(path) ? 1 : 0;
+                }
+            }
+        }
+
+        return deleted;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private byte[] read(String key) throws IOException {
+        byte[] content;
+
+        try {
+            content = Files.readAllBytes(path(key));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+
+        var keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        var buffer = ByteBuffer.wrap(content);
+
+        if (content.length < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getLong() <= System.currentTimeMillis()) {
+            return null;
+        }
+
+        // the key is stored as well, so a hash collision can't return the value of another key
+        var keyLength = buffer.getInt();
+
+        if (keyLength != keyBytes.length || buffer.remaining() < keyLength ||
+                !Arrays.equals(content, HEADER_SIZE, HEADER_SIZE + keyLength, keyBytes, 0, keyLength)) {
+            return null;
+        }
+
+        return Arrays.copyOfRange(content, HEADER_SIZE + keyLength, content.length);
+    }
+
+    private void write(String key, byte[] value, long expiresAt) throws IOException {
+        var keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        var content = ByteBuffer.allocate(HEADER_SIZE + keyBytes.length + value.length)
+                .putInt(MAGIC)
+                .putLong(expiresAt)
+                .putInt(keyBytes.length)
+                .put(keyBytes)
+                .put(value)
+                .array();
+
+        var path = path(key);
+        Files.createDirectories(path.getParent());
+
+        var temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), TEMP_SUFFIX);
+
+        try {
+            Files.write(temp, content);
+
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static ByteBuffer readHeader(Path path) throws IOException {
+        try (var inputStream = Files.newInputStream(path)) {
+            var header = ByteBuffer.wrap(inputStream.readNBytes(HEADER_SIZE));
+            return header.capacity() == HEADER_SIZE && header.getInt(0) == MAGIC ? header : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private Path path(String key) {
+        try {
+            var hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(key.getBytes(StandardCharsets.UTF_8)));
+
+            // a level of subdirectories keeps the directories small
+            return directory.resolve(hash.substring(0, 2)).resolve(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static class Builder {
+
+        private Path directory;
+        private int threads = 4;
+
+        /**
+         * The directory the values are stored in. It's created if it doesn't exist.
+         */
+        public Builder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * The number of threads reading and writing files. Defaults to 4.
+         */
+        public Builder threads(int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("threads must be at least 1");
+            }
+
+            this.threads = threads;
+            return this;
+        }
+
+        public FileResultCache build() throws IOException {
+            return new FileResultCache(this);
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package io.apistax.client;
+
+import io.apistax.models.GeocodeResult;
+import io.apistax.models.GeocodeSearchPayload;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Geocodes the input of an address field while it's typed, one session per user and field. Every keystroke is passed
+ * to {@link #update(String)}, but a lookup is only sent once the input rested for the debounce time. A newer input
+ * supersedes the older ones: their futures are cancelled, a lookup in flight is aborted and a late response is
+ * dropped, so results never arrive out of order.
+ * <p>
+ * Results are kept for the session. An input which was looked up before, e.g. after deleting characters, is answered
+ * from the session right away, as is an input extending an earlier one if the earlier result already matches all of its
+ * words, e.g. the result of {@code stephansplatz 1} for {@code stephansplatz 1, wi}.
+ * <p>
+ * Sessions don't own threads: the debounce timer is shared by all sessions, and lookups run on the executor of the
+ * builder or a shared pool of daemon threads. A session which isn't closed holds no resources beyond its results.
+ *
+ * <pre>{@code
+ * var session = new GeocodeTypeaheadSession.Builder()
+ *         .client(client)
+ *         .debounce(Duration.ofMillis(200))
+ *         .build();
+ *
+ * session.update(input).thenAccept(result -> showSuggestion(result));
+ * }</pre>
+ */
+public class GeocodeTypeaheadSession implements AutoCloseable {
+
+    private static final Pattern WORDS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+    private static final Executor LOOKUPS = createLookups();
+
+    private final APIstaxClient client;
+    private final long debounceNanos;
+    private final int minLength;
+    private final String language;
+    private final int cacheSize;
+    private final Map<String, GeocodeResult> results = new LinkedHashMap<>(16, 0.75f, true);
+    private final Executor executor;
+    private long sequence;
+    private CompletableFuture<GeocodeResult> pending;
+    private ScheduledFuture<?> scheduled;
+    private CancellationToken inFlight;
+    private boolean closed;
+    private long updates;
+    private long lookups;
+    private long sessionHits;
+    private long superseded;
+
+    private GeocodeTypeaheadSession(Builder builder) {
+        if (builder.client == null) {
+            throw new IllegalArgumentException("A client is required");
+        }
+
+        this.client = builder.client;
+        this.debounceNanos = builder.debounce.toNanos();
+        this.minLength = builder.minLength;
+        this.language = builder.language;
+        this.cacheSize = builder.cacheSize;
+        this.executor = builder.executor != null ? builder.executor : LOOKUPS;
+    }
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+        var timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            var thread = new Thread(runnable, "apistax-typeahead-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // most inputs are superseded before they are due
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    private static Executor createLookups() {
+        var threadNumber = new AtomicInteger();
+
+        return Executors.newCachedThreadPool(runnable -> {
+            var thread = new Thread(runnable, "apistax-typeahead-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Pass the current input of the field.
+     *
+     * @return the future result for the input, null if the input is shorter than the minimum length. The future is
+     * cancelled if a newer input arrives before it completed, and fails with the exception of the lookup otherwise.
+     */
+    public synchronized CompletableFuture<GeocodeResult> update(String input) {
+        if (closed) {
+            throw new IllegalStateException("The session is closed");
+        }
+
+        updates++;
+        supersede();
+
+        var future = new CompletableFuture<GeocodeResult>();
+        var query = input != null ? BulkGeocoder.normalize(input) : "";
+        var id = ++sequence;
+
+        if (query.length() < minLength) {
+            future.complete(null);
+            return future;
+        }
+
+        var result = findResult(query);
+
+        if (result != null) {
+            sessionHits++;
+            future.complete(result);
+            return future;
+        }
+
+        pending = future;
+        scheduled = TIMER.schedule(() -> send(id, query, input.strip(), future), debounceNanos, TimeUnit.NANOSECONDS);
+        return future;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(updates, lookups, sessionHits, superseded);
+    }
+
+    /**
+     * Cancel the pending input and abort a lookup in flight.
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            supersede();
+        }
+    }
+
+    private synchronized void send(long id, String query, String input, CompletableFuture<GeocodeResult> future) {
+        if (id != sequence) {
+            return;
+        }
+
+        lookups++;
+
+        var token = new CancellationToken();
+        var scoped = client.withOptions(new RequestOptions.Builder().cancellationToken(token).build());
+        inFlight = token;
+
+        executor.execute(() -> {
+            try {
+                var result = scoped.geocodeSearch(new GeocodeSearchPayload().query(input).language(language));
+                complete(id, query, future, result);
+            } catch (RuntimeException e) {
+                // an aborted lookup was superseded, its future is already cancelled
+                if (!token.isCancelled()) {
+                    fail(id, future, e);
+                }
+            }
+        });
+    }
+
+    private synchronized void complete(long id, String query, CompletableFuture<GeocodeResult> future,
+                                       GeocodeResult result) {
+        // the result is kept for later inputs even if this one was superseded meanwhile
+        if (result != null) {
+            results.put(query, result);
+
+            if (results.size() > cacheSize) {
+                var eldest = results.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+
+        if (id == sequence) {
+            pending = null;
+            inFlight = null;
+            future.complete(result);
+        }
+    }
+
+    private synchronized void fail(long id, CompletableFuture<GeocodeResult> future, RuntimeException e) {
+        if (id == sequence) {
+            pending = null;
+            inFlight = null;
+        }
+
+        future.completeExceptionally(e);
+    }
+
+    private void supersede() {
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+
+        if (inFlight != null) {
+            inFlight.cancel();
+            inFlight = null;
+        }
+
+        if (pending != null) {
+            superseded++;
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    /**
+     * @return the result of the same input or of an earlier prefix which matches all words of the input, or null
+     */
+    private GeocodeResult findResult(String query) {
+        var exact = results.get(query);
+
+        if (exact != null) {
+            return exact;
+        }
+
+        GeocodeResult best = null;
+        var bestLength = 0;
+
+        for (Map.Entry<String, GeocodeResult> entry : results.entrySet()) {
+            var prefix = entry.getKey();
+
+            if (prefix.length() > bestLength && query.startsWith(prefix) && matches(entry.getValue(), query)) {
+                best = entry.getValue();
+                bestLength = prefix.length();
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * @return whether every word of the query is the start of a word of the address of the result
+     */
+    private static boolean matches(GeocodeResult result, String query) {
+        var address = result.getAddress();
+
+        if (address == null) {
+            return false;
+        }
+
+        var text = BulkGeocoder.normalize(String.join(" ", nonNull(address.getStreet()), nonNull(address.getHouseNumber()),
+                nonNull(address.getPostalCode()), nonNull(address.getCity()), nonNull(address.getCountry()),
+                nonNull(address.getCountryCode())));
+        var words = WORDS.split(text);
+
+        for (String queryWord : WORDS.split(query)) {
+            if (queryWord.isEmpty()) {
+                continue;
+            }
+
+            var found = false;
+
+            for (String word : words) {
+                if (word.startsWith(queryWord)) {
+                    found = true;
+                    break;
+                }
+            }
+
+            if (!found) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static String nonNull(String value) {
+        return value != null ? value : "";
+    }
+
+    /**
+     * The counters of a session since it was built. The ratio of lookups to updates shows the requests saved.
+     */
+    public static class Stats {
+
+        private final long updates;
+        private final long lookups;
+        private final long sessionHits;
+        private final long superseded;
+
+        Stats(long updates, long lookups, long sessionHits, long superseded) {
+            this.updates = updates;
+            this.lookups = lookups;
+            this.sessionHits = sessionHits;
+            this.superseded = superseded;
+        }
+
+        /**
+         * @return the number of inputs passed to the session
+         */
+        public long getUpdates() {
+            return updates;
+        }
+
+        /**
+         * @return the number of lookups sent to the API
+         */
+        public long getLookups() {
+            return lookups;
+        }
+
+        /**
+         * @return the number of inputs answered from the results of the session
+         */
+        public long getSessionHits() {
+            return sessionHits;
+        }
+
+        /**
+         * @return the number of inputs which were superseded before their result arrived
+         */
+        public long getSuperseded() {
+            return superseded;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "updates=" + updates +
+                    ", lookups=" + lookups +
+                    ", sessionHits=" + sessionHits +
+                    ", superseded=" + superseded +
+                    '}';
+        }
+    }
+
+    public static class Builder {
+
+        private APIstaxClient client;
+        private Duration debounce = Duration.ofMillis(150);
+        private int minLength = 3;
+        private String language;
+        private int cacheSize = 100;
+        private Executor executor;
+
+        public Builder client(APIstaxClient client) {
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * The time the input has to rest before it's looked up. Defaults to 150 milliseconds.
+         */
+        public Builder debounce(Duration debounce) {
+            this.debounce = debounce;
+            return this;
+        }
+
+        /**
+         * The minimum length of the normalized input to look up. Defaults to 3.
+         */
+        public Builder minLength(int minLength) {
+            this.minLength = minLength;
+            return this;
+        }
+
+        /**
+         * The language of the results, see {@link GeocodeSearchPayload#language(String)}.
+         */
+        public Builder language(String language) {
+            this.language = language;
+            return this;
+        }
+
+        /**
+         * The number of results kept for the session. Defaults to 100.
+         */
+        public Builder cacheSize(int cacheSize) {
+            if (cacheSize < 1) {
+                throw new IllegalArgumentException("cacheSize must be at least 1");
+            }
+
+            this.cacheSize = cacheSize;
+            return this;
+        }
+
+        /**
+         * The executor to run the lookups on. Defaults to a pool of daemon threads shared by all sessions.
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public GeocodeTypeaheadSession build() {
+            return new GeocodeTypeaheadSession(this);
+        }
+    }
+}
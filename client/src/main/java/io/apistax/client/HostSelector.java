@@ -0,0 +1,409 @@
+package io.apistax.client;
+
+import javax.net.ssl.SSLHandshakeException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Distributes calls over several base URLs of the API, e.g. regional endpoints, or a local proxy and the origin.
+ * <p>
+ * Each host is rated by its peak EWMA latency: the exponentially weighted moving average of the time until the
+ * response headers were received, which jumps to a higher sample immediately and decays over the configured time.
+ * Calls go to the cheaper of two randomly chosen hosts, where the cost is the latency multiplied by the number of
+ * pending calls plus one, so load shifts away from a host as soon as it becomes slower or calls pile up.
+ * <p>
+ * A host which failed to connect, or failed the configured number of times in a row (connection failures, 502, 503 and
+ * 504 responses), is ejected for the ejection time, doubled on every repeated ejection up to the maximum. Calls which
+ * failed to connect are sent to the next host, as their request was not received. If all hosts are ejected, the one
+ * whose ejection ends first is used.
+ */
+public class HostSelector {
+
+    // the cost of a host with pending calls but no latency sample yet, so it isn't flooded before it answered
+    private static final double UNMEASURED_PENALTY = 1e12;
+
+    private final List<Host> hosts;
+    private final long decayNanos;
+    private final int failureThreshold;
+    private final long ejectionNanos;
+    private final long maxEjectionNanos;
+
+    private HostSelector(Builder builder) {
+        if (builder.hosts.isEmpty()) {
+            throw new IllegalArgumentException("At least one host is required");
+        }
+
+        var hosts = new ArrayList<Host>();
+
+        for (String host : builder.hosts) {
+            hosts.add(new Host(host));
+        }
+
+        this.hosts = List.copyOf(hosts);
+        this.decayNanos = builder.decay.toNanos();
+        this.failureThreshold = builder.failureThreshold;
+        this.ejectionNanos = builder.ejection.toNanos();
+        this.maxEjectionNanos = builder.maxEjection.toNanos();
+    }
+
+    static HostSelector of(String host) {
+        return new Builder().hosts(host).build();
+    }
+
+    /**
+     * @return whether the exception shows that the request never reached the host, so it can be sent to another one
+     */
+    static boolean isConnectFailure(IOException exception) {
+        return exception instanceof ConnectException ||
+                exception instanceof HttpConnectTimeoutException ||
+                exception instanceof SSLHandshakeException;
+    }
+
+    List<Host> getHosts() {
+        return hosts;
+    }
+
+    /**
+     * Select the host for the next attempt of a call.
+     *
+     * @param excluded the hosts already tried by the call
+     * @return the host or null if all hosts were tried
+     */
+    Host select(Collection<Host> excluded) {
+        if (hosts.size() == 1) {
+            return excluded.isEmpty() ? hosts.get(0) : null;
+        }
+
+        var now = System.nanoTime();
+        var candidates = new ArrayList<Host>(hosts.size());
+        Host fallback = null;
+
+        for (Host host : hosts) {
+            if (excluded.contains(host)) {
+                continue;
+            }
+
+            synchronized (host) {
+                if (!host.isEjected(now)) {
+                    candidates.add(host);
+                } else if (fallback == null || host.ejectedUntilNanos - fallback.ejectedUntilNanos < 0) {
+                    fallback = host;
+                }
+            }
+        }
+
+        if (candidates.isEmpty()) {
+            return fallback;
+        } else if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+
+        // the power of two choices balances nearly as well as picking the cheapest host, without herding onto it
+        var random = ThreadLocalRandom.current();
+        var first = random.nextInt(candidates.size());
+        var second = random.nextInt(candidates.size() - 1);
+
+        if (second >= first) {
+            second++;
+        }
+
+        var a = candidates.get(first);
+        var b = candidates.get(second);
+
+        return a.cost(now) <= b.cost(now) ? a : b;
+    }
+
+    /**
+     * @return the state of all hosts in the configured order
+     */
+    public List<HostStats> getStats() {
+        var now = System.nanoTime();
+        var result = new ArrayList<HostStats>();
+
+        for (Host host : hosts) {
+            synchronized (host) {
+                result.add(new HostStats(host.baseUrl, (long) host.rttNanos, host.pending, host.calls,
+                        host.failures, host.isEjected(now)));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Forget the measured latencies and lift the ejections, e.g. after the JVM was restored from a checkpoint, possibly
+     * on another machine or network. The counters are kept.
+     */
+    void reset() {
+        var now = System.nanoTime();
+
+        for (Host host : hosts) {
+            synchronized (host) {
+                host.rttNanos = 0;
+                host.lastUpdateNanos = now;
+                host.consecutiveFailures = 0;
+                host.ejections = 0;
+                host.ejectedUntilNanos = 0;
+            }
+        }
+    }
+
+    /**
+     * A single base URL and its latency and health.
+     */
+    final class Host {
+
+        private final String baseUrl;
+        private double rttNanos;
+        private long lastUpdateNanos = System.nanoTime();
+        private int pending;
+        private long calls;
+        private long failures;
+        private int consecutiveFailures;
+        private int ejections;
+        private long ejectedUntilNanos;
+
+        private Host(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        String getBaseUrl() {
+            return baseUrl;
+        }
+
+        /**
+         * Record an attempt being sent to the host.
+         */
+        synchronized void onStart() {
+            pending++;
+        }
+
+        /**
+         * Record the status and headers of the response being received.
+         */
+        synchronized void onResponse(long rttNanos, int statusCode) {
+            pending--;
+            calls++;
+
+            var now = System.nanoTime();
+            observe(rttNanos, now);
+
+            if (statusCode == 502 || statusCode == 503 || statusCode == 504) {
+                fail(false, now);
+            } else {
+                consecutiveFailures = 0;
+                ejections = 0;
+            }
+        }
+
+        /**
+         * Record the failure of an attempt. A timeout only tells that the host took at least that long, it is recorded
+         * as latency sample.
+         */
+        synchronized void onFailure(IOException exception, long elapsedNanos) {
+            pending--;
+            calls++;
+
+            var now = System.nanoTime();
+
+            if (exception instanceof HttpTimeoutException && !(exception instanceof HttpConnectTimeoutException)) {
+                observe(elapsedNanos, now);
+            } else {
+                fail(isConnectFailure(exception), now);
+            }
+        }
+
+        /**
+         * Record an attempt which was aborted by the caller.
+         */
+        synchronized void onAbort() {
+            pending--;
+        }
+
+        /**
+         * Record the latency of a probe, e.g. while connections are warmed up.
+         */
+        synchronized void onProbe(long rttNanos) {
+            observe(rttNanos, System.nanoTime());
+        }
+
+        /**
+         * Record a failed probe. Only failures to connect are taken into account, like for calls.
+         */
+        synchronized void onProbeFailure(Throwable exception) {
+            if (exception instanceof IOException && isConnectFailure((IOException) exception)) {
+                fail(true, System.nanoTime());
+            }
+        }
+
+        private void observe(long sampleNanos, long now) {
+            // a slower sample is taken as is, so the host is avoided right away, and is then averaged out over time
+            if (sampleNanos > rttNanos) {
+                rttNanos = sampleNanos;
+            } else {
+                var weight = decay(now);
+                rttNanos = rttNanos * weight + sampleNanos * (1 - weight);
+            }
+
+            lastUpdateNanos = now;
+        }
+
+        private void fail(boolean connectFailure, long now) {
+            failures++;
+            consecutiveFailures++;
+
+            if (connectFailure || consecutiveFailures >= failureThreshold) {
+                ejections++;
+                consecutiveFailures = 0;
+                ejectedUntilNanos = now + Math.min(maxEjectionNanos, ejectionNanos << Math.min(ejections - 1, 20));
+            }
+        }
+
+        private double cost(long now) {
+            synchronized (this) {
+                if (rttNanos == 0 && pending > 0) {
+                    return UNMEASURED_PENALTY + pending;
+                }
+
+                // the latency of a host without recent samples decays, so it is tried again eventually
+                return rttNanos * decay(now) * (pending + 1);
+            }
+        }
+
+        /**
+         * @return the weight of the previous average, shrinking with the time since the last sample
+         */
+        private double decay(long now) {
+            return Math.exp(-(double) Math.max(0, now - lastUpdateNanos) / decayNanos);
+        }
+
+        private boolean isEjected(long now) {
+            return ejections > 0 && now - ejectedUntilNanos < 0;
+        }
+    }
+
+    /**
+     * A snapshot of the state of a single host.
+     */
+    public static class HostStats {
+
+        private final String baseUrl;
+        private final long rttNanos;
+        private final int pending;
+        private final long calls;
+        private final long failures;
+        private final boolean ejected;
+
+        HostStats(String baseUrl, long rttNanos, int pending, long calls, long failures, boolean ejected) {
+            this.baseUrl = baseUrl;
+            this.rttNanos = rttNanos;
+            this.pending = pending;
+            this.calls = calls;
+            this.failures = failures;
+            this.ejected = ejected;
+        }
+
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+
+        /**
+         * @return the current peak EWMA of the time until the response headers were received
+         */
+        public Duration getRtt() {
+            return Duration.ofNanos(rttNanos);
+        }
+
+        public int getPending() {
+            return pending;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public boolean isEjected() {
+            return ejected;
+        }
+
+        @Override
+        public String toString() {
+            return "HostStats{" +
+                    "baseUrl='" + baseUrl + '\'' +
+                    ", rtt=" + getRtt() +
+                    ", pending=" + pending +
+                    ", calls=" + calls +
+                    ", failures=" + failures +
+                    ", ejected=" + ejected +
+                    '}';
+        }
+    }
+
+    public static class Builder {
+
+        private List<String> hosts = List.of();
+        private Duration decay = Duration.ofSeconds(10);
+        private int failureThreshold = 3;
+        private Duration ejection = Duration.ofSeconds(10);
+        private Duration maxEjection = Duration.ofMinutes(5);
+
+        /**
+         * The base URLs to distribute calls over, e.g. {@code https://api.apistax.io}.
+         */
+        public Builder hosts(String... hosts) {
+            this.hosts = List.of(hosts);
+            return this;
+        }
+
+        /**
+         * The time over which the weight of a latency sample decays. Shorter times react faster to latency changes,
+         * longer ones are steadier. Defaults to 10 seconds.
+         */
+        public Builder decay(Duration decay) {
+            if (decay.isZero() || decay.isNegative()) {
+                throw new IllegalArgumentException("decay must be positive");
+            }
+
+            this.decay = decay;
+            return this;
+        }
+
+        /**
+         * The number of failures in a row after which a host is ejected. Failures to connect eject a host right away.
+         * Defaults to 3.
+         */
+        public Builder failureThreshold(int failureThreshold) {
+            if (failureThreshold < 1) {
+                throw new IllegalArgumentException("failureThreshold must be at least 1");
+            }
+
+            this.failureThreshold = failureThreshold;
+            return this;
+        }
+
+        /**
+         * The time a host is ejected for, doubled on every ejection until it answered a call again, up to the maximum.
+         * Default to 10 seconds and 5 minutes.
+         */
+        public Builder ejection(Duration ejection, Duration maxEjection) {
+            this.ejection = ejection;
+            this.maxEjection = maxEjection;
+            return this;
+        }
+
+        public HostSelector build() {
+            return new HostSelector(this);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package io.apistax.client;
+
+import io.apistax.models.IndexFrequency;
+import io.apistax.models.IndexResult;
+import io.apistax.models.IndexValue;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable, compact view of an {@link IndexResult}. The values are held in a primitive array with one slot per
+ * month, or per year for yearly series, so values are looked up in constant time. Periods without a value are NaN.
+ * <p>
+ * Periods are addressed by their position in the series, see {@link #indexOf(int, int)}, which allows to resolve the
+ * base periods of many contracts once and adjust their amounts in bulk.
+ */
+public final class IndexSeries {
+
+    private final String id;
+    private final IndexFrequency frequency;
+    private final int firstPeriod;
+    private final float[] values;
+
+    private IndexSeries(String id, IndexFrequency frequency, int firstPeriod, float[] values) {
+        this.id = id;
+        this.frequency = frequency;
+        this.firstPeriod = firstPeriod;
+        this.values = values;
+    }
+
+    /**
+     * Create a series from the result of {@link APIstaxClient#fetchIndex}. The values don't need to be sorted.
+     */
+    public static IndexSeries of(IndexResult result) {
+        var indexValues = result.getValues() != null ? result.getValues() : List.<IndexValue>of();
+        var frequency = result.getFrequency();
+
+        if (frequency == null) {
+            var hasMonths = indexValues.stream().anyMatch(value -> value.getMonth() != null);
+            frequency = hasMonths ? IndexFrequency.MONTHLY : IndexFrequency.YEARLY;
+        }
+
+        var monthly = frequency == IndexFrequency.MONTHLY;
+        var first = Integer.MAX_VALUE;
+        var last = Integer.MIN_VALUE;
+
+        for (IndexValue value : indexValues) {
+            if (value.getYear() == null || (monthly && value.getMonth() == null)) {
+                continue;
+            }
+
+            var period = period(monthly, value.getYear(), monthly ? value.getMonth() : 0);
+            first = Math.min(first, period);
+            last = Math.max(last, period);
+        }
+
+        if (first > last) {
+            return new IndexSeries(result.getId(), frequency, 0, new float[0]);
+        }
+
+        var values = new float[last - first + 1];
+        Arrays.fill(values, Float.NaN);
+
+        for (IndexValue value : indexValues) {
+            if (value.getYear() == null || (monthly && value.getMonth() == null) || value.getValue() == null) {
+                continue;
+            }
+
+            values[period(monthly, value.getYear(), monthly ? value.getMonth() : 0) - first] = value.getValue();
+        }
+
+        return new IndexSeries(result.getId(), frequency, first, values);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public IndexFrequency getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * @return the number of periods from the first to the last value, including periods without a value
+     */
+    public int size() {
+        return values.length;
+    }
+
+    public int getYear(int index) {
+        checkIndex(index);
+        return isMonthly() ? Math.floorDiv(firstPeriod + index, 12) : firstPeriod + index;
+    }
+
+    /**
+     * @return the month from 1 to 12 or 0 for yearly series
+     */
+    public int getMonth(int index) {
+        checkIndex(index);
+        return isMonthly() ? Math.floorMod(firstPeriod + index, 12) + 1 : 0;
+    }
+
+    /**
+     * @return the value of the period or NaN if there is none
+     */
+    public float getValue(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    /**
+     * @return the value of the month, or of the year for yearly series, or NaN if there is none
+     */
+    public float getValue(int year, int month) {
+        var index = indexOf(year, month);
+        return index >= 0 ? values[index] : Float.NaN;
+    }
+
+    /**
+     * Find the position of a period.
+     *
+     * @param month the month from 1 to 12, ignored for yearly series
+     * @return the position or -1 if the period is outside the series
+     */
+    public int indexOf(int year, int month) {
+        if (isMonthly() && (month < 1 || month > 12)) {
+            throw new IllegalArgumentException("Invalid month " + month);
+        }
+
+        var index = period(isMonthly(), year, month) - firstPeriod;
+        return index >= 0 && index < values.length ? index : -1;
+    }
+
+    /**
+     * Find the first period after the base period whose value moved by more than the threshold relative to the base
+     * value, in either direction. Value protection clauses usually rebase on the returned period and search again.
+     *
+     * @param baseIndex the position of the base period
+     * @param threshold the relative change, e.g. 0.05 for 5 %
+     * @return the position of the period or -1 if the value never moved by more than the threshold
+     */
+    public int findThresholdCrossing(int baseIndex, double threshold) {
+        checkIndex(baseIndex);
+
+        var base = values[baseIndex];
+
+        if (Float.isNaN(base)) {
+            throw new IllegalArgumentException("No value for the base period " + getYear(baseIndex) + "-" + getMonth(baseIndex));
+        }
+
+        var lower = (float) (base * (1 - threshold));
+        var upper = (float) (base * (1 + threshold));
+
+        for (int i = baseIndex + 1; i < values.length; i++) {
+            var value = values[i];
+
+            if (value > upper || value < lower) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Rebase the series so the average of the given year is 100, e.g. to compare a series based on 2015 with one based
+     * on 2020.
+     */
+    public IndexSeries rebase(int year) {
+        var sum = 0d;
+        var count = 0;
+
+        for (int month = 1; month <= (isMonthly() ? 12 : 1); month++) {
+            var value = getValue(year, month);
+
+            if (!Float.isNaN(value)) {
+                sum += value;
+                count++;
+            }
+        }
+
+        if (count == 0) {
+            throw new IllegalArgumentException("No values for the base year " + year);
+        }
+
+        return scale(100 * count / sum);
+    }
+
+    /**
+     * Rebase the series so the value of the given period is 100, e.g. the month a contract was concluded.
+     */
+    public IndexSeries rebase(int year, int month) {
+        var value = getValue(year, month);
+
+        if (Float.isNaN(value)) {
+            throw new IllegalArgumentException("No value for the base period " + year + "-" + month);
+        }
+
+        return scale(100d / value);
+    }
+
+    /**
+     * Adjust amounts which share the same base period to the target period. The result may be the amounts array
+     * itself.
+     *
+     * @param amounts     the amounts at the base period
+     * @param baseIndex   the position of the base period
+     * @param targetIndex the position of the target period
+     * @param result      receives the adjusted amounts
+     */
+    public void adjust(double[] amounts, int baseIndex, int targetIndex, double[] result) {
+        checkIndex(baseIndex);
+        checkIndex(targetIndex);
+        checkLength(amounts.length, result.length);
+
+        var factor = (double) values[targetIndex] / values[baseIndex];
+
+        for (int i = 0; i < amounts.length; i++) {
+            result[i] = amounts[i] * factor;
+        }
+    }
+
+    /**
+     * Adjust amounts with individual base periods to the target period. The factors are computed once per period, so
+     * adjusting millions of amounts costs a multiplication each. Amounts whose base period has no value become NaN.
+     * The result may be the amounts array itself.
+     *
+     * @param amounts     the amounts at their base periods
+     * @param baseIndexes the positions of the base periods, one per amount
+     * @param targetIndex the position of the target period
+     * @param result      receives the adjusted amounts
+     */
+    public void adjust(double[] amounts, int[] baseIndexes, int targetIndex, double[] result) {
+        checkIndex(targetIndex);
+        checkLength(amounts.length, baseIndexes.length);
+        checkLength(amounts.length, result.length);
+
+        var target = (double) values[targetIndex];
+        var factors = new double[values.length];
+
+        for (int i = 0; i < values.length; i++) {
+            factors[i] = target / values[i];
+        }
+
+        for (int i = 0; i < amounts.length; i++) {
+            result[i] = amounts[i] * factors[baseIndexes[i]];
+        }
+    }
+
+    private boolean isMonthly() {
+        return frequency == IndexFrequency.MONTHLY;
+    }
+
+    private IndexSeries scale(double factor) {
+        var scaled = new float[values.length];
+
+        for (int i = 0; i < values.length; i++) {
+            scaled[i] = (float) (values[i] * factor);
+        }
+
+        return new IndexSeries(id, frequency, firstPeriod, scaled);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= values.length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for series of size " + values.length);
+        }
+    }
+
+    private static void checkLength(int expected, int length) {
+        if (expected != length) {
+            throw new IllegalArgumentException("Expected an array of length " + expected + " but got " + length);
+        }
+    }
+
+    private static int period(boolean monthly, int year, int month) {
+        return monthly ? year * 12 + month - 1 : year;
+    }
+}
@@ -0,0 +1,20 @@
+package io.apistax.client;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Thrown if the API rejected the request, for example because of an invalid payload (HTTP 406 and other 4xx
+ * statuses). Not retryable.
+ */
+public class InvalidRequestException extends APIstaxException {
+
+    public InvalidRequestException(int statusCode, List<String> messages, Duration retryAfter) {
+        this(statusCode, () -> messages, retryAfter, true);
+    }
+
+    InvalidRequestException(int statusCode, Supplier<List<String>> messages, Duration retryAfter, boolean writableStackTrace) {
+        super(statusCode, messages, false, retryAfter, null, writableStackTrace);
+    }
+}
@@ -0,0 +1,576 @@
+package io.apistax.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.apistax.models.InvoicePayload;
+import io.apistax.models.SwissQrInvoiceFormat;
+import io.apistax.models.SwissQrInvoicePayload;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * A durable queue of invoice documents to generate. Enqueued payloads are written to an append-only journal of
+ * memory-mapped segment files before {@code enqueue} returns, and are generated by a pool of workers in the
+ * background. Pending entries survive restarts of the application: a new outbox on the same journal directory
+ * continues with them.
+ * <p>
+ * Each document is written to a temporary file and atomically moved to {@code <key>.<extension>} in the destination
+ * directory, so the destination only contains complete documents. Retryable failures are repeated with an exponential
+ * backoff, other failures or exhausted attempts are reported by a {@code <key>.error} file instead. Entries are
+ * processed at least once: a crash after a document was committed generates it again on restart, which replaces the
+ * file with an equal one.
+ */
+public class InvoiceOutbox implements Closeable {
+
+    private static final Pattern KEY = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]*");
+    private static final int THROUGHPUT_WINDOW = 60;
+
+    private enum Operation {
+        INVOICE_PDF(1, null, "pdf"),
+        SWISS_QR_INVOICE_PDF(2, SwissQrInvoiceFormat.PDF, "pdf"),
+        SWISS_QR_INVOICE_SVG(3, SwissQrInvoiceFormat.SVG, "svg"),
+        SWISS_QR_INVOICE_PNG(4, SwissQrInvoiceFormat.PNG, "png");
+
+        // the types are stored in the journal and must not change
+        private final byte type;
+        private final SwissQrInvoiceFormat format;
+        private final String extension;
+
+        Operation(int type, SwissQrInvoiceFormat format, String extension) {
+            this.type = (byte) type;
+            this.format = format;
+            this.extension = extension;
+        }
+
+        static Operation of(byte type) {
+            for (Operation operation : values()) {
+                if (operation.type == type) {
+                    return operation;
+                }
+            }
+
+            throw new IllegalStateException("Unknown journal entry type " + type);
+        }
+
+        static Operation of(SwissQrInvoiceFormat format) {
+            if (format == SwissQrInvoiceFormat.SVG) {
+                return SWISS_QR_INVOICE_SVG;
+            } else if (format == SwissQrInvoiceFormat.PNG) {
+                return SWISS_QR_INVOICE_PNG;
+            }
+
+            return SWISS_QR_INVOICE_PDF;
+        }
+    }
+
+    private final APIstaxClient client;
+    private final Path destination;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final ObjectMapper objectMapper = APIstaxClientImpl.createObjectMapper();
+    private final OutboxJournal journal;
+    private final DelayQueue<Task> queue = new DelayQueue<>();
+    private final ExecutorService workers;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final long[] throughputSeconds = new long[THROUGHPUT_WINDOW];
+    private final long[] throughputCounts = new long[THROUGHPUT_WINDOW];
+    private volatile boolean closed;
+
+    private InvoiceOutbox(Builder builder) throws IOException {
+        if (builder.client == null || builder.journal == null || builder.destination == null) {
+            throw new IllegalArgumentException("A client, a journal directory and a destination directory are required");
+        }
+
+        this.client = builder.client;
+        this.destination = builder.destination;
+        this.maxAttempts = builder.maxAttempts;
+        this.initialBackoff = builder.initialBackoff;
+        this.maxBackoff = builder.maxBackoff;
+
+        Files.createDirectories(destination);
+        journal = new OutboxJournal(builder.journal, builder.segmentSize);
+
+        for (OutboxJournal.Entry entry : journal.getPending()) {
+            queue.add(new Task(entry));
+        }
+
+        var threadNumber = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(builder.parallelism, runnable -> {
+            var thread = new Thread(runnable, "apistax-outbox-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (int i = 0; i < builder.parallelism; i++) {
+            workers.execute(this::work);
+        }
+    }
+
+    /**
+     * Enqueue an invoice PDF, see {@link APIstaxClient#generateInvoicePdf(InvoicePayload)}. The document is written to
+     * {@code <key>.pdf}.
+     *
+     * @param key a unique name of the document, made of letters, digits, dots, dashes and underscores
+     */
+    public void enqueueInvoicePdf(String key, InvoicePayload payload) throws IOException {
+        enqueue(key, Operation.INVOICE_PDF, payload);
+    }
+
+    /**
+     * Enqueue a Swiss QR invoice, see {@link APIstaxClient#generateSwissQrInvoice(SwissQrInvoicePayload,
+     * SwissQrInvoiceFormat)}. The document is written to {@code <key>.pdf}, {@code <key>.svg} or {@code <key>.png}.
+     *
+     * @param key    a unique name of the document, made of letters, digits, dots, dashes and underscores
+     * @param format the format or null for PDF
+     */
+    public void enqueueSwissQrInvoice(String key, SwissQrInvoicePayload payload, SwissQrInvoiceFormat format) throws IOException {
+        enqueue(key, Operation.of(format), payload);
+    }
+
+    /**
+     * Wait until all entries enqueued so far are processed.
+     *
+     * @return false if the timeout elapsed before
+     */
+    public boolean awaitEmpty(Duration timeout) throws InterruptedException {
+        var deadline = System.nanoTime() + timeout.toNanos();
+
+        synchronized (this) {
+            while (journal.getPendingCount() > 0) {
+                var remaining = deadline - System.nanoTime();
+
+                if (remaining <= 0) {
+                    return false;
+                }
+
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+
+        return true;
+    }
+
+    public Stats getStats() {
+        return new Stats(journal.getPendingCount(), inFlight.get(), completed.get(), failed.get(), retries.get(),
+                getThroughput(), journal.getSegmentCount(), journal.getBytes());
+    }
+
+    /**
+     * Stop the workers. Entries which are not processed yet stay in the journal and are continued by the next outbox
+     * on the same journal directory.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        workers.shutdownNow();
+
+        try {
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        journal.close();
+    }
+
+    private void enqueue(String key, Operation operation, Object payload) throws IOException {
+        if (key == null || !KEY.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid key " + key);
+        }
+
+        if (closed) {
+            throw new IllegalStateException("The outbox is closed");
+        }
+
+        var entry = journal.append(operation.type, key, objectMapper.writeValueAsBytes(payload));
+        queue.add(new Task(entry));
+    }
+
+    private void work() {
+        try {
+            while (!closed) {
+                var task = queue.take();
+                inFlight.incrementAndGet();
+
+                try {
+                    process(task);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        } catch (InterruptedException e) {
+            // the outbox was closed
+        }
+    }
+
+    private void process(Task task) throws InterruptedException {
+        var entry = task.entry;
+        var payload = journal.read(entry);
+
+        if (payload == null) {
+            return;
+        }
+
+        var operation = Operation.of(entry.getType());
+        var target = destination.resolve(entry.getKey() + "." + operation.extension);
+        var temp = destination.resolve("." + entry.getKey() + "." + operation.extension + ".tmp");
+
+        try {
+            if (operation == Operation.INVOICE_PDF) {
+                var invoice = objectMapper.readValue(payload, InvoicePayload.class);
+                client.generateInvoicePdf(invoice, (body, contentLength) -> write(body, temp));
+            } else {
+                var invoice = objectMapper.readValue(payload, SwissQrInvoicePayload.class);
+                client.generateSwissQrInvoice(invoice, operation.format, (body, contentLength) -> write(body, temp));
+            }
+
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            // the move has to be durable before the entry is done, or a power loss could lose the document
+            OutboxJournal.forceDirectory(destination);
+            complete(entry, completed);
+            countThroughput();
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(temp);
+
+            if (closed) {
+                throw new InterruptedException();
+            }
+
+            task.attempts++;
+
+            if (isRetryable(e) && task.attempts < maxAttempts) {
+                retries.incrementAndGet();
+                task.retryAt(System.nanoTime() + backoff(task.attempts, e).toNanos());
+                queue.add(task);
+                return;
+            }
+
+            try {
+                var error = destination.resolve("." + entry.getKey() + ".error.tmp");
+                Files.writeString(error, describe(e), StandardCharsets.UTF_8);
+                Files.move(error, destination.resolve(entry.getKey() + ".error"), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                OutboxJournal.forceDirectory(destination);
+                complete(entry, failed);
+            } catch (IOException ioException) {
+                // the entry stays in the journal and is continued on restart
+                task.retryAt(System.nanoTime() + maxBackoff.toNanos());
+                queue.add(task);
+            }
+        }
+    }
+
+    /**
+     * Remove a processed entry from the journal and count it. Both happen under the lock {@link #awaitEmpty} waits on,
+     * so a waiter never sees the entry removed but not counted yet.
+     */
+    private synchronized void complete(OutboxJournal.Entry entry, AtomicLong counter) throws IOException {
+        journal.complete(entry);
+        counter.incrementAndGet();
+        notifyAll();
+    }
+
+    private static Path write(InputStream body, Path temp) throws IOException {
+        try (var channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            var source = Channels.newChannel(body);
+            var position = 0L;
+            long transferred;
+
+            while ((transferred = channel.transferFrom(source, position, 1024 * 1024)) > 0) {
+                position += transferred;
+            }
+
+            channel.force(true);
+        }
+
+        return temp;
+    }
+
+    private static boolean isRetryable(Exception e) {
+        if (e instanceof APIstaxException) {
+            return ((APIstaxException) e).isRetryable();
+        }
+
+        // local I/O failures, like a full disk, are retried, unreadable payloads and bugs are not
+        return e instanceof IOException && !(e instanceof JsonProcessingException);
+    }
+
+    private Duration backoff(int attempts, Exception e) {
+        if (e instanceof APIstaxException && ((APIstaxException) e).getRetryAfter() != null) {
+            return ((APIstaxException) e).getRetryAfter();
+        }
+
+        var backoff = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+    }
+
+    private static String describe(Exception e) {
+        if (e instanceof APIstaxException && ((APIstaxException) e).getStatusCode() > 0) {
+            return ((APIstaxException) e).getStatusCode() + " " + e.getMessage() + "\n";
+        }
+
+        return e + "\n";
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // replaced by the next attempt
+        }
+    }
+
+    private synchronized void countThroughput() {
+        var second = System.nanoTime() / 1_000_000_000L;
+        var slot = (int) Math.floorMod(second, (long) THROUGHPUT_WINDOW);
+
+        if (throughputSeconds[slot] != second) {
+            throughputSeconds[slot] = second;
+            throughputCounts[slot] = 0;
+        }
+
+        throughputCounts[slot]++;
+    }
+
+    private synchronized double getThroughput() {
+        var second = System.nanoTime() / 1_000_000_000L;
+        var count = 0L;
+
+        for (int i = 0; i < THROUGHPUT_WINDOW; i++) {
+            if (second - throughputSeconds[i] < THROUGHPUT_WINDOW) {
+                count += throughputCounts[i];
+            }
+        }
+
+        return (double) count / THROUGHPUT_WINDOW;
+    }
+
+    private static class Task implements Delayed {
+
+        private final OutboxJournal.Entry entry;
+        private long retryAt = System.nanoTime();
+        private int attempts;
+
+        Task(OutboxJournal.Entry entry) {
+            this.entry = entry;
+        }
+
+        void retryAt(long nanos) {
+            retryAt = nanos;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(retryAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            var task = (Task) other;
+            var result = Long.compare(retryAt, task.retryAt);
+            return result != 0 ? result : Long.compare(entry.getId(), task.entry.getId());
+        }
+    }
+
+    /**
+     * A snapshot of the state of an outbox.
+     */
+    public static final class Stats {
+
+        private final int queueDepth;
+        private final int inFlight;
+        private final long completed;
+        private final long failed;
+        private final long retries;
+        private final double throughput;
+        private final int journalSegments;
+        private final long journalBytes;
+
+        Stats(int queueDepth, int inFlight, long completed, long failed, long retries, double throughput,
+              int journalSegments, long journalBytes) {
+            this.queueDepth = queueDepth;
+            this.inFlight = inFlight;
+            this.completed = completed;
+            this.failed = failed;
+            this.retries = retries;
+            this.throughput = throughput;
+            this.journalSegments = journalSegments;
+            this.journalBytes = journalBytes;
+        }
+
+        /**
+         * @return the number of entries which are not processed yet, including the ones in flight
+         */
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        /**
+         * @return the number of documents committed since the outbox was created
+         */
+        public long getCompleted() {
+            return completed;
+        }
+
+        /**
+         * @return the number of entries given up since the outbox was created
+         */
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getRetries() {
+            return retries;
+        }
+
+        /**
+         * @return the number of documents committed per second, averaged over the last minute
+         */
+        public double getThroughput() {
+            return throughput;
+        }
+
+        public int getJournalSegments() {
+            return journalSegments;
+        }
+
+        /**
+         * @return the number of bytes written to the segments which are still on disk
+         */
+        public long getJournalBytes() {
+            return journalBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "queueDepth=" + queueDepth +
+                    ", inFlight=" + inFlight +
+                    ", completed=" + completed +
+                    ", failed=" + failed +
+                    ", retries=" + retries +
+                    ", throughput=" + throughput +
+                    ", journalSegments=" + journalSegments +
+                    ", journalBytes=" + journalBytes +
+                    '}';
+        }
+    }
+
+    public static class Builder {
+
+        private APIstaxClient client;
+        private Path journal;
+        private Path destination;
+        private int parallelism = 4;
+        private int segmentSize = 16 * 1024 * 1024;
+        private int maxAttempts = 10;
+        private Duration initialBackoff = Duration.ofSeconds(1);
+        private Duration maxBackoff = Duration.ofMinutes(5);
+
+        public Builder client(APIstaxClient client) {
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * The directory of the journal segments. Only one outbox may use a directory at a time.
+         */
+        public Builder journal(Path journal) {
+            this.journal = journal;
+            return this;
+        }
+
+        /**
+         * The directory the documents are written to.
+         */
+        public Builder destination(Path destination) {
+            this.destination = destination;
+            return this;
+        }
+
+        /**
+         * The number of workers generating documents concurrently. Defaults to 4.
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("parallelism must be at least 1");
+            }
+
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * The size of a journal segment file, which also limits the size of a payload. Defaults to 16 MB.
+         */
+        public Builder segmentSize(int segmentSize) {
+            if (segmentSize < 4096) {
+                throw new IllegalArgumentException("segmentSize must be at least 4096");
+            }
+
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * The number of attempts after which a retryable failure is given up. Defaults to 10.
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("maxAttempts must be at least 1");
+            }
+
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * The delay before the first retry, doubled for every further retry up to the maximum. A {@code Retry-After}
+         * of the API takes precedence. Defaults to 1 second and 5 minutes.
+         */
+        public Builder backoff(Duration initialBackoff, Duration maxBackoff) {
+            this.initialBackoff = initialBackoff;
+            this.maxBackoff = maxBackoff;
+            return this;
+        }
+
+        /**
+         * Open the journal and start the workers, pending entries of a previous outbox are continued.
+         */
+        public InvoiceOutbox build() throws IOException {
+            return new InvoiceOutbox(this);
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package io.apistax.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A two-tier cache for the results of VAT verifications, geocoding and index lookups. A small in-memory cache is
+ * consulted first, then the optional shared {@link ResultCache}, which all nodes of a cluster can use, so a VAT ID or an
+ * address is looked up at the API once per cluster instead of once per node. Results found in the shared cache are
+ * kept in memory as well, for the rest of their time to live.
+ * <p>
+ * Results are stored in a compact binary encoding, which keeps the memory tier small and is shared by all client
+ * versions with the same encoding version. Failed lookups are not cached. The shared cache is asked with a short
+ * timeout, a slow or failing store only costs that timeout and the lookup is sent to the API.
+ *
+ * <pre>{@code
+ * var cache = new LookupCache.Builder()
+ *         .memorySize(4 * 1024 * 1024)
+ *         .shared(new FileResultCache.Builder().directory(Path.of("/mnt/shared/apistax")).build())
+ *         .ttl(Duration.ofHours(6))
+ *         .build();
+ * }</pre>
+ */
+public class LookupCache {
+
+    // bumped with incompatible changes of the key or value format, so old entries are ignored
+    private static final String KEY_PREFIX = "apistax:1:";
+    private static final int EXPIRY_SIZE = 8;
+
+    private final long memorySize;
+    private final ResultCache shared;
+    private final long ttlMillis;
+    private final long sharedTimeoutNanos;
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder sharedHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder sharedErrors = new LongAdder();
+
+    private LookupCache(Builder builder) {
+        this.memorySize = builder.memorySize;
+        this.shared = builder.shared;
+        this.ttlMillis = builder.ttl.toMillis();
+        this.sharedTimeoutNanos = builder.sharedTimeout.toNanos();
+    }
+
+    /**
+     * Return the cached result for the key or load, cache and return it.
+     *
+     * @param key the endpoint and the canonical form of the lookup
+     */
+    <T> T get(String key, Class<T> type, ObjectMapper objectMapper, Supplier<T> loader) {
+        key = KEY_PREFIX + key;
+        var now = System.currentTimeMillis();
+        var value = getMemory(key, now);
+
+        if (value != null) {
+            var result = decode(value, type, objectMapper);
+
+            if (result != null) {
+                memoryHits.increment();
+                return result;
+            }
+        }
+
+        if (shared != null) {
+            value = getShared(key, now);
+            var result = value != null ? decode(value, type, objectMapper) : null;
+
+            if (result != null) {
+                sharedHits.increment();
+                putMemory(key, value);
+                return result;
+            }
+        }
+
+        misses.increment();
+
+        var result = loader.get();
+
+        if (result != null) {
+            var expiresAt = System.currentTimeMillis() + ttlMillis;
+            value = encode(objectMapper.valueToTree(result), expiresAt);
+            putMemory(key, value);
+
+            if (shared != null) {
+                try {
+                    shared.put(key, value, Duration.ofMillis(ttlMillis)).whenComplete((ignored, e) -> {
+                        if (e != null) {
+                            sharedErrors.increment();
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    sharedErrors.increment();
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Remove all results from the memory tier. The shared cache is not affected.
+     */
+    public synchronized void clearMemory() {
+        memory.clear();
+        memoryBytes = 0;
+    }
+
+    public Stats getStats() {
+        synchronized (this) {
+            return new Stats(memoryHits.sum(), sharedHits.sum(), misses.sum(), sharedErrors.sum(), memory.size(),
+                    memoryBytes);
+        }
+    }
+
+    private synchronized byte[] getMemory(String key, long now) {
+        var value = memory.get(key);
+
+        if (value != null && expiresAt(value) <= now) {
+            memory.remove(key);
+            memoryBytes -= value.length;
+            return null;
+        }
+
+        return value;
+    }
+
+    private synchronized void putMemory(String key, byte[] value) {
+        if (value.length > memorySize) {
+            return;
+        }
+
+        var previous = memory.put(key, value);
+        memoryBytes += value.length - (previous != null ? previous.length : 0);
+
+        // the least recently used results are evicted first
+        for (var it = memory.values().iterator(); memoryBytes > memorySize && it.hasNext(); ) {
+            memoryBytes -= it.next().length;
+            it.remove();
+        }
+    }
+
+    private byte[] getShared(String key, long now) {
+        try {
+            var value = shared.get(key).get(sharedTimeoutNanos, TimeUnit.NANOSECONDS);
+
+            // the value is checked as well, the store may keep it a little longer or return a corrupted one
+            if (value == null || value.length <= EXPIRY_SIZE || expiresAt(value) <= now) {
+                return null;
+            }
+
+            return value;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransportException(TransportException.Reason.CANCELLED, e);
+        } catch (ExecutionException | TimeoutException | RuntimeException e) {
+            sharedErrors.increment();
+            return null;
+        }
+    }
+
+    /**
+     * @return the result or null if the value can't be read, e.g. because it was corrupted in the shared cache. It's
+     * replaced by a fresh lookup then.
+     */
+    private <T> T decode(byte[] value, Class<T> type, ObjectMapper objectMapper) {
+        try {
+            return objectMapper.treeToValue(ResultCodec.decode(value, EXPIRY_SIZE, value.length - EXPIRY_SIZE), type);
+        } catch (IOException e) {
+            sharedErrors.increment();
+            return null;
+        }
+    }
+
+    private static byte[] encode(JsonNode node, long expiresAt) {
+        var encoded = ResultCodec.encode(node);
+        return ByteBuffer.allocate(EXPIRY_SIZE + encoded.length).putLong(expiresAt).put(encoded).array();
+    }
+
+    private static long expiresAt(byte[] value) {
+        return ByteBuffer.wrap(value).getLong();
+    }
+
+    /**
+     * The hits and misses of a {@link LookupCache} since it was built.
+     */
+    public static class Stats {
+
+        private final long memoryHits;
+        private final long sharedHits;
+        private final long misses;
+        private final long sharedErrors;
+        private final int memoryEntries;
+        private final long memoryBytes;
+
+        Stats(long memoryHits, long sharedHits, long misses, long sharedErrors, int memoryEntries, long memoryBytes) {
+            this.memoryHits = memoryHits;
+            this.sharedHits = sharedHits;
+            this.misses = misses;
+            this.sharedErrors = sharedErrors;
+            this.memoryEntries = memoryEntries;
+            this.memoryBytes = memoryBytes;
+        }
+
+        public long getMemoryHits() {
+            return memoryHits;
+        }
+
+        public long getSharedHits() {
+            return sharedHits;
+        }
+
+        /**
+         * @return the number of lookups which were sent to the API
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return the number of failed, timed out or unreadable accesses of the shared cache
+         */
+        public long getSharedErrors() {
+            return sharedErrors;
+        }
+
+        public int getMemoryEntries() {
+            return memoryEntries;
+        }
+
+        public long getMemoryBytes() {
+            return memoryBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "memoryHits=" + memoryHits +
+                    ", sharedHits=" + sharedHits +
+                    ", misses=" + misses +
+                    ", sharedErrors=" + sharedErrors +
+                    ", memoryEntries=" + memoryEntries +
+                    ", memoryBytes=" + memoryBytes +
+                    '}';
+        }
+    }
+
+    public static class Builder {
+
+        private long memorySize = 1024 * 1024;
+        private ResultCache shared;
+        private Duration ttl = Duration.ofHours(1);
+        private Duration sharedTimeout = Duration.ofMillis(50);
+
+        /**
+         * The maximum size of the encoded results kept in memory, in bytes. The least recently used results are
+         * evicted first. Defaults to 1 MB, 0 disables the memory tier.
+         */
+        public Builder memorySize(long memorySize) {
+            if (memorySize < 0) {
+                throw new IllegalArgumentException("memorySize must not be negative");
+            }
+
+            this.memorySize = memorySize;
+            return this;
+        }
+
+        /**
+         * The store shared by the nodes of a cluster, consulted after the memory tier. None by default.
+         */
+        public Builder shared(ResultCache shared) {
+            this.shared = shared;
+            return this;
+        }
+
+        /**
+         * The time a result is cached for, in both tiers. Defaults to 1 hour.
+         */
+        public Builder ttl(Duration ttl) {
+            if (ttl.isZero() || ttl.isNegative()) {
+                throw new IllegalArgumentException("ttl must be positive");
+            }
+
+            this.ttl = ttl;
+            return this;
+        }
+
+        /**
+         * The time to wait for the shared cache before the lookup is sent to the API. Defaults to 50 milliseconds.
+         */
+        public Builder sharedTimeout(Duration sharedTimeout) {
+            this.sharedTimeout = sharedTimeout;
+            return this;
+        }
+
+        public LookupCache build() {
+            return new LookupCache(this);
+        }
+    }
+}
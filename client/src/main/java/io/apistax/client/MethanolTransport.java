@@ -0,0 +1,163 @@
+package io.apistax.client;
+
+import com.github.mizosoft.methanol.HttpCache;
+import com.github.mizosoft.methanol.Methanol;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * The default transport, based on the JDK HTTP client with Methanol's response decompression.
+ */
+public class MethanolTransport implements APIstaxTransport {
+
+    private final Supplier<HttpClient> factory;
+    private volatile HttpClient httpClient;
+
+    public MethanolTransport() {
+        this(Methanol::create);
+    }
+
+    /**
+     * @param httpClient the client to send requests with, e.g. a preconfigured, shared {@link Methanol} instance. It's
+     *                   owned by the caller, so {@link #suspend()} leaves its connections open.
+     */
+    public MethanolTransport(HttpClient httpClient) {
+        this.factory = null;
+        this.httpClient = httpClient;
+    }
+
+    private MethanolTransport(Supplier<HttpClient> factory) {
+        this.factory = factory;
+        this.httpClient = factory.get();
+    }
+
+    /**
+     * Create a transport which caches responses according to RFC 9111. Fresh responses are served locally and stale
+     * ones are revalidated with their ETag or Last-Modified date. Several caches are chained in the given order, e.g.
+     * a small memory cache in front of a disk cache. The caches are not closed by the transport.
+     */
+    public static MethanolTransport withCache(List<HttpCache> caches) {
+        if (caches.isEmpty()) {
+            throw new IllegalArgumentException("At least one cache is required");
+        }
+
+        var builder = Methanol.newBuilder();
+
+        if (caches.size() == 1) {
+            builder.cache(caches.get(0));
+        } else {
+            builder.cacheChain(caches);
+        }
+
+        return new MethanolTransport(builder::build);
+    }
+
+    /**
+     * Close the HTTP client and its connections, after waiting for the requests in flight. The next request, or
+     * {@link #resume()}, creates a new client. The JDK HTTP client can only be closed on Java 21 and later, on older
+     * versions its connections are released once it was garbage collected.
+     */
+    @Override
+    public void suspend() {
+        if (factory == null) {
+            return;
+        }
+
+        HttpClient suspended;
+
+        synchronized (this) {
+            suspended = httpClient;
+            httpClient = null;
+        }
+
+        if (suspended instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) suspended).close();
+            } catch (Exception e) {
+                // ignore, the client is dropped anyway
+            }
+        }
+    }
+
+    @Override
+    public void resume() {
+        client();
+    }
+
+    @Override
+    public CompletableFuture<Response> sendAsync(HttpRequest request) {
+        var future = client().sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+        CompletableFuture<Response> result = future.thenApply(JdkResponse::new);
+
+        // cancelling the dependent future does not cancel the request by itself
+        result.whenComplete((response, e) -> {
+            if (result.isCancelled()) {
+                future.cancel(true);
+                future.thenAccept(received -> closeQuietly(received.body()));
+            }
+        });
+
+        return result;
+    }
+
+    @Override
+    public Response send(HttpRequest request) throws IOException, InterruptedException {
+        return new JdkResponse(client().send(request, HttpResponse.BodyHandlers.ofInputStream()));
+    }
+
+    private HttpClient client() {
+        var client = httpClient;
+
+        if (client != null) {
+            return client;
+        }
+
+        synchronized (this) {
+            if (httpClient == null) {
+                httpClient = factory.get();
+            }
+
+            return httpClient;
+        }
+    }
+
+    private static void closeQuietly(InputStream inputStream) {
+        try {
+            inputStream.close();
+        } catch (IOException e) {
+            // ignore, the request was cancelled anyway
+        }
+    }
+
+    private static class JdkResponse implements Response {
+
+        private final HttpResponse<InputStream> response;
+
+        JdkResponse(HttpResponse<InputStream> response) {
+            this.response = response;
+        }
+
+        @Override
+        public int statusCode() {
+            return response.statusCode();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return response.headers();
+        }
+
+        @Override
+        public InputStream body() {
+            return response.body();
+        }
+    }
+}
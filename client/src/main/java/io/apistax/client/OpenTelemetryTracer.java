@@ -0,0 +1,97 @@
+package io.apistax.client;
+
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.propagation.TextMapPropagator;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Reports the calls of a client to OpenTelemetry and propagates the trace context with the configured propagators,
+ * usually the W3C {@code traceparent} header. Client spans are children of the span current when the call is made.
+ * <p>
+ * Only the OpenTelemetry API is used, which applications using this class have to provide. The client itself has no
+ * dependency on OpenTelemetry.
+ */
+public final class OpenTelemetryTracer implements APIstaxTracer {
+
+    static final String INSTRUMENTATION_NAME = "io.apistax.client";
+
+    private final Tracer tracer;
+    private final TextMapPropagator propagator;
+
+    public OpenTelemetryTracer(OpenTelemetry openTelemetry) {
+        this.tracer = openTelemetry.getTracer(INSTRUMENTATION_NAME, BuildConfig.VERSION);
+        this.propagator = openTelemetry.getPropagators().getTextMapPropagator();
+    }
+
+    /**
+     * Create a tracer for the globally registered OpenTelemetry instance, e.g. the one of the Java agent.
+     */
+    public static OpenTelemetryTracer global() {
+        return new OpenTelemetryTracer(GlobalOpenTelemetry.get());
+    }
+
+    @Override
+    public Span startSpan(String method, String path) {
+        var span = tracer.spanBuilder(method + " " + path)
+                .setSpanKind(SpanKind.CLIENT)
+                .setAttribute("http.request.method", method)
+                .setAttribute("url.path", path)
+                .startSpan();
+
+        return new OpenTelemetrySpan(span, Context.current().with(span));
+    }
+
+    private class OpenTelemetrySpan implements Span {
+
+        private final io.opentelemetry.api.trace.Span span;
+        private final Context context;
+
+        OpenTelemetrySpan(io.opentelemetry.api.trace.Span span, Context context) {
+            this.span = span;
+            this.context = context;
+        }
+
+        @Override
+        public Span startChild(String name) {
+            var child = tracer.spanBuilder(name)
+                    .setParent(context)
+                    .setSpanKind(SpanKind.INTERNAL)
+                    .startSpan();
+
+            return new OpenTelemetrySpan(child, context.with(child));
+        }
+
+        @Override
+        public void setAttribute(String key, String value) {
+            span.setAttribute(key, value);
+        }
+
+        @Override
+        public void setAttribute(String key, long value) {
+            span.setAttribute(key, value);
+        }
+
+        @Override
+        public void inject(BiConsumer<String, String> headers) {
+            propagator.inject(context, headers, (carrier, key, value) -> carrier.accept(key, value));
+        }
+
+        @Override
+        public void recordException(Throwable exception) {
+            span.recordException(exception);
+            span.setStatus(StatusCode.ERROR);
+            span.setAttribute("error.type", exception.getClass().getName());
+        }
+
+        @Override
+        public void end() {
+            span.end();
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package io.apistax.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only journal of memory-mapped segment files, used by {@link InvoiceOutbox}. Each record is framed by its
+ * length and a CRC32C checksum, so a record torn by a crash is detected and ignored on recovery. Entries are appended
+ * by an enqueue record and removed by a done record with the same id.
+ * <p>
+ * Segments are deleted from the oldest one on, once all of its entries are done. This keeps every done record at
+ * least as long as the entry it refers to. A few entries which stay pending for long, e.g. while they are retried,
+ * are copied to the active segment, so they don't pin an otherwise processed segment.
+ * <p>
+ * The directory is locked while the journal is open, so two outboxes can't process the same entries.
+ */
+final class OutboxJournal implements Closeable {
+
+    private static final String SUFFIX = ".segment";
+    private static final String LOCK = "journal.lock";
+    private static final boolean WINDOWS = System.getProperty("os.name", "").toLowerCase(Locale.ROOT)
+            .startsWith("windows");
+    private static final int FRAME_SIZE = 8;
+    private static final int ENQUEUE_HEADER_SIZE = 12;
+    private static final byte ENQUEUE = 1;
+    private static final byte DONE = 2;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private final Map<Long, Entry> pending = new HashMap<>();
+    private final CRC32C crc = new CRC32C();
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private long nextId = 1;
+    private boolean closed;
+
+    OutboxJournal(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+
+        Files.createDirectories(directory);
+
+        lockChannel = FileChannel.open(directory.resolve(LOCK), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock acquired;
+
+        try {
+            acquired = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            acquired = null;
+        }
+
+        if (acquired == null) {
+            lockChannel.close();
+            throw new IOException("The journal " + directory + " is used by another outbox");
+        }
+
+        lock = acquired;
+
+        try {
+            try (var files = Files.list(directory)) {
+                var paths = files.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                        .sorted(Comparator.comparing(Path::getFileName))
+                        .toArray(Path[]::new);
+
+                for (Path path : paths) {
+                    var name = path.getFileName().toString();
+                    var index = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+                    var segment = Segment.open(path, index, 0);
+                    segments.add(segment);
+                    recover(segment);
+                }
+            }
+
+            if (segments.isEmpty()) {
+                roll();
+            }
+
+            compact();
+        } catch (IOException | RuntimeException e) {
+            // closing the channel releases the lock
+            lockChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Append an entry and force it to disk.
+     *
+     * @param type an application defined type of the entry
+     */
+    synchronized Entry append(byte type, String key, byte[] payload) throws IOException {
+        checkOpen();
+
+        var keyBytes = key.getBytes(StandardCharsets.UTF_8);
+
+        if (keyBytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("The key is too long");
+        }
+
+        var entry = new Entry(nextId++, type, key);
+        writeEnqueue(entry, keyBytes, ByteBuffer.wrap(payload));
+        pending.put(entry.id, entry);
+        return entry;
+    }
+
+    /**
+     * @return the payload of the entry or null if it is done
+     */
+    synchronized byte[] read(Entry entry) {
+        if (entry.done || closed) {
+            return null;
+        }
+
+        var payload = new byte[entry.payloadLength];
+        entry.segment.buffer.get(entry.payloadOffset, payload);
+        return payload;
+    }
+
+    /**
+     * Mark the entry as done and delete segments which only contain done entries.
+     */
+    synchronized void complete(Entry entry) throws IOException {
+        checkOpen();
+
+        if (entry.done) {
+            return;
+        }
+
+        var body = ByteBuffer.allocate(9).put(DONE).putLong(entry.id).flip();
+        write(body);
+
+        entry.done = true;
+        entry.segment.remove(entry);
+        pending.remove(entry.id);
+
+        compact();
+    }
+
+    /**
+     * @return the pending entries in the order they were appended
+     */
+    synchronized List<Entry> getPending() {
+        var result = new ArrayList<>(pending.values());
+        result.sort(Comparator.comparingLong(entry -> entry.id));
+        return result;
+    }
+
+    synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * @return the number of bytes written to the segments which are still on disk
+     */
+    synchronized long getBytes() {
+        return segments.stream().mapToLong(segment -> segment.position).sum();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            segments.getLast().buffer.force();
+
+            try {
+                lock.release();
+                lockChannel.close();
+            } catch (IOException e) {
+                // the lock is released with the channel or the process anyway
+            }
+        }
+    }
+
+    /**
+     * Force the entries of a directory to disk, so a file created or moved into it survives a power loss. Directories
+     * can't be opened on Windows, where the file system doesn't need this.
+     */
+    static void forceDirectory(Path directory) throws IOException {
+        if (WINDOWS) {
+            return;
+        }
+
+        try (var channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private void recover(Segment segment) {
+        var buffer = segment.buffer;
+        var position = 0;
+
+        while (position + FRAME_SIZE <= buffer.capacity()) {
+            var length = buffer.getInt(position);
+
+            if (length <= 0 || length > buffer.capacity() - position - FRAME_SIZE) {
+                break;
+            }
+
+            crc.reset();
+            crc.update(buffer.slice(position + FRAME_SIZE, length));
+
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                break;
+            }
+
+            var body = position + FRAME_SIZE;
+            var kind = buffer.get(body);
+            var id = buffer.getLong(body + 1);
+
+            if (kind == ENQUEUE) {
+                var keyLength = buffer.getShort(body + 10);
+                var keyBytes = new byte[keyLength];
+                buffer.get(body + ENQUEUE_HEADER_SIZE, keyBytes);
+
+                var entry = new Entry(id, buffer.get(body + 9), new String(keyBytes, StandardCharsets.UTF_8));
+                entry.segment = segment;
+                entry.payloadOffset = body + ENQUEUE_HEADER_SIZE + keyLength;
+                entry.payloadLength = length - ENQUEUE_HEADER_SIZE - keyLength;
+
+                // an entry copied to a later segment replaces its earlier copy
+                var previous = pending.put(id, entry);
+
+                if (previous != null) {
+                    previous.segment.remove(previous);
+                }
+
+                segment.add(entry);
+                nextId = Math.max(nextId, id + 1);
+            } else if (kind == DONE) {
+                var entry = pending.remove(id);
+
+                if (entry != null) {
+                    entry.segment.remove(entry);
+                }
+
+                nextId = Math.max(nextId, id + 1);
+            }
+
+            position += FRAME_SIZE + length;
+        }
+
+        segment.position = position;
+    }
+
+    private void writeEnqueue(Entry entry, byte[] keyBytes, ByteBuffer payload) throws IOException {
+        var payloadLength = payload.remaining();
+        var body = ByteBuffer.allocate(ENQUEUE_HEADER_SIZE + keyBytes.length + payloadLength)
+                .put(ENQUEUE)
+                .putLong(entry.id)
+                .put(entry.type)
+                .putShort((short) keyBytes.length)
+                .put(keyBytes)
+                .put(payload)
+                .flip();
+
+        var offset = write(body);
+
+        if (entry.segment != null) {
+            entry.segment.remove(entry);
+        }
+
+        entry.segment = segments.getLast();
+        entry.payloadOffset = offset + FRAME_SIZE + ENQUEUE_HEADER_SIZE + keyBytes.length;
+        entry.payloadLength = payloadLength;
+        entry.segment.add(entry);
+    }
+
+    /**
+     * Write a record to the active segment, rolling over to a new segment if it doesn't fit anymore.
+     *
+     * @return the offset of the record in the active segment
+     */
+    private int write(ByteBuffer body) throws IOException {
+        var length = body.remaining();
+
+        if (length > segmentSize - FRAME_SIZE) {
+            throw new IllegalArgumentException("The entry of " + length + " bytes exceeds the segment size");
+        }
+
+        var segment = segments.getLast();
+
+        if (segment.buffer.capacity() - segment.position < FRAME_SIZE + length) {
+            segment.buffer.force();
+            segment = roll();
+        }
+
+        crc.reset();
+        crc.update(body.duplicate());
+
+        var offset = segment.position;
+        segment.buffer.putInt(offset + 4, (int) crc.getValue());
+        segment.buffer.put(offset + FRAME_SIZE, body, body.position(), length);
+        segment.buffer.putInt(offset, length);
+        segment.buffer.force(offset, FRAME_SIZE + length);
+        segment.position += FRAME_SIZE + length;
+
+        return offset;
+    }
+
+    private Segment roll() throws IOException {
+        var index = segments.isEmpty() ? 0 : segments.getLast().index + 1;
+        var path = directory.resolve(String.format("%020d%s", index, SUFFIX));
+        var segment = Segment.open(path, index, segmentSize);
+        forceDirectory(directory);
+        segments.add(segment);
+        return segment;
+    }
+
+    private void compact() throws IOException {
+        while (segments.size() > 1) {
+            var head = segments.getFirst();
+
+            if (head.pending > 0) {
+                // only stragglers are copied, a segment which is still largely pending is kept until it is processed
+                if (head.pendingBytes * 4 > head.position) {
+                    return;
+                }
+
+                copyForward(head);
+            }
+
+            segments.removeFirst();
+            Files.deleteIfExists(head.path);
+        }
+    }
+
+    private void copyForward(Segment head) throws IOException {
+        var entries = pending.values().stream()
+                .filter(entry -> entry.segment == head)
+                .sorted(Comparator.comparingLong(entry -> entry.id))
+                .toArray(Entry[]::new);
+
+        for (Entry entry : entries) {
+            var payload = head.buffer.slice(entry.payloadOffset, entry.payloadLength);
+            writeEnqueue(entry, entry.key.getBytes(StandardCharsets.UTF_8), payload);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The journal is closed");
+        }
+    }
+
+    static final class Entry {
+
+        private final long id;
+        private final byte type;
+        private final String key;
+        private Segment segment;
+        private int payloadOffset;
+        private int payloadLength;
+        private boolean done;
+
+        private Entry(long id, byte type, String key) {
+            this.id = id;
+            this.type = type;
+            this.key = key;
+        }
+
+        long getId() {
+            return id;
+        }
+
+        byte getType() {
+            return type;
+        }
+
+        String getKey() {
+            return key;
+        }
+    }
+
+    private static final class Segment {
+
+        private final Path path;
+        private final long index;
+        private final MappedByteBuffer buffer;
+        private int position;
+        private int pending;
+        private long pendingBytes;
+
+        private Segment(Path path, long index, MappedByteBuffer buffer) {
+            this.path = path;
+            this.index = index;
+            this.buffer = buffer;
+        }
+
+        void add(Entry entry) {
+            pending++;
+            pendingBytes += entry.payloadLength;
+        }
+
+        void remove(Entry entry) {
+            pending--;
+            pendingBytes -= entry.payloadLength;
+        }
+
+        /**
+         * @param size the size of a new segment, existing segments are mapped with their size
+         */
+        static Segment open(Path path, long index, int size) throws IOException {
+            try (var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                var length = Math.max(channel.size(), size);
+                return new Segment(path, index, channel.map(FileChannel.MapMode.READ_WRITE, 0, length));
+            }
+        }
+    }
+}
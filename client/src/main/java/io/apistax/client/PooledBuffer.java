@@ -0,0 +1,93 @@
+package io.apistax.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A binary response held in a buffer leased from a {@link BufferPool}. The buffer goes back to the pool when the lease
+ * is closed, so its content must be written out or copied before. Using the lease after it was closed fails.
+ */
+public final class PooledBuffer implements AutoCloseable {
+
+    private final BufferPool pool;
+    private ByteBuffer buffer;
+
+    PooledBuffer(BufferPool pool, ByteBuffer buffer) {
+        this.pool = pool;
+        this.buffer = buffer;
+    }
+
+    /**
+     * @return a read-only view of the content, valid until the lease is closed
+     */
+    public synchronized ByteBuffer buffer() {
+        return checkOpen().asReadOnlyBuffer();
+    }
+
+    /**
+     * @return the size of the content in bytes
+     */
+    public synchronized int size() {
+        return checkOpen().remaining();
+    }
+
+    public synchronized void writeTo(OutputStream outputStream) throws IOException {
+        var content = checkOpen().duplicate();
+
+        if (content.hasArray()) {
+            outputStream.write(content.array(), content.arrayOffset() + content.position(), content.remaining());
+            return;
+        }
+
+        var copyBuffer = pool.acquireCopyBuffer();
+
+        try {
+            while (content.hasRemaining()) {
+                var n = Math.min(copyBuffer.length, content.remaining());
+                content.get(copyBuffer, 0, n);
+                outputStream.write(copyBuffer, 0, n);
+            }
+        } finally {
+            pool.releaseCopyBuffer(copyBuffer);
+        }
+    }
+
+    public synchronized void writeTo(WritableByteChannel channel) throws IOException {
+        var content = checkOpen().duplicate();
+
+        while (content.hasRemaining()) {
+            channel.write(content);
+        }
+    }
+
+    /**
+     * @return a copy of the content, which stays valid after the lease is closed
+     */
+    public synchronized byte[] toByteArray() {
+        var content = checkOpen().duplicate();
+        var bytes = new byte[content.remaining()];
+        content.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Return the buffer to its pool. Closing the lease more than once has no effect.
+     */
+    @Override
+    public synchronized void close() {
+        if (buffer != null) {
+            pool.release(buffer);
+            buffer = null;
+        }
+    }
+
+    private ByteBuffer checkOpen() {
+        if (buffer == null) {
+            throw new IllegalStateException("The buffer was already released");
+        }
+
+        return buffer;
+    }
+}
@@ -0,0 +1,20 @@
+package io.apistax.client;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Thrown if the quota of the API key is exhausted (HTTP 402) or too many requests were sent in a short time (HTTP
+ * 429). Only the latter is retryable, preferably after {@link #getRetryAfter()}.
+ */
+public class QuotaExceededException extends APIstaxException {
+
+    public QuotaExceededException(int statusCode, List<String> messages, Duration retryAfter) {
+        this(statusCode, () -> messages, retryAfter, true);
+    }
+
+    QuotaExceededException(int statusCode, Supplier<List<String>> messages, Duration retryAfter, boolean writableStackTrace) {
+        super(statusCode, messages, statusCode == 429, retryAfter, null, writableStackTrace);
+    }
+}
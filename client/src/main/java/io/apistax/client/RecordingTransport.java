@@ -0,0 +1,332 @@
+package io.apistax.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the requests sent through another transport and their responses to a cassette file, which can be served
+ * back by {@link ReplayTransport}. Request and response bodies are recorded in full, together with the time until the
+ * response headers and until the end of the body were received. Headers carrying credentials are never recorded:
+ * {@code Authorization}, {@code Proxy-Authorization}, {@code Cookie} and {@code Set-Cookie} by default, see
+ * {@link Builder#sensitiveHeader(String)}.
+ * <p>
+ * An interaction is written once its response body was closed after it was read to the end. Responses whose body
+ * wasn't read to the end, e.g. because the call was aborted, are not recorded. Closing a body never waits for the rest
+ * of it.
+ *
+ * <pre>{@code
+ * try (var transport = new RecordingTransport(new MethanolTransport(), Path.of("production.cassette"))) {
+ *     var client = new APIstaxClient.Builder()
+ *             .apiKey("key")
+ *             .transport(transport)
+ *             .build();
+ *     ...
+ * }
+ * }</pre>
+ */
+public class RecordingTransport implements APIstaxTransport, Closeable {
+
+    private static final List<String> DEFAULT_SENSITIVE_HEADERS = List.of("Authorization", "Proxy-Authorization",
+            "Cookie", "Set-Cookie");
+
+    private final APIstaxTransport delegate;
+    private final Cassette.Writer writer;
+    private final Set<String> sensitiveHeaders;
+    private final AtomicLong recorded = new AtomicLong();
+
+    /**
+     * Record with the default sensitive headers.
+     *
+     * @param cassette the file to record to, an existing file is replaced
+     */
+    public RecordingTransport(APIstaxTransport delegate, Path cassette) throws IOException {
+        this(new Builder().delegate(delegate).cassette(cassette));
+    }
+
+    private RecordingTransport(Builder builder) throws IOException {
+        if (builder.delegate == null || builder.cassette == null) {
+            throw new IllegalArgumentException("A delegate transport and a cassette are required");
+        }
+
+        this.delegate = builder.delegate;
+        this.sensitiveHeaders = builder.sensitiveHeaders;
+        this.writer = new Cassette.Writer(builder.cassette);
+    }
+
+    @Override
+    public void suspend() {
+        delegate.suspend();
+    }
+
+    @Override
+    public void resume() {
+        delegate.resume();
+    }
+
+    @Override
+    public CompletableFuture<Response> sendAsync(HttpRequest request) {
+        var body = request.bodyPublisher().map(CapturingPublisher::new).orElse(null);
+        var captured = body != null
+                ? HttpRequest.newBuilder(request, (name, value) -> true).method(request.method(), body).build()
+                : request;
+
+        var sentNanos = System.nanoTime();
+        var future = delegate.sendAsync(captured);
+        CompletableFuture<Response> result = future.thenApply(response ->
+                new RecordingResponse(request, body, response, System.nanoTime() - sentNanos));
+
+        // cancelling the dependent future does not cancel the request by itself
+        result.whenComplete((response, e) -> {
+            if (result.isCancelled()) {
+                future.cancel(true);
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * @return the number of interactions written to the cassette
+     */
+    public long getRecorded() {
+        return recorded.get();
+    }
+
+    /**
+     * Close the cassette. Responses still being read afterwards are not recorded.
+     */
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private class RecordingResponse implements Response {
+
+        private final Response response;
+        private final InputStream body;
+
+        RecordingResponse(HttpRequest request, CapturingPublisher requestBody, Response response, long headersNanos) {
+            this.response = response;
+            this.body = new RecordingInputStream(response.body(), (responseBody, bodyNanos) -> {
+                var written = writer.write(new Cassette.Interaction(request.method(), Cassette.target(request.uri()),
+                        redact(request.headers()), requestBody != null ? requestBody.toByteArray() : new byte[0],
+                        response.statusCode(), redact(response.headers()), responseBody, headersNanos, bodyNanos));
+
+                if (written) {
+                    recorded.incrementAndGet();
+                }
+            });
+        }
+
+        @Override
+        public int statusCode() {
+            return response.statusCode();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return response.headers();
+        }
+
+        @Override
+        public InputStream body() {
+            return body;
+        }
+    }
+
+    private HttpHeaders redact(HttpHeaders headers) {
+        return HttpHeaders.of(headers.map(), (name, value) -> !sensitiveHeaders.contains(name));
+    }
+
+    /**
+     * Copies the body while it is read and completes the interaction once it is closed, if the end was reached.
+     */
+    private static class RecordingInputStream extends FilterInputStream {
+
+        private final long startNanos = System.nanoTime();
+        private final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        private final Recorder recorder;
+        private volatile boolean ended;
+        private boolean closed;
+
+        RecordingInputStream(InputStream in, Recorder recorder) {
+            super(in);
+            this.recorder = recorder;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var result = super.read();
+
+            if (result >= 0) {
+                copy.write(result);
+            } else {
+                ended = true;
+            }
+
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            var result = super.read(b, off, len);
+
+            if (result > 0) {
+                copy.write(b, off, result);
+            } else if (result < 0) {
+                ended = true;
+            }
+
+            return result;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            var skipped = new byte[(int) Math.min(n, 8192)];
+            return Math.max(0, read(skipped, 0, skipped.length));
+        }
+
+        /**
+         * Close the body without reading the rest of it, as aborted calls close it from the deadline thread.
+         */
+        @Override
+        public void close() throws IOException {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+
+                closed = true;
+            }
+
+            super.close();
+
+            if (ended) {
+                recorder.record(copy.toByteArray(), System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    /**
+     * Copies the request body while the delegate transport sends it.
+     */
+    private static class CapturingPublisher implements HttpRequest.BodyPublisher {
+
+        private final HttpRequest.BodyPublisher delegate;
+        private volatile ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        CapturingPublisher(HttpRequest.BodyPublisher delegate) {
+            this.delegate = delegate;
+        }
+
+        byte[] toByteArray() {
+            return copy.toByteArray();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            // the body is published anew if the request is resent
+            var target = new ByteArrayOutputStream();
+            copy = target;
+
+            delegate.subscribe(new Flow.Subscriber<>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscriber.onSubscribe(subscription);
+                }
+
+                @Override
+                public void onNext(ByteBuffer item) {
+                    var bytes = new byte[item.remaining()];
+                    item.duplicate().get(bytes);
+                    target.writeBytes(bytes);
+                    subscriber.onNext(item);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    subscriber.onError(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    subscriber.onComplete();
+                }
+            });
+        }
+    }
+
+    @FunctionalInterface
+    private interface Recorder {
+
+        void record(byte[] responseBody, long bodyNanos) throws IOException;
+    }
+
+    public static class Builder {
+
+        private APIstaxTransport delegate;
+        private Path cassette;
+        private final Set<String> sensitiveHeaders = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+        public Builder() {
+            sensitiveHeaders.addAll(DEFAULT_SENSITIVE_HEADERS);
+        }
+
+        /**
+         * The transport which sends the requests.
+         */
+        public Builder delegate(APIstaxTransport delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * The file to record to, an existing file is replaced.
+         */
+        public Builder cassette(Path cassette) {
+            this.cassette = cassette;
+            return this;
+        }
+
+        /**
+         * Don't record a request or response header, in addition to the default ones, e.g. a custom API key header.
+         * Names are compared ignoring case.
+         */
+        public Builder sensitiveHeader(String name) {
+            sensitiveHeaders.add(name);
+            return this;
+        }
+
+        /**
+         * Replace the headers which aren't recorded, including the default ones.
+         */
+        public Builder sensitiveHeaders(Collection<String> names) {
+            sensitiveHeaders.clear();
+            sensitiveHeaders.addAll(names);
+            return this;
+        }
+
+        public RecordingTransport build() throws IOException {
+            return new RecordingTransport(this);
+        }
+    }
+}
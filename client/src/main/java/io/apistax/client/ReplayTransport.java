@@ -0,0 +1,318 @@
+package io.apistax.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Serves the interactions of a cassette recorded by {@link RecordingTransport} without network access. The response
+ * headers are delayed by the recorded time, and the body is released at the recorded pace, both multiplied by the
+ * time scale. This reproduces production-shaped traffic, with real document sizes and latencies, in tests and load
+ * tests.
+ * <p>
+ * Requests are matched by method, path, query and Accept header, regardless of the host. A request with the body of
+ * a recorded one is answered with the responses recorded for that body, other requests with the responses recorded for
+ * the endpoint, in turn. Requests to endpoints without recordings fail with an {@link IOException}.
+ *
+ * <pre>{@code
+ * var client = new APIstaxClient.Builder()
+ *         .apiKey("key")
+ *         .transport(new ReplayTransport.Builder()
+ *                 .cassette(Path.of("production.cassette"))
+ *                 .timeScale(0.5)
+ *                 .build())
+ *         .build();
+ * }</pre>
+ */
+public class ReplayTransport implements APIstaxTransport {
+
+    private final Map<String, Endpoint> endpoints = new HashMap<>();
+    private final double timeScale;
+    private final AtomicLong misses = new AtomicLong();
+    private final int interactions;
+
+    private ReplayTransport(Builder builder) throws IOException {
+        if (builder.cassette == null) {
+            throw new IllegalArgumentException("A cassette is required");
+        }
+
+        var recorded = Cassette.read(builder.cassette);
+
+        for (Cassette.Interaction interaction : recorded) {
+            var accept = interaction.getRequestHeaders().firstValue("Accept").orElse("");
+            endpoints.computeIfAbsent(key(interaction.getMethod(), interaction.getTarget(), accept), key -> new Endpoint())
+                    .add(interaction);
+        }
+
+        this.timeScale = builder.timeScale;
+        this.interactions = recorded.size();
+    }
+
+    @Override
+    public CompletableFuture<Response> sendAsync(HttpRequest request) {
+        var target = Cassette.target(request.uri());
+        var endpoint = endpoints.get(key(request.method(), target, request.headers().firstValue("Accept").orElse("")));
+
+        if (endpoint == null) {
+            misses.incrementAndGet();
+            return CompletableFuture.failedFuture(new IOException("No interaction recorded for " + request.method() + " " + target));
+        }
+
+        return readBody(request).thenCompose(body -> {
+            var interaction = endpoint.next(body);
+
+            return CompletableFuture.supplyAsync(() -> new ReplayResponse(interaction, scale(interaction.getBodyNanos())),
+                    CompletableFuture.delayedExecutor(scale(interaction.getHeadersNanos()), TimeUnit.NANOSECONDS));
+        });
+    }
+
+    /**
+     * @return the number of interactions read from the cassette
+     */
+    public int getInteractions() {
+        return interactions;
+    }
+
+    /**
+     * @return the number of requests no interaction was recorded for
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the time to wait for a recorded duration
+     */
+    long scale(long nanos) {
+        return (long) (nanos * timeScale);
+    }
+
+    private static String key(String method, String target, String accept) {
+        return method + " " + target + " " + accept;
+    }
+
+    /**
+     * Consume the request body like a real transport would, so it can be matched with the recorded ones.
+     */
+    private static CompletableFuture<byte[]> readBody(HttpRequest request) {
+        var publisher = request.bodyPublisher().orElse(null);
+
+        if (publisher == null) {
+            return CompletableFuture.completedFuture(new byte[0]);
+        }
+
+        var result = new CompletableFuture<byte[]>();
+        var body = new ByteArrayOutputStream();
+
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                var bytes = new byte[item.remaining()];
+                item.get(bytes);
+                body.writeBytes(bytes);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                result.complete(body.toByteArray());
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * The interactions recorded for a single endpoint, served in turn.
+     */
+    private static class Endpoint {
+
+        private final List<Cassette.Interaction> all = new ArrayList<>();
+        private final Map<ByteBuffer, List<Cassette.Interaction>> byBody = new HashMap<>();
+        private final AtomicInteger next = new AtomicInteger();
+
+        void add(Cassette.Interaction interaction) {
+            all.add(interaction);
+            byBody.computeIfAbsent(ByteBuffer.wrap(interaction.getRequestBody()), key -> new ArrayList<>()).add(interaction);
+        }
+
+        Cassette.Interaction next(byte[] body) {
+            var candidates = byBody.getOrDefault(ByteBuffer.wrap(body), all);
+            return candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size()));
+        }
+    }
+
+    private static class ReplayResponse implements Response {
+
+        private final Cassette.Interaction interaction;
+        private final InputStream body;
+
+        ReplayResponse(Cassette.Interaction interaction, long bodyNanos) {
+            this.interaction = interaction;
+            this.body = new PacedInputStream(interaction.getResponseBody(), bodyNanos);
+        }
+
+        @Override
+        public int statusCode() {
+            return interaction.getStatusCode();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return interaction.getResponseHeaders();
+        }
+
+        @Override
+        public InputStream body() {
+            return body;
+        }
+    }
+
+    /**
+     * Releases the bytes of a body evenly over the given time, so they are read at the recorded pace.
+     */
+    private static class PacedInputStream extends InputStream {
+
+        private final byte[] bytes;
+        private final long durationNanos;
+        private final long startNanos = System.nanoTime();
+        private int position;
+        private volatile boolean closed;
+
+        PacedInputStream(byte[] bytes, long durationNanos) {
+            this.bytes = bytes;
+            this.durationNanos = durationNanos;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("The stream is closed");
+            }
+
+            if (position >= bytes.length) {
+                // the end of the stream is only reached once the whole body was received
+                awaitAvailable(bytes.length);
+                return -1;
+            }
+
+            if (len == 0) {
+                return 0;
+            }
+
+            var available = awaitAvailable(position + 1);
+            var count = Math.min(len, available - position);
+            System.arraycopy(bytes, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return Math.max(0, released() - position);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        /**
+         * Wait until the body was released up to the given position.
+         *
+         * @return the released position
+         */
+        private int awaitAvailable(int target) throws IOException {
+            if (durationNanos <= 0) {
+                return bytes.length;
+            }
+
+            var deadline = startNanos + (long) ((double) durationNanos * target / Math.max(1, bytes.length));
+
+            for (long remaining = deadline - System.nanoTime(); remaining > 0; remaining = deadline - System.nanoTime()) {
+                LockSupport.parkNanos(remaining);
+
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Reading the body was interrupted");
+                }
+
+                if (closed) {
+                    throw new IOException("The stream is closed");
+                }
+            }
+
+            return Math.max(target, released());
+        }
+
+        private int released() {
+            if (durationNanos <= 0) {
+                return bytes.length;
+            }
+
+            var elapsed = System.nanoTime() - startNanos;
+            return (int) Math.min(bytes.length, (double) bytes.length * elapsed / durationNanos);
+        }
+    }
+
+    public static class Builder {
+
+        private Path cassette;
+        private double timeScale = 1;
+
+        /**
+         * The cassette file written by {@link RecordingTransport}.
+         */
+        public Builder cassette(Path cassette) {
+            this.cassette = cassette;
+            return this;
+        }
+
+        /**
+         * The factor the recorded times are multiplied with, 0.5 replays twice as fast and 0 without delay. Defaults
+         * to 1, the original timing.
+         */
+        public Builder timeScale(double timeScale) {
+            if (timeScale < 0) {
+                throw new IllegalArgumentException("timeScale must not be negative");
+            }
+
+            this.timeScale = timeScale;
+            return this;
+        }
+
+        public ReplayTransport build() throws IOException {
+            return new ReplayTransport(this);
+        }
+    }
+}
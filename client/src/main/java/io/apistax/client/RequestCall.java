@@ -0,0 +1,220 @@
+package io.apistax.client;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the lifecycle of a single call and enforces the deadline and cancellation configured by its
+ * {@link RequestOptions}. Everything a call holds on to (pending futures, response streams) registers an abort action,
+ * which is run as soon as the call gets cancelled or exceeds its deadline.
+ */
+final class RequestCall implements AutoCloseable {
+
+    private enum State {
+        ACTIVE, CANCELLED, TIMED_OUT, DONE
+    }
+
+    private static final ScheduledThreadPoolExecutor DEADLINES = createDeadlines();
+
+    private final long deadlineNanos;
+    private final boolean writableStackTrace;
+    private final List<Runnable> abortActions = new ArrayList<>();
+    private final Runnable tokenRegistration;
+    private final ScheduledFuture<?> deadline;
+    private State state = State.ACTIVE;
+
+    RequestCall(RequestOptions options) {
+        this(options, true);
+    }
+
+    /**
+     * @param writableStackTrace whether exceptions created for the call capture their stack trace
+     */
+    RequestCall(RequestOptions options, boolean writableStackTrace) {
+        this.writableStackTrace = writableStackTrace;
+        deadlineNanos = options.deadlineNanos(System.nanoTime());
+
+        var token = options.getCancellationToken();
+        tokenRegistration = token != null ? token.onCancel(() -> abort(State.CANCELLED)) : null;
+
+        var remaining = deadlineNanos - System.nanoTime();
+
+        if (deadlineNanos == Long.MAX_VALUE) {
+            deadline = null;
+        } else if (remaining <= 0) {
+            deadline = null;
+            abort(State.TIMED_OUT);
+        } else {
+            deadline = DEADLINES.schedule(() -> abort(State.TIMED_OUT), remaining, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor createDeadlines() {
+        var executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            var thread = new Thread(runnable, "apistax-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // most calls complete long before their deadline, so the timers are removed when the calls are closed
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    boolean hasDeadline() {
+        return deadlineNanos != Long.MAX_VALUE;
+    }
+
+    /**
+     * @return the remaining time until the deadline in nanoseconds, at least one
+     * @throws APIstaxException if the call is already aborted
+     */
+    long remainingNanos() {
+        checkActive();
+        return Math.max(1, deadlineNanos - System.nanoTime());
+    }
+
+    /**
+     * Register an action which is run if the call gets aborted. If the call is already aborted, the action is run
+     * immediately.
+     */
+    void onAbort(Runnable action) {
+        synchronized (this) {
+            if (state == State.ACTIVE) {
+                abortActions.add(action);
+                return;
+            }
+
+            if (state == State.DONE) {
+                return;
+            }
+        }
+
+        action.run();
+    }
+
+    void checkActive() {
+        var exception = abortException(null);
+
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * Translate a failure into the exception to throw to the caller. Failures caused by aborting the call are reported
+     * as cancellation or timeout respectively.
+     */
+    APIstaxException exception(Throwable cause) {
+        var exception = abortException(cause);
+
+        if (exception != null) {
+            return exception;
+        }
+
+        if (cause instanceof HttpTimeoutException) {
+            return new TransportException(TransportException.Reason.TIMEOUT, cause, writableStackTrace);
+        }
+
+        if (cause instanceof APIstaxException) {
+            return (APIstaxException) cause;
+        }
+
+        if (cause instanceof InterruptedException) {
+            return new TransportException(TransportException.Reason.CANCELLED, cause, writableStackTrace);
+        }
+
+        return new TransportException(TransportException.Reason.IO, cause, writableStackTrace);
+    }
+
+    <T> T await(CompletableFuture<T> future) throws IOException, InterruptedException {
+        onAbort(() -> future.cancel(true));
+
+        try {
+            return future.get();
+        } catch (CancellationException e) {
+            throw exception(e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+
+            // the JDK client completes its own futures with the cancellation as cause when they are cancelled
+            if (cause instanceof CancellationException) {
+                throw exception(cause);
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof UncheckedIOException) {
+                // e.g. a streamed request body which couldn't be opened
+                throw ((UncheckedIOException) cause).getCause();
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            throw new IOException(cause);
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (state == State.ACTIVE) {
+                state = State.DONE;
+            }
+
+            abortActions.clear();
+        }
+
+        if (deadline != null) {
+            deadline.cancel(false);
+        }
+
+        if (tokenRegistration != null) {
+            tokenRegistration.run();
+        }
+    }
+
+    private APIstaxException abortException(Throwable cause) {
+        State current;
+
+        synchronized (this) {
+            current = state;
+        }
+
+        if (current == State.CANCELLED) {
+            return new TransportException(TransportException.Reason.CANCELLED, cause, writableStackTrace);
+        } else if (current == State.TIMED_OUT) {
+            return new TransportException(TransportException.Reason.TIMEOUT, cause, writableStackTrace);
+        }
+
+        return null;
+    }
+
+    private void abort(State reason) {
+        List<Runnable> actions;
+
+        synchronized (this) {
+            if (state != State.ACTIVE) {
+                return;
+            }
+
+            state = reason;
+            actions = new ArrayList<>(abortActions);
+            abortActions.clear();
+        }
+
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+}
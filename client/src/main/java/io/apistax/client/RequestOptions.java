@@ -0,0 +1,147 @@
+package io.apistax.client;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-call options like deadlines, additional headers or a cancellation token. Use
+ * {@link APIstaxClient#withOptions(RequestOptions)} to apply them to calls.
+ */
+public class RequestOptions {
+
+    public static final RequestOptions DEFAULT = new Builder().build();
+
+    private final Instant deadline;
+    private final Duration timeout;
+    private final Map<String, String> headers;
+    private final CancellationToken cancellationToken;
+    private final RequestPriority priority;
+
+    private RequestOptions(Builder builder) {
+        this.deadline = builder.deadline;
+        this.timeout = builder.timeout;
+        this.headers = Collections.unmodifiableMap(new LinkedHashMap<>(builder.headers));
+        this.cancellationToken = builder.cancellationToken;
+        this.priority = builder.priority;
+    }
+
+    /**
+     * @return the absolute point in time until which a call, including any queueing and retries, has to be completed
+     */
+    public Instant getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * @return the time a call, including any queueing and retries, may take in total, measured from its start
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
+    /**
+     * @return the priority class used by the {@link RequestScheduler} of the client
+     */
+    public RequestPriority getPriority() {
+        return priority;
+    }
+
+    public Builder toBuilder() {
+        var builder = new Builder()
+                .deadline(deadline)
+                .timeout(timeout)
+                .cancellationToken(cancellationToken)
+                .priority(priority);
+        builder.headers.putAll(headers);
+        return builder;
+    }
+
+    /**
+     * Calculate the deadline of a call started at the given time.
+     *
+     * @param startNanos the start of the call as returned by {@link System#nanoTime()}
+     * @return the deadline in {@link System#nanoTime()} units or {@link Long#MAX_VALUE} if the call has no deadline
+     */
+    long deadlineNanos(long startNanos) {
+        var result = Long.MAX_VALUE;
+
+        if (timeout != null) {
+            result = afterNanos(startNanos, timeout);
+        }
+
+        if (deadline != null) {
+            result = Math.min(result, afterNanos(startNanos, Duration.between(Instant.now(), deadline)));
+        }
+
+        return result;
+    }
+
+    /**
+     * Add a duration to a {@link System#nanoTime()} value, saturating at {@link Long#MAX_VALUE} instead of overflowing
+     * for durations like {@code Duration.ofDays(Long.MAX_VALUE / 86400)} or a deadline of {@link Instant#MAX}.
+     */
+    private static long afterNanos(long startNanos, Duration duration) {
+        if (duration.isNegative()) {
+            return startNanos;
+        }
+
+        // Duration.toNanos() throws for durations of more than about 292 years
+        var limit = Long.MAX_VALUE - Math.max(startNanos, 0);
+        var nanos = duration.compareTo(Duration.ofNanos(limit)) >= 0 ? limit : duration.toNanos();
+        return startNanos + nanos;
+    }
+
+    public static class Builder {
+
+        private Instant deadline;
+        private Duration timeout;
+        private final Map<String, String> headers = new LinkedHashMap<>();
+        private CancellationToken cancellationToken;
+        private RequestPriority priority = RequestPriority.INTERACTIVE;
+
+        public Builder deadline(Instant deadline) {
+            this.deadline = deadline;
+            return this;
+        }
+
+        public Builder timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        public Builder header(String name, String value) {
+            this.headers.put(name, value);
+            return this;
+        }
+
+        public Builder headers(Map<String, String> headers) {
+            this.headers.putAll(headers);
+            return this;
+        }
+
+        public Builder cancellationToken(CancellationToken cancellationToken) {
+            this.cancellationToken = cancellationToken;
+            return this;
+        }
+
+        public Builder priority(RequestPriority priority) {
+            this.priority = priority;
+            return this;
+        }
+
+        public RequestOptions build() {
+            return new RequestOptions(this);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package io.apistax.client;
+
+/**
+ * The priority class of a call. A {@link RequestScheduler} keeps a separate queue and concurrency budget per priority.
+ */
+public enum RequestPriority {
+
+    /**
+     * Latency sensitive calls, for example made while a user is waiting. This is the default.
+     */
+    INTERACTIVE,
+
+    /**
+     * Throughput oriented calls like bulk invoice generation, which should only use capacity left over by interactive
+     * calls.
+     */
+    BATCH
+}
@@ -0,0 +1,290 @@
+package io.apistax.client;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Limits the number of concurrent calls of a client and decides which queued call is sent next. Every
+ * {@link RequestPriority} has its own queue and concurrency budget. Whenever capacity becomes available, the next call
+ * is picked by a smooth weighted round robin across all lanes which have queued calls and are below their budget.
+ * <p>
+ * With the default configuration interactive calls may use the full capacity and are picked eight times as often as
+ * batch calls, while batch calls may never occupy more than three quarters of the capacity.
+ */
+public class RequestScheduler {
+
+    private final int maxConcurrency;
+    private final Map<RequestPriority, Lane> lanes = new EnumMap<>(RequestPriority.class);
+    private int inFlight;
+
+    private RequestScheduler(Builder builder) {
+        this.maxConcurrency = builder.maxConcurrency;
+
+        for (RequestPriority priority : RequestPriority.values()) {
+            var budget = builder.budgets.get(priority);
+            var weight = builder.weights.get(priority);
+
+            if (budget == null) {
+                budget = priority == RequestPriority.BATCH ? Math.max(1, maxConcurrency * 3 / 4) : maxConcurrency;
+            }
+
+            if (weight == null) {
+                weight = priority == RequestPriority.BATCH ? 1 : 8;
+            }
+
+            lanes.put(priority, new Lane(Math.min(budget, maxConcurrency), weight));
+        }
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public LaneStats getStats(RequestPriority priority) {
+        var lane = lanes.get(priority);
+
+        synchronized (this) {
+            return new LaneStats(
+                    lane.waiting.size(),
+                    lane.inFlight,
+                    lane.maxConcurrency,
+                    lane.acquired,
+                    lane.totalWaitNanos,
+                    lane.maxWaitNanos
+            );
+        }
+    }
+
+    public Map<RequestPriority, LaneStats> getStats() {
+        var result = new EnumMap<RequestPriority, LaneStats>(RequestPriority.class);
+
+        for (RequestPriority priority : RequestPriority.values()) {
+            result.put(priority, getStats(priority));
+        }
+
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Wait until the call may be sent. Waiting is bound by the deadline and cancellation token of the call.
+     *
+     * @return the permit which has to be released once the call has finished
+     */
+    Permit acquire(RequestPriority priority, RequestCall call) throws IOException, InterruptedException {
+        var lane = lanes.get(priority != null ? priority : RequestPriority.INTERACTIVE);
+        var waiter = new Waiter();
+
+        synchronized (this) {
+            lane.waiting.add(waiter);
+            dispatch();
+        }
+
+        try {
+            call.await(waiter.future);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            synchronized (this) {
+                if (!lane.waiting.remove(waiter) && !waiter.future.isCompletedExceptionally()) {
+                    release(lane);
+                }
+            }
+
+            throw e;
+        }
+
+        return () -> {
+            synchronized (this) {
+                release(lane);
+            }
+        };
+    }
+
+    private void release(Lane lane) {
+        inFlight--;
+        lane.inFlight--;
+        dispatch();
+    }
+
+    private void dispatch() {
+        while (inFlight < maxConcurrency) {
+            var lane = nextLane();
+
+            if (lane == null) {
+                return;
+            }
+
+            var waiter = lane.waiting.poll();
+
+            if (waiter.future.complete(null)) {
+                var waitNanos = System.nanoTime() - waiter.enqueuedNanos;
+
+                inFlight++;
+                lane.inFlight++;
+                lane.acquired++;
+                lane.totalWaitNanos += waitNanos;
+                lane.maxWaitNanos = Math.max(lane.maxWaitNanos, waitNanos);
+            }
+        }
+    }
+
+    private Lane nextLane() {
+        Lane selected = null;
+        var totalWeight = 0;
+
+        for (Lane lane : lanes.values()) {
+            if (lane.waiting.isEmpty() || lane.inFlight >= lane.maxConcurrency) {
+                continue;
+            }
+
+            lane.currentWeight += lane.weight;
+            totalWeight += lane.weight;
+
+            if (selected == null || lane.currentWeight > selected.currentWeight) {
+                selected = lane;
+            }
+        }
+
+        if (selected != null) {
+            selected.currentWeight -= totalWeight;
+        }
+
+        return selected;
+    }
+
+    interface Permit {
+
+        void release();
+    }
+
+    private static class Lane {
+
+        private final ArrayDeque<Waiter> waiting = new ArrayDeque<>();
+        private final int maxConcurrency;
+        private final int weight;
+        private int currentWeight;
+        private int inFlight;
+        private long acquired;
+        private long totalWaitNanos;
+        private long maxWaitNanos;
+
+        Lane(int maxConcurrency, int weight) {
+            this.maxConcurrency = maxConcurrency;
+            this.weight = weight;
+        }
+    }
+
+    private static class Waiter {
+
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private final long enqueuedNanos = System.nanoTime();
+    }
+
+    /**
+     * A snapshot of the queue and concurrency state of a single lane.
+     */
+    public static class LaneStats {
+
+        private final int queueDepth;
+        private final int inFlight;
+        private final int maxConcurrency;
+        private final long acquired;
+        private final long totalWaitNanos;
+        private final long maxWaitNanos;
+
+        LaneStats(int queueDepth, int inFlight, int maxConcurrency, long acquired, long totalWaitNanos, long maxWaitNanos) {
+            this.queueDepth = queueDepth;
+            this.inFlight = inFlight;
+            this.maxConcurrency = maxConcurrency;
+            this.acquired = acquired;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+        }
+
+        /**
+         * @return the number of calls currently waiting in the lane
+         */
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        /**
+         * @return the number of calls of the lane currently being sent
+         */
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        /**
+         * @return the total number of calls of the lane which were allowed to be sent
+         */
+        public long getAcquired() {
+            return acquired;
+        }
+
+        public Duration getAverageWait() {
+            return acquired == 0 ? Duration.ZERO : Duration.ofNanos(totalWaitNanos / acquired);
+        }
+
+        public Duration getMaxWait() {
+            return Duration.ofNanos(maxWaitNanos);
+        }
+
+        @Override
+        public String toString() {
+            return "LaneStats{" +
+                    "queueDepth=" + queueDepth +
+                    ", inFlight=" + inFlight +
+                    ", maxConcurrency=" + maxConcurrency +
+                    ", acquired=" + acquired +
+                    ", averageWait=" + getAverageWait() +
+                    ", maxWait=" + getMaxWait() +
+                    '}';
+        }
+    }
+
+    public static class Builder {
+
+        private int maxConcurrency = 16;
+        private final Map<RequestPriority, Integer> budgets = new EnumMap<>(RequestPriority.class);
+        private final Map<RequestPriority, Integer> weights = new EnumMap<>(RequestPriority.class);
+
+        /**
+         * @param maxConcurrency the number of calls which may be sent concurrently across all lanes
+         */
+        public Builder maxConcurrency(int maxConcurrency) {
+            if (maxConcurrency < 1) {
+                throw new IllegalArgumentException("maxConcurrency must be at least 1");
+            }
+
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * @param priority       the lane to configure
+         * @param maxConcurrency the number of calls of this lane which may be sent concurrently
+         * @param weight         the relative share of the lane when calls of several lanes are waiting
+         */
+        public Builder lane(RequestPriority priority, int maxConcurrency, int weight) {
+            if (maxConcurrency < 1 || weight < 1) {
+                throw new IllegalArgumentException("maxConcurrency and weight must be at least 1");
+            }
+
+            budgets.put(priority, maxConcurrency);
+            weights.put(priority, weight);
+            return this;
+        }
+
+        public RequestScheduler build() {
+            return new RequestScheduler(this);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package io.apistax.client;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A shared store for lookup results, the second tier of a {@link LookupCache}, e.g. backed by Redis, Memcached or a
+ * database table all nodes of a cluster use. {@link FileResultCache} is a reference implementation on a local or
+ * shared directory.
+ * <p>
+ * Keys are short printable strings and values are opaque byte arrays, encoded and versioned by the client. The store
+ * doesn't need to be reliable: failed or slow calls are treated as misses and the result is looked up at the API.
+ */
+public interface ResultCache {
+
+    /**
+     * @return the value stored for the key, or null if there is none or it has expired
+     */
+    CompletableFuture<byte[]> get(String key);
+
+    /**
+     * Store a value for the key, replacing any previous one.
+     *
+     * @param ttl the time after which the value may no longer be returned
+     */
+    CompletableFuture<Void> put(String key, byte[] value, Duration ttl);
+}
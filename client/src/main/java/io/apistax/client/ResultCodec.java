@@ -0,0 +1,247 @@
+package io.apistax.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary encoding of the JSON tree of a result, used by {@link LookupCache}. Values are tagged with a single
+ * byte, integers and lengths are written as variable-length numbers, and property names are written once per value and
+ * referred to by their index afterwards, which pays off for the repeated objects in geocoding results.
+ */
+final class ResultCodec {
+
+    private static final byte VERSION = 1;
+
+    private static final byte NULL = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+    private static final byte INTEGER = 3;
+    private static final byte FLOAT = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte DECIMAL = 6;
+    private static final byte STRING = 7;
+    private static final byte ARRAY = 8;
+    private static final byte OBJECT = 9;
+    private static final byte BIG_INTEGER = 10;
+
+    private ResultCodec() {
+    }
+
+    static byte[] encode(JsonNode node) {
+        var out = new ByteArrayOutputStream(256);
+        out.write(VERSION);
+        write(node, out, new HashMap<>());
+        return out.toByteArray();
+    }
+
+    static JsonNode decode(byte[] bytes, int offset, int length) throws IOException {
+        var buffer = ByteBuffer.wrap(bytes, offset, length);
+
+        try {
+            if (buffer.get() != VERSION) {
+                throw new IOException("Unsupported encoding version");
+            }
+
+            var node = read(buffer, new ArrayList<>());
+
+            if (buffer.hasRemaining()) {
+                throw new IOException("Trailing bytes after the encoded value");
+            }
+
+            return node;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Truncated or invalid encoding", e);
+        }
+    }
+
+    private static void write(JsonNode node, ByteArrayOutputStream out, Map<String, Integer> names) {
+        if (node == null || node.isNull() || node.isMissingNode()) {
+            out.write(NULL);
+        } else if (node.isBoolean()) {
+            out.write(node.booleanValue() ? TRUE : FALSE);
+        } else if (node.isIntegralNumber() && node.canConvertToLong()) {
+            out.write(INTEGER);
+            writeVarLong((node.longValue() << 1) ^ (node.longValue() >> 63), out);
+        } else if (node.isIntegralNumber()) {
+            out.write(BIG_INTEGER);
+            writeString(node.bigIntegerValue().toString(), out);
+        } else if (node.isFloat()) {
+            out.write(FLOAT);
+            writeFixed(Float.floatToIntBits(node.floatValue()), 4, out);
+        } else if (node.isDouble()) {
+            out.write(DOUBLE);
+            writeFixed(Double.doubleToLongBits(node.doubleValue()), 8, out);
+        } else if (node.isNumber()) {
+            out.write(DECIMAL);
+            writeString(node.decimalValue().toString(), out);
+        } else if (node.isTextual()) {
+            out.write(STRING);
+            writeString(node.textValue(), out);
+        } else if (node.isArray()) {
+            out.write(ARRAY);
+            writeVarLong(node.size(), out);
+
+            for (JsonNode element : node) {
+                write(element, out, names);
+            }
+        } else if (node.isObject()) {
+            out.write(OBJECT);
+            writeVarLong(node.size(), out);
+
+            for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext(); ) {
+                var field = it.next();
+                var index = names.get(field.getKey());
+
+                // 0 introduces a new name, anything else refers to a name written before
+                if (index == null) {
+                    names.put(field.getKey(), names.size());
+                    writeVarLong(0, out);
+                    writeString(field.getKey(), out);
+                } else {
+                    writeVarLong(index + 1, out);
+                }
+
+                write(field.getValue(), out, names);
+            }
+        } else {
+            // binary and POJO nodes don't occur in results, they are kept as text
+            out.write(STRING);
+            writeString(node.asText(), out);
+        }
+    }
+
+    private static JsonNode read(ByteBuffer buffer, List<String> names) throws IOException {
+        var factory = JsonNodeFactory.instance;
+        var tag = buffer.get();
+
+        switch (tag) {
+            case NULL:
+                return factory.nullNode();
+            case FALSE:
+                return factory.booleanNode(false);
+            case TRUE:
+                return factory.booleanNode(true);
+            case INTEGER:
+                var zigzag = readVarLong(buffer);
+                var value = (zigzag >>> 1) ^ -(zigzag & 1);
+
+                // the node type is kept, as far as it matters for equality
+                return value == (int) value ? factory.numberNode((int) value) : factory.numberNode(value);
+            case FLOAT:
+                return factory.numberNode(Float.intBitsToFloat(buffer.getInt()));
+            case DOUBLE:
+                return factory.numberNode(Double.longBitsToDouble(buffer.getLong()));
+            case DECIMAL:
+                return factory.numberNode(new BigDecimal(readString(buffer)));
+            case BIG_INTEGER:
+                return factory.numberNode(new BigInteger(readString(buffer)));
+            case STRING:
+                return factory.textNode(readString(buffer));
+            case ARRAY:
+                var size = readLength(buffer);
+                ArrayNode array = factory.arrayNode(Math.min(size, 64));
+
+                for (int i = 0; i < size; i++) {
+                    array.add(read(buffer, names));
+                }
+
+                return array;
+            case OBJECT:
+                var fields = readLength(buffer);
+                ObjectNode object = factory.objectNode();
+
+                for (int i = 0; i < fields; i++) {
+                    var index = readLength(buffer);
+                    String name;
+
+                    if (index == 0) {
+                        name = readString(buffer);
+                        names.add(name);
+                    } else if (index <= names.size()) {
+                        name = names.get(index - 1);
+                    } else {
+                        throw new IOException("Invalid property name reference " + index);
+                    }
+
+                    object.set(name, read(buffer, names));
+                }
+
+                return object;
+            default:
+                throw new IOException("Invalid tag " + tag);
+        }
+    }
+
+    private static void writeString(String value, ByteArrayOutputStream out) {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length, out);
+        out.writeBytes(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        var length = readLength(buffer);
+
+        if (length > buffer.remaining()) {
+            throw new IOException("Truncated string");
+        }
+
+        var value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static void writeFixed(long value, int bytes, ByteArrayOutputStream out) {
+        for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    private static void writeVarLong(long value, ByteArrayOutputStream out) {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) throws IOException {
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            var b = buffer.get();
+            value |= (long) (b & 0x7f) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Variable-length number too long");
+    }
+
+    private static int readLength(ByteBuffer buffer) throws IOException {
+        var length = readVarLong(buffer);
+
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new IOException("Invalid length " + length);
+        }
+
+        return (int) length;
+    }
+}
@@ -0,0 +1,20 @@
+package io.apistax.client;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Thrown if the API failed to process the request (HTTP 500 and other 5xx statuses not covered by
+ * {@link UnavailableException}). Not retryable, as the failure is usually caused by the specific request.
+ */
+public class ServerErrorException extends APIstaxException {
+
+    public ServerErrorException(int statusCode, List<String> messages, Duration retryAfter) {
+        this(statusCode, () -> messages, retryAfter, true);
+    }
+
+    ServerErrorException(int statusCode, Supplier<List<String>> messages, Duration retryAfter, boolean writableStackTrace) {
+        super(statusCode, messages, false, retryAfter, null, writableStackTrace);
+    }
+}
@@ -0,0 +1,130 @@
+package io.apistax.client;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The JSON encoding of a payload whose string property is read from a {@link Reader} while the stream is read, e.g. a
+ * large HTML document. Only one chunk of the property is held in memory at a time, encoded and escaped.
+ */
+final class StreamingJsonBody extends InputStream {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private final Reader reader;
+    private final boolean closeReader;
+    private final char[] chars = new char[CHUNK_SIZE];
+    private byte[] suffix;
+    private byte[] buffer;
+    private int position;
+    private int carry = -1;
+    private boolean contentDone;
+
+    /**
+     * @param name        the name of the streamed property, any value it has in the payload is replaced
+     * @param payload     the other properties
+     * @param closeReader whether the reader is closed with the stream
+     */
+    StreamingJsonBody(ObjectMapper objectMapper, Object payload, String name, Reader reader, boolean closeReader)
+            throws IOException {
+        this.reader = reader;
+        this.closeReader = closeReader;
+
+        var properties = payload != null ? (ObjectNode) objectMapper.valueToTree(payload) : objectMapper.createObjectNode();
+        properties.remove(name);
+
+        var quotedName = new String(JsonStringEncoder.getInstance().quoteAsString(name));
+        this.buffer = ("{\"" + quotedName + "\":\"").getBytes(StandardCharsets.UTF_8);
+
+        // the other properties follow the streamed one, without their opening brace
+        var rest = objectMapper.writeValueAsBytes(properties);
+
+        if (properties.isEmpty()) {
+            this.suffix = "\"}".getBytes(StandardCharsets.UTF_8);
+        } else {
+            this.suffix = new byte[rest.length + 1];
+            suffix[0] = '"';
+            suffix[1] = ',';
+            System.arraycopy(rest, 1, suffix, 2, rest.length - 1);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        var single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        while (buffer != null && position >= buffer.length) {
+            buffer = next();
+            position = 0;
+        }
+
+        if (buffer == null) {
+            return -1;
+        }
+
+        var count = Math.min(len, buffer.length - position);
+        System.arraycopy(buffer, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+
+        if (closeReader) {
+            reader.close();
+        }
+    }
+
+    /**
+     * @return the next encoded chunk or null at the end
+     */
+    private byte[] next() throws IOException {
+        if (contentDone) {
+            var result = suffix;
+            suffix = null;
+            return result;
+        }
+
+        var length = 0;
+
+        if (carry >= 0) {
+            chars[length++] = (char) carry;
+            carry = -1;
+        }
+
+        var read = reader.read(chars, length, CHUNK_SIZE - length);
+
+        if (read < 0) {
+            contentDone = true;
+
+            if (length == 0) {
+                return new byte[0];
+            }
+        } else {
+            length += read;
+        }
+
+        // a surrogate pair split between chunks is encoded with the next one
+        if (!contentDone && length > 0 && Character.isHighSurrogate(chars[length - 1])) {
+            carry = chars[--length];
+        }
+
+        return JsonStringEncoder.getInstance().quoteAsUTF8(new String(chars, 0, length));
+    }
+}
@@ -0,0 +1,54 @@
+package io.apistax.client;
+
+import java.util.List;
+
+/**
+ * Thrown if the API could not be reached or the call was aborted before a response was received, for example because
+ * of a connection failure, an exceeded deadline or a cancellation.
+ */
+public class TransportException extends APIstaxException {
+
+    public enum Reason {
+
+        /**
+         * The connection failed or was closed unexpectedly.
+         */
+        IO,
+
+        /**
+         * The call exceeded its timeout or deadline.
+         */
+        TIMEOUT,
+
+        /**
+         * The call was cancelled or the calling thread was interrupted.
+         */
+        CANCELLED
+    }
+
+    private final Reason reason;
+
+    public TransportException(Reason reason, Throwable cause) {
+        this(reason, cause, true);
+    }
+
+    TransportException(Reason reason, Throwable cause, boolean writableStackTrace) {
+        super(0, () -> messages(reason), reason != Reason.CANCELLED, null, cause, writableStackTrace);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    private static List<String> messages(Reason reason) {
+        switch (reason) {
+            case TIMEOUT:
+                return List.of("message.timeout");
+            case CANCELLED:
+                return List.of("message.cancelled");
+            default:
+                return null;
+        }
+    }
+}
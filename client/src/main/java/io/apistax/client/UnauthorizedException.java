@@ -0,0 +1,19 @@
+package io.apistax.client;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Thrown if the API key is missing, invalid or not allowed to use an API (HTTP 401 and 403). Not retryable.
+ */
+public class UnauthorizedException extends APIstaxException {
+
+    public UnauthorizedException(int statusCode, List<String> messages, Duration retryAfter) {
+        this(statusCode, () -> messages, retryAfter, true);
+    }
+
+    UnauthorizedException(int statusCode, Supplier<List<String>> messages, Duration retryAfter, boolean writableStackTrace) {
+        super(statusCode, messages, false, retryAfter, null, writableStackTrace);
+    }
+}
@@ -0,0 +1,20 @@
+package io.apistax.client;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Thrown if the API is temporarily unavailable (HTTP 502, 503 and 504). Retryable, preferably after
+ * {@link #getRetryAfter()}.
+ */
+public class UnavailableException extends APIstaxException {
+
+    public UnavailableException(int statusCode, List<String> messages, Duration retryAfter) {
+        this(statusCode, () -> messages, retryAfter, true);
+    }
+
+    UnavailableException(int statusCode, Supplier<List<String>> messages, Duration retryAfter, boolean writableStackTrace) {
+        super(statusCode, messages, true, retryAfter, null, writableStackTrace);
+    }
+}
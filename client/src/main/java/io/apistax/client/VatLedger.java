@@ -0,0 +1,580 @@
+package io.apistax.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.apistax.models.VatVerificationResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only ledger of all VAT verifications received from the API, e.g. to prove the validity of a VAT ID at the
+ * time of an invoice. Every result is appended with its time and request context to memory-mapped segment files,
+ * framed by its length and a CRC32C checksum like the journal of the {@link InvoiceOutbox}, and encoded in the compact
+ * encoding of the {@link LookupCache}. Segments are never deleted by the ledger.
+ * <p>
+ * The verifications are indexed in memory by VAT ID and by time, so the latest verification of a VAT ID and all
+ * verifications of a time range are found without scanning the files. The index is rebuilt from the segments when the
+ * ledger is opened, so recent results can be reused after a restart, see {@link Builder#reuse(Duration)}.
+ * <p>
+ * The directory is locked while the ledger is open, so two ledgers can't append to the same segments.
+ *
+ * <pre>{@code
+ * var ledger = new VatLedger.Builder()
+ *         .directory(Path.of("/var/lib/invoicing/vat-ledger"))
+ *         .reuse(Duration.ofDays(1))
+ *         .build();
+ *
+ * var client = new APIstaxClient.Builder()
+ *         .apiKey(apiKey)
+ *         .vatLedger(ledger)
+ *         .build();
+ *
+ * VatLedger.Verification latest = ledger.latest("ATU12345678");
+ * }</pre>
+ */
+public class VatLedger implements Closeable {
+
+    private static final String SUFFIX = ".ledger";
+    private static final String LOCK = "ledger.lock";
+    private static final int FRAME_SIZE = 8;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long reuseMillis;
+    private final boolean sync;
+    private final ObjectMapper objectMapper = APIstaxClientImpl.createObjectMapper();
+    private final List<Segment> segments = new ArrayList<>();
+    private final Map<String, List<Entry>> byVatId = new HashMap<>();
+    private final List<Entry> byTime = new ArrayList<>();
+    private final CRC32C crc = new CRC32C();
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private boolean closed;
+
+    private VatLedger(Builder builder) throws IOException {
+        if (builder.directory == null) {
+            throw new IllegalArgumentException("A directory is required");
+        }
+
+        this.directory = builder.directory;
+        this.segmentSize = builder.segmentSize;
+        this.reuseMillis = builder.reuse != null ? builder.reuse.toMillis() : 0;
+        this.sync = builder.sync;
+
+        Files.createDirectories(directory);
+
+        lockChannel = FileChannel.open(directory.resolve(LOCK), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock acquired;
+
+        try {
+            acquired = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            acquired = null;
+        }
+
+        if (acquired == null) {
+            lockChannel.close();
+            throw new IOException("The ledger " + directory + " is used by another ledger");
+        }
+
+        lock = acquired;
+
+        try {
+            try (var files = Files.list(directory)) {
+                var paths = files.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                        .sorted(Comparator.comparing(Path::getFileName))
+                        .toArray(Path[]::new);
+
+                for (Path path : paths) {
+                    var name = path.getFileName().toString();
+                    var index = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+                    var segment = Segment.open(path, index, 0);
+                    segments.add(segment);
+                    replay(segment);
+                }
+            }
+
+            if (segments.isEmpty()) {
+                roll();
+            }
+        } catch (IOException | RuntimeException e) {
+            // closing the channel releases the lock
+            lockChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Append a verification. With {@link Builder#sync(boolean)} enabled, it's forced to disk before returning.
+     *
+     * @param context the context of the request, e.g. the headers of its {@link RequestOptions}
+     */
+    public synchronized Verification append(String vatId, VatVerificationResult result, Map<String, String> context)
+            throws IOException {
+        checkOpen();
+
+        var timestamp = System.currentTimeMillis();
+        var vatIdBytes = normalize(vatId).getBytes(StandardCharsets.UTF_8);
+        var encodedContext = new ArrayList<byte[]>();
+
+        for (Map.Entry<String, String> item : context.entrySet()) {
+            encodedContext.add(item.getKey().getBytes(StandardCharsets.UTF_8));
+            encodedContext.add(item.getValue().getBytes(StandardCharsets.UTF_8));
+        }
+
+        var encodedResult = ResultCodec.encode(objectMapper.valueToTree(result));
+        var length = 8 + 2 + vatIdBytes.length + 2 + encodedResult.length;
+
+        for (byte[] bytes : encodedContext) {
+            length += 2 + bytes.length;
+        }
+
+        var body = ByteBuffer.allocate(length).putLong(timestamp);
+        putString(body, vatIdBytes);
+        body.putShort((short) context.size());
+
+        for (byte[] bytes : encodedContext) {
+            putString(body, bytes);
+        }
+
+        body.put(encodedResult).flip();
+
+        var entry = write(body);
+        index(entry);
+        return new Verification(entry.vatId, Instant.ofEpochMilli(timestamp), Collections.unmodifiableMap(
+                new LinkedHashMap<>(context)), result);
+    }
+
+    /**
+     * @return the latest verification of the VAT ID or null if there is none
+     */
+    public synchronized Verification latest(String vatId) throws IOException {
+        var entries = byVatId.get(normalize(vatId));
+        return entries != null ? read(entries.get(entries.size() - 1)) : null;
+    }
+
+    /**
+     * @return all verifications of the VAT ID, from the oldest to the latest
+     */
+    public synchronized List<Verification> history(String vatId) throws IOException {
+        var entries = byVatId.getOrDefault(normalize(vatId), List.of());
+        var result = new ArrayList<Verification>(entries.size());
+
+        for (Entry entry : entries) {
+            result.add(read(entry));
+        }
+
+        return result;
+    }
+
+    /**
+     * @return all verifications from the given time, inclusive, to the given time, exclusive, from the oldest on
+     */
+    public synchronized List<Verification> range(Instant from, Instant to) throws IOException {
+        var result = new ArrayList<Verification>();
+
+        for (int i = lowerBound(byTime, from.toEpochMilli()); i < byTime.size(); i++) {
+            var entry = byTime.get(i);
+
+            if (entry.timestamp >= to.toEpochMilli()) {
+                break;
+            }
+
+            result.add(read(entry));
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the number of verifications in the ledger
+     */
+    public synchronized int size() {
+        return byTime.size();
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * @return the number of bytes written to the segments
+     */
+    public synchronized long getBytes() {
+        return segments.stream().mapToLong(segment -> segment.position).sum();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            segments.get(segments.size() - 1).buffer.force();
+
+            try {
+                lock.release();
+                lockChannel.close();
+            } catch (IOException e) {
+                // the lock is released with the channel or the process anyway
+            }
+        }
+    }
+
+    /**
+     * @return the latest result of the VAT ID if it's recent enough to be reused, see {@link Builder#reuse(Duration)}
+     */
+    synchronized VatVerificationResult recent(String vatId) throws IOException {
+        if (reuseMillis <= 0 || closed) {
+            return null;
+        }
+
+        var entries = byVatId.get(normalize(vatId));
+
+        if (entries == null) {
+            return null;
+        }
+
+        var entry = entries.get(entries.size() - 1);
+
+        if (System.currentTimeMillis() - entry.timestamp > reuseMillis) {
+            return null;
+        }
+
+        return read(entry).getResult();
+    }
+
+    private void replay(Segment segment) {
+        var buffer = segment.buffer;
+        var position = 0;
+
+        while (position + FRAME_SIZE <= buffer.capacity()) {
+            var length = buffer.getInt(position);
+
+            if (length <= 0 || length > buffer.capacity() - position - FRAME_SIZE) {
+                break;
+            }
+
+            crc.reset();
+            crc.update(buffer.slice(position + FRAME_SIZE, length));
+
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                break;
+            }
+
+            index(entry(segment, position + FRAME_SIZE, length));
+            position += FRAME_SIZE + length;
+        }
+
+        segment.position = position;
+    }
+
+    private static Entry entry(Segment segment, int offset, int length) {
+        var body = segment.buffer.slice(offset, length);
+        var timestamp = body.getLong();
+        var vatId = getString(body);
+
+        return new Entry(vatId, timestamp, segment, offset, length);
+    }
+
+    private void index(Entry entry) {
+        insert(byVatId.computeIfAbsent(entry.vatId, key -> new ArrayList<>(1)), entry);
+        insert(byTime, entry);
+    }
+
+    /**
+     * Add the entry in the order of time. Entries are usually appended in order, only a clock set back moves them.
+     */
+    private static void insert(List<Entry> entries, Entry entry) {
+        if (entries.isEmpty() || entries.get(entries.size() - 1).timestamp <= entry.timestamp) {
+            entries.add(entry);
+        } else {
+            entries.add(lowerBound(entries, entry.timestamp + 1), entry);
+        }
+    }
+
+    /**
+     * @return the index of the first entry at or after the time
+     */
+    private static int lowerBound(List<Entry> entries, long timestamp) {
+        var low = 0;
+        var high = entries.size();
+
+        while (low < high) {
+            var middle = (low + high) >>> 1;
+
+            if (entries.get(middle).timestamp < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    private Verification read(Entry entry) throws IOException {
+        var body = entry.segment.buffer.slice(entry.offset, entry.length);
+        body.getLong();
+        getString(body);
+
+        var contextSize = body.getShort();
+        var context = new LinkedHashMap<String, String>();
+
+        for (int i = 0; i < contextSize; i++) {
+            context.put(getString(body), getString(body));
+        }
+
+        var encodedResult = new byte[body.remaining()];
+        body.get(encodedResult);
+
+        VatVerificationResult result;
+
+        try {
+            result = objectMapper.treeToValue(ResultCodec.decode(encodedResult, 0, encodedResult.length),
+                    VatVerificationResult.class);
+        } catch (JsonProcessingException e) {
+            throw new IOException("Invalid verification result", e);
+        }
+
+        return new Verification(entry.vatId, Instant.ofEpochMilli(entry.timestamp), Collections.unmodifiableMap(context),
+                result);
+    }
+
+    /**
+     * Write a record to the active segment, rolling over to a new segment if it doesn't fit anymore.
+     */
+    private Entry write(ByteBuffer body) throws IOException {
+        var length = body.remaining();
+
+        if (length > segmentSize - FRAME_SIZE) {
+            throw new IllegalArgumentException("The verification of " + length + " bytes exceeds the segment size");
+        }
+
+        var segment = segments.get(segments.size() - 1);
+
+        if (segment.buffer.capacity() - segment.position < FRAME_SIZE + length) {
+            segment.buffer.force();
+            segment = roll();
+        }
+
+        crc.reset();
+        crc.update(body.duplicate());
+
+        var offset = segment.position;
+        segment.buffer.putInt(offset + 4, (int) crc.getValue());
+        segment.buffer.put(offset + FRAME_SIZE, body, body.position(), length);
+        segment.buffer.putInt(offset, length);
+
+        if (sync) {
+            segment.buffer.force(offset, FRAME_SIZE + length);
+        }
+
+        segment.position += FRAME_SIZE + length;
+
+        return entry(segment, offset + FRAME_SIZE, length);
+    }
+
+    private Segment roll() throws IOException {
+        var index = segments.isEmpty() ? 0 : segments.get(segments.size() - 1).index + 1;
+        var path = directory.resolve(String.format("%020d%s", index, SUFFIX));
+        var segment = Segment.open(path, index, segmentSize);
+
+        if (sync) {
+            // the records of the segment are forced, its directory entry has to be as well
+            OutboxJournal.forceDirectory(directory);
+        }
+
+        segments.add(segment);
+        return segment;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The ledger is closed");
+        }
+    }
+
+    /**
+     * VAT IDs are compared without whitespace and in upper case, as they are often entered with spaces.
+     */
+    private static String normalize(String vatId) {
+        return vatId.replaceAll("\\s+", "").toUpperCase(Locale.ROOT);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("A value of the verification is too long");
+        }
+
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        var bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A verification as stored in the ledger.
+     */
+    public static final class Verification {
+
+        private final String vatId;
+        private final Instant timestamp;
+        private final Map<String, String> context;
+        private final VatVerificationResult result;
+
+        private Verification(String vatId, Instant timestamp, Map<String, String> context, VatVerificationResult result) {
+            this.vatId = vatId;
+            this.timestamp = timestamp;
+            this.context = context;
+            this.result = result;
+        }
+
+        /**
+         * @return the verified VAT ID, without whitespace and in upper case
+         */
+        public String getVatId() {
+            return vatId;
+        }
+
+        /**
+         * @return the time the result was received
+         */
+        public Instant getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @return the context of the request, e.g. a correlation ID
+         */
+        public Map<String, String> getContext() {
+            return context;
+        }
+
+        public VatVerificationResult getResult() {
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "Verification{" +
+                    "vatId='" + vatId + '\'' +
+                    ", timestamp=" + timestamp +
+                    ", context=" + context +
+                    '}';
+        }
+    }
+
+    private static final class Entry {
+
+        private final String vatId;
+        private final long timestamp;
+        private final Segment segment;
+        private final int offset;
+        private final int length;
+
+        private Entry(String vatId, long timestamp, Segment segment, int offset, int length) {
+            this.vatId = vatId;
+            this.timestamp = timestamp;
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static final class Segment {
+
+        private final long index;
+        private final MappedByteBuffer buffer;
+        private int position;
+
+        private Segment(long index, MappedByteBuffer buffer) {
+            this.index = index;
+            this.buffer = buffer;
+        }
+
+        /**
+         * @param size the size of a new segment, existing segments are mapped with their size
+         */
+        static Segment open(Path path, long index, int size) throws IOException {
+            try (var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                var length = Math.max(channel.size(), size);
+                return new Segment(index, channel.map(FileChannel.MapMode.READ_WRITE, 0, length));
+            }
+        }
+    }
+
+    public static class Builder {
+
+        private Path directory;
+        private int segmentSize = 8 * 1024 * 1024;
+        private Duration reuse;
+        private boolean sync = true;
+
+        /**
+         * The directory of the segment files, which is created if it doesn't exist. Required.
+         */
+        public Builder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * The size of a segment file in bytes. Defaults to 8 MB.
+         */
+        public Builder segmentSize(int segmentSize) {
+            if (segmentSize < 1024) {
+                throw new IllegalArgumentException("segmentSize must be at least 1024");
+            }
+
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * Answer {@link APIstaxClient#verifyVatId(String)} from the ledger if the latest verification of the VAT ID is
+         * at most this old, including verifications appended before a restart. By default, every call is sent to the
+         * API.
+         */
+        public Builder reuse(Duration reuse) {
+            this.reuse = reuse;
+            return this;
+        }
+
+        /**
+         * Whether to force every verification to disk before the call returns, so it survives a power loss and not just
+         * a crash of the process. Defaults to true.
+         */
+        public Builder sync(boolean sync) {
+            this.sync = sync;
+            return this;
+        }
+
+        public VatLedger build() throws IOException {
+            return new VatLedger(this);
+        }
+    }
+}
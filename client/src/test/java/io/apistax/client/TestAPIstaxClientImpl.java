@@ -6,8 +6,19 @@ import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
 import com.github.tomakehurst.wiremock.junit5.WireMockTest;
 import io.apistax.models.*;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -35,6 +46,164 @@ public class TestAPIstaxClientImpl {
         }
     }
 
+    @Test
+    void testQuotaExceeded(WireMockRuntimeInfo runtimeInfo) {
+        var client = getClient(runtimeInfo);
+
+        var response = WireMock.aResponse()
+                .withBody("{\"messages\": [\"message.quotaExceeded\"]}")
+                .withStatus(402);
+        stub(runtimeInfo, () -> WireMock.post("/v1/vat-verification").willReturn(response));
+
+        try {
+            client.verifyVatId("vatId");
+            fail("No QuotaExceededException thrown.");
+        } catch (QuotaExceededException e) {
+            assertEquals(402, e.getStatusCode());
+            assertFalse(e.isRetryable());
+            assertEquals("message.quotaExceeded", e.getMessages().get(0));
+        }
+    }
+
+    @Test
+    void testUnavailable(WireMockRuntimeInfo runtimeInfo) {
+        var client = new APIstaxClient.Builder()
+                .apiKey("API_KEY")
+                .host(runtimeInfo.getHttpBaseUrl())
+                .stacklessExceptions(true)
+                .build();
+
+        var response = WireMock.aResponse()
+                .withBody("Service Unavailable")
+                .withHeader("Retry-After", "30")
+                .withStatus(503);
+        stub(runtimeInfo, () -> WireMock.post("/v1/vat-verification").willReturn(response));
+
+        try {
+            client.verifyVatId("vatId");
+            fail("No UnavailableException thrown.");
+        } catch (UnavailableException e) {
+            assertEquals(503, e.getStatusCode());
+            assertTrue(e.isRetryable());
+            assertEquals(Duration.ofSeconds(30), e.getRetryAfter());
+            assertEquals("message.unknownError", e.getMessages().get(0));
+            assertEquals(0, e.getStackTrace().length);
+        }
+    }
+
+    @Test
+    void testRequestOptionsTimeout(WireMockRuntimeInfo runtimeInfo) {
+        var client = getClient(runtimeInfo);
+
+        var response = WireMock.aResponse()
+                .withBody("{\"valid\":true}")
+                .withHeader("Content-Type", "application/json")
+                .withFixedDelay(2000)
+                .withStatus(200);
+        stub(runtimeInfo, () -> WireMock.post("/v1/vat-verification").willReturn(response));
+
+        var options = new RequestOptions.Builder()
+                .timeout(Duration.ofMillis(200))
+                .build();
+
+        // the call would succeed once the delayed response arrives, so it's aborted by the deadline
+        var exception = assertThrows(TransportException.class, () -> client.withOptions(options).verifyVatId("vatId"));
+        assertEquals(TransportException.Reason.TIMEOUT, exception.getReason());
+        assertEquals("message.timeout", exception.getMessages().get(0));
+    }
+
+    @Test
+    void testRequestOptionsUnbounded(WireMockRuntimeInfo runtimeInfo) {
+        var client = getClient(runtimeInfo);
+
+        var response = WireMock.aResponse()
+                .withBody("{\"valid\":true}")
+                .withHeader("Content-Type", "application/json")
+                .withStatus(200);
+        stub(runtimeInfo, () -> WireMock.post("/v1/vat-verification").willReturn(response));
+
+        // neither overflows the deadline nor times out the call immediately
+        var options = new RequestOptions.Builder()
+                .timeout(Duration.ofSeconds(Long.MAX_VALUE))
+                .deadline(Instant.MAX)
+                .build();
+
+        var result = client.withOptions(options).verifyVatId("vatId");
+
+        assertEquals(true, result.getValid());
+    }
+
+    @Test
+    void testRequestOptionsCancellation(WireMockRuntimeInfo runtimeInfo) {
+        var client = getClient(runtimeInfo);
+
+        var response = WireMock.aResponse()
+                .withBody("PDF".getBytes(StandardCharsets.UTF_8))
+                .withHeader("Content-Type", "application/pdf")
+                .withFixedDelay(2000)
+                .withStatus(200);
+        stub(runtimeInfo, () -> WireMock.post("/v2/invoice-pdf").willReturn(response));
+
+        var token = new CancellationToken();
+        var options = new RequestOptions.Builder()
+                .cancellationToken(token)
+                .build();
+
+        CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS).execute(token::cancel);
+
+        try {
+            client.withOptions(options).generateInvoicePdf(new InvoicePayload());
+            fail("No APIstaxException thrown.");
+        } catch (APIstaxException e) {
+            assertEquals("message.cancelled", e.getMessages().get(0));
+        }
+
+        try {
+            client.withOptions(options).generateInvoicePdf(new InvoicePayload());
+            fail("No APIstaxException thrown.");
+        } catch (APIstaxException e) {
+            assertEquals("message.cancelled", e.getMessages().get(0));
+        }
+    }
+
+    @Test
+    void testRequestOptionsHeaders(WireMockRuntimeInfo runtimeInfo) {
+        var client = getClient(runtimeInfo);
+
+        var response = WireMock.aResponse()
+                .withBody("{\"valid\":true}")
+                .withHeader("Content-Type", "application/json")
+                .withStatus(200);
+        stub(runtimeInfo, () -> WireMock.post("/v1/vat-verification")
+                .withHeader("X-Request-Id", WireMock.equalTo("request-1"))
+                .willReturn(response));
+
+        var options = new RequestOptions.Builder()
+                .header("X-Request-Id", "request-1")
+                .build();
+
+        var result = client.withOptions(options).verifyVatId("vatId");
+
+        assertNotNull(result);
+        assertEquals(true, result.getValid());
+    }
+
+    @Test
+    void testConvertHtmlToPdfPooledBuffer(WireMockRuntimeInfo runtimeInfo) {
+        var client = getClient(runtimeInfo);
+
+        var response = WireMock.aResponse()
+                .withBody("PDF".getBytes(StandardCharsets.UTF_8))
+                .withHeader("Content-Type", "application/pdf")
+                .withStatus(200);
+        stub(runtimeInfo, () -> WireMock.post("/v1/html-to-pdf").willReturn(response));
+
+        try (var result = client.convertHtmlToPdf(new HtmlPayload().content("content"), BinaryHandlers.ofPooledBuffer())) {
+            assertEquals(3, result.size());
+            assertArrayEquals("PDF".getBytes(StandardCharsets.UTF_8), result.toByteArray());
+        }
+    }
+
     @Test
     void testConvertHtmlToPdf(WireMockRuntimeInfo runtimeInfo) {
         var client = getClient(runtimeInfo);
@@ -82,6 +251,82 @@ public class TestAPIstaxClientImpl {
         assertArrayEquals("PDF".getBytes(StandardCharsets.UTF_8), result);
     }
 
+    @Test
+    void testConvertHtmlToPdfFromReader(WireMockRuntimeInfo runtimeInfo) {
+        var client = getClient(runtimeInfo);
+
+        var response = WireMock.aResponse()
+                .withBody("PDF".getBytes(StandardCharsets.UTF_8))
+                .withHeader("Content-Type", "application/pdf")
+                .withStatus(200);
+
+        var mappingBuilder = WireMock.post("/v1/html-to-pdf")
+                .withRequestBody(WireMock.equalToJson("{\"content\":\"<p class=\\\"a\\\">\u00e4 \ud83d\ude00</p>\",\"landscape\":true,\"printBackground\":true}"))
+                .willReturn(response);
+
+        stub(runtimeInfo, () -> mappingBuilder);
+
+        var result = client.convertHtmlToPdf(new StringReader("<p class=\"a\">\u00e4 \ud83d\ude00</p>"),
+                new HtmlPayload().content("ignored").landscape(true).printBackground(true));
+
+        assertArrayEquals("PDF".getBytes(StandardCharsets.UTF_8), result);
+    }
+
+    @Test
+    void testConvertHtmlToPdfFromReaderDefault() {
+        var sent = new AtomicReference<HtmlPayload>();
+
+        // a decorator which only implements the payload overload, like mocks or wrappers of other clients
+        var client = (APIstaxClient) Proxy.newProxyInstance(APIstaxClient.class.getClassLoader(),
+                new Class<?>[]{APIstaxClient.class}, (proxy, method, args) -> {
+                    if (method.isDefault()) {
+                        return InvocationHandler.invokeDefault(proxy, method, args);
+                    }
+
+                    sent.set((HtmlPayload) args[0]);
+                    return new byte[0];
+                });
+
+        var options = new HtmlPayload().landscape(true).printBackground(true).marginTop(2f);
+        client.convertHtmlToPdf(new StringReader("<p>Test</p>"), options, BinaryHandlers.ofByteArray());
+
+        assertEquals("<p>Test</p>", sent.get().getContent());
+        assertEquals(true, sent.get().getLandscape());
+        assertEquals(true, sent.get().getPrintBackground());
+        assertEquals(2f, sent.get().getMarginTop());
+        assertNull(options.getContent());
+    }
+
+    @Test
+    void testConvertHtmlToPdfFromPath(WireMockRuntimeInfo runtimeInfo, @TempDir Path directory) throws Exception {
+        var client = getClient(runtimeInfo);
+
+        var response = WireMock.aResponse()
+                .withBody("PDF".getBytes(StandardCharsets.UTF_8))
+                .withHeader("Content-Type", "application/pdf")
+                .withStatus(200);
+
+        var content = "<p>" + "content ".repeat(10000) + "</p>";
+        var file = Files.writeString(directory.resolve("test.html"), content);
+
+        var mappingBuilder = WireMock.post("/v1/html-to-pdf")
+                .withRequestBody(WireMock.equalToJson("{\"content\":\"" + content + "\"}"))
+                .willReturn(response);
+
+        stub(runtimeInfo, () -> mappingBuilder);
+
+        assertArrayEquals("PDF".getBytes(StandardCharsets.UTF_8), client.convertHtmlToPdf(file, null));
+    }
+
+    @Test
+    void testConvertHtmlToPdfFromMissingPath(WireMockRuntimeInfo runtimeInfo, @TempDir Path directory) {
+        var client = getClient(runtimeInfo);
+
+        var exception = assertThrows(TransportException.class,
+                () -> client.convertHtmlToPdf(directory.resolve("missing.html"), null));
+        assertEquals(TransportException.Reason.IO, exception.getReason());
+    }
+
     @Test
     void testGenerateEpcQrCode(WireMockRuntimeInfo runtimeInfo) {
         var client = getClient(runtimeInfo);
@@ -502,6 +747,66 @@ public class TestAPIstaxClientImpl {
         assertArrayEquals("SWISS_QR_INVOICE_PDF".getBytes(StandardCharsets.UTF_8), result);
     }
 
+    @Test
+    void testVerifyVatIdGet(WireMockRuntimeInfo runtimeInfo) {
+        var client = getGetLookupsClient(runtimeInfo);
+
+        var response = WireMock.aResponse()
+                .withBody("{\"valid\":true,\"name\":\"name\"}")
+                .withHeader("Content-Type", "application/json")
+                .withHeader("Cache-Control", "private, max-age=3600")
+                .withStatus(200);
+        stub(runtimeInfo, () -> WireMock.get("/v1/vat-verification?vatId=ATU12345678").willReturn(response));
+
+        var result = client.verifyVatId("ATU12345678");
+
+        assertEquals(true, result.getValid());
+        assertEquals("name", result.getName());
+    }
+
+    @Test
+    void testGeocodeReverseGet(WireMockRuntimeInfo runtimeInfo) {
+        var client = getGetLookupsClient(runtimeInfo);
+
+        var response = WireMock.aResponse()
+                .withBody("{\"position\":{\"latitude\":0.00001,\"longitude\":2.2}}")
+                .withHeader("Content-Type", "application/json")
+                .withStatus(200);
+        stub(runtimeInfo, () -> WireMock.get("/v1/geocode/reverse?latitude=0.00001&longitude=2.2&language=de").willReturn(response));
+
+        var result = client.geocodeReverse(new GeocodeReversePayload().latitude(0.00001).longitude(2.2).language("de"));
+
+        assertEquals(0.00001, result.getPosition().getLatitude());
+    }
+
+    @Test
+    void testGenerateEpcQrCodeGet(WireMockRuntimeInfo runtimeInfo) {
+        var client = getGetLookupsClient(runtimeInfo);
+
+        var response = WireMock.ok()
+                .withBody("EPC_QR_CODE")
+                .withHeader("Content-Type", "image/png");
+        stub(runtimeInfo, () -> WireMock.get("/v1/epc-qr-code?iban=AT611904300234573201&recipient=Max+Mustermann&amount=12.5&size=200")
+                .withHeader("Accept", WireMock.equalTo("image/png"))
+                .willReturn(response));
+
+        var result = client.generateEpcQrCode(new EpcQrCodePayload()
+                .iban("AT611904300234573201")
+                .recipient("Max Mustermann")
+                .amount(12.5f)
+                .size(200));
+
+        assertEquals("EPC_QR_CODE", new String(result, StandardCharsets.UTF_8));
+    }
+
+    private APIstaxClient getGetLookupsClient(WireMockRuntimeInfo runtimeInfo) {
+        return new APIstaxClient.Builder()
+                .apiKey("API_KEY")
+                .host(runtimeInfo.getHttpBaseUrl())
+                .getLookups(true)
+                .build();
+    }
+
     private APIstaxClient getClient(WireMockRuntimeInfo runtimeInfo) {
         return new APIstaxClientImpl("API_KEY", runtimeInfo.getHttpBaseUrl());
     }
@@ -0,0 +1,100 @@
+package io.apistax.client;
+
+import io.apistax.models.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestAPIstaxFakeServer {
+
+    private APIstaxFakeServer server;
+
+    @AfterEach
+    void stop() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void testCannedResponses() {
+        server = new APIstaxFakeServer.Builder()
+                .endpoint("/v2/invoice-pdf", endpoint -> endpoint.responseSize(100_000))
+                .build()
+                .start();
+
+        var client = getClient();
+
+        var vatResult = client.verifyVatId("ATU12345678");
+        assertEquals(true, vatResult.getValid());
+
+        var geocodeResult = client.geocodeSearch("Heldenplatz, Wien");
+        assertNotNull(geocodeResult.getPosition());
+
+        var indexResult = client.fetchIndex(Index.AT_CPI_2015, IndexFrequency.MONTHLY);
+        assertEquals(120, indexResult.getValues().size());
+
+        var invoice = client.generateInvoicePdf(new InvoicePayload());
+        assertEquals(100_000, invoice.length);
+
+        var pdfA = client.convertPdfToPdfA(new ByteArrayInputStream(invoice));
+        assertTrue(pdfA.length > 0);
+
+        var stats = server.getStats();
+        assertEquals(1, stats.get("POST /v1/vat-verification").getRequests());
+        assertEquals(1, stats.get("POST /v2/invoice-pdf").getStatusCounts().get(200));
+        assertEquals(100_000, stats.get("POST /v2/invoice-pdf").getBytesSent());
+    }
+
+    @Test
+    void testInjectedErrors() {
+        server = new APIstaxFakeServer.Builder()
+                .endpoint("/v1/vat-verification", endpoint -> endpoint.errorRate(503, 1))
+                .endpoint("/v1/geocode/search", endpoint -> endpoint.resetRate(1))
+                .build()
+                .start();
+
+        var client = getClient();
+
+        try {
+            client.verifyVatId("ATU12345678");
+            fail("No APIstaxException thrown.");
+        } catch (APIstaxException e) {
+            assertEquals("message.serviceUnavailable", e.getMessages().get(0));
+        }
+
+        assertThrows(APIstaxException.class, () -> client.geocodeSearch("Heldenplatz, Wien"));
+
+        assertEquals(1, server.getStats().get("POST /v1/geocode/search").getResets());
+    }
+
+    @Test
+    void testLatency() {
+        server = new APIstaxFakeServer.Builder()
+                .latency(APIstaxFakeServer.LatencyDistribution.fixed(Duration.ofMillis(300)))
+                .build()
+                .start();
+
+        var client = getClient().withOptions(new RequestOptions.Builder()
+                .timeout(Duration.ofMillis(100))
+                .build());
+
+        try {
+            client.verifyVatId("ATU12345678");
+            fail("No APIstaxException thrown.");
+        } catch (APIstaxException e) {
+            assertEquals("message.timeout", e.getMessages().get(0));
+        }
+    }
+
+    private APIstaxClient getClient() {
+        return new APIstaxClient.Builder()
+                .apiKey("API_KEY")
+                .host(server.getBaseUrl())
+                .build();
+    }
+}
@@ -0,0 +1,140 @@
+package io.apistax.client;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@WireMockTest
+public class TestAPIstaxTracer {
+
+    private static final String TRACEPARENT = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+
+    @Test
+    void testSuccessfulCall(WireMockRuntimeInfo runtimeInfo) {
+        var tracer = new RecordingTracer();
+        var client = getClient(runtimeInfo, tracer);
+
+        var response = WireMock.aResponse()
+                .withBody("{\"valid\":true}")
+                .withHeader("Content-Type", "application/json")
+                .withStatus(200);
+        runtimeInfo.getWireMock().register(WireMock.post("/v1/vat-verification")
+                .withHeader("traceparent", WireMock.equalTo(TRACEPARENT))
+                .willReturn(response));
+
+        assertTrue(client.verifyVatId("ATU12345678").getValid());
+
+        assertEquals(3, tracer.spans.size());
+
+        var span = tracer.spans.get(0);
+        assertEquals("POST /v1/vat-verification", span.name);
+        assertEquals(200L, span.attributes.get("http.response.status_code"));
+        assertEquals(23L, span.attributes.get("http.request.body.size"));
+        assertEquals(14L, span.attributes.get("http.response.body.size"));
+        assertEquals(URI.create(runtimeInfo.getHttpBaseUrl()).getHost(), span.attributes.get("server.address"));
+        assertEquals(1L, span.attributes.get("apistax.attempts"));
+        assertNull(span.exception);
+        assertTrue(span.ended);
+
+        assertEquals("serialize", tracer.spans.get(1).name);
+        assertEquals("download", tracer.spans.get(2).name);
+        assertTrue(tracer.spans.get(1).ended);
+        assertTrue(tracer.spans.get(2).ended);
+    }
+
+    @Test
+    void testFailedCall(WireMockRuntimeInfo runtimeInfo) {
+        var tracer = new RecordingTracer();
+        var client = getClient(runtimeInfo, tracer);
+
+        runtimeInfo.getWireMock().register(WireMock.get("/v1/indexes/at-cpi-1?frequency=YEARLY")
+                .willReturn(WireMock.aResponse().withBody("{\"messages\":[\"message.quotaExceeded\"]}").withStatus(402)));
+
+        assertThrows(QuotaExceededException.class, () -> client.fetchIndex(io.apistax.models.Index.AT_CPI_1,
+                io.apistax.models.IndexFrequency.YEARLY));
+
+        var span = tracer.spans.get(0);
+        assertEquals("GET /v1/indexes/at-cpi-1", span.name);
+        assertEquals(402L, span.attributes.get("http.response.status_code"));
+        assertInstanceOf(QuotaExceededException.class, span.exception);
+        assertTrue(span.ended);
+    }
+
+    private APIstaxClient getClient(WireMockRuntimeInfo runtimeInfo, APIstaxTracer tracer) {
+        return new APIstaxClient.Builder()
+                .apiKey("API_KEY")
+                .host(runtimeInfo.getHttpBaseUrl())
+                .tracer(tracer)
+                .build();
+    }
+
+    private static class RecordingTracer implements APIstaxTracer {
+
+        private final List<RecordedSpan> spans = new ArrayList<>();
+
+        @Override
+        public Span startSpan(String method, String path) {
+            return record(method + " " + path);
+        }
+
+        private RecordedSpan record(String name) {
+            var span = new RecordedSpan(this, name);
+            spans.add(span);
+            return span;
+        }
+    }
+
+    private static class RecordedSpan implements APIstaxTracer.Span {
+
+        private final RecordingTracer tracer;
+        private final String name;
+        private final Map<String, Object> attributes = new LinkedHashMap<>();
+        private Throwable exception;
+        private boolean ended;
+
+        RecordedSpan(RecordingTracer tracer, String name) {
+            this.tracer = tracer;
+            this.name = name;
+        }
+
+        @Override
+        public APIstaxTracer.Span startChild(String name) {
+            return tracer.record(name);
+        }
+
+        @Override
+        public void setAttribute(String key, String value) {
+            attributes.put(key, value);
+        }
+
+        @Override
+        public void setAttribute(String key, long value) {
+            attributes.put(key, value);
+        }
+
+        @Override
+        public void inject(BiConsumer<String, String> headers) {
+            headers.accept("traceparent", TRACEPARENT);
+        }
+
+        @Override
+        public void recordException(Throwable exception) {
+            this.exception = exception;
+        }
+
+        @Override
+        public void end() {
+            ended = true;
+        }
+    }
+}
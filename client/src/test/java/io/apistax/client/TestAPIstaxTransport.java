@@ -0,0 +1,86 @@
+package io.apistax.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestAPIstaxTransport {
+
+    @Test
+    void testCustomTransport() {
+        var transport = new InMemoryTransport(200, "{\"valid\":true,\"name\":\"ACME\"}");
+        var client = new APIstaxClient.Builder()
+                .apiKey("API_KEY")
+                .transport(transport)
+                .build();
+
+        var result = client.verifyVatId("ATU12345678");
+
+        assertEquals(true, result.getValid());
+        assertEquals("ACME", result.getName());
+
+        var request = transport.requests.get(0);
+        assertEquals("https://api.apistax.io/v1/vat-verification", request.uri().toString());
+        assertEquals("POST", request.method());
+        assertEquals("Bearer API_KEY", request.headers().firstValue("Authorization").orElse(null));
+    }
+
+    @Test
+    void testCustomTransportError() {
+        var transport = new InMemoryTransport(429, "{\"messages\":[\"message.tooManyRequests\"]}");
+        var client = new APIstaxClient.Builder()
+                .apiKey("API_KEY")
+                .transport(transport)
+                .build();
+
+        var exception = assertThrows(QuotaExceededException.class, () -> client.geocodeSearch("Wien"));
+
+        assertEquals(429, exception.getStatusCode());
+        assertTrue(exception.isRetryable());
+        assertEquals(List.of("message.tooManyRequests"), exception.getMessages());
+    }
+
+    private static class InMemoryTransport implements APIstaxTransport {
+
+        private final int statusCode;
+        private final String body;
+        private final List<HttpRequest> requests = new CopyOnWriteArrayList<>();
+
+        InMemoryTransport(int statusCode, String body) {
+            this.statusCode = statusCode;
+            this.body = body;
+        }
+
+        @Override
+        public CompletableFuture<Response> sendAsync(HttpRequest request) {
+            requests.add(request);
+
+            return CompletableFuture.completedFuture(new Response() {
+                @Override
+                public int statusCode() {
+                    return statusCode;
+                }
+
+                @Override
+                public HttpHeaders headers() {
+                    return HttpHeaders.of(Map.of("Content-Type", List.of("application/json")), (name, value) -> true);
+                }
+
+                @Override
+                public InputStream body() {
+                    return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+                }
+            });
+        }
+    }
+}
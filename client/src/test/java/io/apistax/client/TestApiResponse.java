@@ -0,0 +1,100 @@
+package io.apistax.client;
+
+import io.apistax.models.BarcodePayload;
+import io.apistax.models.InvoicePayload;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestApiResponse {
+
+    @Test
+    void testBinary() {
+        try (var server = new APIstaxFakeServer.Builder()
+                .latency(APIstaxFakeServer.LatencyDistribution.fixed(Duration.ofMillis(200)))
+                .build()
+                .start()) {
+            var client = ClientFixtures.create(server);
+
+            var response = client.withResponse(c -> c.generateInvoicePdf(new InvoicePayload()));
+
+            assertTrue(response.isSent());
+            assertEquals(200, response.getStatusCode());
+            assertEquals("application/pdf", response.getHeaders().firstValue("Content-Type").orElse(null));
+            assertTrue(response.getRequestBytes() > 0);
+            assertEquals(response.getBody().length, response.getResponseBytes());
+            assertEquals(1, response.getAttempts());
+            assertFalse(response.isConnectionReused());
+
+            var timing = response.getTiming();
+            assertTrue(timing.getTimeToHeaders().toMillis() >= 200, timing.toString());
+            assertTrue(timing.getTotal().compareTo(timing.getTimeToHeaders()) > 0);
+            // a binary body is handled while it's read
+            assertTrue(timing.getDeserialization().compareTo(timing.getTimeToHeaders()) < 0, timing.toString());
+
+            assertTrue(client.withResponse(c -> c.generateInvoicePdf(new InvoicePayload())).isConnectionReused());
+        }
+    }
+
+    @Test
+    void testJsonWithFailover() {
+        try (var server = new APIstaxFakeServer.Builder().build().start()) {
+            var client = new APIstaxClient.Builder()
+                    .apiKey("API_KEY")
+                    .hostSelector(new HostSelector.Builder().hosts("http://localhost:1", server.getBaseUrl()).build())
+                    .build();
+
+            var attempts = 0;
+
+            // the unreachable host is ejected after the call that tried it first
+            for (int i = 0; i < 5; i++) {
+                var response = client.withResponse(c -> c.verifyVatId("ATU12345678"));
+
+                assertEquals("ACME Company", response.getBody().getName());
+                assertEquals(response.getHeaders().firstValueAsLong("Content-Length").orElse(-1), response.getResponseBytes());
+                assertTrue(response.getRequestBytes() > 0);
+                attempts += response.getAttempts();
+            }
+
+            assertEquals(6, attempts);
+
+            // a view with other options still records the call
+            var scoped = client.withResponse(c -> c.withOptions(new RequestOptions.Builder().header("X-Test", "1").build())
+                    .verifyVatId("ATU12345678"));
+            assertTrue(scoped.isSent());
+            assertEquals(1, scoped.getAttempts());
+        }
+    }
+
+    @Test
+    void testNotSent() {
+        try (var server = new APIstaxFakeServer.Builder().build().start()) {
+            var client = ClientFixtures.builder(server)
+                    .lookupCache(new LookupCache.Builder().build())
+                    .build();
+
+            assertTrue(client.withResponse(c -> c.geocodeSearch("Stephansplatz 1, Wien")).isSent());
+
+            var cached = client.withResponse(c -> c.geocodeSearch("Stephansplatz 1, Wien"));
+            assertFalse(cached.isSent());
+            assertEquals(0, cached.getStatusCode());
+            assertEquals("1010", cached.getBody().getAddress().getPostalCode());
+            assertEquals(Duration.ZERO, cached.getTiming().getTotal());
+        }
+    }
+
+    @Test
+    void testFailure() {
+        try (var server = new APIstaxFakeServer.Builder()
+                .endpoint("/v1/barcode", endpoint -> endpoint.errorRate(400, 1))
+                .build()
+                .start()) {
+            var client = ClientFixtures.create(server);
+
+            assertThrows(InvalidRequestException.class,
+                    () -> client.withResponse(c -> c.generateBarcode(new BarcodePayload())));
+        }
+    }
+}
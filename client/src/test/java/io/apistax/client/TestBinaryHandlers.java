@@ -0,0 +1,214 @@
+package io.apistax.client;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestBinaryHandlers {
+
+    @Test
+    void testByteArrayPresized() throws Exception {
+        var body = content(100_000);
+
+        assertArrayEquals(body, BinaryHandlers.ofByteArray().handle(new ByteArrayInputStream(body), body.length));
+        assertArrayEquals(body, BinaryHandlers.ofByteArray().handle(new ByteArrayInputStream(body), -1));
+        assertArrayEquals(body, BinaryHandlers.ofByteArray().handle(new ByteArrayInputStream(body), 1000));
+    }
+
+    @Test
+    void testByteArrayContentLengthIsAHint() throws Exception {
+        var body = content(100_000);
+
+        // a shorter body is returned as received and a huge length doesn't allocate an array of that size
+        assertArrayEquals(body, BinaryHandlers.ofByteArray().handle(slowStream(body), 200_000));
+        assertArrayEquals(body, BinaryHandlers.ofByteArray().handle(slowStream(body), Integer.MAX_VALUE));
+        assertArrayEquals(body, BinaryHandlers.ofByteArray().handle(slowStream(body), Long.MAX_VALUE));
+    }
+
+    @Test
+    void testPooledBufferGrowsAndIsReused() throws Exception {
+        var pool = new BufferPool.Builder().build();
+        var body = content(100_000);
+
+        try (var buffer = BinaryHandlers.ofPooledBuffer(pool).handle(new ByteArrayInputStream(body), 10)) {
+            assertEquals(body.length, buffer.size());
+            assertArrayEquals(body, buffer.toByteArray());
+        }
+
+        try (var buffer = BinaryHandlers.ofPooledBuffer(pool).handle(new ByteArrayInputStream(body), body.length)) {
+            var outputStream = new ByteArrayOutputStream();
+            buffer.writeTo(outputStream);
+            assertArrayEquals(body, outputStream.toByteArray());
+        }
+
+        assertEquals(1, pool.getReused());
+    }
+
+    @Test
+    void testDirectPooledBuffer() throws Exception {
+        var pool = new BufferPool.Builder().direct(true).build();
+        var body = content(20_000);
+
+        var buffer = BinaryHandlers.ofPooledBuffer(pool).handle(slowStream(body), -1);
+        assertTrue(buffer.buffer().isDirect());
+        assertArrayEquals(body, buffer.toByteArray());
+
+        buffer.close();
+        buffer.close();
+
+        assertThrows(IllegalStateException.class, buffer::size);
+        assertEquals(64 * 1024, pool.getRetainedBytes());
+    }
+
+    @Test
+    void testBinaryResultInMemory(@TempDir Path directory) throws Exception {
+        var body = content(10_000);
+
+        try (var result = BinaryHandlers.ofBinaryResult(10_000, directory).handle(slowStream(body), -1)) {
+            assertTrue(result.isInMemory());
+            assertEquals(body.length, result.size());
+            assertArrayEquals(body, result.toByteArray());
+            assertEquals(body.length, result.buffer().remaining());
+        }
+
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testBinaryResultSpills(@TempDir Path directory) throws Exception {
+        var body = content(100_000);
+
+        // the Content-Length is known up front or the body grows beyond the threshold while it's read
+        for (long contentLength : new long[]{body.length, -1, 1000}) {
+            var result = BinaryHandlers.ofBinaryResult(10_000, directory).handle(slowStream(body), contentLength);
+
+            assertFalse(result.isInMemory());
+            assertEquals(body.length, result.size());
+            assertTrue(Files.exists(result.getFile()));
+
+            var buffer = result.buffer();
+            var mapped = new byte[buffer.remaining()];
+            buffer.get(mapped);
+            assertArrayEquals(body, mapped);
+
+            var outputStream = new ByteArrayOutputStream();
+            assertEquals(body.length, result.transferTo(outputStream));
+            assertArrayEquals(body, outputStream.toByteArray());
+
+            try (var inputStream = result.openStream()) {
+                assertArrayEquals(body, inputStream.readAllBytes());
+            }
+
+            result.close();
+            result.close();
+
+            assertFalse(Files.exists(result.getFile()));
+            assertThrows(IllegalStateException.class, result::buffer);
+        }
+    }
+
+    @Test
+    void testBinaryResultTransferToStalledChannel(@TempDir Path directory) throws Exception {
+        var stalled = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer source) {
+                return 0;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        try (var result = BinaryHandlers.ofBinaryResult(1000, directory).handle(slowStream(content(10_000)), -1)) {
+            assertFalse(result.isInMemory());
+            assertThrows(IOException.class, () -> result.transferTo(stalled));
+        }
+    }
+
+    @Test
+    void testBinaryResultDeletesFileOnFailure(@TempDir Path directory) {
+        var failing = new InputStream() {
+            private int remaining = 50_000;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining-- == 0) {
+                    throw new IOException("Connection reset");
+                }
+
+                return 1;
+            }
+        };
+
+        assertThrows(IOException.class, () -> BinaryHandlers.ofBinaryResult(1000, directory).handle(failing, -1));
+        assertEquals(0, directory.toFile().list().length);
+    }
+
+    @Test
+    void testPoolIsBounded() {
+        var pool = new BufferPool.Builder()
+                .maxRetainedBytes(8 * 1024)
+                .build();
+
+        var first = pool.acquire(4 * 1024);
+        var second = pool.acquire(4 * 1024);
+        var third = pool.acquire(4 * 1024);
+
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+
+        assertEquals(8 * 1024, pool.getRetainedBytes());
+        assertSame(first, pool.acquire(1000));
+    }
+
+    @Test
+    void testOversizedBufferIsNotRounded() {
+        var pool = new BufferPool.Builder()
+                .maxBufferSize(64 * 1024)
+                .build();
+
+        var buffer = pool.acquire(100_000);
+        assertEquals(100_000, buffer.capacity());
+
+        pool.release(buffer);
+        assertEquals(0, pool.getRetainedBytes());
+    }
+
+    private static byte[] content(int size) {
+        var bytes = new byte[size];
+
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) i;
+        }
+
+        return bytes;
+    }
+
+    private static InputStream slowStream(byte[] body) {
+        return new ByteArrayInputStream(body) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1000));
+            }
+        };
+    }
+}
@@ -0,0 +1,98 @@
+package io.apistax.client;
+
+import io.apistax.models.GeocodeResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestBulkGeocoder {
+
+    @Test
+    void testCsvInInputOrderWithDeduplication() throws Exception {
+        var client = new CountingClient();
+        var geocoder = new BulkGeocoder.Builder()
+                .client(client)
+                .format(BulkGeocoder.Format.CSV)
+                .queryFields("street", "city")
+                .idField("id")
+                .parallelism(4)
+                .build();
+
+        var input = "id,street,city\n" +
+                "1,Heldenplatz,Wien\n" +
+                "2,\"Heldenplatz \",\"WIEN\"\n" +
+                "3,,\n" +
+                "4,\"Stephansplatz, 1\",Wien\n";
+        var output = new StringWriter();
+
+        var summary = geocoder.run(new StringReader(input), output);
+
+        assertEquals(4, summary.getRows());
+        assertEquals(2, summary.getGeocoded());
+        assertEquals(1, summary.getDeduplicated());
+        assertEquals(3, summary.getCount(BulkGeocoder.Status.OK));
+        assertEquals(1, summary.getCount(BulkGeocoder.Status.EMPTY));
+        assertEquals(2, client.calls.get());
+
+        var lines = output.toString().lines().toList();
+        assertEquals(4, lines.size());
+
+        for (int i = 0; i < lines.size(); i++) {
+            assertTrue(lines.get(i).startsWith("{\"row\":" + (i + 1) + ",\"id\":\"" + (i + 1) + "\""));
+        }
+
+        assertTrue(lines.get(3).contains("\"query\":\"Stephansplatz, 1, Wien\""));
+    }
+
+    @Test
+    void testCheckpointResume(@TempDir Path directory) throws Exception {
+        var input = directory.resolve("addresses.jsonl");
+        var output = directory.resolve("results.jsonl");
+        var checkpoint = directory.resolve("results.checkpoint");
+
+        Files.write(input, List.of("{\"query\":\"a\"}", "{\"query\":\"b\"}", "{\"query\":\"c\"}"));
+        Files.writeString(output, "{\"row\":1}\n{\"row\":2,\"status\":\"incompl");
+        Files.writeString(checkpoint, "1 10\n");
+
+        var geocoder = new BulkGeocoder.Builder()
+                .client(new CountingClient())
+                .checkpoint(checkpoint)
+                .build();
+
+        var summary = geocoder.run(input, output);
+
+        assertEquals(1, summary.getSkipped());
+        assertEquals(2, summary.getRows());
+
+        var lines = Files.readAllLines(output);
+        assertEquals(3, lines.size());
+        assertEquals("{\"row\":1}", lines.get(0));
+        assertTrue(lines.get(1).startsWith("{\"row\":2,"));
+        assertTrue(lines.get(2).startsWith("{\"row\":3,"));
+        assertEquals("3 " + Files.size(output), Files.readString(checkpoint).strip());
+    }
+
+    @Test
+    void testNormalize() {
+        assertEquals("heldenplatz, 1010 wien", BulkGeocoder.normalize("  Heldenplatz ,1010   WIEN "));
+    }
+
+    private static class CountingClient extends APIstaxClientMock {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public GeocodeResult geocodeSearch(String query) throws APIstaxException {
+            calls.incrementAndGet();
+            return super.geocodeSearch(query);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package io.apistax.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestConcurrencyLimiter {
+
+    private static final String ENDPOINT = "/v1/vat-verification";
+    private static final long MILLIS = 1_000_000;
+
+    @Test
+    void testVegasGrowsWhileLatencyIsStable() throws Exception {
+        var limiter = new ConcurrencyLimiter.Builder()
+                .initialLimit(4)
+                .build();
+
+        for (int round = 0; round < 10; round++) {
+            runRound(limiter, limiter.getLimit(ENDPOINT), 10 * MILLIS, 200);
+        }
+
+        assertTrue(limiter.getLimit(ENDPOINT) > 4);
+
+        var stats = limiter.getStats().get(ENDPOINT);
+        assertEquals(Duration.ofMillis(10), stats.getMinRtt());
+        assertEquals(0, stats.getInFlight());
+        assertEquals(0, stats.getOverloads());
+    }
+
+    @Test
+    void testVegasShrinksWhenLatencyRises() throws Exception {
+        var limiter = new ConcurrencyLimiter.Builder()
+                .initialLimit(20)
+                .build();
+
+        runRound(limiter, 20, 10 * MILLIS, 200);
+        var limit = limiter.getLimit(ENDPOINT);
+
+        for (int round = 0; round < 5; round++) {
+            runRound(limiter, limiter.getLimit(ENDPOINT), 100 * MILLIS, 200);
+        }
+
+        assertTrue(limiter.getLimit(ENDPOINT) < limit);
+    }
+
+    @Test
+    void testOverloadCutsLimit() throws Exception {
+        var limiter = new ConcurrencyLimiter.Builder()
+                .algorithm(ConcurrencyLimiter.Algorithm.AIMD)
+                .initialLimit(10)
+                .limits(2, 10)
+                .backoffRatio(0.5)
+                .build();
+
+        runRound(limiter, 1, 10 * MILLIS, 503);
+        assertEquals(5, limiter.getLimit(ENDPOINT));
+
+        runRound(limiter, 1, 10 * MILLIS, 429);
+        runRound(limiter, 1, 10 * MILLIS, 429);
+        assertEquals(2, limiter.getLimit(ENDPOINT));
+        assertEquals(3, limiter.getStats().get(ENDPOINT).getOverloads());
+
+        var permit = limiter.acquire(ENDPOINT, new RequestCall(RequestOptions.DEFAULT));
+        permit.onFailure(new TransportException(TransportException.Reason.CANCELLED, null));
+        permit.release();
+        assertEquals(3, limiter.getStats().get(ENDPOINT).getOverloads());
+    }
+
+    @Test
+    void testWaitsAtLimit() throws Exception {
+        var limiter = new ConcurrencyLimiter.Builder()
+                .initialLimit(1)
+                .build();
+
+        var first = limiter.acquire(ENDPOINT, new RequestCall(RequestOptions.DEFAULT));
+        var second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return limiter.acquire(ENDPOINT, new RequestCall(RequestOptions.DEFAULT));
+            } catch (Exception e) {
+                throw new APIstaxException(e);
+            }
+        });
+
+        for (int i = 0; i < 500 && limiter.getStats().get(ENDPOINT).getQueueDepth() < 1; i++) {
+            Thread.sleep(10);
+        }
+
+        assertFalse(second.isDone());
+
+        // other endpoints have their own limit
+        limiter.acquire("/v1/geocode/search", new RequestCall(RequestOptions.DEFAULT)).release();
+
+        first.release();
+        second.get(5, TimeUnit.SECONDS).release();
+
+        assertEquals(0, limiter.getStats().get(ENDPOINT).getInFlight());
+    }
+
+    @Test
+    void testWaitingBoundByDeadline() throws Exception {
+        var limiter = new ConcurrencyLimiter.Builder()
+                .initialLimit(1)
+                .build();
+
+        var permit = limiter.acquire(ENDPOINT, new RequestCall(RequestOptions.DEFAULT));
+        var options = new RequestOptions.Builder()
+                .timeout(Duration.ofMillis(100))
+                .build();
+
+        try (var call = new RequestCall(options)) {
+            limiter.acquire(ENDPOINT, call);
+            fail("No APIstaxException thrown.");
+        } catch (APIstaxException e) {
+            assertEquals("message.timeout", e.getMessages().get(0));
+        }
+
+        assertEquals(0, limiter.getStats().get(ENDPOINT).getQueueDepth());
+
+        permit.release();
+
+        assertEquals(0, limiter.getStats().get(ENDPOINT).getInFlight());
+    }
+
+    /**
+     * Acquire the given number of permits at once and complete them with the given round trip time and status.
+     */
+    private void runRound(ConcurrencyLimiter limiter, int calls, long rttNanos, int statusCode) throws Exception {
+        var permits = new ArrayList<ConcurrencyLimiter.Permit>();
+
+        for (int i = 0; i < calls; i++) {
+            permits.add(limiter.acquire(ENDPOINT, new RequestCall(RequestOptions.DEFAULT)));
+        }
+
+        for (ConcurrencyLimiter.Permit permit : permits) {
+            permit.onResponse(rttNanos, statusCode);
+            permit.release();
+        }
+    }
+}
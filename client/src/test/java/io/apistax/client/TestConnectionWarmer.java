@@ -0,0 +1,55 @@
+package io.apistax.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestConnectionWarmer {
+
+    private APIstaxFakeServer server;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new APIstaxFakeServer.Builder().build().start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    @Test
+    void testWarmUp() throws Exception {
+        var warmer = new ConnectionWarmer(new MethanolTransport(HttpClient.newHttpClient()), HostSelector.of(server.getBaseUrl()), 2,
+                Duration.ofSeconds(60), null);
+
+        warmer.onCall();
+        warmer.warmUp();
+        warmer.onCall();
+
+        var stats = warmer.getStats();
+        assertEquals(1, stats.getWarmUps());
+        assertEquals(2, stats.getProbes());
+        assertEquals(0, stats.getFailedProbes());
+        assertNotNull(stats.getLastWarmUpDuration());
+        assertEquals(1, stats.getColdCalls());
+        assertEquals(1, stats.getWarmCalls());
+        assertEquals(2, server.getStats().get("HEAD /").getRequests());
+    }
+
+    @Test
+    void testKeepAlive() throws Exception {
+        var warmer = new ConnectionWarmer(new MethanolTransport(HttpClient.newHttpClient()), HostSelector.of(server.getBaseUrl()), 1,
+                Duration.ofSeconds(60), Duration.ofMillis(100));
+
+        Thread.sleep(500);
+
+        assertTrue(warmer.getStats().getProbes() >= 2);
+        assertEquals(0, warmer.getStats().getFailedProbes());
+    }
+}
@@ -0,0 +1,85 @@
+package io.apistax.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpRequest;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCracResource {
+
+    @Test
+    void testCheckpointAndRestore() {
+        try (var server = new APIstaxFakeServer.Builder().build().start()) {
+            var transport = new LifecycleTransport();
+            var client = ClientFixtures.builder(server).transport(transport).build();
+            var resource = CracResource.register(client);
+
+            assertTrue(client.verifyVatId("ATU12345678").getValid());
+
+            resource.beforeCheckpoint(null);
+            assertEquals(1, transport.suspends.get());
+            assertEquals(1, resource.getCheckpoints());
+
+            resource.afterRestore(null);
+            assertEquals(1, transport.resumes.get());
+
+            assertTrue(client.verifyVatId("ATU12345678").getValid());
+
+            // the first call after the restore opens a new connection
+            assertEquals(2, client.getConnectionStats().getColdCalls());
+        }
+    }
+
+    @Test
+    void testWarmUpAfterRestore() {
+        try (var server = new APIstaxFakeServer.Builder().build().start()) {
+            var client = ClientFixtures.builder(server).transport(new LifecycleTransport()).build();
+            var resource = CracResource.register(client, true);
+
+            client.verifyVatId("ATU12345678");
+            resource.beforeCheckpoint(null);
+            resource.afterRestore(null);
+
+            assertNotNull(resource.getLastRestoreDuration());
+            assertEquals(1, client.getConnectionStats().getWarmUps());
+
+            assertTrue(client.verifyVatId("ATU12345678").getValid());
+
+            // the connection opened by the warm-up serves the first call, only the call before the checkpoint was cold
+            assertEquals(1, client.getConnectionStats().getWarmCalls());
+            assertEquals(1, client.getConnectionStats().getColdCalls());
+        }
+    }
+
+    @Test
+    void testMockIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> CracResource.register(new APIstaxClientMock()));
+    }
+
+    private static class LifecycleTransport implements APIstaxTransport {
+
+        private final MethanolTransport delegate = new MethanolTransport();
+        private final AtomicInteger suspends = new AtomicInteger();
+        private final AtomicInteger resumes = new AtomicInteger();
+
+        @Override
+        public CompletableFuture<Response> sendAsync(HttpRequest request) {
+            return delegate.sendAsync(request);
+        }
+
+        @Override
+        public void suspend() {
+            suspends.incrementAndGet();
+            delegate.suspend();
+        }
+
+        @Override
+        public void resume() {
+            resumes.incrementAndGet();
+            delegate.resume();
+        }
+    }
+}
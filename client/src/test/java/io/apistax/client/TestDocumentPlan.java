@@ -0,0 +1,118 @@
+package io.apistax.client;
+
+import io.apistax.models.BarcodePayload;
+import io.apistax.models.InvoicePayload;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestDocumentPlan {
+
+    private static final APIstaxFakeServer.LatencyDistribution LATENCY =
+            APIstaxFakeServer.LatencyDistribution.fixed(Duration.ofMillis(300));
+
+    @Test
+    void testParallelAndChained() {
+        try (var server = new APIstaxFakeServer.Builder().latency(LATENCY).build().start()) {
+            var client = ClientFixtures.create(server);
+
+            // every independent call waits until the others started, which only succeeds if they run in parallel
+            var started = new CountDownLatch(3);
+            var overlapping = new AtomicInteger();
+
+            var builder = new DocumentPlan.Builder().timeout(Duration.ofSeconds(10));
+            var invoice = builder.artifact("invoice", c -> awaitOthers(started, overlapping,
+                    () -> c.generateInvoicePdf(new InvoicePayload())));
+            var archive = builder.artifact("archive", invoice, (c, pdf) -> c.convertPdfToPdfA(new ByteArrayInputStream(pdf)));
+            var cover = builder.artifact("cover", c -> awaitOthers(started, overlapping,
+                    () -> c.convertHtmlToPdf("<h1>Cover</h1>")));
+            var barcode = builder.artifact("barcode", c -> awaitOthers(started, overlapping,
+                    () -> c.generateBarcode(new BarcodePayload())));
+
+            var result = builder.build().execute(client);
+
+            assertTrue(result.get(invoice).length > 0);
+            assertTrue(result.get(archive).length > 0);
+            assertTrue(result.get(cover).length > 0);
+            assertTrue(result.get(barcode).length > 0);
+            assertTrue(result.getDuration(archive).toMillis() >= 300);
+            assertEquals(3, overlapping.get());
+            assertEquals(1, server.getStats().get("POST /v1/pdf-to-pdf-a").getRequests());
+        }
+    }
+
+    @Test
+    void testFailureCancelsOtherCalls() {
+        try (var server = new APIstaxFakeServer.Builder()
+                .latency(APIstaxFakeServer.LatencyDistribution.fixed(Duration.ofSeconds(10)))
+                .endpoint("/v1/barcode", endpoint -> endpoint
+                        .latency(APIstaxFakeServer.LatencyDistribution.none())
+                        .errorRate(400, 1))
+                .build()
+                .start()) {
+            var client = ClientFixtures.create(server);
+
+            var builder = new DocumentPlan.Builder();
+            var invoice = builder.artifact("invoice", c -> c.generateInvoicePdf(new InvoicePayload()));
+            builder.artifact("archive", invoice, (c, pdf) -> c.convertPdfToPdfA(new ByteArrayInputStream(pdf)));
+            builder.artifact("barcode", c -> c.generateBarcode(new BarcodePayload()));
+            var plan = builder.build();
+
+            var start = System.nanoTime();
+            assertThrows(InvalidRequestException.class, () -> plan.execute(client));
+            assertTrue(System.nanoTime() - start < 5_000_000_000L);
+            assertNull(server.getStats().get("POST /v1/pdf-to-pdf-a"));
+        }
+    }
+
+    @Test
+    void testTimeout() {
+        try (var server = new APIstaxFakeServer.Builder()
+                .latency(APIstaxFakeServer.LatencyDistribution.fixed(Duration.ofSeconds(10)))
+                .build()
+                .start()) {
+            var builder = new DocumentPlan.Builder().timeout(Duration.ofMillis(200));
+            builder.artifact("invoice", c -> c.generateInvoicePdf(new InvoicePayload()));
+
+            var client = ClientFixtures.create(server);
+
+            var start = System.nanoTime();
+            var exception = assertThrows(TransportException.class, () -> builder.build().execute(client));
+            assertEquals(TransportException.Reason.TIMEOUT, exception.getReason());
+            assertTrue(System.nanoTime() - start < 5_000_000_000L);
+        }
+    }
+
+    @Test
+    void testForeignInput() {
+        var other = new DocumentPlan.Builder().artifact("invoice", c -> c.generateInvoicePdf(new InvoicePayload()));
+        var builder = new DocumentPlan.Builder();
+
+        assertThrows(IllegalArgumentException.class, () -> builder.artifact("archive", other,
+                (c, pdf) -> c.convertPdfToPdfA(new ByteArrayInputStream(pdf))));
+
+        builder.artifact("invoice", c -> c.generateInvoicePdf(new InvoicePayload()));
+        assertThrows(IllegalArgumentException.class, () -> builder.artifact("invoice", c -> new byte[0]));
+    }
+
+    private static <T> T awaitOthers(CountDownLatch started, AtomicInteger overlapping, Supplier<T> call) {
+        started.countDown();
+
+        try {
+            if (started.await(5, TimeUnit.SECONDS)) {
+                overlapping.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return call.get();
+    }
+}
@@ -0,0 +1,108 @@
+package io.apistax.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestGeocodeTypeaheadSession {
+
+    private static final String GEOCODE_SEARCH = "POST /v1/geocode/search";
+
+    @Test
+    void testDebounceAndPrefixReuse() throws Exception {
+        try (var server = new APIstaxFakeServer.Builder().build().start();
+             var session = new GeocodeTypeaheadSession.Builder()
+                     .client(ClientFixtures.create(server))
+                     .debounce(Duration.ofMillis(100))
+                     .build()) {
+            assertNull(session.update("St").get(1, TimeUnit.SECONDS));
+
+            var first = session.update("Str");
+            var second = session.update("Stre");
+            var last = session.update("Street");
+
+            assertEquals("1010", last.get(5, TimeUnit.SECONDS).getAddress().getPostalCode());
+            assertTrue(first.isCancelled());
+            assertTrue(second.isCancelled());
+            assertEquals(1, server.getStats().get(GEOCODE_SEARCH).getRequests());
+
+            // the result of "street" already matches these inputs
+            assertTrue(session.update("Street 1").isDone());
+            assertTrue(session.update("Street 1, Ci").isDone());
+            assertEquals("City", session.update("street 1, 1010 city").get().getAddress().getCity());
+
+            // "vienna" is not part of the address and needs another lookup
+            assertFalse(session.update("Street 1, Vienna").isDone());
+            assertTrue(session.update("Street").isDone());
+
+            var stats = session.getStats();
+            assertEquals(9, stats.getUpdates());
+            assertEquals(1, stats.getLookups());
+            assertEquals(4, stats.getSessionHits());
+            assertEquals(3, stats.getSuperseded());
+        }
+    }
+
+    @Test
+    void testSupersededLookupIsAborted() throws Exception {
+        try (var server = new APIstaxFakeServer.Builder()
+                .latency(APIstaxFakeServer.LatencyDistribution.fixed(Duration.ofMillis(500)))
+                .build()
+                .start();
+             var session = new GeocodeTypeaheadSession.Builder()
+                     .client(ClientFixtures.create(server))
+                     .debounce(Duration.ofMillis(20))
+                     .build()) {
+            var first = session.update("Vienna");
+
+            // supersede the first lookup only once the server received it
+            for (int i = 0; i < 500 && !server.getStats().containsKey(GEOCODE_SEARCH); i++) {
+                Thread.sleep(10);
+            }
+
+            assertFalse(first.isDone());
+            var second = session.update("Vienna, Austria");
+
+            assertNotNull(second.get(5, TimeUnit.SECONDS));
+            assertTrue(first.isCancelled());
+            assertEquals(2, session.getStats().getLookups());
+        }
+    }
+
+    @Test
+    void testExecutor() throws Exception {
+        var executed = new AtomicInteger();
+
+        try (var server = new APIstaxFakeServer.Builder().build().start();
+             var session = new GeocodeTypeaheadSession.Builder()
+                     .client(ClientFixtures.create(server))
+                     .debounce(Duration.ofMillis(20))
+                     .executor(runnable -> {
+                         executed.incrementAndGet();
+                         ForkJoinPool.commonPool().execute(runnable);
+                     })
+                     .build()) {
+            assertNotNull(session.update("Stephansplatz").get(5, TimeUnit.SECONDS));
+            assertEquals(1, executed.get());
+        }
+    }
+
+    @Test
+    void testClose() {
+        var session = new GeocodeTypeaheadSession.Builder()
+                .client(new APIstaxClient.Builder().apiKey("API_KEY").build())
+                .debounce(Duration.ofSeconds(10))
+                .build();
+
+        var future = session.update("Stephansplatz");
+        session.close();
+
+        assertTrue(future.isCancelled());
+        assertThrows(IllegalStateException.class, () -> session.update("Stephansplatz 1"));
+    }
+}
@@ -0,0 +1,124 @@
+package io.apistax.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestHostSelector {
+
+    private static final String VAT_VERIFICATION = "POST /v1/vat-verification";
+
+    @Test
+    void testPrefersFasterHost() {
+        try (var fast = new APIstaxFakeServer.Builder().build().start();
+             var slow = new APIstaxFakeServer.Builder()
+                     .latency(APIstaxFakeServer.LatencyDistribution.fixed(Duration.ofMillis(100)))
+                     .build()
+                     .start()) {
+            // the first call in the JVM is slow in itself, it would take the measurement of its host up
+            new APIstaxClient.Builder().apiKey("API_KEY").host(fast.getBaseUrl()).build().verifyVatId("ATU12345678");
+            fast.resetStats();
+
+            var client = new APIstaxClient.Builder()
+                    .apiKey("API_KEY")
+                    .hosts(slow.getBaseUrl(), fast.getBaseUrl())
+                    .build();
+
+            for (int i = 0; i < 20; i++) {
+                client.verifyVatId("ATU12345678");
+            }
+
+            // the slow host is only tried until it was measured
+            var slowStats = slow.getStats().get(VAT_VERIFICATION);
+            assertTrue(slowStats == null || slowStats.getRequests() <= 1);
+            assertTrue(fast.getStats().get(VAT_VERIFICATION).getRequests() >= 19);
+        }
+    }
+
+    @Test
+    void testFailover() {
+        try (var server = new APIstaxFakeServer.Builder().build().start()) {
+            var selector = new HostSelector.Builder()
+                    .hosts("http://localhost:1", server.getBaseUrl())
+                    .build();
+
+            var client = new APIstaxClient.Builder()
+                    .apiKey("API_KEY")
+                    .hostSelector(selector)
+                    .build();
+
+            for (int i = 0; i < 5; i++) {
+                assertTrue(client.verifyVatId("ATU12345678").getValid());
+            }
+
+            var stats = selector.getStats();
+            assertEquals(1, stats.get(0).getFailures());
+            assertTrue(stats.get(0).isEjected());
+            assertEquals(0, stats.get(1).getFailures());
+            assertEquals(5, stats.get(1).getCalls());
+        }
+    }
+
+    @Test
+    void testEjection() throws Exception {
+        var selector = new HostSelector.Builder()
+                .hosts("https://a.example.com", "https://b.example.com")
+                .failureThreshold(2)
+                .ejection(Duration.ofMillis(100), Duration.ofSeconds(1))
+                .build();
+
+        var a = selector.getHosts().get(0);
+        var b = selector.getHosts().get(1);
+
+        respond(a, 10, 503);
+        assertFalse(selector.getStats().get(0).isEjected());
+
+        respond(a, 10, 503);
+        assertTrue(selector.getStats().get(0).isEjected());
+
+        for (int i = 0; i < 10; i++) {
+            assertSame(b, selector.select(List.of()));
+        }
+
+        // the other host is used if it was tried already, and an ejected one if nothing else is left
+        assertSame(a, selector.select(List.of(b)));
+
+        b.onStart();
+        b.onFailure(new ConnectException("Connection refused"), 0);
+        assertTrue(selector.getStats().get(1).isEjected());
+        assertSame(a, selector.select(List.of()));
+
+        Thread.sleep(150);
+        assertFalse(selector.getStats().get(0).isEjected());
+        assertNull(selector.select(List.of(a, b)));
+    }
+
+    @Test
+    void testPendingCalls() {
+        var selector = new HostSelector.Builder()
+                .hosts("https://a.example.com", "https://b.example.com")
+                .build();
+
+        var a = selector.getHosts().get(0);
+        var b = selector.getHosts().get(1);
+
+        respond(a, 10, 200);
+        respond(b, 15, 200);
+        assertSame(a, selector.select(List.of()));
+
+        // the faster host is avoided once calls pile up on it
+        a.onStart();
+        a.onStart();
+        assertSame(b, selector.select(List.of()));
+        assertEquals(2, selector.getStats().get(0).getPending());
+    }
+
+    private static void respond(HostSelector.Host host, long millis, int statusCode) {
+        host.onStart();
+        host.onResponse(Duration.ofMillis(millis).toNanos(), statusCode);
+    }
+}
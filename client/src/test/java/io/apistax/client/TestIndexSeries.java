@@ -0,0 +1,85 @@
+package io.apistax.client;
+
+import io.apistax.models.Index;
+import io.apistax.models.IndexFrequency;
+import io.apistax.models.IndexResult;
+import io.apistax.models.IndexValue;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestIndexSeries {
+
+    @Test
+    void testLookup() {
+        var series = new APIstaxClientMock().fetchIndexSeries(Index.AT_CPI_2020, IndexFrequency.MONTHLY);
+
+        assertEquals(120, series.size());
+        assertEquals(2000, series.getYear(0));
+        assertEquals(1, series.getMonth(0));
+        assertEquals(2009, series.getYear(119));
+        assertEquals(12, series.getMonth(119));
+        assertEquals(103.5f, series.getValue(2003, 6), 0.0001f);
+        assertEquals(-1, series.indexOf(2010, 1));
+        assertTrue(Float.isNaN(series.getValue(1999, 12)));
+    }
+
+    @Test
+    void testUnsortedValuesWithGaps() {
+        var result = new IndexResult()
+                .frequency(IndexFrequency.YEARLY)
+                .addValuesItem(new IndexValue().year(2022).value(110f))
+                .addValuesItem(new IndexValue().year(2020).value(100f));
+
+        var series = IndexSeries.of(result);
+
+        assertEquals(3, series.size());
+        assertEquals(100f, series.getValue(0));
+        assertTrue(Float.isNaN(series.getValue(2021, 0)));
+        assertEquals(110f, series.getValue(2022, 0));
+    }
+
+    @Test
+    void testThresholdCrossing() {
+        var series = new APIstaxClientMock().fetchIndexSeries(Index.AT_CPI_2020, IndexFrequency.MONTHLY);
+
+        var base = series.indexOf(2000, 1);
+        var crossing = series.findThresholdCrossing(base, 0.05);
+
+        assertEquals(2004, series.getYear(crossing));
+        assertEquals(12, series.getMonth(crossing));
+        assertEquals(-1, series.findThresholdCrossing(base, 0.5));
+    }
+
+    @Test
+    void testRebase() {
+        var series = new APIstaxClientMock().fetchIndexSeries(Index.AT_CPI_2015, IndexFrequency.MONTHLY);
+
+        var rebased = series.rebase(2005);
+        var sum = 0d;
+
+        for (int month = 1; month <= 12; month++) {
+            sum += rebased.getValue(2005, month);
+        }
+
+        assertEquals(100, sum / 12, 0.001);
+        assertEquals(100f, series.rebase(2003, 6).getValue(2003, 6), 0.0001f);
+    }
+
+    @Test
+    void testAdjust() {
+        var series = new APIstaxClientMock().fetchIndexSeries(Index.AT_CPI_2020, IndexFrequency.YEARLY);
+
+        var amounts = new double[]{1000, 2000};
+        var result = new double[2];
+
+        series.adjust(amounts, series.indexOf(2000, 0), series.indexOf(2009, 0), result);
+        assertEquals(1090, result[0], 0.001);
+        assertEquals(2180, result[1], 0.001);
+
+        var baseIndexes = new int[]{series.indexOf(2000, 0), series.indexOf(2009, 0)};
+        series.adjust(amounts, baseIndexes, series.indexOf(2009, 0), amounts);
+        assertEquals(1090, amounts[0], 0.001);
+        assertEquals(2000, amounts[1], 0.001);
+    }
+}
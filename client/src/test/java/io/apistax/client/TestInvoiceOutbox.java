@@ -0,0 +1,170 @@
+package io.apistax.client;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import io.apistax.models.InvoicePayload;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@WireMockTest
+public class TestInvoiceOutbox {
+
+    @Test
+    void testGenerate(WireMockRuntimeInfo runtimeInfo, @TempDir Path directory) throws Exception {
+        runtimeInfo.getWireMock().register(WireMock.post("/v2/invoice-pdf")
+                .willReturn(WireMock.ok().withBody("INVOICE_PDF").withHeader("Content-Type", "application/pdf")));
+
+        var destination = directory.resolve("invoices");
+
+        try (var outbox = createOutbox(runtimeInfo, directory, destination)) {
+            outbox.enqueueInvoicePdf("2024-001", new InvoicePayload());
+            outbox.enqueueInvoicePdf("2024-002", new InvoicePayload());
+
+            assertTrue(outbox.awaitEmpty(Duration.ofSeconds(10)));
+
+            var stats = outbox.getStats();
+            assertEquals(0, stats.getQueueDepth());
+            assertEquals(2, stats.getCompleted());
+            assertEquals(0, stats.getFailed());
+        }
+
+        assertEquals("INVOICE_PDF", Files.readString(destination.resolve("2024-001.pdf")));
+        assertEquals("INVOICE_PDF", Files.readString(destination.resolve("2024-002.pdf")));
+
+        try (var files = Files.list(destination)) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test
+    void testFailure(WireMockRuntimeInfo runtimeInfo, @TempDir Path directory) throws Exception {
+        runtimeInfo.getWireMock().register(WireMock.post("/v2/invoice-pdf")
+                .willReturn(WireMock.aResponse().withBody("{\"messages\":[\"message.invalidIban\"]}").withStatus(400)));
+
+        var destination = directory.resolve("invoices");
+
+        try (var outbox = createOutbox(runtimeInfo, directory, destination)) {
+            outbox.enqueueInvoicePdf("2024-001", new InvoicePayload());
+
+            assertTrue(outbox.awaitEmpty(Duration.ofSeconds(10)));
+            assertEquals(1, outbox.getStats().getFailed());
+            assertEquals(0, outbox.getStats().getRetries());
+        }
+
+        assertFalse(Files.exists(destination.resolve("2024-001.pdf")));
+        assertEquals("400 message.invalidIban\n", Files.readString(destination.resolve("2024-001.error")));
+    }
+
+    @Test
+    void testInvalidKey(WireMockRuntimeInfo runtimeInfo, @TempDir Path directory) throws Exception {
+        try (var outbox = createOutbox(runtimeInfo, directory, directory.resolve("invoices"))) {
+            assertThrows(IllegalArgumentException.class, () -> outbox.enqueueInvoicePdf("../2024-001", new InvoicePayload()));
+        }
+    }
+
+    @Test
+    void testJournalRecovery(@TempDir Path directory) throws IOException {
+        OutboxJournal.Entry first;
+
+        try (var journal = new OutboxJournal(directory, 4096)) {
+            first = journal.append((byte) 1, "first", bytes("payload 1"));
+            journal.append((byte) 2, "second", bytes("payload 2"));
+            journal.complete(first);
+        }
+
+        try (var journal = new OutboxJournal(directory, 4096)) {
+            var pending = journal.getPending();
+
+            assertEquals(1, pending.size());
+            assertEquals("second", pending.get(0).getKey());
+            assertEquals(2, pending.get(0).getType());
+            assertEquals("payload 2", new String(journal.read(pending.get(0)), StandardCharsets.UTF_8));
+
+            var third = journal.append((byte) 1, "third", bytes("payload 3"));
+            assertTrue(third.getId() > pending.get(0).getId());
+        }
+    }
+
+    @Test
+    void testJournalCompaction(@TempDir Path directory) throws IOException {
+        var payload = new byte[500];
+
+        try (var journal = new OutboxJournal(directory, 4096)) {
+            var straggler = journal.append((byte) 1, "straggler", payload);
+
+            for (int i = 0; i < 40; i++) {
+                journal.complete(journal.append((byte) 1, "entry-" + i, payload));
+            }
+
+            // the straggler is copied forward, so processed segments don't pile up
+            assertTrue(journal.getSegmentCount() <= 2);
+            assertEquals(1, journal.getPendingCount());
+            assertEquals(500, journal.read(straggler).length);
+        }
+
+        try (var journal = new OutboxJournal(directory, 4096)) {
+            assertEquals(1, journal.getPendingCount());
+            assertEquals("straggler", journal.getPending().get(0).getKey());
+        }
+    }
+
+    @Test
+    void testJournalTornRecord(@TempDir Path directory) throws IOException {
+        try (var journal = new OutboxJournal(directory, 4096)) {
+            journal.append((byte) 1, "first", bytes("payload 1"));
+            journal.append((byte) 1, "second", bytes("payload 2"));
+        }
+
+        // corrupt the last byte of the second record's payload, as if the write was interrupted
+        try (var files = Files.list(directory)) {
+            var segment = files.filter(file -> file.toString().endsWith(".segment")).findFirst().orElseThrow();
+            var content = Files.readAllBytes(segment);
+            var end = new String(content, StandardCharsets.ISO_8859_1).indexOf("payload 2") + 8;
+            content[end] = 0;
+            Files.write(segment, content);
+        }
+
+        try (var journal = new OutboxJournal(directory, 4096)) {
+            assertEquals(1, journal.getPendingCount());
+            assertEquals("first", journal.getPending().get(0).getKey());
+        }
+    }
+
+    @Test
+    void testJournalLocked(@TempDir Path directory) throws IOException {
+        try (var journal = new OutboxJournal(directory, 4096)) {
+            assertThrows(IOException.class, () -> new OutboxJournal(directory, 4096));
+        }
+
+        try (var journal = new OutboxJournal(directory, 4096)) {
+            assertEquals(0, journal.getPendingCount());
+        }
+    }
+
+    private InvoiceOutbox createOutbox(WireMockRuntimeInfo runtimeInfo, Path directory, Path destination) throws IOException {
+        var client = new APIstaxClient.Builder()
+                .apiKey("API_KEY")
+                .host(runtimeInfo.getHttpBaseUrl())
+                .build();
+
+        return new InvoiceOutbox.Builder()
+                .client(client)
+                .journal(directory.resolve("journal"))
+                .destination(destination)
+                .backoff(Duration.ofMillis(10), Duration.ofMillis(100))
+                .build();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,186 @@
+package io.apistax.client;
+
+import io.apistax.models.Index;
+import io.apistax.models.IndexFrequency;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestLookupCache {
+
+    private static final String VAT_VERIFICATION = "POST /v1/vat-verification";
+    private static final String GEOCODE_SEARCH = "POST /v1/geocode/search";
+
+    @Test
+    void testSharedBetweenNodes(@TempDir Path directory) throws Exception {
+        try (var server = new APIstaxFakeServer.Builder().build().start();
+             var shared = new FileResultCache.Builder().directory(directory).build()) {
+            var first = new LookupCache.Builder().shared(shared).build();
+            var second = new LookupCache.Builder().shared(shared).build();
+            var firstNode = ClientFixtures.builder(server).lookupCache(first).build();
+            var secondNode = ClientFixtures.builder(server).lookupCache(second).build();
+
+            var result = firstNode.verifyVatId("ATU12345678");
+            assertEquals("ACME Company", result.getName());
+            assertEquals("ACME Company", firstNode.verifyVatId("ATU12345678").getName());
+            assertEquals(48.208101, firstNode.geocodeSearch("Stephansplatz 1, Wien").getPosition().getLatitude(), 1e-9);
+
+            // the shared cache is written asynchronously
+            awaitFiles(directory, 2);
+
+            assertEquals(true, secondNode.verifyVatId("ATU12345678").getValid());
+            assertEquals("1010", secondNode.geocodeSearch("Stephansplatz 1, Wien").getAddress().getPostalCode());
+            assertEquals("Street", secondNode.geocodeSearch("Stephansplatz 1, Wien").getAddress().getStreet());
+
+            assertEquals(1, server.getStats().get(VAT_VERIFICATION).getRequests());
+            assertEquals(1, server.getStats().get(GEOCODE_SEARCH).getRequests());
+
+            assertEquals(1, first.getStats().getMemoryHits());
+            assertEquals(2, first.getStats().getMisses());
+            assertEquals(2, second.getStats().getSharedHits());
+            assertEquals(1, second.getStats().getMemoryHits());
+            assertEquals(0, second.getStats().getMisses());
+
+            // other lookups are not served from the cache
+            secondNode.verifyVatId("ATU87654321");
+            assertEquals(2, server.getStats().get(VAT_VERIFICATION).getRequests());
+        }
+    }
+
+    @Test
+    void testIndex() throws Exception {
+        try (var server = new APIstaxFakeServer.Builder().build().start()) {
+            var cache = new LookupCache.Builder().build();
+            var client = ClientFixtures.builder(server).lookupCache(cache).build();
+
+            var monthly = client.fetchIndex(Index.values()[0], IndexFrequency.MONTHLY);
+            var cached = client.fetchIndex(Index.values()[0], IndexFrequency.MONTHLY);
+            client.fetchIndex(Index.values()[0], IndexFrequency.YEARLY);
+
+            assertEquals(120, cached.getValues().size());
+            assertEquals(monthly.getValues().get(13).getValue(), cached.getValues().get(13).getValue());
+            assertEquals(monthly.getValues().get(13).getMonth(), cached.getValues().get(13).getMonth());
+            assertEquals(1, cache.getStats().getMemoryHits());
+            assertEquals(2, cache.getStats().getMisses());
+
+            // both results take less memory than the JSON of the monthly one
+            var json = APIstaxClientImpl.createObjectMapper().writeValueAsBytes(monthly);
+            assertTrue(cache.getStats().getMemoryBytes() < json.length, cache.getStats().toString());
+        }
+    }
+
+    @Test
+    void testMemoryEviction() {
+        try (var server = new APIstaxFakeServer.Builder().build().start()) {
+            var cache = new LookupCache.Builder().memorySize(200).build();
+            var client = ClientFixtures.builder(server).lookupCache(cache).build();
+
+            for (int i = 0; i < 10; i++) {
+                client.verifyVatId("ATU1234567" + i);
+            }
+
+            assertTrue(cache.getStats().getMemoryBytes() <= 200);
+            assertTrue(cache.getStats().getMemoryEntries() < 10);
+
+            // the most recent result is kept
+            client.verifyVatId("ATU12345679");
+            assertEquals(1, cache.getStats().getMemoryHits());
+        }
+    }
+
+    @Test
+    void testFailingSharedCache() {
+        var failing = new ResultCache() {
+            @Override
+            public CompletableFuture<byte[]> get(String key) {
+                return CompletableFuture.failedFuture(new IllegalStateException("unavailable"));
+            }
+
+            @Override
+            public CompletableFuture<Void> put(String key, byte[] value, Duration ttl) {
+                return new CompletableFuture<>();
+            }
+        };
+
+        try (var server = new APIstaxFakeServer.Builder().build().start()) {
+            var cache = new LookupCache.Builder().memorySize(0).shared(failing).build();
+            var client = ClientFixtures.builder(server).lookupCache(cache).build();
+
+            assertTrue(client.verifyVatId("ATU12345678").getValid());
+            assertTrue(client.verifyVatId("ATU12345678").getValid());
+
+            assertEquals(2, server.getStats().get(VAT_VERIFICATION).getRequests());
+            assertEquals(2, cache.getStats().getSharedErrors());
+        }
+    }
+
+    @Test
+    void testCorruptedSharedValue(@TempDir Path directory) throws Exception {
+        try (var shared = new FileResultCache.Builder().directory(directory).build()) {
+            var key = "apistax:1:/v1/vat-verification {\"vatId\":\"ATU12345678\"}";
+            // a valid expiry followed by an object with more properties than encoded
+            var value = ByteBuffer.allocate(11).putLong(Long.MAX_VALUE).put(new byte[]{1, 9, 'x'}).array();
+            shared.put(key, value, Duration.ofMinutes(1)).get();
+            assertArrayEquals(value, shared.get(key).get());
+            assertNull(shared.get("other").get());
+
+            try (var server = new APIstaxFakeServer.Builder().build().start()) {
+                var cache = new LookupCache.Builder().shared(shared).build();
+                var client = ClientFixtures.builder(server).lookupCache(cache).build();
+                assertEquals("ACME Company", client.verifyVatId("ATU12345678").getName());
+                assertEquals(1, cache.getStats().getMisses());
+                assertEquals(1, cache.getStats().getSharedErrors());
+            }
+        }
+    }
+
+    @Test
+    void testExpiry(@TempDir Path directory) throws Exception {
+        try (var shared = new FileResultCache.Builder().directory(directory).build()) {
+            shared.put("expired", "value".getBytes(StandardCharsets.UTF_8), Duration.ofMillis(1)).get();
+            shared.put("fresh", "value".getBytes(StandardCharsets.UTF_8), Duration.ofMinutes(1)).get();
+            Thread.sleep(10);
+
+            assertNull(shared.get("expired").get());
+            assertNotNull(shared.get("fresh").get());
+            assertEquals(1, shared.purgeExpired());
+            assertNotNull(shared.get("fresh").get());
+        }
+    }
+
+    @Test
+    void testCodec() throws Exception {
+        var objectMapper = APIstaxClientImpl.createObjectMapper();
+        var json = "{\"a\":[{\"name\":\"ä \\\"€\\\" 😀\",\"n\":-1},{\"name\":null,\"n\":9223372036854775807}]," +
+                "\"d\":48.208101,\"f\":true,\"e\":[],\"o\":{},\"big\":123456789012345678901234567890}";
+        var tree = objectMapper.readTree(json);
+        var encoded = ResultCodec.encode(tree);
+
+        assertEquals(tree, ResultCodec.decode(encoded, 0, encoded.length));
+        assertTrue(encoded.length < json.length());
+        assertThrows(IOException.class, () -> ResultCodec.decode(encoded, 0, encoded.length - 3));
+    }
+
+    private static void awaitFiles(Path directory, int count) throws Exception {
+        for (int i = 0; i < 100; i++) {
+            try (var files = Files.walk(directory)) {
+                if (files.filter(Files::isRegularFile).filter(path -> !path.toString().endsWith(".tmp")).count() >= count) {
+                    return;
+                }
+            }
+
+            Thread.sleep(10);
+        }
+
+        fail("The shared cache wasn't written");
+    }
+}
@@ -0,0 +1,161 @@
+package io.apistax.client;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import io.apistax.models.InvoicePayload;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@WireMockTest
+public class TestReplayTransport {
+
+    @Test
+    void testRecordAndReplay(WireMockRuntimeInfo runtimeInfo, @TempDir Path directory) throws Exception {
+        runtimeInfo.getWireMock().register(WireMock.post("/v1/vat-verification")
+                .withRequestBody(WireMock.containing("ATU11111111"))
+                .willReturn(WireMock.ok().withBody("{\"valid\":true,\"name\":\"ACME\"}")));
+        runtimeInfo.getWireMock().register(WireMock.post("/v1/vat-verification")
+                .withRequestBody(WireMock.containing("ATU22222222"))
+                .willReturn(WireMock.ok().withBody("{\"valid\":false}")));
+        runtimeInfo.getWireMock().register(WireMock.post("/v2/invoice-pdf")
+                .willReturn(WireMock.ok().withBody("INVOICE_PDF").withHeader("Content-Type", "application/pdf")
+                        .withFixedDelay(300)));
+
+        var cassette = directory.resolve("test.cassette");
+
+        try (var transport = new RecordingTransport(new MethanolTransport(), cassette)) {
+            var client = ClientFixtures.builder(runtimeInfo.getHttpBaseUrl()).transport(transport).build();
+
+            assertEquals("ACME", client.verifyVatId("ATU11111111").getName());
+            assertEquals(false, client.verifyVatId("ATU22222222").getValid());
+            assertEquals("INVOICE_PDF", new String(client.generateInvoicePdf(new InvoicePayload()), StandardCharsets.UTF_8));
+            assertEquals(3, transport.getRecorded());
+        }
+
+        var interactions = Cassette.read(cassette);
+        assertEquals(3, interactions.size());
+        assertEquals("/v2/invoice-pdf", interactions.get(2).getTarget());
+        assertTrue(interactions.get(2).getHeadersNanos() >= 300_000_000);
+        assertFalse(interactions.get(0).getRequestHeaders().firstValue("Authorization").isPresent());
+
+        var replay = new ReplayTransport.Builder()
+                .cassette(cassette)
+                .build();
+
+        // the host doesn't matter, nothing is sent
+        var client = ClientFixtures.builder("http://localhost:1").transport(replay).build();
+
+        // responses are matched by request body
+        assertEquals(false, client.verifyVatId("ATU22222222").getValid());
+        assertEquals("ACME", client.verifyVatId("ATU11111111").getName());
+
+        var start = System.nanoTime();
+        assertEquals("INVOICE_PDF", new String(client.generateInvoicePdf(new InvoicePayload()), StandardCharsets.UTF_8));
+        assertTrue(System.nanoTime() - start >= 300_000_000);
+
+        var exception = assertThrows(TransportException.class, () -> client.geocodeSearch("Wien"));
+        assertEquals(TransportException.Reason.IO, exception.getReason());
+        assertNotNull(exception.getMessage());
+        assertEquals(1, replay.getMisses());
+    }
+
+    @Test
+    void testTimeScale(WireMockRuntimeInfo runtimeInfo, @TempDir Path directory) throws Exception {
+        runtimeInfo.getWireMock().register(WireMock.post("/v1/html-to-pdf")
+                .willReturn(WireMock.ok().withBody("PDF").withFixedDelay(500)));
+
+        var cassette = directory.resolve("test.cassette");
+
+        try (var transport = new RecordingTransport(new MethanolTransport(), cassette)) {
+            ClientFixtures.builder(runtimeInfo.getHttpBaseUrl()).transport(transport).build()
+                    .convertHtmlToPdf("<p>Test</p>");
+        }
+
+        var replay = new ReplayTransport.Builder()
+                .cassette(cassette)
+                .timeScale(0)
+                .build();
+        var client = ClientFixtures.builder("http://localhost:1").transport(replay).build();
+
+        var interaction = Cassette.read(cassette).get(0);
+        assertTrue(interaction.getHeadersNanos() >= 500_000_000);
+        assertEquals(0, replay.scale(interaction.getHeadersNanos()));
+        assertEquals(0, replay.scale(interaction.getBodyNanos()));
+        assertEquals("PDF", new String(client.convertHtmlToPdf("<p>Other</p>"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testInterruptedRecording(WireMockRuntimeInfo runtimeInfo, @TempDir Path directory) throws Exception {
+        runtimeInfo.getWireMock().register(WireMock.post("/v1/vat-verification")
+                .willReturn(WireMock.ok().withBody("{\"valid\":true,\"name\":\"ACME\"}")));
+
+        var cassette = directory.resolve("test.cassette");
+
+        long size;
+
+        try (var transport = new RecordingTransport(new MethanolTransport(), cassette)) {
+            var client = ClientFixtures.builder(runtimeInfo.getHttpBaseUrl()).transport(transport).build();
+            client.verifyVatId("ATU11111111");
+            size = Files.size(cassette);
+            client.verifyVatId("ATU22222222");
+        }
+
+        // cut the second interaction, as if the recording process was killed while writing it
+        var content = Files.readAllBytes(cassette);
+        Files.write(cassette, Arrays.copyOf(content, (int) size + 10));
+
+        assertEquals(1, Cassette.read(cassette).size());
+    }
+
+    @Test
+    void testAbortedResponseIsNotRecorded(@TempDir Path directory) throws Exception {
+        try (var server = new APIstaxFakeServer.Builder()
+                .endpoint("/v1/html-to-pdf", endpoint -> endpoint.responseSize(100_000).slowBody(1, 10_000))
+                .build()
+                .start();
+             var transport = new RecordingTransport(new MethanolTransport(), directory.resolve("test.cassette"))) {
+            var client = ClientFixtures.builder(server).transport(transport).build()
+                    .withOptions(new RequestOptions.Builder().timeout(Duration.ofMillis(500)).build());
+
+            var exception = assertThrows(TransportException.class, () -> client.convertHtmlToPdf("<p>Test</p>"));
+            assertEquals(TransportException.Reason.TIMEOUT, exception.getReason());
+            assertEquals(0, transport.getRecorded());
+
+            // JSON bodies are read to the end, so they are recorded
+            assertTrue(client.verifyVatId("ATU12345678").getValid());
+            assertEquals(1, transport.getRecorded());
+        }
+    }
+
+    @Test
+    void testSensitiveHeadersAreNotRecorded(WireMockRuntimeInfo runtimeInfo, @TempDir Path directory) throws Exception {
+        runtimeInfo.getWireMock().register(WireMock.post("/v1/vat-verification")
+                .willReturn(WireMock.ok().withBody("{\"valid\":true}").withHeader("Set-Cookie", "session=secret")));
+
+        var cassette = directory.resolve("test.cassette");
+
+        try (var transport = new RecordingTransport.Builder()
+                .delegate(new MethanolTransport())
+                .cassette(cassette)
+                .sensitiveHeader("X-Tenant-Secret")
+                .build()) {
+            ClientFixtures.builder(runtimeInfo.getHttpBaseUrl()).transport(transport).build()
+                    .withOptions(new RequestOptions.Builder().header("X-Tenant-Secret", "secret").build())
+                    .verifyVatId("ATU11111111");
+        }
+
+        var interaction = Cassette.read(cassette).get(0);
+        assertFalse(interaction.getRequestHeaders().firstValue("Authorization").isPresent());
+        assertFalse(interaction.getRequestHeaders().firstValue("X-Tenant-Secret").isPresent());
+        assertFalse(interaction.getResponseHeaders().firstValue("Set-Cookie").isPresent());
+    }
+}
@@ -0,0 +1,124 @@
+package io.apistax.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestRequestScheduler {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testInteractiveJumpsQueue() throws Exception {
+        var scheduler = new RequestScheduler.Builder()
+                .maxConcurrency(1)
+                .build();
+
+        var call = new RequestCall(RequestOptions.DEFAULT);
+        var first = scheduler.acquire(RequestPriority.BATCH, call);
+
+        var order = new ArrayList<RequestPriority>();
+        var batch = acquireAsync(scheduler, RequestPriority.BATCH, order);
+        awaitQueueDepth(scheduler, RequestPriority.BATCH, 1);
+        var interactive = acquireAsync(scheduler, RequestPriority.INTERACTIVE, order);
+        awaitQueueDepth(scheduler, RequestPriority.INTERACTIVE, 1);
+
+        first.release();
+
+        interactive.get(5, TimeUnit.SECONDS).release();
+        batch.get(5, TimeUnit.SECONDS).release();
+
+        assertEquals(List.of(RequestPriority.INTERACTIVE, RequestPriority.BATCH), order);
+
+        var stats = scheduler.getStats(RequestPriority.BATCH);
+        assertEquals(0, stats.getQueueDepth());
+        assertEquals(0, stats.getInFlight());
+        assertEquals(2, stats.getAcquired());
+    }
+
+    @Test
+    void testBatchBudget() throws Exception {
+        var scheduler = new RequestScheduler.Builder()
+                .maxConcurrency(2)
+                .lane(RequestPriority.BATCH, 1, 1)
+                .build();
+
+        var call = new RequestCall(RequestOptions.DEFAULT);
+        var first = scheduler.acquire(RequestPriority.BATCH, call);
+
+        var order = new ArrayList<RequestPriority>();
+        var batch = acquireAsync(scheduler, RequestPriority.BATCH, order);
+        awaitQueueDepth(scheduler, RequestPriority.BATCH, 1);
+
+        var interactive = scheduler.acquire(RequestPriority.INTERACTIVE, call);
+
+        assertFalse(batch.isDone());
+        assertEquals(1, scheduler.getStats(RequestPriority.BATCH).getQueueDepth());
+
+        first.release();
+        batch.get(5, TimeUnit.SECONDS).release();
+        interactive.release();
+    }
+
+    @Test
+    void testQueueingBoundByDeadline() throws Exception {
+        var scheduler = new RequestScheduler.Builder()
+                .maxConcurrency(1)
+                .build();
+
+        var permit = scheduler.acquire(RequestPriority.BATCH, new RequestCall(RequestOptions.DEFAULT));
+
+        var options = new RequestOptions.Builder()
+                .timeout(Duration.ofMillis(100))
+                .build();
+
+        try (var call = new RequestCall(options)) {
+            scheduler.acquire(RequestPriority.BATCH, call);
+            fail("No APIstaxException thrown.");
+        } catch (APIstaxException e) {
+            assertEquals("message.timeout", e.getMessages().get(0));
+        }
+
+        assertEquals(0, scheduler.getStats(RequestPriority.BATCH).getQueueDepth());
+
+        permit.release();
+
+        assertEquals(0, scheduler.getStats(RequestPriority.BATCH).getInFlight());
+    }
+
+    private CompletableFuture<RequestScheduler.Permit> acquireAsync(RequestScheduler scheduler, RequestPriority priority, List<RequestPriority> order) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                var permit = scheduler.acquire(priority, new RequestCall(RequestOptions.DEFAULT));
+
+                synchronized (order) {
+                    order.add(priority);
+                }
+
+                return permit;
+            } catch (Exception e) {
+                throw new APIstaxException(e);
+            }
+        }, executor);
+    }
+
+    private void awaitQueueDepth(RequestScheduler scheduler, RequestPriority priority, int depth) throws InterruptedException {
+        for (int i = 0; i < 500 && scheduler.getStats(priority).getQueueDepth() < depth; i++) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package io.apistax.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.apistax.models.HtmlPayload;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestStreamingJsonBody {
+
+    private static final ObjectMapper OBJECT_MAPPER = APIstaxClientImpl.createObjectMapper();
+
+    @Test
+    void testEscaping() throws Exception {
+        var content = "\"quoted\" \\ \n\t\u0001 ä€ " + "😀".repeat(5000);
+        var payload = read(new StreamingJsonBody(OBJECT_MAPPER, new HtmlPayload().footer("footer").width(2f), "content",
+                new StringReader(content), false));
+
+        assertEquals(content, payload.getContent());
+        assertEquals("footer", payload.getFooter());
+        assertEquals(2f, payload.getWidth());
+    }
+
+    @Test
+    void testSurrogatePairBetweenChunks() throws Exception {
+        // the reader returns the high surrogate as the last char of the first chunk
+        var content = "a".repeat(8191) + "😀b";
+        var reader = new Reader() {
+            private final StringReader delegate = new StringReader(content);
+
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                return delegate.read(buffer, offset, Math.min(length, 8192));
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        assertEquals(content, read(new StreamingJsonBody(OBJECT_MAPPER, null, "content", reader, true)).getContent());
+    }
+
+    @Test
+    void testEmptyContent() throws Exception {
+        var payload = read(new StreamingJsonBody(OBJECT_MAPPER, null, "content", new StringReader(""), false));
+        assertEquals("", payload.getContent());
+    }
+
+    private static HtmlPayload read(StreamingJsonBody body) throws Exception {
+        try (body) {
+            return OBJECT_MAPPER.readValue(body.readAllBytes(), HtmlPayload.class);
+        }
+    }
+}
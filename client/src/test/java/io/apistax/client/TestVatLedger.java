@@ -0,0 +1,147 @@
+package io.apistax.client;
+
+import io.apistax.models.VatVerificationResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestVatLedger {
+
+    private static final String VAT_VERIFICATION = "POST /v1/vat-verification";
+
+    @Test
+    void testClientRecordsAndReuses(@TempDir Path directory) throws Exception {
+        try (var server = new APIstaxFakeServer.Builder().build().start()) {
+            try (var ledger = new VatLedger.Builder().directory(directory).build()) {
+                var client = ClientFixtures.builder(server).vatLedger(ledger).build();
+
+                client.verifyVatId("ATU12345678");
+                client.withOptions(new RequestOptions.Builder().header("X-Correlation-Id", "invoice-42").build())
+                        .verifyVatId("atu 1234 5678");
+
+                var history = ledger.history("ATU12345678");
+                assertEquals(2, history.size());
+                assertEquals(Map.of(), history.get(0).getContext());
+                assertEquals("invoice-42", history.get(1).getContext().get("X-Correlation-Id"));
+                assertEquals("ACME Company", ledger.latest("ATU12345678").getResult().getName());
+                assertEquals(2, server.getStats().get(VAT_VERIFICATION).getRequests());
+            }
+
+            // after a restart, the replayed ledger answers without calling the API
+            try (var ledger = new VatLedger.Builder().directory(directory).reuse(Duration.ofHours(1)).build()) {
+                assertEquals(2, ledger.size());
+
+                var client = ClientFixtures.builder(server).vatLedger(ledger).build();
+                assertEquals("ACME Company", client.verifyVatId("ATU12345678").getName());
+                assertEquals(2, server.getStats().get(VAT_VERIFICATION).getRequests());
+
+                client.verifyVatId("DE123456789");
+                assertEquals(3, server.getStats().get(VAT_VERIFICATION).getRequests());
+                assertEquals(3, ledger.size());
+            }
+        }
+    }
+
+    @Test
+    void testRangeAndRotation(@TempDir Path directory) throws Exception {
+        try (var ledger = new VatLedger.Builder().directory(directory).segmentSize(1024).sync(false).build()) {
+            var start = Instant.now();
+
+            for (int i = 0; i < 100; i++) {
+                ledger.append("ATU" + i, result("Company " + i), Map.of("index", String.valueOf(i)));
+            }
+
+            var end = Instant.now().plusMillis(1);
+
+            assertTrue(ledger.getSegmentCount() > 1);
+            assertEquals(100, ledger.range(start, end).size());
+            assertEquals(0, ledger.range(end, end.plusSeconds(1)).size());
+            assertEquals("Company 7", ledger.latest("atu7").getResult().getName());
+            assertNull(ledger.latest("ATU100"));
+        }
+
+        try (var ledger = new VatLedger.Builder().directory(directory).segmentSize(1024).build()) {
+            assertEquals(100, ledger.size());
+
+            var all = ledger.range(Instant.EPOCH, Instant.now().plusSeconds(1));
+            assertEquals("ATU0", all.get(0).getVatId());
+            assertEquals("99", all.get(99).getContext().get("index"));
+        }
+    }
+
+    @Test
+    void testTornRecordIsIgnored(@TempDir Path directory) throws Exception {
+        try (var ledger = new VatLedger.Builder().directory(directory).build()) {
+            ledger.append("ATU1", result("First"), Map.of());
+            ledger.append("ATU2", result("Second"), Map.of());
+        }
+
+        // corrupt the last byte of the second record, as a crash in the middle of writing would
+        try (var files = Files.list(directory)) {
+            corruptLastRecord(files.filter(file -> file.toString().endsWith(".ledger")).findFirst().orElseThrow());
+        }
+
+        try (var ledger = new VatLedger.Builder().directory(directory).build()) {
+            assertEquals(1, ledger.size());
+            assertNull(ledger.latest("ATU2"));
+
+            ledger.append("ATU3", result("Third"), Map.of());
+            assertEquals("Third", ledger.latest("ATU3").getResult().getName());
+        }
+
+        try (var ledger = new VatLedger.Builder().directory(directory).build()) {
+            assertEquals(2, ledger.size());
+        }
+    }
+
+    @Test
+    void testLedgerLocked(@TempDir Path directory) throws Exception {
+        try (var ledger = new VatLedger.Builder().directory(directory).build()) {
+            ledger.append("ATU1", result("First"), Map.of());
+            assertThrows(IOException.class, () -> new VatLedger.Builder().directory(directory).build());
+        }
+
+        try (var ledger = new VatLedger.Builder().directory(directory).build()) {
+            assertEquals(1, ledger.size());
+        }
+    }
+
+    @Test
+    void testClosedLedgerFailsCall(@TempDir Path directory) throws Exception {
+        try (var server = new APIstaxFakeServer.Builder().build().start()) {
+            var ledger = new VatLedger.Builder().directory(directory).build();
+            var client = ClientFixtures.builder(server).vatLedger(ledger).build();
+            ledger.close();
+
+            assertThrows(APIstaxException.class, () -> client.verifyVatId("ATU12345678"));
+        }
+    }
+
+    private static void corruptLastRecord(Path segment) throws IOException {
+        try (var channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            var position = 0;
+
+            while (buffer.getInt(position) > 0) {
+                position += 8 + buffer.getInt(position);
+            }
+
+            buffer.put(position - 1, (byte) (buffer.get(position - 1) ^ 0xff));
+            buffer.force();
+        }
+    }
+
+    private static VatVerificationResult result(String name) {
+        return new VatVerificationResult().valid(true).name(name);
+    }
+}
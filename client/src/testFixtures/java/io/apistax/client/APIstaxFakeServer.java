@@ -0,0 +1,630 @@
+package io.apistax.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * A lightweight in-process HTTP server implementing all APIstax endpoints with canned, valid responses. In contrast to
+ * {@link APIstaxClientMock}, calls go through the real client and the network stack, which makes the server suitable
+ * for load and resilience tests without network access.
+ * <p>
+ * Every endpoint can be configured with a latency distribution, injected error responses (for example 402, 500 or
+ * 503), connection resets and slow response bodies. Request and status counters are collected per endpoint.
+ * <p>
+ * The server is part of the test fixtures of the client and not included in its jar.
+ *
+ * <pre>{@code
+ * try (var server = new APIstaxFakeServer.Builder()
+ *         .latency(LatencyDistribution.logNormal(Duration.ofMillis(40), 0.5))
+ *         .endpoint("/v2/invoice-pdf", endpoint -> endpoint
+ *                 .latency(LatencyDistribution.uniform(Duration.ofMillis(200), Duration.ofMillis(800)))
+ *                 .errorRate(503, 0.01)
+ *                 .responseSize(250_000))
+ *         .build()
+ *         .start()) {
+ *     var client = new APIstaxClient.Builder().apiKey("key").host(server.getBaseUrl()).build();
+ *     ...
+ * }
+ * }</pre>
+ */
+public class APIstaxFakeServer implements AutoCloseable {
+
+    private static final byte[] PNG = Base64.getDecoder().decode(
+            "iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNkYPhfDwAChwGA60e6kgAAAABJRU5ErkJggg==");
+
+    private static final byte[] SVG = ("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"1\" height=\"1\">" +
+            "<rect width=\"1\" height=\"1\"/></svg>").getBytes(StandardCharsets.UTF_8);
+
+    private static final String PDF = "%PDF-1.4\n" +
+            "1 0 obj<</Type/Catalog/Pages 2 0 R>>endobj\n" +
+            "2 0 obj<</Type/Pages/Kids[3 0 R]/Count 1>>endobj\n" +
+            "3 0 obj<</Type/Page/Parent 2 0 R/MediaBox[0 0 595 842]>>endobj\n" +
+            "trailer<</Root 1 0 R>>\n";
+
+    private static final String VAT_VERIFICATION_RESULT = "{\"valid\":true,\"name\":\"ACME Company\"," +
+            "\"address\":\"Street 1 12345 City\",\"countryCode\":\"AT\"}";
+
+    private static final String GEOCODE_RESULT = "{\"position\":{\"latitude\":48.208101,\"longitude\":16.37376}," +
+            "\"address\":{\"houseNumber\":\"1\",\"street\":\"Street\",\"city\":\"City\",\"postalCode\":\"1010\"," +
+            "\"country\":\"Austria\",\"countryCode\":\"AT\"}}";
+
+    private static final Map<Integer, String> ERROR_MESSAGES = Map.of(
+            402, "message.paymentRequired",
+            403, "message.forbidden",
+            406, "message.notAcceptable",
+            500, "message.internalServerError",
+            503, "message.serviceUnavailable"
+    );
+
+    private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private final InetSocketAddress address;
+    private final int threads;
+    private HttpServer server;
+    private ExecutorService executor;
+    private long startNanos;
+
+    private APIstaxFakeServer(Builder builder) {
+        this.address = new InetSocketAddress(InetAddress.getLoopbackAddress(), builder.port);
+        this.threads = builder.threads;
+
+        for (Map.Entry<String, Endpoint> entry : builder.endpoints.entrySet()) {
+            var endpoint = entry.getValue();
+
+            if (endpoint.latency == null) {
+                endpoint.latency = builder.latency;
+            }
+
+            this.endpoints.put(entry.getKey(), endpoint);
+        }
+    }
+
+    public synchronized APIstaxFakeServer start() {
+        if (server != null) {
+            return this;
+        }
+
+        try {
+            server = HttpServer.create(address, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        executor = threads > 0 ? Executors.newFixedThreadPool(threads) : Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        startNanos = System.nanoTime();
+        return this;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    public String getBaseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return the counters of every endpoint which received requests, keyed by method and path of the endpoint
+     */
+    public Map<String, EndpointStats> getStats() {
+        var elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+        var result = new TreeMap<String, EndpointStats>();
+
+        for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().snapshot(elapsed));
+        }
+
+        return Collections.unmodifiableMap(result);
+    }
+
+    public void resetStats() {
+        stats.clear();
+        startNanos = System.nanoTime();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        var path = exchange.getRequestURI().getPath();
+        var route = route(path);
+        var method = exchange.getRequestMethod();
+        var stats = this.stats.computeIfAbsent(method + " " + route, key -> new Stats());
+
+        stats.requests.increment();
+
+        try (var inputStream = exchange.getRequestBody()) {
+            stats.bytesReceived.add(drain(inputStream));
+        }
+
+        var endpoint = endpoints.getOrDefault(route, endpoints.get("*"));
+        var random = ThreadLocalRandom.current();
+
+        sleep(endpoint.latency.sampleNanos(random));
+
+        if (random.nextDouble() < endpoint.resetRate) {
+            stats.resets.increment();
+            throw new IOException("Injected connection reset");
+        }
+
+        Response response;
+
+        if (exchange.getRequestHeaders().getFirst("Authorization") == null) {
+            response = error(403);
+        } else {
+            response = injectedError(endpoint, random);
+
+            if (response == null) {
+                response = respond(route, method, exchange, endpoint);
+            }
+        }
+
+        stats.count(response.status);
+
+        exchange.getResponseHeaders().set("Content-Type", response.contentType);
+
+        if ("HEAD".equals(method)) {
+            exchange.sendResponseHeaders(response.status, -1);
+            exchange.close();
+            return;
+        }
+
+        var slow = random.nextDouble() < endpoint.slowBodyRate;
+        exchange.sendResponseHeaders(response.status, slow ? 0 : response.body.length);
+
+        try (var outputStream = exchange.getResponseBody()) {
+            if (slow) {
+                writeSlowly(outputStream, response.body, endpoint.slowBodyBytesPerSecond);
+                stats.slowBodies.increment();
+            } else {
+                outputStream.write(response.body);
+            }
+        }
+
+        stats.bytesSent.add(response.body.length);
+    }
+
+    private Response respond(String route, String method, HttpExchange exchange, Endpoint endpoint) {
+        var pdf = Response.of(200, "application/pdf", pad(PDF.getBytes(StandardCharsets.US_ASCII), endpoint.responseSize));
+        var png = Response.of(200, "image/png", pad(PNG, endpoint.responseSize));
+
+        switch (route) {
+            case "/v1/html-to-pdf":
+            case "/v1/invoice-pdf":
+            case "/v2/invoice-pdf":
+            case "/v1/pdf-to-pdf-a":
+                return "POST".equals(method) ? pdf : error(405);
+            case "/v1/epc-qr-code":
+            case "/v1/barcode":
+            case "/v1/spayd-qr-code":
+            case "/v1/pay-by-square-qr-code":
+            case "/v1/hct-qr-code":
+                return png;
+            case "/v1/swiss-qr-invoice":
+                var accept = exchange.getRequestHeaders().getFirst("Accept");
+
+                if ("image/svg+xml".equals(accept)) {
+                    return Response.of(200, "image/svg+xml", SVG);
+                } else if ("image/png".equals(accept)) {
+                    return png;
+                }
+
+                return pdf;
+            case "/v1/vat-verification":
+                return Response.json(VAT_VERIFICATION_RESULT);
+            case "/v1/geocode/search":
+            case "/v1/geocode/reverse":
+                return Response.json(GEOCODE_RESULT);
+            case "/v1/indexes/{index}":
+                return "GET".equals(method) ? Response.json(index(exchange.getRequestURI())) : error(405);
+            default:
+                return error(404);
+        }
+    }
+
+    private String route(String path) {
+        if (path.startsWith("/v1/indexes/")) {
+            return "/v1/indexes/{index}";
+        }
+
+        return path;
+    }
+
+    private String index(URI uri) {
+        var id = uri.getPath().substring("/v1/indexes/".length());
+        var yearly = uri.getQuery() != null && uri.getQuery().contains("frequency=YEARLY");
+
+        var json = new StringBuilder()
+                .append("{\"id\":\"").append(id).append("\",")
+                .append("\"name\":\"").append(id).append("\",")
+                .append("\"source\":\"APIstax fake server\",")
+                .append("\"frequency\":\"").append(yearly ? "YEARLY" : "MONTHLY").append("\",")
+                .append("\"values\":[");
+
+        for (int i = 0; i < 10; i++) {
+            if (yearly) {
+                json.append(i > 0 ? "," : "")
+                        .append("{\"year\":").append(2000 + i)
+                        .append(",\"value\":").append(100f + i).append('}');
+                continue;
+            }
+
+            for (int j = 0; j < 12; j++) {
+                json.append(i > 0 || j > 0 ? "," : "")
+                        .append("{\"year\":").append(2000 + i)
+                        .append(",\"month\":").append(1 + j)
+                        .append(",\"value\":").append(100f + i + (j / 10f)).append('}');
+            }
+        }
+
+        return json.append("]}").toString();
+    }
+
+    private Response injectedError(Endpoint endpoint, ThreadLocalRandom random) {
+        if (endpoint.errorRates.isEmpty()) {
+            return null;
+        }
+
+        var sample = random.nextDouble();
+
+        for (Map.Entry<Integer, Double> entry : endpoint.errorRates.entrySet()) {
+            sample -= entry.getValue();
+
+            if (sample < 0) {
+                return error(entry.getKey());
+            }
+        }
+
+        return null;
+    }
+
+    private static Response error(int status) {
+        var message = ERROR_MESSAGES.getOrDefault(status, "message.unknownError");
+        return Response.of(status, "application/json", ("{\"messages\":[\"" + message + "\"]}").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] pad(byte[] body, int size) {
+        if (size <= body.length) {
+            return body;
+        }
+
+        var result = new byte[size];
+        System.arraycopy(body, 0, result, 0, body.length);
+
+        for (int i = body.length; i < size; i++) {
+            result[i] = (byte) ' ';
+        }
+
+        return result;
+    }
+
+    private static long drain(InputStream inputStream) throws IOException {
+        var buffer = new byte[8192];
+        long total = 0;
+        int n;
+
+        while ((n = inputStream.read(buffer)) != -1) {
+            total += n;
+        }
+
+        return total;
+    }
+
+    private static void writeSlowly(OutputStream outputStream, byte[] body, long bytesPerSecond) throws IOException {
+        var chunkSize = (int) Math.max(1, Math.min(8192, bytesPerSecond / 10));
+
+        for (int offset = 0; offset < body.length; offset += chunkSize) {
+            var length = Math.min(chunkSize, body.length - offset);
+            outputStream.write(body, offset, length);
+            outputStream.flush();
+            sleep(TimeUnit.SECONDS.toNanos(length) / bytesPerSecond);
+        }
+    }
+
+    private static void sleep(long nanos) throws IOException {
+        if (nanos <= 0) {
+            return;
+        }
+
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * A distribution to sample the artificial latency of an endpoint from.
+     */
+    @FunctionalInterface
+    public interface LatencyDistribution {
+
+        long sampleNanos(ThreadLocalRandom random);
+
+        static LatencyDistribution none() {
+            return random -> 0;
+        }
+
+        static LatencyDistribution fixed(Duration latency) {
+            var nanos = latency.toNanos();
+            return random -> nanos;
+        }
+
+        static LatencyDistribution uniform(Duration min, Duration max) {
+            var minNanos = min.toNanos();
+            var maxNanos = max.toNanos();
+            return random -> minNanos + (long) (random.nextDouble() * (maxNanos - minNanos));
+        }
+
+        static LatencyDistribution exponential(Duration mean) {
+            var meanNanos = mean.toNanos();
+            return random -> (long) (-Math.log(1 - random.nextDouble()) * meanNanos);
+        }
+
+        /**
+         * A log-normal distribution, which resembles the long tail of real service latencies.
+         *
+         * @param median the median latency
+         * @param sigma  the standard deviation of the underlying normal distribution, 0.5 gives a p99 of about three
+         *               times the median
+         */
+        static LatencyDistribution logNormal(Duration median, double sigma) {
+            var mu = Math.log(median.toNanos());
+            return random -> (long) Math.exp(mu + sigma * random.nextGaussian());
+        }
+    }
+
+    /**
+     * The behaviour of a single endpoint.
+     */
+    public static class Endpoint {
+
+        private LatencyDistribution latency;
+        private final Map<Integer, Double> errorRates = new LinkedHashMap<>();
+        private double resetRate;
+        private double slowBodyRate;
+        private long slowBodyBytesPerSecond = 16 * 1024;
+        private int responseSize;
+
+        public Endpoint latency(LatencyDistribution latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * Respond with an error status to the given share of requests.
+         *
+         * @param status the HTTP status to respond with, for example 402, 500 or 503
+         * @param rate   the share of requests between 0 and 1
+         */
+        public Endpoint errorRate(int status, double rate) {
+            this.errorRates.put(status, rate);
+            return this;
+        }
+
+        /**
+         * Close the connection without a response for the given share of requests.
+         */
+        public Endpoint resetRate(double rate) {
+            this.resetRate = rate;
+            return this;
+        }
+
+        /**
+         * Stream the response body with the given throughput for the given share of requests.
+         */
+        public Endpoint slowBody(double rate, long bytesPerSecond) {
+            this.slowBodyRate = rate;
+            this.slowBodyBytesPerSecond = Math.max(1, bytesPerSecond);
+            return this;
+        }
+
+        /**
+         * Pad binary responses like PDFs and images to the given size in bytes to resemble real documents.
+         */
+        public Endpoint responseSize(int responseSize) {
+            this.responseSize = responseSize;
+            return this;
+        }
+    }
+
+    /**
+     * A snapshot of the counters of a single endpoint.
+     */
+    public static class EndpointStats {
+
+        private final long requests;
+        private final Map<Integer, Long> statusCounts;
+        private final long resets;
+        private final long slowBodies;
+        private final long bytesReceived;
+        private final long bytesSent;
+        private final Duration elapsed;
+
+        EndpointStats(long requests, Map<Integer, Long> statusCounts, long resets, long slowBodies, long bytesReceived, long bytesSent, Duration elapsed) {
+            this.requests = requests;
+            this.statusCounts = statusCounts;
+            this.resets = resets;
+            this.slowBodies = slowBodies;
+            this.bytesReceived = bytesReceived;
+            this.bytesSent = bytesSent;
+            this.elapsed = elapsed;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public Map<Integer, Long> getStatusCounts() {
+            return statusCounts;
+        }
+
+        public long getResets() {
+            return resets;
+        }
+
+        public long getSlowBodies() {
+            return slowBodies;
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived;
+        }
+
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        /**
+         * @return the requests per second since the server was started or its stats were reset
+         */
+        public double getThroughput() {
+            var seconds = elapsed.toNanos() / 1e9;
+            return seconds > 0 ? requests / seconds : 0;
+        }
+
+        @Override
+        public String toString() {
+            return "EndpointStats{" +
+                    "requests=" + requests +
+                    ", statusCounts=" + statusCounts +
+                    ", resets=" + resets +
+                    ", slowBodies=" + slowBodies +
+                    ", bytesReceived=" + bytesReceived +
+                    ", bytesSent=" + bytesSent +
+                    ", throughput=" + String.format("%.1f/s", getThroughput()) +
+                    '}';
+        }
+    }
+
+    public static class Builder {
+
+        private int port;
+        private int threads;
+        private LatencyDistribution latency = LatencyDistribution.none();
+        private final Map<String, Endpoint> endpoints = new HashMap<>(Map.of("*", new Endpoint()));
+
+        /**
+         * @param port the port to listen on, 0 picks a free port
+         */
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * @param threads the number of request handler threads, 0 uses a thread per concurrent request
+         */
+        public Builder threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * @param latency the latency of all endpoints without an explicit latency
+         */
+        public Builder latency(LatencyDistribution latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * Configure an endpoint. Paths are given as in the API specification, for example {@code /v2/invoice-pdf} or
+         * {@code /v1/indexes/{index}}. The path {@code *} configures all endpoints without their own configuration.
+         */
+        public Builder endpoint(String path, Consumer<Endpoint> configurer) {
+            configurer.accept(endpoints.computeIfAbsent(path, key -> new Endpoint()));
+            return this;
+        }
+
+        public APIstaxFakeServer build() {
+            return new APIstaxFakeServer(this);
+        }
+    }
+
+    private static class Response {
+
+        private final int status;
+        private final String contentType;
+        private final byte[] body;
+
+        private Response(int status, String contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        static Response of(int status, String contentType, byte[] body) {
+            return new Response(status, contentType, body);
+        }
+
+        static Response json(String json) {
+            return new Response(200, "application/json", json.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static class Stats {
+
+        private final LongAdder requests = new LongAdder();
+        private final Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+        private final LongAdder resets = new LongAdder();
+        private final LongAdder slowBodies = new LongAdder();
+        private final LongAdder bytesReceived = new LongAdder();
+        private final LongAdder bytesSent = new LongAdder();
+
+        void count(int status) {
+            statusCounts.computeIfAbsent(status, key -> new LongAdder()).increment();
+        }
+
+        EndpointStats snapshot(Duration elapsed) {
+            var counts = new TreeMap<Integer, Long>();
+
+            for (Map.Entry<Integer, LongAdder> entry : statusCounts.entrySet()) {
+                counts.put(entry.getKey(), entry.getValue().sum());
+            }
+
+            return new EndpointStats(
+                    requests.sum(),
+                    Collections.unmodifiableMap(counts),
+                    resets.sum(),
+                    slowBodies.sum(),
+                    bytesReceived.sum(),
+                    bytesSent.sum(),
+                    elapsed
+            );
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package io.apistax.client;
+
+/**
+ * Creates clients for tests, authenticated with a dummy API key.
+ */
+public final class ClientFixtures {
+
+    public static final String API_KEY = "API_KEY";
+
+    private ClientFixtures() {
+    }
+
+    /**
+     * @return a builder for a client calling the given host, to add further configuration
+     */
+    public static APIstaxClient.Builder builder(String host) {
+        return new APIstaxClient.Builder()
+                .apiKey(API_KEY)
+                .host(host);
+    }
+
+    public static APIstaxClient.Builder builder(APIstaxFakeServer server) {
+        return builder(server.getBaseUrl());
+    }
+
+    public static APIstaxClient create(APIstaxFakeServer server) {
+        return builder(server).build();
+    }
+}
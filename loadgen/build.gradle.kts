@@ -0,0 +1,54 @@
+plugins {
+    id("application")
+}
+
+group = "io.apistax"
+version = "1.8.0"
+
+dependencies {
+    implementation(project(":client"))
+    implementation(testFixtures(project(":client")))
+    implementation(platform("com.fasterxml.jackson:jackson-bom:2.20.1"))
+    implementation("com.fasterxml.jackson.core:jackson-databind")
+    implementation("org.hdrhistogram:HdrHistogram:2.2.2")
+}
+
+java {
+    toolchain {
+        languageVersion = JavaLanguageVersion.of(17)
+    }
+}
+
+application {
+    mainClass = "io.apistax.loadgen.LoadGenerator"
+}
+
+tasks.compileJava {
+    options.encoding = "UTF-8"
+}
+
+val fatJar = tasks.register<Jar>("fatJar") {
+    archiveClassifier = "all"
+    duplicatesStrategy = DuplicatesStrategy.EXCLUDE
+
+    manifest {
+        attributes(
+            "Implementation-Title" to "APIstax Load Generator",
+            "Main-Class" to application.mainClass.get()
+        )
+    }
+
+    from(sourceSets.main.get().output)
+    dependsOn(configurations.runtimeClasspath)
+    from({
+        configurations.runtimeClasspath.get()
+            .filter { it.name.endsWith(".jar") }
+            .map { zipTree(it) }
+    })
+
+    exclude("META-INF/*.SF", "META-INF/*.DSA", "META-INF/*.RSA", "META-INF/versions/*/module-info.class", "module-info.class")
+}
+
+tasks.named("assemble") {
+    dependsOn(fatJar)
+}
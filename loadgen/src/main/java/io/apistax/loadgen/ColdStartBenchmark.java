@@ -0,0 +1,120 @@
+package io.apistax.loadgen;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.apistax.client.APIstaxClient;
+import io.apistax.client.APIstaxException;
+import io.apistax.client.BuildConfig;
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of the first call of a new client, once cold and once after {@link APIstaxClient#warmUp()}.
+ * Every iteration uses new clients, so each cold call opens a new connection. Host names are resolved once per JVM
+ * because of the JDK's address cache, so DNS lookup is only part of the first cold call.
+ */
+public class ColdStartBenchmark {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Histogram cold = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final Histogram warm = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final Histogram warmUp = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private long errors;
+
+    /**
+     * @param clients   creates a new client per call
+     * @param operation the operation called first
+     * @param payload   the payload of the operation
+     */
+    ColdStartBenchmark run(int iterations, ClientFactory clients, Operation operation, Object payload) {
+        for (int i = 0; i < iterations; i++) {
+            record(cold, clients.create(), operation, payload);
+
+            var client = clients.create();
+            var start = System.nanoTime();
+            client.warmUp();
+            warmUp.recordValue(micros(System.nanoTime() - start));
+
+            record(warm, client, operation, payload);
+        }
+
+        return this;
+    }
+
+    public String toText() {
+        var text = new StringBuilder();
+
+        text.append(String.format("APIstax client %s, first call latency of new clients, %d iterations, %d errors%n",
+                BuildConfig.VERSION, cold.getTotalCount(), errors));
+        text.append(String.format("%n%-28s %9s %9s %9s %9s%n", "", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+
+        appendRow(text, "cold", cold);
+        appendRow(text, "warm", warm);
+        appendRow(text, "warm up", warmUp);
+
+        text.append(String.format("%n%-28s %9.2f%n", "p50 saved by warm up ms",
+                millis(cold.getValueAtPercentile(50) - warm.getValueAtPercentile(50))));
+
+        return text.toString();
+    }
+
+    public String toJson() throws JsonProcessingException {
+        var json = new LinkedHashMap<String, Object>();
+        json.put("clientVersion", BuildConfig.VERSION);
+        json.put("iterations", cold.getTotalCount());
+        json.put("errors", errors);
+        json.put("coldLatencyMillis", toJson(cold));
+        json.put("warmLatencyMillis", toJson(warm));
+        json.put("warmUpMillis", toJson(warmUp));
+
+        return new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(json);
+    }
+
+    private void record(Histogram histogram, APIstaxClient client, Operation operation, Object payload) {
+        var start = System.nanoTime();
+
+        try {
+            operation.execute(client, payload);
+        } catch (APIstaxException e) {
+            errors++;
+        }
+
+        histogram.recordValue(micros(System.nanoTime() - start));
+    }
+
+    private static Map<String, Object> toJson(Histogram histogram) {
+        var json = new LinkedHashMap<String, Object>();
+        json.put("p50", millis(histogram.getValueAtPercentile(50)));
+        json.put("p90", millis(histogram.getValueAtPercentile(90)));
+        json.put("p99", millis(histogram.getValueAtPercentile(99)));
+        json.put("max", millis(histogram.getMaxValue()));
+        return json;
+    }
+
+    private static void appendRow(StringBuilder text, String name, Histogram histogram) {
+        text.append(String.format("%-28s %9.2f %9.2f %9.2f %9.2f%n",
+                name,
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getMaxValue())));
+    }
+
+    private static long micros(long nanos) {
+        return Math.min(HIGHEST_TRACKABLE_MICROS, TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000d;
+    }
+
+    @FunctionalInterface
+    interface ClientFactory {
+
+        APIstaxClient create();
+    }
+}
@@ -0,0 +1,298 @@
+package io.apistax.loadgen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.apistax.client.APIstaxClient;
+import io.apistax.client.APIstaxClientImpl;
+import io.apistax.client.APIstaxException;
+import io.apistax.client.APIstaxFakeServer;
+import io.apistax.client.APIstaxTransport;
+import io.apistax.client.ConcurrencyLimiter;
+import io.apistax.client.MethanolTransport;
+import io.apistax.client.RecordingTransport;
+import io.apistax.client.ReplayTransport;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A command line load generator which drives the APIstax client with a configurable endpoint mix and reports
+ * throughput, errors and latency percentiles.
+ * <p>
+ * In open loop mode ({@code --rate}) requests are issued on a fixed schedule and latency is measured from the point in
+ * time a request was supposed to be sent, so a stalled client or service does not hide the latency of the requests
+ * queued behind it (coordinated omission). In closed loop mode every worker sends its next request as soon as the
+ * previous one completed; coordinated omission is corrected if an expected interval is given.
+ */
+public class LoadGenerator {
+
+    private final LoadGeneratorOptions options;
+    private final ObjectMapper objectMapper = APIstaxClientImpl.createObjectMapper();
+
+    public LoadGenerator(LoadGeneratorOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadGeneratorOptions options;
+
+        try {
+            options = LoadGeneratorOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(LoadGeneratorOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        if (options.help) {
+            System.out.println(LoadGeneratorOptions.USAGE);
+            return;
+        }
+
+        String text;
+        String json = null;
+
+        if (options.coldStart > 0) {
+            var benchmark = new LoadGenerator(options).runColdStart();
+            text = benchmark.toText();
+
+            if (options.json != null) {
+                json = benchmark.toJson();
+            }
+        } else {
+            var report = new LoadGenerator(options).run();
+            text = report.toText();
+
+            if (options.json != null) {
+                json = report.toJson(options);
+            }
+        }
+
+        System.out.println(text);
+
+        if (json != null) {
+            if ("-".equals(options.json)) {
+                System.out.println(json);
+            } else {
+                Files.writeString(Path.of(options.json), json);
+            }
+        }
+    }
+
+    public LoadReport run() throws IOException, InterruptedException {
+        var payloads = loadPayloads();
+        var schedule = schedule();
+
+        APIstaxFakeServer fakeServer = null;
+
+        if (options.fakeServer) {
+            fakeServer = new APIstaxFakeServer.Builder().build().start();
+        }
+
+        RecordingTransport recording = null;
+        APIstaxTransport transport = null;
+
+        if (options.record != null) {
+            recording = new RecordingTransport(new MethanolTransport(), options.record);
+            transport = recording;
+        } else if (options.replay != null) {
+            transport = new ReplayTransport.Builder()
+                    .cassette(options.replay)
+                    .timeScale(options.timeScale)
+                    .build();
+        }
+
+        try {
+            var limiter = options.adaptiveLimit != null
+                    ? new ConcurrencyLimiter.Builder().algorithm(options.adaptiveLimit).build()
+                    : null;
+            var client = createClient(fakeServer, limiter, transport);
+
+            if (options.warmUp) {
+                client.warmUp();
+            }
+
+            var report = run(client, schedule, payloads);
+
+            if (limiter != null) {
+                report.limits(limiter.getStats());
+            }
+
+            return report;
+        } finally {
+            if (recording != null) {
+                recording.close();
+            }
+
+            if (fakeServer != null) {
+                fakeServer.close();
+            }
+        }
+    }
+
+    /**
+     * Measure the first call latency of new clients, cold and warmed up, see {@link ColdStartBenchmark}.
+     */
+    public ColdStartBenchmark runColdStart() throws IOException {
+        var payloads = loadPayloads();
+        var operation = options.mix.keySet().iterator().next();
+
+        APIstaxFakeServer fakeServer = null;
+
+        if (options.fakeServer) {
+            fakeServer = new APIstaxFakeServer.Builder().build().start();
+        }
+
+        try {
+            var server = fakeServer;
+            return new ColdStartBenchmark().run(options.coldStart, () -> createClient(server, null, null), operation,
+                    payloads.get(operation).get(0));
+        } finally {
+            if (fakeServer != null) {
+                fakeServer.close();
+            }
+        }
+    }
+
+    private APIstaxClient createClient(APIstaxFakeServer fakeServer, ConcurrencyLimiter limiter, APIstaxTransport transport) {
+        return new APIstaxClient.Builder()
+                .apiKey(options.apiKey != null ? options.apiKey : "API_KEY")
+                .host(fakeServer != null ? fakeServer.getBaseUrl() : options.baseUrl)
+                .stacklessExceptions(true)
+                .connections(Math.min(options.concurrency, 64))
+                .keepAlive(options.keepAlive)
+                .concurrencyLimiter(limiter)
+                .transport(transport)
+                .build();
+    }
+
+    private LoadReport run(APIstaxClient client, Operation[] schedule, Map<Operation, List<Object>> payloads) throws InterruptedException {
+        var report = new LoadReport(options.mix.keySet());
+        var next = new AtomicLong();
+
+        var startNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        var measureStartNanos = startNanos + options.warmup.toNanos();
+        var endNanos = measureStartNanos + options.duration.toNanos();
+        var intervalNanos = options.isOpenLoop() ? (long) (TimeUnit.SECONDS.toNanos(1) / options.rate) : 0;
+        var expectedIntervalNanos = options.expectedInterval != null ? options.expectedInterval.toNanos() : 0;
+
+        ExecutorService executor = Executors.newFixedThreadPool(options.concurrency);
+
+        for (int worker = 0; worker < options.concurrency; worker++) {
+            executor.execute(() -> {
+                while (true) {
+                    var index = next.getAndIncrement();
+                    long intendedNanos;
+
+                    if (options.isOpenLoop()) {
+                        intendedNanos = startNanos + index * intervalNanos;
+                    } else {
+                        parkUntil(startNanos);
+                        intendedNanos = System.nanoTime();
+                    }
+
+                    if (intendedNanos >= endNanos) {
+                        return;
+                    }
+
+                    parkUntil(intendedNanos);
+
+                    var operation = schedule[(int) (index % schedule.length)];
+                    var operationPayloads = payloads.get(operation);
+                    var payload = operationPayloads.get((int) ((index / schedule.length) % operationPayloads.size()));
+
+                    long bytes = 0;
+                    String error = null;
+
+                    try {
+                        bytes = operation.execute(client, payload);
+                    } catch (APIstaxException e) {
+                        error = errorKey(e);
+                    } catch (RuntimeException e) {
+                        error = e.getClass().getSimpleName();
+                    }
+
+                    var latencyNanos = System.nanoTime() - intendedNanos;
+
+                    if (intendedNanos >= measureStartNanos) {
+                        report.record(operation, latencyNanos, expectedIntervalNanos, bytes, error);
+                    }
+                }
+            });
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+        report.finish(Math.max(1, System.nanoTime() - measureStartNanos), options.duration.toNanos());
+        return report;
+    }
+
+    /**
+     * Expand the endpoint mix into a shuffled sequence of operations. The sequence only depends on the mix and the
+     * seed, so separate runs issue identical load.
+     */
+    private Operation[] schedule() {
+        var result = new ArrayList<Operation>();
+
+        for (Map.Entry<Operation, Integer> entry : options.mix.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                result.add(entry.getKey());
+            }
+        }
+
+        if (result.isEmpty()) {
+            throw new IllegalArgumentException("The endpoint mix must contain at least one operation with a positive weight");
+        }
+
+        Collections.shuffle(result, new Random(options.seed));
+        return result.toArray(new Operation[0]);
+    }
+
+    private Map<Operation, List<Object>> loadPayloads() throws IOException {
+        var result = new EnumMap<Operation, List<Object>>(Operation.class);
+
+        for (Operation operation : options.mix.keySet()) {
+            var file = options.payloads.get(operation);
+            var payloads = file != null ? operation.loadPayloads(objectMapper, file) : List.of(operation.defaultPayload());
+
+            if (payloads.isEmpty()) {
+                throw new IllegalArgumentException("No payloads found in " + file);
+            }
+
+            result.put(operation, payloads);
+        }
+
+        return result;
+    }
+
+    private static String errorKey(APIstaxException e) {
+        var prefix = e.getStatusCode() != 0 ? e.getStatusCode() + " " : "";
+
+        if (e.getMessages() != null && !e.getMessages().isEmpty()) {
+            return prefix + String.join(",", e.getMessages());
+        }
+
+        return prefix + (e.getCause() != null ? e.getCause().getClass().getSimpleName() : e.getClass().getSimpleName());
+    }
+
+    private static void parkUntil(long nanos) {
+        long remaining;
+
+        while ((remaining = nanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
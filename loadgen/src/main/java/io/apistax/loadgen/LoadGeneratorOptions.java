@@ -0,0 +1,198 @@
+package io.apistax.loadgen;
+
+import io.apistax.client.ConcurrencyLimiter;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The command line options of the {@link LoadGenerator}.
+ */
+public class LoadGeneratorOptions {
+
+    static final String USAGE = "Usage: java -jar apistax-loadgen-all.jar [options]\n" +
+            "\n" +
+            "  --base-url <url>             APIstax base URL (default: https://api.apistax.io)\n" +
+            "  --api-key <key>              API key, defaults to the APISTAX_API_KEY environment variable\n" +
+            "  --fake-server                Run against an embedded APIstaxFakeServer instead of --base-url\n" +
+            "  --mix <op=weight,...>        Endpoint mix (default: verifyVatId=1)\n" +
+            "                               Operations: " + String.join(", ", Operation.names()) + "\n" +
+            "  --payload <op=file.json>     Payload of an operation, a JSON object or an array of objects used in turn\n" +
+            "  --concurrency <n>            Number of concurrent workers (default: 16)\n" +
+            "  --rate <n>                   Target rate in requests per second (open loop), closed loop if omitted\n" +
+            "  --expected-interval <dur>    Expected interval between requests of a worker in closed loop mode, used\n" +
+            "                               to correct coordinated omission\n" +
+            "  --warmup <dur>               Warmup before measuring (default: 10s)\n" +
+            "  --duration <dur>             Measurement duration (default: 60s)\n" +
+            "  --seed <n>                   Seed of the operation sequence (default: 1)\n" +
+            "  --warm-up                    Warm up the client's connections before the run\n" +
+            "  --keep-alive <dur>           Keep connections alive with probes after the given idle time\n" +
+            "  --record <file>              Record the requests and responses of the run to a cassette file\n" +
+            "  --replay <file>              Serve the responses from a recorded cassette instead of --base-url\n" +
+            "  --time-scale <f>             Factor of the recorded latencies when replaying (default: 1)\n" +
+            "  --adaptive-limit <alg>       Limit the concurrency per endpoint adaptively, vegas or aimd\n" +
+            "  --cold-start <n>             Instead of a load test, measure the first call latency of n new clients,\n" +
+            "                               cold and after warm up, using the first operation of the mix\n" +
+            "  --json <file>                Write the report as JSON to the given file, - for stdout\n" +
+            "  --help                       Show this help\n" +
+            "\n" +
+            "Durations are given like 500ms, 30s or 5m.";
+
+    String baseUrl = "https://api.apistax.io";
+    String apiKey = System.getenv("APISTAX_API_KEY");
+    boolean fakeServer;
+    final Map<Operation, Integer> mix = new LinkedHashMap<>();
+    final Map<Operation, Path> payloads = new LinkedHashMap<>();
+    int concurrency = 16;
+    double rate;
+    Duration expectedInterval;
+    Duration warmup = Duration.ofSeconds(10);
+    Duration duration = Duration.ofSeconds(60);
+    long seed = 1;
+    boolean warmUp;
+    Duration keepAlive;
+    Path record;
+    Path replay;
+    double timeScale = 1;
+    ConcurrencyLimiter.Algorithm adaptiveLimit;
+    int coldStart;
+    String json;
+    boolean help;
+
+    static LoadGeneratorOptions parse(String[] args) {
+        var options = new LoadGeneratorOptions();
+
+        for (int i = 0; i < args.length; i++) {
+            var arg = args[i];
+
+            switch (arg) {
+                case "--base-url":
+                    options.baseUrl = value(args, ++i, arg);
+                    break;
+                case "--api-key":
+                    options.apiKey = value(args, ++i, arg);
+                    break;
+                case "--fake-server":
+                    options.fakeServer = true;
+                    break;
+                case "--mix":
+                    for (String entry : value(args, ++i, arg).split(",")) {
+                        var parts = split(entry, arg);
+                        options.mix.put(Operation.byName(parts[0]), Integer.parseInt(parts[1]));
+                    }
+                    break;
+                case "--payload":
+                    var parts = split(value(args, ++i, arg), arg);
+                    options.payloads.put(Operation.byName(parts[0]), Path.of(parts[1]));
+                    break;
+                case "--concurrency":
+                    options.concurrency = Integer.parseInt(value(args, ++i, arg));
+                    break;
+                case "--rate":
+                    options.rate = Double.parseDouble(value(args, ++i, arg));
+                    break;
+                case "--expected-interval":
+                    options.expectedInterval = duration(value(args, ++i, arg));
+                    break;
+                case "--warmup":
+                    options.warmup = duration(value(args, ++i, arg));
+                    break;
+                case "--duration":
+                    options.duration = duration(value(args, ++i, arg));
+                    break;
+                case "--seed":
+                    options.seed = Long.parseLong(value(args, ++i, arg));
+                    break;
+                case "--warm-up":
+                    options.warmUp = true;
+                    break;
+                case "--keep-alive":
+                    options.keepAlive = duration(value(args, ++i, arg));
+                    break;
+                case "--record":
+                    options.record = Path.of(value(args, ++i, arg));
+                    break;
+                case "--replay":
+                    options.replay = Path.of(value(args, ++i, arg));
+                    break;
+                case "--time-scale":
+                    options.timeScale = Double.parseDouble(value(args, ++i, arg));
+                    break;
+                case "--adaptive-limit":
+                    options.adaptiveLimit = ConcurrencyLimiter.Algorithm.valueOf(value(args, ++i, arg).toUpperCase(Locale.ROOT));
+                    break;
+                case "--cold-start":
+                    options.coldStart = Integer.parseInt(value(args, ++i, arg));
+                    break;
+                case "--json":
+                    options.json = value(args, ++i, arg);
+                    break;
+                case "--help":
+                case "-h":
+                    options.help = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+
+        if (options.mix.isEmpty()) {
+            options.mix.put(Operation.VERIFY_VAT_ID, 1);
+        }
+
+        if (options.concurrency < 1) {
+            throw new IllegalArgumentException("--concurrency must be at least 1");
+        }
+
+        if (options.replay != null && (options.fakeServer || options.record != null)) {
+            throw new IllegalArgumentException("--replay can't be combined with --fake-server or --record");
+        }
+
+        return options;
+    }
+
+    boolean isOpenLoop() {
+        return rate > 0;
+    }
+
+    static Duration duration(String value) {
+        var number = value.replaceAll("[a-z]+$", "");
+        var unit = value.substring(number.length());
+        var amount = Long.parseLong(number);
+
+        switch (unit) {
+            case "ms":
+                return Duration.ofMillis(amount);
+            case "":
+            case "s":
+                return Duration.ofSeconds(amount);
+            case "m":
+                return Duration.ofMinutes(amount);
+            case "h":
+                return Duration.ofHours(amount);
+            default:
+                throw new IllegalArgumentException("Unknown duration unit in " + value);
+        }
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+
+        return args[index];
+    }
+
+    private static String[] split(String entry, String option) {
+        var index = entry.indexOf('=');
+
+        if (index < 1) {
+            throw new IllegalArgumentException("Expected <op>=<value> for " + option + " but got " + entry);
+        }
+
+        return new String[]{entry.substring(0, index), entry.substring(index + 1)};
+    }
+}
@@ -0,0 +1,238 @@
+package io.apistax.loadgen;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.apistax.client.BuildConfig;
+import io.apistax.client.ConcurrencyLimiter;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the results of a load test run and renders them as text or JSON.
+ */
+public class LoadReport {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final Map<String, OperationStats> operations = new LinkedHashMap<>();
+    private final OperationStats total = new OperationStats();
+    private Map<String, ConcurrencyLimiter.EndpointStats> limits = Map.of();
+    private long elapsedNanos;
+    private long durationNanos;
+
+    LoadReport(Collection<Operation> operations) {
+        for (Operation operation : operations) {
+            this.operations.put(operation.getName(), new OperationStats());
+        }
+    }
+
+    void record(Operation operation, long latencyNanos, long expectedIntervalNanos, long bytes, String error) {
+        var latencyMicros = Math.min(HIGHEST_TRACKABLE_MICROS, TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+        var expectedIntervalMicros = TimeUnit.NANOSECONDS.toMicros(expectedIntervalNanos);
+
+        operations.get(operation.getName()).record(latencyMicros, expectedIntervalMicros, bytes, error);
+        total.record(latencyMicros, expectedIntervalMicros, bytes, error == null ? null : operation.getName() + ": " + error);
+    }
+
+    void limits(Map<String, ConcurrencyLimiter.EndpointStats> limits) {
+        this.limits = limits;
+    }
+
+    void finish(long elapsedNanos, long durationNanos) {
+        this.elapsedNanos = elapsedNanos;
+        this.durationNanos = durationNanos;
+    }
+
+    public long getRequests() {
+        return total.histogram.getTotalCount();
+    }
+
+    public long getErrors() {
+        return total.errorCount();
+    }
+
+    /**
+     * @return the completed requests per second within the measurement window
+     */
+    public double getThroughput() {
+        return throughput(total);
+    }
+
+    public double getLatencyMillis(double percentile) {
+        return millis(total.histogram.getValueAtPercentile(percentile));
+    }
+
+    public String toText() {
+        var text = new StringBuilder();
+
+        text.append(String.format("APIstax client %s, %d requests in %.1fs, %.1f req/s, %d errors%n",
+                BuildConfig.VERSION, getRequests(), seconds(), getThroughput(), getErrors()));
+        text.append(String.format("%n%-28s %9s %9s %9s %9s %9s %9s %9s %9s%n",
+                "operation", "requests", "req/s", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+
+        for (Map.Entry<String, OperationStats> entry : operations.entrySet()) {
+            appendRow(text, entry.getKey(), entry.getValue());
+        }
+
+        appendRow(text, "total", total);
+
+        if (!total.errors.isEmpty()) {
+            text.append(String.format("%nerrors%n"));
+
+            for (Map.Entry<String, Long> entry : new TreeMap<>(total.errorCounts()).entrySet()) {
+                text.append(String.format("  %-60s %9d%n", entry.getKey(), entry.getValue()));
+            }
+        }
+
+        if (!limits.isEmpty()) {
+            text.append(String.format("%n%-28s %9s %9s %9s %9s%n", "adaptive limit", "limit", "min rtt", "rtt", "overloads"));
+
+            for (Map.Entry<String, ConcurrencyLimiter.EndpointStats> entry : limits.entrySet()) {
+                var stats = entry.getValue();
+                var minRtt = stats.getMinRtt() != null ? stats.getMinRtt().toNanos() / 1e6 : 0;
+
+                text.append(String.format("%-28s %9d %9.1f %9.1f %9d%n", entry.getKey(), stats.getLimit(), minRtt,
+                        stats.getRtt().toNanos() / 1e6, stats.getOverloads()));
+            }
+        }
+
+        return text.toString();
+    }
+
+    public String toJson(LoadGeneratorOptions options) throws JsonProcessingException {
+        var json = new LinkedHashMap<String, Object>();
+        json.put("clientVersion", BuildConfig.VERSION);
+        json.put("mode", options.isOpenLoop() ? "open-loop" : "closed-loop");
+        json.put("targetRate", options.isOpenLoop() ? options.rate : null);
+        json.put("concurrency", options.concurrency);
+        json.put("warmupSeconds", options.warmup.toMillis() / 1000d);
+        json.put("durationSeconds", seconds());
+        json.put("coordinatedOmissionCorrected", options.isOpenLoop() || options.expectedInterval != null);
+        json.put("total", toJson(total));
+
+        var operationsJson = new LinkedHashMap<String, Object>();
+
+        for (Map.Entry<String, OperationStats> entry : operations.entrySet()) {
+            operationsJson.put(entry.getKey(), toJson(entry.getValue()));
+        }
+
+        json.put("operations", operationsJson);
+
+        if (!limits.isEmpty()) {
+            var limitsJson = new LinkedHashMap<String, Object>();
+
+            for (Map.Entry<String, ConcurrencyLimiter.EndpointStats> entry : limits.entrySet()) {
+                var stats = entry.getValue();
+                var limitJson = new LinkedHashMap<String, Object>();
+                limitJson.put("limit", stats.getLimit());
+                limitJson.put("minRttMillis", stats.getMinRtt() != null ? stats.getMinRtt().toNanos() / 1e6 : null);
+                limitJson.put("rttMillis", stats.getRtt().toNanos() / 1e6);
+                limitJson.put("calls", stats.getCalls());
+                limitJson.put("overloads", stats.getOverloads());
+                limitsJson.put(entry.getKey(), limitJson);
+            }
+
+            json.put("adaptiveLimits", limitsJson);
+        }
+
+        return new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(json);
+    }
+
+    private Map<String, Object> toJson(OperationStats stats) {
+        var json = new LinkedHashMap<String, Object>();
+        json.put("requests", stats.histogram.getTotalCount());
+        json.put("throughput", throughput(stats));
+        json.put("errors", stats.errorCount());
+        json.put("errorBreakdown", new TreeMap<>(stats.errorCounts()));
+        json.put("responseBytes", stats.bytes.sum());
+
+        var latency = new LinkedHashMap<String, Object>();
+        latency.put("mean", millis((long) stats.histogram.getMean()));
+
+        for (double percentile : PERCENTILES) {
+            latency.put("p" + format(percentile), millis(stats.histogram.getValueAtPercentile(percentile)));
+        }
+
+        latency.put("max", millis(stats.histogram.getMaxValue()));
+
+        json.put("latencyMillis", latency);
+        return json;
+    }
+
+    private void appendRow(StringBuilder text, String name, OperationStats stats) {
+        var histogram = stats.histogram;
+
+        text.append(String.format("%-28s %9d %9.1f %9d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                name,
+                histogram.getTotalCount(),
+                throughput(stats),
+                stats.errorCount(),
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue())));
+    }
+
+    private double throughput(OperationStats stats) {
+        return stats.completed.sum() / seconds();
+    }
+
+    private double seconds() {
+        return Math.min(elapsedNanos, Math.max(durationNanos, 1)) / 1e9;
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000d;
+    }
+
+    private static String format(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+
+    private static class OperationStats {
+
+        private final Histogram histogram = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+        void record(long latencyMicros, long expectedIntervalMicros, long bytes, String error) {
+            if (expectedIntervalMicros > 0) {
+                histogram.recordValueWithExpectedInterval(latencyMicros, expectedIntervalMicros);
+            } else {
+                histogram.recordValue(latencyMicros);
+            }
+
+            completed.increment();
+            this.bytes.add(bytes);
+
+            if (error != null) {
+                errors.computeIfAbsent(error, key -> new LongAdder()).increment();
+            }
+        }
+
+        long errorCount() {
+            return errors.values().stream().mapToLong(LongAdder::sum).sum();
+        }
+
+        Map<String, Long> errorCounts() {
+            var result = new LinkedHashMap<String, Long>();
+
+            for (Map.Entry<String, LongAdder> entry : errors.entrySet()) {
+                result.put(entry.getKey(), entry.getValue().sum());
+            }
+
+            return result;
+        }
+    }
+}
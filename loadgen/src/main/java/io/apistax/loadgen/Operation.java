@@ -0,0 +1,151 @@
+package io.apistax.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.apistax.client.APIstaxClient;
+import io.apistax.models.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * An APIstax operation the load generator can call, together with its payload type and a default payload.
+ */
+enum Operation {
+
+    VERIFY_VAT_ID("verifyVatId", VatVerificationPayload.class,
+            () -> new VatVerificationPayload().vatId("ATU12345678"),
+            (client, payload) -> {
+                client.verifyVatId((VatVerificationPayload) payload);
+                return 0;
+            }),
+    GEOCODE_SEARCH("geocodeSearch", GeocodeSearchPayload.class,
+            () -> new GeocodeSearchPayload().query("Heldenplatz, Wien"),
+            (client, payload) -> {
+                client.geocodeSearch((GeocodeSearchPayload) payload);
+                return 0;
+            }),
+    GEOCODE_REVERSE("geocodeReverse", GeocodeReversePayload.class,
+            () -> new GeocodeReversePayload().latitude(48.20661).longitude(16.36301),
+            (client, payload) -> {
+                client.geocodeReverse((GeocodeReversePayload) payload);
+                return 0;
+            }),
+    FETCH_INDEX("fetchIndex", Map.class,
+            () -> Map.of("index", Index.AT_CPI_2020.getValue(), "frequency", IndexFrequency.MONTHLY.getValue()),
+            (client, payload) -> {
+                var map = (Map<?, ?>) payload;
+                client.fetchIndex(
+                        Index.fromValue(String.valueOf(map.get("index"))),
+                        IndexFrequency.fromValue(String.valueOf(map.get("frequency")))
+                );
+                return 0;
+            }),
+    CONVERT_HTML_TO_PDF("convertHtmlToPdf", HtmlPayload.class,
+            () -> new HtmlPayload().content("<html><body><h1>APIstax load test</h1></body></html>"),
+            (client, payload) -> client.convertHtmlToPdf((HtmlPayload) payload).length),
+    GENERATE_INVOICE_PDF("generateInvoicePdf", InvoicePayload.class,
+            InvoicePayload::new,
+            (client, payload) -> client.generateInvoicePdf((InvoicePayload) payload).length),
+    GENERATE_SWISS_QR_INVOICE("generateSwissQrInvoice", SwissQrInvoicePayload.class,
+            SwissQrInvoicePayload::new,
+            (client, payload) -> client.generateSwissQrInvoice((SwissQrInvoicePayload) payload).length),
+    GENERATE_EPC_QR_CODE("generateEpcQrCode", EpcQrCodePayload.class,
+            () -> new EpcQrCodePayload().iban("AT611904300234573201").recipient("APIstax"),
+            (client, payload) -> client.generateEpcQrCode((EpcQrCodePayload) payload).length),
+    GENERATE_BARCODE("generateBarcode", BarcodePayload.class,
+            BarcodePayload::new,
+            (client, payload) -> client.generateBarcode((BarcodePayload) payload).length),
+    GENERATE_SPAYD_QR_CODE("generateSpaydQrCode", SpaydQrCodePayload.class,
+            SpaydQrCodePayload::new,
+            (client, payload) -> client.generateSpaydQrCode((SpaydQrCodePayload) payload).length),
+    GENERATE_PAY_BY_SQUARE_QR_CODE("generatePayBySquareQrCode", PayBySquareQrCodePayload.class,
+            PayBySquareQrCodePayload::new,
+            (client, payload) -> client.generatePayBySquareQrCode((PayBySquareQrCodePayload) payload).length),
+    GENERATE_HCT_QR_CODE("generateHctQrCode", HctQrCodePayload.class,
+            HctQrCodePayload::new,
+            (client, payload) -> client.generateHctQrCode((HctQrCodePayload) payload).length),
+    CONVERT_PDF_TO_PDF_A("convertPdfToPdfA", byte[].class,
+            () -> "%PDF-1.4\n%%EOF\n".getBytes(StandardCharsets.US_ASCII),
+            (client, payload) -> client.convertPdfToPdfA(new ByteArrayInputStream((byte[]) payload)).length);
+
+    private final String name;
+    private final Class<?> payloadType;
+    private final Supplier<Object> defaultPayload;
+    private final Call call;
+
+    Operation(String name, Class<?> payloadType, Supplier<Object> defaultPayload, Call call) {
+        this.name = name;
+        this.payloadType = payloadType;
+        this.defaultPayload = defaultPayload;
+        this.call = call;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Execute the operation.
+     *
+     * @return the size of a binary response in bytes, 0 for JSON responses
+     */
+    long execute(APIstaxClient client, Object payload) {
+        return call.execute(client, payload);
+    }
+
+    /**
+     * Load the payloads of the operation from a file. JSON arrays yield one payload per element, PDF to PDF/A takes
+     * the raw PDF file.
+     */
+    List<Object> loadPayloads(ObjectMapper objectMapper, Path file) throws IOException {
+        if (payloadType == byte[].class) {
+            return List.of(Files.readAllBytes(file));
+        }
+
+        var tree = objectMapper.readTree(file.toFile());
+        var result = new ArrayList<>();
+
+        if (tree.isArray()) {
+            for (JsonNode node : tree) {
+                result.add(objectMapper.treeToValue(node, payloadType));
+            }
+        } else {
+            result.add(objectMapper.treeToValue(tree, payloadType));
+        }
+
+        return result;
+    }
+
+    Object defaultPayload() {
+        return defaultPayload.get();
+    }
+
+    static Operation byName(String name) {
+        for (Operation operation : values()) {
+            if (operation.name.equals(name)) {
+                return operation;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown operation " + name + ", expected one of " + Arrays.toString(names()));
+    }
+
+    static String[] names() {
+        return Arrays.stream(values()).map(Operation::getName).toArray(String[]::new);
+    }
+
+    @FunctionalInterface
+    private interface Call {
+
+        long execute(APIstaxClient client, Object payload);
+    }
+}
@@ -0,0 +1,59 @@
+plugins {
+    id("application")
+    id("org.graalvm.buildtools.native") version "0.11.1"
+}
+
+group = "io.apistax"
+version = "1.8.0"
+
+dependencies {
+    implementation(project(":client"))
+    implementation(testFixtures(project(":client")))
+}
+
+java {
+    toolchain {
+        languageVersion = JavaLanguageVersion.of(17)
+    }
+}
+
+application {
+    mainClass = "io.apistax.smoke.SmokeTest"
+}
+
+tasks.compileJava {
+    options.encoding = "UTF-8"
+}
+
+graalvmNative {
+    metadataRepository {
+        enabled = true
+    }
+
+    binaries {
+        named("main") {
+            imageName = "apistax-smoke"
+            mainClass = application.mainClass
+            buildArgs.add("--no-fallback")
+        }
+    }
+}
+
+tasks.register<JavaExec>("coldStartReport") {
+    description = "Compares cold start and first call latency of the JVM and the native binary."
+    group = "verification"
+
+    val binary = layout.buildDirectory.file("native/nativeCompile/apistax-smoke")
+    dependsOn(tasks.named("nativeCompile"))
+
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass = "io.apistax.smoke.ColdStartReport"
+
+    argumentProviders.add(CommandLineArgumentProvider {
+        listOf(
+            "--runs", (project.findProperty("runs") ?: "5").toString(),
+            "--classpath", sourceSets.main.get().runtimeClasspath.asPath,
+            "--native", binary.get().asFile.absolutePath
+        )
+    })
+}
@@ -0,0 +1,123 @@
+package io.apistax.smoke;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs {@link SmokeTest} repeatedly on the JVM and as native binary, each time in a new process, and prints the median
+ * of every measurement. The time to main is measured from launching the process until its first line is read.
+ * <pre>
+ * ColdStartReport --runs 5 --classpath &lt;runtime classpath&gt; --native build/native/nativeCompile/apistax-smoke
+ * </pre>
+ */
+public class ColdStartReport {
+
+    public static void main(String[] args) throws Exception {
+        var runs = 5;
+        String classpath = null;
+        String binary = null;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--runs":
+                    runs = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--classpath":
+                    classpath = args[i + 1];
+                    break;
+                case "--native":
+                    binary = args[i + 1];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        var java = ProcessHandle.current().info().command().orElse("java");
+        var results = new LinkedHashMap<String, Map<String, List<Double>>>();
+
+        if (classpath != null) {
+            results.put("jvm", run(runs, java, "-cp", classpath, SmokeTest.class.getName()));
+        }
+
+        if (binary != null) {
+            results.put("native", run(runs, binary));
+        }
+
+        print(runs, results);
+    }
+
+    private static Map<String, List<Double>> run(int runs, String... command) throws IOException, InterruptedException {
+        var measurements = new LinkedHashMap<String, List<Double>>();
+
+        for (int i = 0; i < runs; i++) {
+            var start = System.nanoTime();
+            var process = new ProcessBuilder(command)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+
+            try (var reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+
+                while ((line = reader.readLine()) != null) {
+                    if (line.equals("main")) {
+                        add(measurements, "time to main", (System.nanoTime() - start) / 1e6);
+                    } else if (line.endsWith(" ms")) {
+                        var parts = line.substring(0, line.length() - 3).trim().split("\\s{2,}");
+                        add(measurements, parts[0], Double.parseDouble(parts[1].trim()));
+                    }
+                }
+            }
+
+            if (process.waitFor() != 0) {
+                throw new IllegalStateException(String.join(" ", command) + " failed with exit code " + process.exitValue());
+            }
+
+            add(measurements, "process", (System.nanoTime() - start) / 1e6);
+        }
+
+        return measurements;
+    }
+
+    private static void add(Map<String, List<Double>> measurements, String name, double millis) {
+        measurements.computeIfAbsent(name, key -> new ArrayList<>()).add(millis);
+    }
+
+    private static void print(int runs, Map<String, Map<String, List<Double>>> results) {
+        var text = new StringBuilder();
+        text.append(String.format("Smoke test, median of %d runs%n%n%-24s", runs, ""));
+        results.keySet().forEach(mode -> text.append(String.format(" %12s", mode + " ms")));
+        text.append(String.format("%n"));
+
+        var names = new ArrayList<String>();
+        results.values().forEach(measurements -> measurements.keySet().stream()
+                .filter(name -> !names.contains(name))
+                .forEach(names::add));
+
+        for (String name : names) {
+            text.append(String.format("%-24s", name));
+
+            for (Map<String, List<Double>> measurements : results.values()) {
+                var values = measurements.get(name);
+                text.append(values == null ? String.format(" %12s", "-") : String.format(" %12.2f", median(values)));
+            }
+
+            text.append(String.format("%n"));
+        }
+
+        System.out.print(text);
+    }
+
+    private static double median(List<Double> values) {
+        var sorted = values.stream().mapToDouble(Double::doubleValue).toArray();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,71 @@
+package io.apistax.smoke;
+
+import io.apistax.client.APIstaxClient;
+import io.apistax.client.APIstaxFakeServer;
+import io.apistax.client.UnavailableException;
+import io.apistax.models.Index;
+import io.apistax.models.IndexFrequency;
+import io.apistax.models.InvoicePayload;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+
+/**
+ * Calls the client against a local {@link APIstaxFakeServer} and checks the results, so serialization of the models
+ * is exercised in a native image as well. Prints the time from process start to main, and the latency of the first
+ * call per operation, which includes class loading and initialization on the JVM. Exits with status 1 if a call fails.
+ */
+public class SmokeTest {
+
+    public static void main(String[] args) {
+        var mainReached = Instant.now();
+        var processStart = ProcessHandle.current().info().startInstant().orElse(mainReached);
+
+        // printed first, so the report can measure the time to main independent of the clock granularity of startInstant
+        System.out.println("main");
+        System.out.printf("%-24s %s%n", "mode", System.getProperty("org.graalvm.nativeimage.imagecode") != null ? "native" : "jvm");
+        System.out.printf(Locale.ROOT, "%-24s %9.2f ms%n", "startup", Duration.between(processStart, mainReached).toNanos() / 1e6);
+
+        try (var server = new APIstaxFakeServer.Builder()
+                .endpoint("/v1/geocode/reverse", endpoint -> endpoint.errorRate(503, 1.0))
+                .build()
+                .start()) {
+            var client = measure("client", () -> new APIstaxClient.Builder()
+                    .apiKey("API_KEY")
+                    .host(server.getBaseUrl())
+                    .build());
+
+            measure("verifyVatId", () -> check(client.verifyVatId("ATU12345678").getValid()));
+            measure("verifyVatId again", () -> check(client.verifyVatId("ATU12345678").getValid()));
+            measure("geocodeSearch", () -> check(client.geocodeSearch("Street 1, Vienna").getPosition()));
+            measure("fetchIndex", () -> check(client.fetchIndex(Index.AT_CPI_2015, IndexFrequency.YEARLY).getValues()));
+            measure("generateInvoicePdf", () -> check(client.generateInvoicePdf(new InvoicePayload())));
+            measure("error response", () -> {
+                try {
+                    client.geocodeReverse(48.208101, 16.37376);
+                } catch (UnavailableException e) {
+                    return check(e.getMessages());
+                }
+
+                throw new IllegalStateException("No UnavailableException thrown");
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private static <T> T measure(String name, Callable<T> call) throws Exception {
+        var start = System.nanoTime();
+        var result = call.call();
+        System.out.printf(Locale.ROOT, "%-24s %9.2f ms%n", name, (System.nanoTime() - start) / 1e6);
+        return result;
+    }
+
+    private static <T> T check(T value) {
+        return Objects.requireNonNull(value, "Empty result");
+    }
+}
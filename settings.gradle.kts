@@ -1 +1,3 @@
-include(":client")
\ No newline at end of file
+include(":client")
+include(":loadgen")
+include(":native-smoke")
\ No newline at end of file